@@ -7,10 +7,14 @@ import mchorse.bbs_mod.camera.data.Position;
 import mchorse.bbs_mod.utils.clips.Clip;
 import mchorse.bbs_mod.utils.clips.Clips;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public abstract class CameraWorkCameraController implements ICameraController
 {
     protected CameraClipContext context;
     protected Position position = new Position();
+    protected List<Clip> clips = new ArrayList<>();
 
     public CameraWorkCameraController()
     {
@@ -44,7 +48,10 @@ public abstract class CameraWorkCameraController implements ICameraController
         this.context.clipData.clear();
         this.context.setup(ticks, transition);
 
-        for (Clip clip : this.context.clips.getClips(ticks))
+        this.clips.clear();
+        this.context.clips.getClips(ticks, Integer.MAX_VALUE, this.clips);
+
+        for (Clip clip : this.clips)
         {
             this.context.apply(clip, this.position);
         }
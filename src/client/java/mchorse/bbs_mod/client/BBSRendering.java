@@ -9,6 +9,7 @@ import mchorse.bbs_mod.camera.clips.misc.CurveClip;
 import mchorse.bbs_mod.camera.clips.misc.SubtitleClip;
 import mchorse.bbs_mod.camera.controller.CameraWorkCameraController;
 import mchorse.bbs_mod.camera.controller.PlayCameraController;
+import mchorse.bbs_mod.cubic.render.vao.InstancedVAORenderer;
 import mchorse.bbs_mod.events.ModelBlockEntityUpdateCallback;
 import mchorse.bbs_mod.forms.renderers.utils.RecolorVertexConsumer;
 import mchorse.bbs_mod.graphics.texture.Texture;
@@ -412,12 +413,23 @@ public class BBSRendering
 
     public static void renderCoolStuff(WorldRenderContext worldRenderContext)
     {
-        if (MinecraftClient.getInstance().currentScreen instanceof UIScreen screen)
+        /* Repeated structures and blocks get collected and rendered with
+         * instanced draws once everything else was rendered */
+        InstancedVAORenderer.begin();
+
+        try
         {
-            screen.renderInWorld(worldRenderContext);
-        }
+            if (MinecraftClient.getInstance().currentScreen instanceof UIScreen screen)
+            {
+                screen.renderInWorld(worldRenderContext);
+            }
 
-        BBSModClient.getFilms().render(worldRenderContext);
+            BBSModClient.getFilms().render(worldRenderContext);
+        }
+        finally
+        {
+            InstancedVAORenderer.end();
+        }
     }
 
     public static boolean isOptifinePresent()
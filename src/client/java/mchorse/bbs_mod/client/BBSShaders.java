@@ -15,6 +15,7 @@ import java.util.Optional;
 public class BBSShaders
 {
     private static ShaderProgram model;
+    private static ShaderProgram skinnedModel;
     private static ShaderProgram multiLink;
     private static ShaderProgram subtitles;
 
@@ -33,6 +34,7 @@ public class BBSShaders
     public static void setup()
     {
         if (model != null) model.close();
+        if (skinnedModel != null) skinnedModel.close();
         if (subtitles != null) subtitles.close();
         if (subtitles != null) subtitles.close();
 
@@ -41,12 +43,14 @@ public class BBSShaders
         if (pickerBillboardNoShading != null) pickerBillboardNoShading.close();
         if (pickerParticles != null) pickerParticles.close();
         if (pickerModels != null) pickerModels.close();
+        if (structure != null) structure.close();
 
         try
         {
             ResourceFactory factory = new ProxyResourceFactory(MinecraftClient.getInstance().getResourceManager());
 
             model = new ShaderProgram(factory, "model", VertexFormats.POSITION_COLOR_TEXTURE_OVERLAY_LIGHT_NORMAL);
+            skinnedModel = new ShaderProgram(factory, "skinned_model", VertexFormats.POSITION_COLOR_TEXTURE_OVERLAY_LIGHT_NORMAL);
             multiLink = new ShaderProgram(factory, "multilink", VertexFormats.POSITION_TEXTURE_COLOR);
             subtitles = new ShaderProgram(factory, "subtitles", VertexFormats.POSITION_TEXTURE_COLOR);
 
@@ -55,6 +59,7 @@ public class BBSShaders
             pickerBillboardNoShading = new ShaderProgram(factory, "picker_billboard_no_shading", VertexFormats.POSITION_TEXTURE_LIGHT_COLOR);
             pickerParticles = new ShaderProgram(factory, "picker_particles", VertexFormats.POSITION_COLOR_TEXTURE_LIGHT);
             pickerModels = new ShaderProgram(factory, "picker_models", VertexFormats.POSITION_COLOR_TEXTURE_OVERLAY_LIGHT_NORMAL);
+            structure = new ShaderProgram(factory, "structure", VertexFormats.POSITION_COLOR_TEXTURE_OVERLAY_LIGHT_NORMAL);
         }
         catch (IOException e)
         {
@@ -67,6 +72,11 @@ public class BBSShaders
         return model;
     }
 
+    public static ShaderProgram getSkinnedModel()
+    {
+        return skinnedModel;
+    }
+
     public static ShaderProgram getMultilinkProgram()
     {
         return multiLink;
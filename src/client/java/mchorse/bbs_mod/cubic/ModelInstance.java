@@ -359,9 +359,19 @@ public class ModelInstance implements IModelInstance
                 stack.push();
                 stack.multiply(RotationAxis.POSITIVE_Y.rotationDegrees(180F));
 
+                ShaderProgram shader = program.get();
+
                 vao.armature.setupMatrices();
-                vao.updateMesh(stencilMap);
-                vao.render(program.get(), stack, color.r, color.g, color.b, color.a, stencilMap, light, overlay);
+
+                if (vao.canSkinOnGPU(shader, stencilMap))
+                {
+                    vao.renderSkinned(stack, color.r, color.g, color.b, color.a, light, overlay);
+                }
+                else
+                {
+                    vao.updateMesh(stencilMap);
+                    vao.render(shader, stack, color.r, color.g, color.b, color.a, stencilMap, light, overlay);
+                }
 
                 stack.pop();
             }
@@ -0,0 +1,382 @@
+package mchorse.bbs_mod.cubic.model;
+
+import mchorse.bbs_mod.bobj.BOBJLoader;
+import mchorse.bbs_mod.obj.MeshOBJ;
+import mchorse.bbs_mod.obj.MeshesOBJ;
+import mchorse.bbs_mod.obj.OBJMaterial;
+import mchorse.bbs_mod.resources.Link;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Model cache
+ *
+ * Binary cache of compiled OBJ and BOBJ meshes, so big models don't have
+ * to be parsed again on the next start. Every cached file is keyed by the
+ * hash of model's source files, so once the source files are changed,
+ * the cache entry gets ignored (and overwritten once the model is
+ * compiled again). Cache files are memory-mapped when they're read.
+ */
+public class ModelCache
+{
+    public static final int MAGIC = ('B' << 24) | ('B' << 16) | ('S' << 8) | 'C';
+    public static final int VERSION = 1;
+
+    public static final int TYPE_OBJ = 1;
+    public static final int TYPE_BOBJ = 2;
+
+    private static final int HEADER = 4 + 4 + 4 + 8;
+
+    private File folder;
+
+    /**
+     * Hash of given source files' content (null sources are allowed)
+     */
+    public static long hash(byte[]... sources)
+    {
+        CRC32 crc = new CRC32();
+        CRC32C crcc = new CRC32C();
+
+        for (byte[] source : sources)
+        {
+            byte[] length = ByteBuffer.allocate(4).putInt(source == null ? -1 : source.length).array();
+
+            crc.update(length);
+            crcc.update(length);
+
+            if (source != null)
+            {
+                crc.update(source);
+                crcc.update(source);
+            }
+        }
+
+        return crc.getValue() << 32 | crcc.getValue();
+    }
+
+    public ModelCache(File folder)
+    {
+        this.folder = folder;
+    }
+
+    public File getFile(Link link)
+    {
+        return new File(this.folder, link.toString().replaceAll("[^\\w.\\-]", "_") + ".bin");
+    }
+
+    /**
+     * Read cached BOBJ compiled data. Returned data doesn't have a mesh
+     * assigned, so it should be assigned by the caller.
+     */
+    public BOBJLoader.CompiledData readBOBJ(Link link, long hash)
+    {
+        ByteBuffer buffer = this.read(link, TYPE_BOBJ, hash);
+
+        if (buffer == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            float[] posData = readFloats(buffer);
+            float[] texData = readFloats(buffer);
+            float[] normData = readFloats(buffer);
+            float[] weightData = readFloats(buffer);
+            int[] boneIndexData = readInts(buffer);
+            int[] indexData = readInts(buffer);
+
+            return new BOBJLoader.CompiledData(posData, texData, normData, weightData, boneIndexData, indexData, null);
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    public void writeBOBJ(Link link, long hash, BOBJLoader.CompiledData data)
+    {
+        int size = 0;
+
+        size += 4 + data.posData.length * 4;
+        size += 4 + data.texData.length * 4;
+        size += 4 + data.normData.length * 4;
+        size += 4 + data.weightData.length * 4;
+        size += 4 + data.boneIndexData.length * 4;
+        size += 4 + data.indexData.length * 4;
+
+        ByteBuffer buffer = this.allocate(TYPE_BOBJ, hash, size);
+
+        writeFloats(buffer, data.posData);
+        writeFloats(buffer, data.texData);
+        writeFloats(buffer, data.normData);
+        writeFloats(buffer, data.weightData);
+        writeInts(buffer, data.boneIndexData);
+        writeInts(buffer, data.indexData);
+
+        this.write(link, buffer);
+    }
+
+    /**
+     * Read cached compiled OBJ meshes. Materials are looked up by name in
+     * given map of materials (so MTL file should be read by the caller).
+     */
+    public Map<String, MeshesOBJ> readOBJ(Link link, long hash, Map<String, OBJMaterial> materials)
+    {
+        ByteBuffer buffer = this.read(link, TYPE_OBJ, hash);
+
+        if (buffer == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            Map<String, MeshesOBJ> meshes = new HashMap<>();
+
+            for (int i = 0, c = buffer.getInt(); i < c; i++)
+            {
+                String name = readString(buffer);
+                MeshesOBJ meshesOBJ = new MeshesOBJ();
+
+                for (int j = 0, d = buffer.getInt(); j < d; j++)
+                {
+                    String material = buffer.get() == 0 ? null : readString(buffer);
+                    MeshOBJ mesh = new MeshOBJ(readFloats(buffer), readFloats(buffer), readFloats(buffer));
+
+                    mesh.material = material == null ? null : materials.get(material);
+                    meshesOBJ.meshes.add(mesh);
+                }
+
+                meshes.put(name, meshesOBJ);
+            }
+
+            return meshes;
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    public void writeOBJ(Link link, long hash, Map<String, MeshesOBJ> meshes)
+    {
+        List<byte[]> strings = new ArrayList<>();
+        int size = 4;
+
+        for (Map.Entry<String, MeshesOBJ> entry : meshes.entrySet())
+        {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+
+            strings.add(name);
+            size += 4 + name.length + 4;
+
+            for (MeshOBJ mesh : entry.getValue().meshes)
+            {
+                size += 1;
+
+                if (mesh.material != null)
+                {
+                    byte[] material = mesh.material.name.getBytes(StandardCharsets.UTF_8);
+
+                    strings.add(material);
+                    size += 4 + material.length;
+                }
+
+                size += 4 + mesh.posData.length * 4;
+                size += 4 + mesh.texData.length * 4;
+                size += 4 + mesh.normData.length * 4;
+            }
+        }
+
+        ByteBuffer buffer = this.allocate(TYPE_OBJ, hash, size);
+        int index = 0;
+
+        buffer.putInt(meshes.size());
+
+        for (Map.Entry<String, MeshesOBJ> entry : meshes.entrySet())
+        {
+            writeString(buffer, strings.get(index++));
+            buffer.putInt(entry.getValue().meshes.size());
+
+            for (MeshOBJ mesh : entry.getValue().meshes)
+            {
+                buffer.put((byte) (mesh.material == null ? 0 : 1));
+
+                if (mesh.material != null)
+                {
+                    writeString(buffer, strings.get(index++));
+                }
+
+                writeFloats(buffer, mesh.posData);
+                writeFloats(buffer, mesh.texData);
+                writeFloats(buffer, mesh.normData);
+            }
+        }
+
+        this.write(link, buffer);
+    }
+
+    /**
+     * Map the cache file of given link, if it's a valid cache file of given
+     * type and source hash. The header is read before mapping the file, so
+     * outdated files don't stay mapped (which would prevent overwriting
+     * them on Windows).
+     */
+    private ByteBuffer read(Link link, int type, long hash)
+    {
+        File file = this.getFile(link);
+
+        if (!file.isFile())
+        {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (header.hasRemaining())
+            {
+                if (channel.read(header) < 0)
+                {
+                    return null;
+                }
+            }
+
+            header.flip();
+
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != type || header.getLong() != hash)
+            {
+                return null;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER, channel.size() - HEADER);
+
+            return buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    private ByteBuffer allocate(int type, long hash, int size)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + size).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(type).putLong(hash);
+
+        return buffer;
+    }
+
+    /**
+     * Write given buffer into a temporary file first, and then move it to
+     * the cache file, so a half-written cache file would never be read
+     */
+    private void write(Link link, ByteBuffer buffer)
+    {
+        File file = this.getFile(link);
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+
+        buffer.flip();
+        file.getParentFile().mkdirs();
+
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                while (buffer.hasRemaining())
+                {
+                    channel.write(buffer);
+                }
+            }
+
+            try
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+
+            temp.delete();
+        }
+    }
+
+    private static float[] readFloats(ByteBuffer buffer)
+    {
+        float[] array = new float[buffer.getInt()];
+
+        buffer.asFloatBuffer().get(array);
+        buffer.position(buffer.position() + array.length * 4);
+
+        return array;
+    }
+
+    private static int[] readInts(ByteBuffer buffer)
+    {
+        int[] array = new int[buffer.getInt()];
+
+        buffer.asIntBuffer().get(array);
+        buffer.position(buffer.position() + array.length * 4);
+
+        return array;
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFloats(ByteBuffer buffer, float[] array)
+    {
+        buffer.putInt(array.length);
+        buffer.asFloatBuffer().put(array);
+        buffer.position(buffer.position() + array.length * 4);
+    }
+
+    private static void writeInts(ByteBuffer buffer, int[] array)
+    {
+        buffer.putInt(array.length);
+        buffer.asIntBuffer().put(array);
+        buffer.position(buffer.position() + array.length * 4);
+    }
+
+    private static void writeString(ByteBuffer buffer, byte[] bytes)
+    {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+}
@@ -38,6 +38,7 @@ public class ModelManager implements IWatchDogListener
     public final List<IModelLoader> loaders = new ArrayList<>();
     public final AssetProvider provider;
     public final MolangParser parser;
+    public final ModelCache cache;
 
     private ModelLoader loader = new ModelLoader(this);
 
@@ -45,6 +46,7 @@ public class ModelManager implements IWatchDogListener
     {
         this.provider = provider;
         this.parser = new MolangParser();
+        this.cache = new ModelCache(BBSMod.getSettingsPath("model_cache"));
 
         MolangHelper.registerVars(this.parser);
 
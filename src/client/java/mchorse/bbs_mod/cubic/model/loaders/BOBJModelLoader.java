@@ -10,6 +10,7 @@ import mchorse.bbs_mod.cubic.ModelInstance;
 import mchorse.bbs_mod.cubic.data.animation.Animation;
 import mchorse.bbs_mod.cubic.data.animation.AnimationPart;
 import mchorse.bbs_mod.cubic.data.animation.Animations;
+import mchorse.bbs_mod.cubic.model.ModelCache;
 import mchorse.bbs_mod.cubic.model.ModelManager;
 import mchorse.bbs_mod.cubic.model.bobj.BOBJModel;
 import mchorse.bbs_mod.data.types.MapType;
@@ -19,9 +20,11 @@ import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
 import mchorse.bbs_mod.math.molang.expressions.MolangValue;
 import mchorse.bbs_mod.resources.AssetProvider;
 import mchorse.bbs_mod.resources.Link;
+import mchorse.bbs_mod.utils.IOUtils;
 import mchorse.bbs_mod.utils.keyframes.Keyframe;
 import mchorse.bbs_mod.utils.keyframes.KeyframeChannel;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -40,7 +43,12 @@ public class BOBJModelLoader implements IModelLoader
 
         try (InputStream stream = models.provider.getAsset(modelBOBJ))
         {
-            BOBJLoader.BOBJData bobjData = BOBJLoader.readData(stream);
+            /* When compiled mesh is cached, there is no need to read the
+             * geometry, only armatures and actions */
+            byte[] bytes = IOUtils.readBytes(stream);
+            long hash = ModelCache.hash(bytes);
+            BOBJLoader.CompiledData cachedData = models.cache.readBOBJ(modelBOBJ, hash);
+            BOBJLoader.BOBJData bobjData = BOBJLoader.readData(new ByteArrayInputStream(bytes), cachedData == null);
 
             if (bobjData.armatures.isEmpty())
             {
@@ -64,7 +72,19 @@ public class BOBJModelLoader implements IModelLoader
 
             if (finalMesh != null)
             {
-                BOBJLoader.CompiledData compiledData = BOBJLoader.compileMesh(bobjData, finalMesh);
+                BOBJLoader.CompiledData compiledData = cachedData;
+
+                if (compiledData == null)
+                {
+                    compiledData = BOBJLoader.compileMesh(bobjData, finalMesh);
+
+                    models.cache.writeBOBJ(modelBOBJ, hash, compiledData);
+                }
+                else
+                {
+                    compiledData.mesh = finalMesh;
+                }
+
                 BOBJModel bobjModel = new BOBJModel(armature, compiledData, id.startsWith("emoticons") && id.endsWith("_simple"));
 
                 bobjData.initiateArmatures();
@@ -8,6 +8,7 @@ import mchorse.bbs_mod.cubic.data.model.Model;
 import mchorse.bbs_mod.cubic.data.model.ModelData;
 import mchorse.bbs_mod.cubic.data.model.ModelGroup;
 import mchorse.bbs_mod.cubic.data.model.ModelMesh;
+import mchorse.bbs_mod.cubic.model.ModelCache;
 import mchorse.bbs_mod.cubic.model.ModelManager;
 import mchorse.bbs_mod.data.DataToString;
 import mchorse.bbs_mod.data.types.BaseType;
@@ -30,6 +31,7 @@ import mchorse.bbs_mod.utils.colors.Color;
 import mchorse.bbs_mod.utils.resources.Pixels;
 import org.joml.Vector2i;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
@@ -352,10 +354,7 @@ public class CubicModelLoader implements IModelLoader
                 catch (Exception e)
                 {}
 
-                OBJParser parser = new OBJParser(stream, mtlStream);
-
-                parser.read();
-                compile.putAll(parser.compile());
+                compile.putAll(this.compileOBJ(models, link, stream, mtlStream));
 
                 if (mtlStream != null)
                 {
@@ -380,12 +379,8 @@ public class CubicModelLoader implements IModelLoader
 
             try (InputStream stream = models.provider.getAsset(link))
             {
-                OBJParser parser = new OBJParser(stream, null);
                 String name = StringUtils.fileName(StringUtils.removeExtension(link.path));
-
-                parser.read();
-
-                Map<String, MeshesOBJ> compiled = parser.compile();
+                Map<String, MeshesOBJ> compiled = this.compileOBJ(models, link, stream, null);
 
                 for (Map.Entry<String, MeshesOBJ> entry : compiled.entrySet())
                 {
@@ -410,6 +405,32 @@ public class CubicModelLoader implements IModelLoader
         return compile;
     }
 
+    /**
+     * Compile OBJ meshes, or read them from the model cache if the OBJ and
+     * MTL files didn't change since they were cached
+     */
+    private Map<String, MeshesOBJ> compileOBJ(ModelManager models, Link link, InputStream stream, InputStream mtlStream) throws Exception
+    {
+        byte[] obj = IOUtils.readBytes(stream);
+        byte[] mtl = mtlStream == null ? null : IOUtils.readBytes(mtlStream);
+        long hash = ModelCache.hash(obj, mtl);
+        OBJParser parser = new OBJParser(new ByteArrayInputStream(obj), mtl == null ? null : new ByteArrayInputStream(mtl));
+
+        parser.readMTL();
+
+        Map<String, MeshesOBJ> meshes = models.cache.readOBJ(link, hash, parser.materials);
+
+        if (meshes == null)
+        {
+            parser.readOBJ();
+            meshes = parser.compile();
+
+            models.cache.writeOBJ(link, hash, meshes);
+        }
+
+        return meshes;
+    }
+
     private void fillShapes(Set<String> declined, Map<String, List<MeshOBJ>> shapes, ModelGroup group, int tw, int th)
     {
         if (shapes == null)
@@ -429,9 +450,9 @@ public class CubicModelLoader implements IModelLoader
                 data.fill(mesh, tw, th);
 
                 if (
-                    data.vertices.size() == modelMesh.baseData.vertices.size() &&
-                    data.normals.size() == modelMesh.baseData.normals.size() &&
-                    data.uvs.size() == modelMesh.baseData.uvs.size()
+                    data.vertices.length == modelMesh.baseData.vertices.length &&
+                    data.normals.length == modelMesh.baseData.normals.length &&
+                    data.uvs.length == modelMesh.baseData.uvs.length
                 ) {
                     modelMesh.data.put(shapeEntry.getKey(), data);
                 }
@@ -13,6 +13,7 @@ import mchorse.bbs_mod.utils.colors.Color;
 import mchorse.bbs_mod.utils.resources.Pixels;
 import mchorse.bbs_mod.vox.VoxBuilder;
 import mchorse.bbs_mod.vox.VoxDocument;
+import mchorse.bbs_mod.vox.VoxGreedyBuilder;
 import mchorse.bbs_mod.vox.VoxReader;
 
 import java.io.File;
@@ -38,10 +39,15 @@ public class VoxModelLoader implements IModelLoader
             newModel.textureWidth = document.palette.length;
             newModel.textureHeight = 1;
 
+            /* Greedy meshing can be disabled with "greedy": false in model's config */
+            boolean greedy = config == null || config.getBool("greedy", true);
+
             for (VoxDocument.LimbNode node : document.generate())
             {
                 ModelGroup group = new ModelGroup(node.name);
-                VoxBuilder builder = new VoxBuilder(node.translation, node.rotation);
+                VoxBuilder builder = greedy
+                    ? new VoxGreedyBuilder(node.translation, node.rotation)
+                    : new VoxBuilder(node.translation, node.rotation);
 
                 group.initial.translate.set(node.translation.x, node.translation.z, node.translation.y);
                 group.meshes.add(builder.build(node.chunk));
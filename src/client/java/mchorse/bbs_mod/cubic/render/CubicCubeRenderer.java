@@ -165,19 +165,19 @@ public class CubicCubeRenderer implements ICubicRenderer
 
         ModelData baseData = mesh.baseData;
 
-        for (int i = 0, c = baseData.vertices.size() / 3; i < c; i++)
+        for (int i = 0, c = baseData.getVertexCount() / 3; i < c; i++)
         {
-            v1.set(baseData.vertices.get(i * 3));
-            v2.set(baseData.vertices.get(i * 3 + 1));
-            v3.set(baseData.vertices.get(i * 3 + 2));
+            baseData.getVertex(i * 3, v1);
+            baseData.getVertex(i * 3 + 1, v2);
+            baseData.getVertex(i * 3 + 2, v3);
 
-            n1.set(baseData.normals.get(i * 3));
-            n2.set(baseData.normals.get(i * 3 + 1));
-            n3.set(baseData.normals.get(i * 3 + 2));
+            baseData.getNormal(i * 3, n1);
+            baseData.getNormal(i * 3 + 1, n2);
+            baseData.getNormal(i * 3 + 2, n3);
 
-            u1.set(baseData.uvs.get(i * 3));
-            u2.set(baseData.uvs.get(i * 3 + 1));
-            u3.set(baseData.uvs.get(i * 3 + 2));
+            baseData.getUV(i * 3, u1);
+            baseData.getUV(i * 3 + 1, u2);
+            baseData.getUV(i * 3 + 2, u3);
 
             /* Apply shape keys */
             for (Map.Entry<String, Float> entry : this.shapeKeys.shapeKeys.entrySet())
@@ -188,17 +188,17 @@ public class CubicCubeRenderer implements ICubicRenderer
                 if (data != null)
                 {
                     /* final = temporary + lerp(initial, current, x) - initial */
-                    this.relativeShift(v1, baseData.vertices.get(i * 3), data.vertices.get(i * 3), value);
-                    this.relativeShift(v2, baseData.vertices.get(i * 3 + 1), data.vertices.get(i * 3 + 1), value);
-                    this.relativeShift(v3, baseData.vertices.get(i * 3 + 2), data.vertices.get(i * 3 + 2), value);
+                    this.relativeShift(v1, baseData.vertices, data.vertices, i * 3, value);
+                    this.relativeShift(v2, baseData.vertices, data.vertices, i * 3 + 1, value);
+                    this.relativeShift(v3, baseData.vertices, data.vertices, i * 3 + 2, value);
 
-                    this.relativeShift(n1, baseData.normals.get(i * 3), data.normals.get(i * 3), value);
-                    this.relativeShift(n2, baseData.normals.get(i * 3 + 1), data.normals.get(i * 3 + 1), value);
-                    this.relativeShift(n3, baseData.normals.get(i * 3 + 2), data.normals.get(i * 3 + 2), value);
+                    this.relativeShift(n1, baseData.normals, data.normals, i * 3, value);
+                    this.relativeShift(n2, baseData.normals, data.normals, i * 3 + 1, value);
+                    this.relativeShift(n3, baseData.normals, data.normals, i * 3 + 2, value);
 
-                    this.relativeShift(u1, baseData.uvs.get(i * 3), data.uvs.get(i * 3), value);
-                    this.relativeShift(u2, baseData.uvs.get(i * 3 + 1), data.uvs.get(i * 3 + 1), value);
-                    this.relativeShift(u3, baseData.uvs.get(i * 3 + 2), data.uvs.get(i * 3 + 2), value);
+                    this.relativeShift(u1, baseData.uvs, data.uvs, i * 3, value);
+                    this.relativeShift(u2, baseData.uvs, data.uvs, i * 3 + 1, value);
+                    this.relativeShift(u3, baseData.uvs, data.uvs, i * 3 + 2, value);
                 }
             }
 
@@ -222,17 +222,21 @@ public class CubicCubeRenderer implements ICubicRenderer
         stack.pop();
     }
 
-    private void relativeShift(Vector3f temp, Vector3f initial, Vector3f current, float x)
+    private void relativeShift(Vector3f temp, float[] initial, float[] current, int index, float x)
     {
-        temp.x = temp.x + Lerps.lerp(initial.x, current.x, x) - initial.x;
-        temp.y = temp.y + Lerps.lerp(initial.y, current.y, x) - initial.y;
-        temp.z = temp.z + Lerps.lerp(initial.z, current.z, x) - initial.z;
+        index *= 3;
+
+        temp.x = temp.x + Lerps.lerp(initial[index], current[index], x) - initial[index];
+        temp.y = temp.y + Lerps.lerp(initial[index + 1], current[index + 1], x) - initial[index + 1];
+        temp.z = temp.z + Lerps.lerp(initial[index + 2], current[index + 2], x) - initial[index + 2];
     }
 
-    private void relativeShift(Vector2f temp, Vector2f initial, Vector2f current, float x)
+    private void relativeShift(Vector2f temp, float[] initial, float[] current, int index, float x)
     {
-        temp.x = temp.x + Lerps.lerp(initial.x, current.x, x) - initial.x;
-        temp.y = temp.y + Lerps.lerp(initial.y, current.y, x) - initial.y;
+        index *= 2;
+
+        temp.x = temp.x + Lerps.lerp(initial[index], current[index], x) - initial[index];
+        temp.y = temp.y + Lerps.lerp(initial[index + 1], current[index + 1], x) - initial[index + 1];
     }
 
     protected void writeVertex(BufferBuilder builder, MatrixStack stack, ModelGroup group, ModelVertex vertex, Vector3f normal)
@@ -116,19 +116,19 @@ public class CubicVAOBuilderRenderer implements ICubicRenderer
 
         ModelData baseData = mesh.baseData;
 
-        for (int i = 0, c = baseData.vertices.size() / 3; i < c; i++)
+        for (int i = 0, c = baseData.getVertexCount() / 3; i < c; i++)
         {
-            v1.set(baseData.vertices.get(i * 3));
-            v2.set(baseData.vertices.get(i * 3 + 1));
-            v3.set(baseData.vertices.get(i * 3 + 2));
+            baseData.getVertex(i * 3, v1);
+            baseData.getVertex(i * 3 + 1, v2);
+            baseData.getVertex(i * 3 + 2, v3);
 
-            n1.set(baseData.normals.get(i * 3));
-            n2.set(baseData.normals.get(i * 3 + 1));
-            n3.set(baseData.normals.get(i * 3 + 2));
+            baseData.getNormal(i * 3, n1);
+            baseData.getNormal(i * 3 + 1, n2);
+            baseData.getNormal(i * 3 + 2, n3);
 
-            u1.set(baseData.uvs.get(i * 3));
-            u2.set(baseData.uvs.get(i * 3 + 1));
-            u3.set(baseData.uvs.get(i * 3 + 2));
+            baseData.getUV(i * 3, u1);
+            baseData.getUV(i * 3 + 1, u2);
+            baseData.getUV(i * 3 + 2, u3);
 
             /* Write vertices */
             this.normal.set(n1.x, n1.y, n1.z);
@@ -28,6 +28,12 @@ public class BOBJModelSimpleVAO extends BOBJModelVAO
         this.body = new Joint(this.armature.bones.get("body"), this.armature.bones.get("low_body"));
     }
 
+    @Override
+    protected boolean isProcessingData()
+    {
+        return true;
+    }
+
     @Override
     protected void processData(float[] newVertices, float[] newNormals)
     {
@@ -1,20 +1,42 @@
 package mchorse.bbs_mod.cubic.render.vao;
 
+import com.mojang.blaze3d.systems.RenderSystem;
+import mchorse.bbs_mod.BBSSettings;
 import mchorse.bbs_mod.bobj.BOBJArmature;
 import mchorse.bbs_mod.bobj.BOBJLoader;
 import mchorse.bbs_mod.client.BBSRendering;
+import mchorse.bbs_mod.client.BBSShaders;
 import mchorse.bbs_mod.ui.framework.elements.utils.StencilMap;
-import mchorse.bbs_mod.utils.joml.Matrices;
 import net.minecraft.client.gl.ShaderProgram;
 import net.minecraft.client.util.math.MatrixStack;
+import org.joml.Matrix3f;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+
+import java.util.stream.IntStream;
 
 public class BOBJModelVAO
 {
+    /**
+     * Texture unit to which bone matrices' texture buffer is bound during
+     * GPU skinning (units below are used by shader's samplers)
+     */
+    public static final int BONE_TEXTURE_UNIT = 12;
+
+    /**
+     * Minimum amount of vertices for CPU skinning to be split across
+     * threads, and the amount of vertices skinned by a single task
+     */
+    public static final int MIN_PARALLEL_VERTICES = 8192;
+    public static final int CHUNK_VERTICES = 2048;
+
     public BOBJLoader.CompiledData data;
     public BOBJArmature armature;
 
@@ -34,6 +56,29 @@ public class BOBJModelVAO
     private int[] tmpLight;
     private float[] tmpTangents;
 
+    /* GPU skinning */
+    private int boneIndexBuffer;
+    private int boneWeightBuffer;
+    private int boneBuffer;
+    private int boneTexture;
+    private float[] boneData;
+
+    private int skinningProgram = -1;
+    private int boneIndicesLocation = -1;
+    private int boneWeightsLocation = -1;
+    private int attributesProgram = -1;
+
+    /**
+     * Whether vertex and normal buffers contain CPU skinned data instead
+     * of the bind pose
+     */
+    private boolean skinnedOnCPU;
+
+    /* Pose of the last CPU skinning */
+    private Matrix4f[] pose;
+    private int poseHash;
+    private int poseFlags;
+
     public BOBJModelVAO(BOBJLoader.CompiledData data)
     {
         this.data = data;
@@ -104,6 +149,125 @@ public class BOBJModelVAO
         GL15.glDeleteBuffers(this.texCoordBuffer);
         GL15.glDeleteBuffers(this.tangentBuffer);
         GL15.glDeleteBuffers(this.midTextureBuffer);
+
+        if (this.boneBuffer != 0)
+        {
+            GL15.glDeleteBuffers(this.boneIndexBuffer);
+            GL15.glDeleteBuffers(this.boneWeightBuffer);
+            GL15.glDeleteBuffers(this.boneBuffer);
+            GL11.glDeleteTextures(this.boneTexture);
+        }
+    }
+
+    /**
+     * Whether {@link #processData(float[], float[])} modifies skinned
+     * vertices, in which case skinning can be done only on the CPU
+     */
+    protected boolean isProcessingData()
+    {
+        return false;
+    }
+
+    /**
+     * Check whether this mesh can be skinned in the vertex shader instead
+     * of {@link #updateMesh(StencilMap)}. It's possible only when the mesh
+     * would be rendered with BBS' model shader (i.e. not with Iris' shader
+     * programs) and isn't being rendered for picking.
+     */
+    public boolean canSkinOnGPU(ShaderProgram shader, StencilMap stencilMap)
+    {
+        if (!BBSSettings.gpuSkinning.get() || stencilMap != null || this.isProcessingData())
+        {
+            return false;
+        }
+
+        ShaderProgram skinned = BBSShaders.getSkinnedModel();
+
+        if (shader == null || shader != BBSShaders.getModel() || skinned == null)
+        {
+            return false;
+        }
+
+        return this.findSkinningAttributes(skinned.getGlRef());
+    }
+
+    private boolean findSkinningAttributes(int program)
+    {
+        if (this.skinningProgram != program)
+        {
+            this.skinningProgram = program;
+            this.boneIndicesLocation = GL20.glGetAttribLocation(program, "BoneIndices");
+            this.boneWeightsLocation = GL20.glGetAttribLocation(program, "BoneWeights");
+        }
+
+        /* Skinning attributes shouldn't overwrite any attribute that is used
+         * by the CPU skinned rendering */
+        return this.boneIndicesLocation > Attributes.NORMAL
+            && this.boneWeightsLocation > Attributes.NORMAL
+            && this.boneIndicesLocation != this.boneWeightsLocation
+            && this.boneIndicesLocation != Attributes.MID_TEXTURE_UV && this.boneIndicesLocation != Attributes.TANGENTS
+            && this.boneWeightsLocation != Attributes.MID_TEXTURE_UV && this.boneWeightsLocation != Attributes.TANGENTS;
+    }
+
+    /**
+     * Allocate buffers for GPU skinning. Bone indices and weights are
+     * static, so they're uploaded only once.
+     */
+    private void initSkinning()
+    {
+        this.boneIndexBuffer = GL30.glGenBuffers();
+        this.boneWeightBuffer = GL30.glGenBuffers();
+        this.boneBuffer = GL30.glGenBuffers();
+        this.boneTexture = GL11.glGenTextures();
+        this.boneData = new float[this.armature.matrices.length * 16];
+
+        GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, this.boneIndexBuffer);
+        GL30.glBufferData(GL30.GL_ARRAY_BUFFER, this.data.boneIndexData, GL30.GL_STATIC_DRAW);
+
+        GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, this.boneWeightBuffer);
+        GL30.glBufferData(GL30.GL_ARRAY_BUFFER, this.data.weightData, GL30.GL_STATIC_DRAW);
+
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, this.boneBuffer);
+        GL15.glBufferData(GL31.GL_TEXTURE_BUFFER, this.boneData, GL15.GL_STREAM_DRAW);
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, 0);
+
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, this.boneTexture);
+        GL31.glTexBuffer(GL31.GL_TEXTURE_BUFFER, GL30.GL_RGBA32F, this.boneBuffer);
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, 0);
+    }
+
+    /**
+     * Upload armature's current bone matrices to the texture buffer, and
+     * make sure that vertex buffers contain the bind pose.
+     */
+    private void updateSkinning()
+    {
+        if (this.boneBuffer == 0)
+        {
+            this.initSkinning();
+        }
+
+        if (this.skinnedOnCPU)
+        {
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vertexBuffer);
+            GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, this.data.posData);
+
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.normalBuffer);
+            GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, this.data.normData);
+
+            this.skinnedOnCPU = false;
+        }
+
+        Matrix4f[] matrices = this.armature.matrices;
+
+        for (int i = 0; i < matrices.length; i++)
+        {
+            matrices[i].get(this.boneData, i * 16);
+        }
+
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, this.boneBuffer);
+        GL15.glBufferData(GL31.GL_TEXTURE_BUFFER, this.boneData, GL15.GL_STREAM_DRAW);
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, 0);
     }
 
     /**
@@ -112,11 +276,122 @@ public class BOBJModelVAO
      * bone owners and these bone influences.
      */
     public void updateMesh(StencilMap stencilMap)
+    {
+        boolean hasShaders = BBSRendering.isIrisShadersEnabled();
+        int flags = (stencilMap == null ? 0 : (stencilMap.increment ? 2 : 1)) | (hasShaders ? 4 : 0);
+
+        if (!this.updatePose(flags))
+        {
+            return;
+        }
+
+        float[] newVertices = this.tmpVertices;
+        float[] newNormals = this.tmpNormals;
+        int count = this.count;
+
+        if (BBSSettings.multiThreadedSkinning.get() && count >= MIN_PARALLEL_VERTICES)
+        {
+            int chunks = (count + CHUNK_VERTICES - 1) / CHUNK_VERTICES;
+
+            IntStream.range(0, chunks).parallel().forEach((chunk) ->
+            {
+                int from = chunk * CHUNK_VERTICES;
+
+                this.skin(from, Math.min(from + CHUNK_VERTICES, count), stencilMap);
+            });
+        }
+        else
+        {
+            this.skin(0, count, stencilMap);
+        }
+
+        this.processData(newVertices, newNormals);
+
+        this.skinnedOnCPU = true;
+
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vertexBuffer);
+        GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, newVertices);
+
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.normalBuffer);
+        GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, newNormals);
+
+        if (hasShaders)
+        {
+            BBSRendering.calculateTangents(this.tmpTangents, newVertices, newNormals, this.data.texData);
+
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.tangentBuffer);
+            GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, this.tmpTangents);
+        }
+
+        if (stencilMap != null)
+        {
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.lightBuffer);
+            GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, this.tmpLight);
+        }
+    }
+
+    /**
+     * Store current armature's pose, and return whether the mesh needs to
+     * be skinned again, i.e. whether the pose (or the way the mesh gets
+     * rendered) has changed since the last CPU skinning.
+     */
+    private boolean updatePose(int flags)
+    {
+        Matrix4f[] matrices = this.armature.matrices;
+        int hash = flags;
+
+        for (Matrix4f matrix : matrices)
+        {
+            hash = 31 * hash + matrix.hashCode();
+        }
+
+        if (this.skinnedOnCPU && hash == this.poseHash && flags == this.poseFlags)
+        {
+            boolean same = true;
+
+            for (int i = 0; i < matrices.length && same; i++)
+            {
+                same = matrices[i].equals(this.pose[i]);
+            }
+
+            if (same)
+            {
+                return false;
+            }
+        }
+
+        if (this.pose == null || this.pose.length != matrices.length)
+        {
+            this.pose = new Matrix4f[matrices.length];
+
+            for (int i = 0; i < matrices.length; i++)
+            {
+                this.pose[i] = new Matrix4f();
+            }
+        }
+
+        for (int i = 0; i < matrices.length; i++)
+        {
+            this.pose[i].set(matrices[i]);
+        }
+
+        this.poseHash = hash;
+        this.poseFlags = flags;
+
+        return true;
+    }
+
+    /**
+     * Skin vertices in given range. It can be called from several threads
+     * at once for disjoint ranges.
+     */
+    private void skin(int from, int to, StencilMap stencilMap)
     {
         Vector4f sum = new Vector4f();
         Vector4f result = new Vector4f(0F, 0F, 0F, 0F);
         Vector3f sumNormal = new Vector3f();
         Vector3f resultNormal = new Vector3f();
+        Matrix3f normalMatrix = new Matrix3f();
 
         float[] oldVertices = this.data.posData;
         float[] newVertices = this.tmpVertices;
@@ -125,7 +400,7 @@ public class BOBJModelVAO
 
         Matrix4f[] matrices = this.armature.matrices;
 
-        for (int i = 0, c = this.count; i < c; i++)
+        for (int i = from; i < to; i++)
         {
             int count = 0;
             float maxWeight = -1;
@@ -144,7 +419,7 @@ public class BOBJModelVAO
                     result.add(sum.mul(weight));
 
                     sumNormal.set(oldNormals[i * 3], oldNormals[i * 3 + 1], oldNormals[i * 3 + 2]);
-                    Matrices.TEMP_3F.set(matrices[index]).transform(sumNormal);
+                    normalMatrix.set(matrices[index]).transform(sumNormal);
                     resultNormal.add(sumNormal.mul(weight));
 
                     count++;
@@ -184,34 +459,28 @@ public class BOBJModelVAO
                 this.tmpLight[i * 2 + 1] = 0;
             }
         }
-
-        this.processData(newVertices, newNormals);
-
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vertexBuffer);
-        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, newVertices, GL15.GL_DYNAMIC_DRAW);
-
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.normalBuffer);
-        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, newNormals, GL15.GL_DYNAMIC_DRAW);
-
-        if (BBSRendering.isIrisShadersEnabled())
-        {
-            BBSRendering.calculateTangents(this.tmpTangents, newVertices, newNormals, this.data.texData);
-
-            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.tangentBuffer);
-            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, this.tmpTangents, GL15.GL_DYNAMIC_DRAW);
-        }
-
-        if (stencilMap != null)
-        {
-            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.lightBuffer);
-            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, this.tmpLight, GL15.GL_DYNAMIC_DRAW);
-        }
     }
 
     protected void processData(float[] newVertices, float[] newNormals)
     {}
 
     public void render(ShaderProgram shader, MatrixStack stack, float r, float g, float b, float a, StencilMap stencilMap, int light, int overlay)
+    {
+        this.draw(shader, stack, r, g, b, a, stencilMap, light, overlay, false);
+    }
+
+    /**
+     * Render this mesh skinned in the vertex shader with armature's current
+     * bone matrices. {@link #canSkinOnGPU(ShaderProgram, StencilMap)} should
+     * be checked before calling this method.
+     */
+    public void renderSkinned(MatrixStack stack, float r, float g, float b, float a, int light, int overlay)
+    {
+        this.updateSkinning();
+        this.draw(BBSShaders.getSkinnedModel(), stack, r, g, b, a, null, light, overlay, true);
+    }
+
+    private void draw(ShaderProgram shader, MatrixStack stack, float r, float g, float b, float a, StencilMap stencilMap, int light, int overlay, boolean skinned)
     {
         boolean hasShaders = BBSRendering.isIrisShadersEnabled();
 
@@ -226,8 +495,27 @@ public class BOBJModelVAO
 
         shader.bind();
 
+        if (skinned)
+        {
+            GL20.glUniform1i(GL20.glGetUniformLocation(shader.getGlRef(), "BoneMats"), BONE_TEXTURE_UNIT);
+            RenderSystem.activeTexture(GL13.GL_TEXTURE0 + BONE_TEXTURE_UNIT);
+            GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, this.boneTexture);
+            RenderSystem.activeTexture(GL13.GL_TEXTURE0);
+        }
+
         GL30.glBindVertexArray(this.vao);
 
+        if (skinned && this.attributesProgram != this.skinningProgram)
+        {
+            GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, this.boneIndexBuffer);
+            GL30.glVertexAttribIPointer(this.boneIndicesLocation, 4, GL30.GL_INT, 0, 0);
+
+            GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, this.boneWeightBuffer);
+            GL30.glVertexAttribPointer(this.boneWeightsLocation, 4, GL30.GL_FLOAT, false, 0, 0);
+
+            this.attributesProgram = this.skinningProgram;
+        }
+
         GL30.glEnableVertexAttribArray(Attributes.POSITION);
         GL30.glEnableVertexAttribArray(Attributes.TEXTURE_UV);
         GL30.glEnableVertexAttribArray(Attributes.NORMAL);
@@ -235,6 +523,8 @@ public class BOBJModelVAO
         if (stencilMap != null) GL30.glEnableVertexAttribArray(Attributes.LIGHTMAP_UV);
         if (hasShaders) GL30.glEnableVertexAttribArray(Attributes.TANGENTS);
         if (hasShaders) GL30.glEnableVertexAttribArray(Attributes.MID_TEXTURE_UV);
+        if (skinned) GL30.glEnableVertexAttribArray(this.boneIndicesLocation);
+        if (skinned) GL30.glEnableVertexAttribArray(this.boneWeightsLocation);
 
         GL30.glDrawArrays(GL30.GL_TRIANGLES, 0, this.count);
 
@@ -245,6 +535,15 @@ public class BOBJModelVAO
         if (stencilMap != null) GL30.glDisableVertexAttribArray(Attributes.LIGHTMAP_UV);
         if (hasShaders) GL30.glDisableVertexAttribArray(Attributes.TANGENTS);
         if (hasShaders) GL30.glDisableVertexAttribArray(Attributes.MID_TEXTURE_UV);
+        if (skinned) GL30.glDisableVertexAttribArray(this.boneIndicesLocation);
+        if (skinned) GL30.glDisableVertexAttribArray(this.boneWeightsLocation);
+
+        if (skinned)
+        {
+            RenderSystem.activeTexture(GL13.GL_TEXTURE0 + BONE_TEXTURE_UNIT);
+            GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, 0);
+            RenderSystem.activeTexture(GL13.GL_TEXTURE0);
+        }
 
         shader.unbind();
 
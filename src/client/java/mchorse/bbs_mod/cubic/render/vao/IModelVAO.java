@@ -5,4 +5,6 @@ import net.minecraft.client.render.VertexFormat;
 public interface IModelVAO
 {
     public void render(VertexFormat format, float r, float g, float b, float a, int light, int overlay);
+
+    public void delete();
 }
\ No newline at end of file
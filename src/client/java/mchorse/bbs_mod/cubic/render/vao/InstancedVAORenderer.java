@@ -0,0 +1,208 @@
+package mchorse.bbs_mod.cubic.render.vao;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import mchorse.bbs_mod.client.BBSShaders;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.GlUniform;
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.screen.PlayerScreenHandler;
+import org.joml.Matrix4f;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Instanced VAO renderer
+ *
+ * Collects draws of {@link StructureVAO}s between {@link #begin()} and
+ * {@link #end()}, and renders all draws of the same VAO with a single
+ * instanced draw call when the last {@link #end()} is called. Every
+ * instance has its own model-view and normal matrices, color and
+ * lightmap coordinates, which are passed to the structure shader via
+ * per instance attributes.
+ *
+ * Draws are collected only between {@link #begin()} and {@link #end()},
+ * so anything rendered outside of it (UI, picking, etc.) gets drawn right
+ * away as before.
+ */
+public class InstancedVAORenderer
+{
+    /**
+     * Amount of floats per instance: model-view matrix (16), normal matrix
+     * (9), color (4) and lightmap coordinates (2)
+     */
+    public static final int STRIDE = 16 + 9 + 4 + 2;
+
+    private static final Map<StructureVAO, Batch> batches = new LinkedHashMap<>();
+    private static final Matrix4f matrix = new Matrix4f();
+
+    private static int depth;
+    private static int buffer = -1;
+    private static FloatBuffer data;
+
+    private static int drawCalls;
+    private static int instances;
+
+    public static void begin()
+    {
+        depth += 1;
+    }
+
+    public static void end()
+    {
+        if (depth <= 0)
+        {
+            return;
+        }
+
+        depth -= 1;
+
+        if (depth == 0)
+        {
+            flush();
+        }
+    }
+
+    public static boolean isBatching()
+    {
+        return depth > 0 && BBSShaders.getStructureProgram() != null && BBSShaders.getStructureProgram().getUniform("Instanced") != null;
+    }
+
+    /**
+     * Amount of instanced draw calls done during the last flush
+     */
+    public static int getDrawCalls()
+    {
+        return drawCalls;
+    }
+
+    /**
+     * Amount of instances rendered during the last flush
+     */
+    public static int getInstances()
+    {
+        return instances;
+    }
+
+    /**
+     * Add an instance of given VAO with current transformations of given
+     * matrix stack. Returns false, if draws aren't collected right now, in
+     * which case the VAO should be rendered right away.
+     */
+    public static boolean submit(StructureVAO vao, MatrixStack stack, float r, float g, float b, float a, int light)
+    {
+        if (!isBatching())
+        {
+            return false;
+        }
+
+        Batch batch = batches.computeIfAbsent(vao, (k) -> new Batch());
+        float[] instance = batch.next();
+        int offset = batch.size - STRIDE;
+
+        matrix.set(RenderSystem.getModelViewMatrix()).mul(stack.peek().getPositionMatrix()).get(instance, offset);
+        stack.peek().getNormalMatrix().get(instance, offset + 16);
+
+        instance[offset + 25] = r;
+        instance[offset + 26] = g;
+        instance[offset + 27] = b;
+        instance[offset + 28] = a;
+        instance[offset + 29] = light & '\uffff';
+        instance[offset + 30] = light >> 16 & '\uffff';
+
+        return true;
+    }
+
+    private static void flush()
+    {
+        drawCalls = 0;
+        instances = 0;
+
+        if (batches.isEmpty())
+        {
+            return;
+        }
+
+        ShaderProgram shader = BBSShaders.getStructureProgram();
+        GlUniform instanced = shader.getUniform("Instanced");
+        GameRenderer gameRenderer = MinecraftClient.getInstance().gameRenderer;
+        int currentVAO = GL30.glGetInteger(GL30.GL_VERTEX_ARRAY_BINDING);
+        int currentElementArrayBuffer = GL30.glGetInteger(GL30.GL_ELEMENT_ARRAY_BUFFER_BINDING);
+
+        gameRenderer.getLightmapTextureManager().enable();
+
+        RenderSystem.setShader(() -> shader);
+        RenderSystem.setShaderTexture(0, PlayerScreenHandler.BLOCK_ATLAS_TEXTURE);
+        RenderSystem.enableBlend();
+        RenderSystem.defaultBlendFunc();
+        RenderSystem.enableDepthTest();
+        RenderSystem.depthFunc(GL11.GL_LEQUAL);
+
+        /* The model-view matrix of every instance is passed per instance */
+        ModelVAORenderer.setupUniforms(new MatrixStack(), shader);
+        instanced.set(1);
+        shader.bind();
+
+        if (buffer < 0)
+        {
+            buffer = GL30.glGenBuffers();
+        }
+
+        for (Map.Entry<StructureVAO, Batch> entry : batches.entrySet())
+        {
+            Batch batch = entry.getValue();
+            int count = batch.size / STRIDE;
+
+            if (data == null || data.capacity() < batch.size)
+            {
+                data = data == null ? MemoryUtil.memAllocFloat(batch.size) : MemoryUtil.memRealloc(data, batch.size);
+            }
+
+            data.clear();
+            data.put(batch.data, 0, batch.size).flip();
+
+            GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, buffer);
+            GL30.glBufferData(GL30.GL_ARRAY_BUFFER, data, GL30.GL_STREAM_DRAW);
+            entry.getKey().renderInstanced(buffer, count);
+
+            drawCalls += 1;
+            instances += count;
+        }
+
+        shader.unbind();
+        instanced.set(0);
+
+        gameRenderer.getLightmapTextureManager().disable();
+        RenderSystem.disableBlend();
+
+        GL30.glBindVertexArray(currentVAO);
+        GL30.glBindBuffer(GL30.GL_ELEMENT_ARRAY_BUFFER, currentElementArrayBuffer);
+
+        batches.clear();
+    }
+
+    private static class Batch
+    {
+        public float[] data = new float[STRIDE * 8];
+        public int size;
+
+        public float[] next()
+        {
+            if (this.size + STRIDE > this.data.length)
+            {
+                this.data = Arrays.copyOf(this.data, this.data.length * 2);
+            }
+
+            this.size += STRIDE;
+
+            return this.data;
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package mchorse.bbs_mod.cubic.render.vao;
+
+import net.minecraft.client.render.VertexConsumer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Structure mesher
+ *
+ * Collects block model quads emitted via VertexConsumer (like
+ * {@link StructureVAOCollector}), and merges coplanar full block faces
+ * that have the same texture (and texture orientation) into larger quads
+ * using greedy meshing. Quads that aren't full block faces (slabs,
+ * stairs, plants, etc.) are kept as they are.
+ *
+ * Merged quads repeat the texture instead of stretching it, which is done
+ * by the structure shader (see {@link StructureVAOData}), so the result
+ * looks exactly the same as the original geometry.
+ */
+public class StructureMesher implements VertexConsumer
+{
+    private static final float EPSILON = 0.0001F;
+    private static final int STRIDE = 8;
+
+    private float[] quads = new float[STRIDE * 4 * 256];
+    private int size;
+    private boolean colored;
+    private final float[] uv = new float[8];
+
+    private float x, y, z;
+    private float nx, ny, nz;
+    private float u, v;
+
+    @Override
+    public VertexConsumer vertex(double x, double y, double z)
+    {
+        this.x = (float) x;
+        this.y = (float) y;
+        this.z = (float) z;
+
+        return this;
+    }
+
+    @Override
+    public VertexConsumer color(int red, int green, int blue, int alpha)
+    {
+        if (red != 255 || green != 255 || blue != 255)
+        {
+            this.colored = true;
+        }
+
+        return this;
+    }
+
+    @Override
+    public VertexConsumer texture(float u, float v)
+    {
+        this.u = u;
+        this.v = v;
+
+        return this;
+    }
+
+    @Override
+    public VertexConsumer overlay(int u, int v)
+    {
+        return this;
+    }
+
+    @Override
+    public VertexConsumer light(int u, int v)
+    {
+        return this;
+    }
+
+    @Override
+    public VertexConsumer normal(float x, float y, float z)
+    {
+        this.nx = x;
+        this.ny = y;
+        this.nz = z;
+
+        return this;
+    }
+
+    @Override
+    public void next()
+    {
+        if (this.size + STRIDE > this.quads.length)
+        {
+            this.quads = Arrays.copyOf(this.quads, this.quads.length * 2);
+        }
+
+        float[] q = this.quads;
+        int i = this.size;
+
+        q[i] = this.x;
+        q[i + 1] = this.y;
+        q[i + 2] = this.z;
+        q[i + 3] = this.nx;
+        q[i + 4] = this.ny;
+        q[i + 5] = this.nz;
+        q[i + 6] = this.u;
+        q[i + 7] = this.v;
+
+        this.size += STRIDE;
+    }
+
+    @Override
+    public void fixedColor(int red, int green, int blue, int alpha)
+    {}
+
+    @Override
+    public void unfixColor()
+    {}
+
+    /**
+     * Whether any of collected vertices had a color other than white
+     * (e.g. biome tinted quads), which isn't kept in the baked data
+     */
+    public boolean isColored()
+    {
+        return this.colored;
+    }
+
+    public int getQuadCount()
+    {
+        return this.size / (STRIDE * 4);
+    }
+
+    /**
+     * Merge collected quads and build VAO data out of them
+     */
+    public StructureVAOData toData()
+    {
+        int count = this.getQuadCount();
+        Map<Face, Cells> faces = new HashMap<>();
+        Output output = new Output(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            if (!this.addFace(faces, i * STRIDE * 4))
+            {
+                output.addQuad(this.quads, i * STRIDE * 4);
+            }
+        }
+
+        for (Map.Entry<Face, Cells> entry : faces.entrySet())
+        {
+            merge(entry.getKey(), entry.getValue(), output);
+        }
+
+        return output.toData();
+    }
+
+    /**
+     * Add quad at given offset to faces, if it's an axis aligned full block
+     * face whose texture can be repeated
+     */
+    private boolean addFace(Map<Face, Cells> faces, int offset)
+    {
+        float[] q = this.quads;
+        int axis = -1;
+
+        for (int a = 0; a < 3 && axis < 0; a++)
+        {
+            float first = q[offset + a];
+
+            if (Math.abs(q[offset + STRIDE + a] - first) < EPSILON
+                && Math.abs(q[offset + STRIDE * 2 + a] - first) < EPSILON
+                && Math.abs(q[offset + STRIDE * 3 + a] - first) < EPSILON)
+            {
+                axis = a;
+            }
+        }
+
+        if (axis < 0)
+        {
+            return false;
+        }
+
+        int aAxis = (axis + 1) % 3;
+        int bAxis = (axis + 2) % 3;
+        float plane = q[offset + axis];
+        float normal = q[offset + 3 + axis];
+
+        if (!isInteger(plane) || Math.abs(Math.abs(normal) - 1F) > EPSILON)
+        {
+            return false;
+        }
+
+        float minA = Float.MAX_VALUE;
+        float minB = Float.MAX_VALUE;
+
+        for (int i = 0; i < 4; i++)
+        {
+            int o = offset + i * STRIDE;
+
+            if (Math.abs(q[o + 3 + axis] - normal) > EPSILON)
+            {
+                return false;
+            }
+
+            minA = Math.min(minA, q[o + aAxis]);
+            minB = Math.min(minB, q[o + bAxis]);
+        }
+
+        if (!isInteger(minA) || !isInteger(minB))
+        {
+            return false;
+        }
+
+        /* Corners of the face: uv[(b * 2 + a) * 2] */
+        float[] uv = this.uv;
+        int corners = 0;
+
+        for (int i = 0; i < 4; i++)
+        {
+            int o = offset + i * STRIDE;
+            float da = q[o + aAxis] - minA;
+            float db = q[o + bAxis] - minB;
+            int ca = Math.round(da);
+            int cb = Math.round(db);
+
+            if (Math.abs(da - ca) > EPSILON || Math.abs(db - cb) > EPSILON || ca > 1 || cb > 1)
+            {
+                return false;
+            }
+
+            int corner = cb * 2 + ca;
+
+            corners |= 1 << corner;
+            uv[corner * 2] = q[o + 6];
+            uv[corner * 2 + 1] = q[o + 7];
+        }
+
+        if (corners != 0b1111)
+        {
+            return false;
+        }
+
+        /* Winding of the original quad (relative to the axis), so merged
+         * quads would be culled the same way */
+        int o1 = offset + STRIDE;
+        int o2 = offset + STRIDE * 2;
+        float a1 = q[o1 + aAxis] - q[offset + aAxis];
+        float b1 = q[o1 + bAxis] - q[offset + bAxis];
+        float a2 = q[o2 + aAxis] - q[offset + aAxis];
+        float b2 = q[o2 + bAxis] - q[offset + bAxis];
+        boolean counterClockwise = a1 * b2 - b1 * a2 > 0;
+
+        float au = uv[2] - uv[0];
+        float av = uv[3] - uv[1];
+        float bu = uv[4] - uv[0];
+        float bv = uv[5] - uv[1];
+
+        /* Texture must be mapped linearly, and aligned with face's edges */
+        if (Math.abs(uv[6] - (uv[0] + au + bu)) > EPSILON || Math.abs(uv[7] - (uv[1] + av + bv)) > EPSILON)
+        {
+            return false;
+        }
+
+        boolean aToU = Math.abs(av) < EPSILON && Math.abs(bu) < EPSILON && Math.abs(au) > EPSILON && Math.abs(bv) > EPSILON;
+        boolean aToV = Math.abs(au) < EPSILON && Math.abs(bv) < EPSILON && Math.abs(av) > EPSILON && Math.abs(bu) > EPSILON;
+
+        if (!aToU && !aToV)
+        {
+            return false;
+        }
+
+        float minU = Math.min(uv[0], uv[0] + au + bu);
+        float minV = Math.min(uv[1], uv[1] + av + bv);
+        float width = Math.abs(aToU ? au : bu);
+        float height = Math.abs(aToU ? bv : av);
+
+        Face face = new Face(
+            axis, normal > 0, counterClockwise, Math.round(plane),
+            minU, minV, width, height,
+            Math.round((uv[0] - minU) / width), Math.round((uv[1] - minV) / height),
+            Math.round(au / width), Math.round(av / height),
+            Math.round(bu / width), Math.round(bv / height)
+        );
+
+        faces.computeIfAbsent(face, (k) -> new Cells()).add(cell(Math.round(minA), Math.round(minB)));
+
+        return true;
+    }
+
+    private static boolean isInteger(float value)
+    {
+        return Math.abs(value - Math.round(value)) < EPSILON;
+    }
+
+    /**
+     * Pack cell's coordinates into a long, so cells are sorted by b, and
+     * then by a
+     */
+    private static long cell(int a, int b)
+    {
+        return ((long) b << 32) | ((a ^ Integer.MIN_VALUE) & 0xffffffffL);
+    }
+
+    /**
+     * Greedily merge cells of given face into rectangles
+     */
+    private static void merge(Face face, Cells cells, Output output)
+    {
+        long[] sorted = cells.data;
+        int count = cells.size;
+
+        Arrays.sort(sorted, 0, count);
+
+        boolean[] used = new boolean[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            /* Skip duplicate faces */
+            if (used[i] || (i > 0 && sorted[i] == sorted[i - 1]))
+            {
+                continue;
+            }
+
+            int a = (int) sorted[i] ^ Integer.MIN_VALUE;
+            int b = (int) (sorted[i] >> 32);
+            int w = 1;
+            int h = 1;
+
+            while (i + w < count && !used[i + w] && sorted[i + w] == cell(a + w, b))
+            {
+                w += 1;
+            }
+
+            int row;
+
+            while ((row = findRow(sorted, count, used, a, b + h, w)) >= 0)
+            {
+                Arrays.fill(used, row, row + w, true);
+
+                h += 1;
+            }
+
+            Arrays.fill(used, i, i + w, true);
+            output.addFace(face, a, b, w, h);
+        }
+    }
+
+    /**
+     * Find the index of a row of w unused cells starting at (a, b), or -1
+     * if there is no such row
+     */
+    private static int findRow(long[] sorted, int count, boolean[] used, int a, int b, int w)
+    {
+        int index = Arrays.binarySearch(sorted, 0, count, cell(a, b));
+
+        if (index < 0)
+        {
+            return -1;
+        }
+
+        while (index > 0 && sorted[index - 1] == sorted[index])
+        {
+            index -= 1;
+        }
+
+        for (int i = 0; i < w; i++)
+        {
+            if (index + i >= count || used[index + i] || sorted[index + i] != cell(a + i, b))
+            {
+                return -1;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Full block face's plane, winding and texture mapping. Faces with
+     * equal keys can be merged together.
+     *
+     * (u, v) is the sprite's rectangle, (u00, v00) are the texture
+     * coordinates of face's minimum corner in sprite units (0 or 1), and
+     * (au, av) and (bu, bv) are the changes in texture coordinates in
+     * sprite units along face's first and second axis.
+     */
+    private record Face(
+        int axis, boolean positive, boolean counterClockwise, int plane,
+        float u, float v, float width, float height,
+        int u00, int v00, int au, int av, int bu, int bv
+    )
+    {}
+
+    private static class Cells
+    {
+        public long[] data = new long[16];
+        public int size;
+
+        public void add(long cell)
+        {
+            if (this.size == this.data.length)
+            {
+                this.data = Arrays.copyOf(this.data, this.data.length * 2);
+            }
+
+            this.data[this.size++] = cell;
+        }
+    }
+
+    private static class Output
+    {
+        private float[] vertices;
+        private float[] normals;
+        private float[] texCoords;
+        private float[] sprites;
+        private int count;
+
+        private final float[] position = new float[3];
+
+        public Output(int quads)
+        {
+            int vertices = Math.max(quads, 1) * 6;
+
+            this.vertices = new float[vertices * 3];
+            this.normals = new float[vertices * 3];
+            this.texCoords = new float[vertices * 2];
+            this.sprites = new float[vertices * 4];
+        }
+
+        /**
+         * Add a quad as it is
+         */
+        public void addQuad(float[] q, int offset)
+        {
+            for (int i : new int[] {0, 1, 2, 0, 2, 3})
+            {
+                int o = offset + i * STRIDE;
+
+                this.add(q[o], q[o + 1], q[o + 2], q[o + 3], q[o + 4], q[o + 5], q[o + 6], q[o + 7], 0F, 0F, 0F, 0F);
+            }
+        }
+
+        /**
+         * Add a merged face that spans w by h cells starting at (a, b)
+         */
+        public void addFace(Face face, int a, int b, int w, int h)
+        {
+            int aAxis = (face.axis + 1) % 3;
+            int bAxis = (face.axis + 2) % 3;
+            float n = face.positive ? 1F : -1F;
+            float nx = face.axis == 0 ? n : 0F;
+            float ny = face.axis == 1 ? n : 0F;
+            float nz = face.axis == 2 ? n : 0F;
+
+            /* Corners 0, 1, 2, 3 go counter-clockwise relative to the axis */
+            int[] order = face.counterClockwise ? new int[] {0, 1, 2, 0, 2, 3} : new int[] {0, 3, 2, 0, 2, 1};
+
+            for (int corner : order)
+            {
+                int i = corner == 1 || corner == 2 ? w : 0;
+                int j = corner == 2 || corner == 3 ? h : 0;
+
+                this.position[face.axis] = face.plane;
+                this.position[aAxis] = a + i;
+                this.position[bAxis] = b + j;
+
+                this.add(
+                    this.position[0], this.position[1], this.position[2],
+                    nx, ny, nz,
+                    face.u00 + face.au * i + face.bu * j,
+                    face.v00 + face.av * i + face.bv * j,
+                    face.u, face.v, face.width, face.height
+                );
+            }
+        }
+
+        private void add(float x, float y, float z, float nx, float ny, float nz, float u, float v, float su, float sv, float sw, float sh)
+        {
+            if (this.count * 3 == this.vertices.length)
+            {
+                this.vertices = Arrays.copyOf(this.vertices, this.vertices.length * 2);
+                this.normals = Arrays.copyOf(this.normals, this.normals.length * 2);
+                this.texCoords = Arrays.copyOf(this.texCoords, this.texCoords.length * 2);
+                this.sprites = Arrays.copyOf(this.sprites, this.sprites.length * 2);
+            }
+
+            int i = this.count;
+
+            this.vertices[i * 3] = x;
+            this.vertices[i * 3 + 1] = y;
+            this.vertices[i * 3 + 2] = z;
+            this.normals[i * 3] = nx;
+            this.normals[i * 3 + 1] = ny;
+            this.normals[i * 3 + 2] = nz;
+            this.texCoords[i * 2] = u;
+            this.texCoords[i * 2 + 1] = v;
+            this.sprites[i * 4] = su;
+            this.sprites[i * 4 + 1] = sv;
+            this.sprites[i * 4 + 2] = sw;
+            this.sprites[i * 4 + 3] = sh;
+
+            this.count += 1;
+        }
+
+        public StructureVAOData toData()
+        {
+            return new StructureVAOData(
+                Arrays.copyOf(this.vertices, this.count * 3),
+                Arrays.copyOf(this.normals, this.count * 3),
+                Arrays.copyOf(this.texCoords, this.count * 2),
+                Arrays.copyOf(this.sprites, this.count * 4)
+            );
+        }
+    }
+}
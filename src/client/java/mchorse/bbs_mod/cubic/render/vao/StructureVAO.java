@@ -0,0 +1,206 @@
+package mchorse.bbs_mod.cubic.render.vao;
+
+import net.minecraft.client.render.VertexFormat;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
+
+/**
+ * Structure VAO
+ *
+ * VAO of baked structure geometry ({@link StructureVAOData}), which must
+ * be rendered with the structure shader. Sprite rectangles are passed
+ * via the Sprite attribute, whose location is assigned by the shader
+ * compiler, so it's looked up every time the shader program changes.
+ *
+ * It can also be rendered many times with a single instanced draw call
+ * (see {@link InstancedVAORenderer}), in which case per instance data
+ * gets passed via the Instance* attributes.
+ */
+public class StructureVAO implements IModelVAO
+{
+    public static final String SPRITE = "Sprite";
+    public static final String INSTANCE_MATRIX = "InstanceMatrix";
+    public static final String INSTANCE_NORMAL = "InstanceNormal";
+    public static final String INSTANCE_COLOR = "InstanceColor";
+    public static final String INSTANCE_LIGHT = "InstanceLight";
+
+    private int vao;
+    private int[] buffers;
+    private int count;
+
+    private int program = -1;
+    private int spriteLocation = -1;
+    private int matrixLocation = -1;
+    private int normalLocation = -1;
+    private int colorLocation = -1;
+    private int lightLocation = -1;
+
+    public StructureVAO(StructureVAOData data)
+    {
+        int currentVAO = GL30.glGetInteger(GL30.GL_VERTEX_ARRAY_BINDING);
+
+        this.upload(data);
+
+        GL30.glBindVertexArray(currentVAO);
+    }
+
+    @Override
+    public void delete()
+    {
+        GL30.glDeleteVertexArrays(this.vao);
+        GL30.glDeleteBuffers(this.buffers);
+
+        this.vao = 0;
+    }
+
+    public void upload(StructureVAOData data)
+    {
+        this.vao = GL30.glGenVertexArrays();
+        this.buffers = new int[4];
+
+        GL30.glGenBuffers(this.buffers);
+        GL30.glBindVertexArray(this.vao);
+
+        GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, this.buffers[0]);
+        GL30.glBufferData(GL30.GL_ARRAY_BUFFER, data.vertices(), GL30.GL_STATIC_DRAW);
+        GL30.glVertexAttribPointer(Attributes.POSITION, 3, GL30.GL_FLOAT, false, 0, 0);
+
+        GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, this.buffers[1]);
+        GL30.glBufferData(GL30.GL_ARRAY_BUFFER, data.normals(), GL30.GL_STATIC_DRAW);
+        GL30.glVertexAttribPointer(Attributes.NORMAL, 3, GL30.GL_FLOAT, false, 0, 0);
+
+        GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, this.buffers[2]);
+        GL30.glBufferData(GL30.GL_ARRAY_BUFFER, data.texCoords(), GL30.GL_STATIC_DRAW);
+        GL30.glVertexAttribPointer(Attributes.TEXTURE_UV, 2, GL30.GL_FLOAT, false, 0, 0);
+
+        GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, this.buffers[3]);
+        GL30.glBufferData(GL30.GL_ARRAY_BUFFER, data.sprites(), GL30.GL_STATIC_DRAW);
+
+        GL30.glEnableVertexAttribArray(Attributes.POSITION);
+        GL30.glEnableVertexAttribArray(Attributes.TEXTURE_UV);
+        GL30.glEnableVertexAttribArray(Attributes.NORMAL);
+
+        GL30.glDisableVertexAttribArray(Attributes.COLOR);
+        GL30.glDisableVertexAttribArray(Attributes.OVERLAY_UV);
+        GL30.glDisableVertexAttribArray(Attributes.LIGHTMAP_UV);
+
+        this.count = data.getVertexCount();
+    }
+
+    @Override
+    public void render(VertexFormat format, float r, float g, float b, float a, int light, int overlay)
+    {
+        GL30.glBindVertexArray(this.vao);
+
+        int program = GL30.glGetInteger(GL30.GL_CURRENT_PROGRAM);
+
+        if (program != this.program)
+        {
+            this.bindAttributes(program);
+        }
+
+        GL30.glVertexAttrib4f(Attributes.COLOR, r, g, b, a);
+        GL30.glVertexAttribI2i(Attributes.LIGHTMAP_UV, light & '\uffff', light >> 16 & '\uffff');
+
+        if (this.spriteLocation != Attributes.OVERLAY_UV)
+        {
+            GL30.glVertexAttribI2i(Attributes.OVERLAY_UV, overlay & '\uffff', overlay >> 16 & '\uffff');
+        }
+
+        GL30.glDrawArrays(GL30.GL_TRIANGLES, 0, this.count);
+        GL30.glBindVertexArray(0);
+    }
+
+    /**
+     * Render given amount of instances, whose data (laid out as described
+     * in {@link InstancedVAORenderer}) is stored in given buffer
+     */
+    public void renderInstanced(int buffer, int instances)
+    {
+        if (this.vao == 0)
+        {
+            return;
+        }
+
+        GL30.glBindVertexArray(this.vao);
+
+        int program = GL30.glGetInteger(GL30.GL_CURRENT_PROGRAM);
+
+        if (program != this.program)
+        {
+            this.bindAttributes(program);
+        }
+
+        if (this.matrixLocation < 0 || this.normalLocation < 0 || this.colorLocation < 0 || this.lightLocation < 0)
+        {
+            GL30.glBindVertexArray(0);
+
+            return;
+        }
+
+        int stride = InstancedVAORenderer.STRIDE * 4;
+
+        GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, buffer);
+
+        for (int i = 0; i < 4; i++)
+        {
+            this.bindInstanceAttribute(this.matrixLocation + i, 4, stride, i * 16);
+        }
+
+        for (int i = 0; i < 3; i++)
+        {
+            this.bindInstanceAttribute(this.normalLocation + i, 3, stride, 64 + i * 12);
+        }
+
+        this.bindInstanceAttribute(this.colorLocation, 4, stride, 100);
+        this.bindInstanceAttribute(this.lightLocation, 2, stride, 116);
+
+        GL31.glDrawArraysInstanced(GL30.GL_TRIANGLES, 0, this.count, instances);
+
+        /* Instance attributes are only enabled during instanced draws, so
+         * regular draws don't read them out of whatever is in the buffer */
+        for (int i = 0; i < 4; i++)
+        {
+            GL30.glDisableVertexAttribArray(this.matrixLocation + i);
+        }
+
+        for (int i = 0; i < 3; i++)
+        {
+            GL30.glDisableVertexAttribArray(this.normalLocation + i);
+        }
+
+        GL30.glDisableVertexAttribArray(this.colorLocation);
+        GL30.glDisableVertexAttribArray(this.lightLocation);
+        GL30.glBindVertexArray(0);
+    }
+
+    private void bindInstanceAttribute(int location, int size, int stride, int offset)
+    {
+        GL30.glVertexAttribPointer(location, size, GL30.GL_FLOAT, false, stride, offset);
+        GL33.glVertexAttribDivisor(location, 1);
+        GL30.glEnableVertexAttribArray(location);
+    }
+
+    private void bindAttributes(int program)
+    {
+        if (this.spriteLocation >= 0)
+        {
+            GL30.glDisableVertexAttribArray(this.spriteLocation);
+        }
+
+        this.program = program;
+        this.spriteLocation = GL30.glGetAttribLocation(program, SPRITE);
+        this.matrixLocation = GL30.glGetAttribLocation(program, INSTANCE_MATRIX);
+        this.normalLocation = GL30.glGetAttribLocation(program, INSTANCE_NORMAL);
+        this.colorLocation = GL30.glGetAttribLocation(program, INSTANCE_COLOR);
+        this.lightLocation = GL30.glGetAttribLocation(program, INSTANCE_LIGHT);
+
+        if (this.spriteLocation >= 0)
+        {
+            GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, this.buffers[3]);
+            GL30.glVertexAttribPointer(this.spriteLocation, 4, GL30.GL_FLOAT, false, 0, 0);
+            GL30.glEnableVertexAttribArray(this.spriteLocation);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package mchorse.bbs_mod.cubic.render.vao;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Structure VAO data
+ *
+ * Baked (and meshed) structure geometry. Besides the usual positions,
+ * normals and texture coordinates, every vertex has a sprite rectangle
+ * (min U, min V, width, height) within the atlas. Merged faces have
+ * texture coordinates in sprite units (i.e. a face that spans 3 blocks
+ * has U from 0 to 3), which get wrapped into the sprite rectangle by the
+ * structure shader. Faces that weren't merged have an empty sprite
+ * rectangle and regular atlas texture coordinates.
+ */
+public record StructureVAOData(float[] vertices, float[] normals, float[] texCoords, float[] sprites)
+{
+    public static final int MAGIC = ('B' << 24) | ('B' << 16) | ('S' << 8) | 'M';
+    public static final int VERSION = 1;
+
+    private static final int HEADER = 4 + 4 + 8 + 8 + 4;
+
+    public int getVertexCount()
+    {
+        return this.vertices.length / 3;
+    }
+
+    /**
+     * Read baked data from given file. Returns null if the file doesn't
+     * exist, is corrupted, or was baked for a different version (i.e.
+     * modification time) of the structure, or different set of resources
+     * (the fingerprint).
+     */
+    public static StructureVAOData read(File file, long modified, long fingerprint)
+    {
+        if (file == null || !file.isFile())
+        {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+
+            readFully(channel, header);
+
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != modified || header.getLong() != fingerprint)
+            {
+                return null;
+            }
+
+            int count = header.getInt();
+
+            if (count < 0 || channel.size() != HEADER + (long) count * 12 * 4)
+            {
+                return null;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(count * 12 * 4).order(ByteOrder.LITTLE_ENDIAN);
+
+            readFully(channel, body);
+
+            StructureVAOData data = new StructureVAOData(new float[count * 3], new float[count * 3], new float[count * 2], new float[count * 4]);
+
+            body.asFloatBuffer().get(data.vertices).get(data.normals).get(data.texCoords).get(data.sprites);
+
+            return data;
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer) < 0)
+            {
+                throw new IOException("Unexpected end of file!");
+            }
+        }
+
+        buffer.flip();
+    }
+
+    /**
+     * Write baked data into given file along with the modification time of
+     * the structure and resources' fingerprint it was baked with
+     */
+    public void write(File file, long modified, long fingerprint) throws IOException
+    {
+        int count = this.getVertexCount();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + count * 12 * 4);
+
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(modified).putLong(fingerprint).putInt(count);
+        buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(this.vertices).put(this.normals).put(this.texCoords).put(this.sprites);
+        buffer.rewind();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+        }
+    }
+}
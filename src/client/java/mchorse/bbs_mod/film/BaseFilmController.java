@@ -3,7 +3,6 @@ package mchorse.bbs_mod.film;
 import com.mojang.blaze3d.systems.RenderSystem;
 import io.netty.util.collection.IntObjectHashMap;
 import io.netty.util.collection.IntObjectMap;
-import mchorse.bbs_mod.BBSSettings;
 import mchorse.bbs_mod.client.renderer.ModelBlockEntityRenderer;
 import mchorse.bbs_mod.entity.ActorEntity;
 import mchorse.bbs_mod.film.replays.Replay;
@@ -44,7 +43,6 @@ import net.minecraft.entity.Entity;
 import net.minecraft.entity.MovementType;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.text.Text;
-import net.minecraft.util.hit.HitResult;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.LightType;
@@ -63,6 +61,7 @@ public abstract class BaseFilmController
     public final Film film;
 
     protected IntObjectMap<IEntity> entities = new IntObjectHashMap<>();
+    protected ReplayCulling culling = new ReplayCulling();
 
     public boolean paused;
     public int exception = -1;
@@ -98,9 +97,9 @@ public abstract class BaseFilmController
 
         if (relative)
         {
-            cx = context.replay.keyframes.x.interpolate(0F) + context.replay.relativeOffset.get().x;
-            cy = context.replay.keyframes.y.interpolate(0F) + context.replay.relativeOffset.get().y;
-            cz = context.replay.keyframes.z.interpolate(0F) + context.replay.relativeOffset.get().z;
+            cx = context.replay.keyframes.x.interpolateDouble(0F) + context.replay.relativeOffset.get().x;
+            cy = context.replay.keyframes.y.interpolateDouble(0F) + context.replay.relativeOffset.get().y;
+            cz = context.replay.keyframes.z.interpolateDouble(0F) + context.replay.relativeOffset.get().z;
         }
 
         Matrix4f target = null;
@@ -360,9 +359,15 @@ public abstract class BaseFilmController
         this.paused = !this.paused;
     }
 
+    public ReplayCulling getCulling()
+    {
+        return this.culling;
+    }
+
     public void createEntities()
     {
         this.entities.clear();
+        this.culling.reset();
 
         if (this.film == null)
         {
@@ -379,6 +384,7 @@ public abstract class BaseFilmController
                 IEntity entity = new StubEntity(world);
 
                 entity.setForm(FormUtils.copy(replay.form.get()));
+                replay.keyframes.resetCursors();
                 replay.keyframes.apply(0, entity);
                 entity.setPrevX(entity.getX());
                 entity.setPrevY(entity.getY());
@@ -444,20 +450,20 @@ public abstract class BaseFilmController
                         if (anEntity instanceof ActorEntity actor)
                         {
                             /* Force synchronize entity angles */
-                            actor.setYaw(replay.keyframes.yaw.interpolate(ticks).floatValue());
-                            actor.setHeadYaw(replay.keyframes.headYaw.interpolate(ticks).floatValue());
-                            actor.setBodyYaw(replay.keyframes.bodyYaw.interpolate(ticks).floatValue());
-                            actor.setPitch(replay.keyframes.pitch.interpolate(ticks).floatValue());
+                            actor.setYaw((float) replay.keyframes.yaw.interpolateDouble(ticks));
+                            actor.setHeadYaw((float) replay.keyframes.headYaw.interpolateDouble(ticks));
+                            actor.setBodyYaw((float) replay.keyframes.bodyYaw.interpolateDouble(ticks));
+                            actor.setPitch((float) replay.keyframes.pitch.interpolateDouble(ticks));
                             replay.applyClientActions(ticks, new MCEntity(anEntity), this.film);
                         }
                         else if (anEntity instanceof PlayerEntity player)
                         {
-                            double x = replay.keyframes.x.interpolate(ticks);
-                            double y = replay.keyframes.y.interpolate(ticks);
-                            double z = replay.keyframes.z.interpolate(ticks);
-                            double prevX = replay.keyframes.x.interpolate(ticks - 1);
-                            double prevY = replay.keyframes.y.interpolate(ticks - 1);
-                            double prevZ = replay.keyframes.z.interpolate(ticks - 1);
+                            double x = replay.keyframes.x.interpolateDouble(ticks);
+                            double y = replay.keyframes.y.interpolateDouble(ticks);
+                            double z = replay.keyframes.z.interpolateDouble(ticks);
+                            double prevX = replay.keyframes.x.interpolateDouble(ticks - 1);
+                            double prevY = replay.keyframes.y.interpolateDouble(ticks - 1);
+                            double prevZ = replay.keyframes.z.interpolateDouble(ticks - 1);
 
                             player.setVelocity(x - prevX, y - prevY, z - prevZ);
                         }
@@ -499,10 +505,10 @@ public abstract class BaseFilmController
 
                         if (anEntity instanceof PlayerEntity player)
                         {
-                            double x = replay.keyframes.x.interpolate(ticks);
-                            double y = replay.keyframes.y.interpolate(ticks);
-                            double z = replay.keyframes.z.interpolate(ticks);
-                            boolean sneaking = replay.keyframes.sneaking.interpolate(ticks) > 0;
+                            double x = replay.keyframes.x.interpolateDouble(ticks);
+                            double y = replay.keyframes.y.interpolateDouble(ticks);
+                            double z = replay.keyframes.z.interpolateDouble(ticks);
+                            boolean sneaking = replay.keyframes.sneaking.interpolateDouble(ticks) > 0;
 
                             Vec3d pos = player.getPos();
 
@@ -510,7 +516,7 @@ public abstract class BaseFilmController
                             player.setPosition(x, y, z);
 
                             player.setSneaking(sneaking);
-                            player.setOnGround(replay.keyframes.grounded.interpolate(ticks) > 0);
+                            player.setOnGround(replay.keyframes.grounded.interpolateDouble(ticks) > 0);
 
                             if (player instanceof ClientPlayerEntityAccessor accessor)
                             {
@@ -522,7 +528,7 @@ public abstract class BaseFilmController
                                 playerEntity.input.sneaking = sneaking;
                             }
 
-                            player.fallDistance = replay.keyframes.fall.interpolate(ticks).floatValue();
+                            player.fallDistance = (float) replay.keyframes.fall.interpolateDouble(ticks);
                         }
                     }
                 }
@@ -594,9 +600,9 @@ public abstract class BaseFilmController
                             replay.properties.applyProperties(form, tick + delta);
                         }
 
-                        float yawHead = replay.keyframes.headYaw.interpolate(tick + delta).floatValue();
-                        float yawBody = replay.keyframes.bodyYaw.interpolate(tick + delta).floatValue();
-                        float pitch = replay.keyframes.pitch.interpolate(tick + delta).floatValue();
+                        float yawHead = (float) replay.keyframes.headYaw.interpolateDouble(tick + delta);
+                        float yawBody = (float) replay.keyframes.bodyYaw.interpolateDouble(tick + delta);
+                        float pitch = (float) replay.keyframes.pitch.interpolateDouble(tick + delta);
 
                         player.setYaw(yawHead);
                         player.setHeadYaw(yawHead);
@@ -720,133 +726,15 @@ public abstract class BaseFilmController
     /**
      * Check if a replay entity should be rendered based on occlusion culling
      */
-    protected boolean isReplayVisible(Replay replay, IEntity entity, WorldRenderContext context, float transition)
+    protected boolean isReplayVisible(int i, Replay replay, IEntity entity, WorldRenderContext context, float transition)
     {
-        /* If occlusion culling is disabled in settings, render all replays */
-        if (!BBSSettings.occlusionCulling.get())
-        {
-            return true;
-        }
-
-        System.out.println("[BBS Culling] Checking visibility for: " + replay.getName() + ", global=" + replay.global.get());
-
-        /* If global flag is enabled, bypass culling */
-        if (replay.global.get())
-        {
-            System.out.println("[BBS Culling] Replay '" + replay.getName() + "' visible: global flag enabled");
-
-            return true;
-        }
-
-        Form form = entity.getForm();
-
-        if (form == null)
-        {
-            System.out.println("[BBS Culling] Replay '" + replay.getName() + "' not visible: form is null");
-
-            return false;
-        }
-
-        /* Calculate entity position */
-        Vector3d position = Vectors.TEMP_3D.set(
-            Lerps.lerp(entity.getPrevX(), entity.getX(), transition),
-            Lerps.lerp(entity.getPrevY(), entity.getY(), transition),
-            Lerps.lerp(entity.getPrevZ(), entity.getZ(), transition)
-        );
-
-        Camera camera = context.camera();
-        Vec3d cameraPos = camera.getPos();
-
-        /* Occlusion culling - check if entity is blocked by terrain/blocks */
-        World world = entity.getWorld();
-
-        if (world != null)
-        {
-            /* Calculate model bounds from the form's hitbox dimensions */
-            float hitboxWidth = form.hitbox.get() ? form.hitboxWidth.get() : 0.6F;
-            float hitboxHeight = form.hitbox.get() ? form.hitboxHeight.get() : 1.8F;
-
-            double halfWidth = hitboxWidth * 0.5;
-            double halfHeight = hitboxHeight * 0.5;
-
-            System.out.println(String.format("[BBS Culling] Testing replay '%s' with hitbox %.2fx%.2f at (%.2f, %.2f, %.2f)", 
-                replay.getName(), hitboxWidth, hitboxHeight, position.x, position.y, position.z));
-
-            /* Test multiple points on the model to see if any are visible */
-            Vec3d[] testPoints =
-            {
-                new Vec3d(position.x, position.y + hitboxHeight, position.z),
-                new Vec3d(position.x, position.y + halfHeight, position.z),
-                new Vec3d(position.x, position.y, position.z),
-                new Vec3d(position.x + halfWidth, position.y + halfHeight, position.z),
-                new Vec3d(position.x - halfWidth, position.y + halfHeight, position.z),
-                new Vec3d(position.x, position.y + halfHeight, position.z + halfWidth),
-                new Vec3d(position.x, position.y + halfHeight, position.z - halfWidth)
-            };
-
-            MinecraftClient client = MinecraftClient.getInstance();
-            Entity cameraEntity = client.getCameraEntity();
-
-            if (cameraEntity != null)
-            {
-                boolean anyPointVisible = false;
-
-                for (Vec3d testPoint : testPoints)
-                {
-                    net.minecraft.world.RaycastContext raycastContext = new net.minecraft.world.RaycastContext(
-                        cameraPos,
-                        testPoint,
-                        net.minecraft.world.RaycastContext.ShapeType.COLLIDER,
-                        net.minecraft.world.RaycastContext.FluidHandling.NONE,
-                        cameraEntity
-                    );
-
-                    HitResult hit = world.raycast(raycastContext);
-
-                    /* If raycast reaches the entity without hitting a block, at least one point is visible */
-                    if (hit == null || hit.getType() != HitResult.Type.BLOCK)
-                    {
-                        anyPointVisible = true;
-
-                        break;
-                    }
-                    else
-                    {
-                        double hitDistance = hit.getPos().squaredDistanceTo(cameraPos);
-                        double entityDistance = testPoint.squaredDistanceTo(cameraPos);
-
-                        /* If we can see past the hit point to the entity, it's visible */
-                        if (hitDistance >= entityDistance * 0.95)
-                        {
-                            anyPointVisible = true;
-
-                            break;
-                        }
-                    }
-                }
-
-                if (!anyPointVisible)
-                {
-                    System.out.println(String.format("[BBS Culling] Replay '%s' (hitbox: %.2fx%.2f) not visible: fully occluded", 
-                        replay.getName(), hitboxWidth, hitboxHeight));
-
-                    return false;
-                }
-                else
-                {
-                    System.out.println(String.format("[BBS Culling] Replay '%s' visible: passed occlusion test", replay.getName()));
-                }
-            }
-        }
-
-        System.out.println("[BBS Culling] Replay '" + replay.getName() + "' visible: all checks passed");
-
-        return true;
+        return this.culling.isVisible(i, replay, entity, context.camera().getPos(), transition);
     }
 
     public void render(WorldRenderContext context)
     {
         RenderSystem.enableDepthTest();
+        this.culling.update();
 
         for (Map.Entry<Integer, IEntity> entry : this.entities.entrySet())
         {
@@ -860,7 +748,7 @@ public abstract class BaseFilmController
             }
 
             /* Check visibility with frustum and occlusion culling */
-            if (!this.isReplayVisible(replay, entity, context, context.tickDelta()))
+            if (!this.isReplayVisible(i, replay, entity, context, context.tickDelta()))
             {
                 continue;
             }
@@ -17,6 +17,7 @@ import mchorse.bbs_mod.utils.MathUtils;
 import mchorse.bbs_mod.utils.PlayerUtils;
 import mchorse.bbs_mod.utils.joml.Matrices;
 import mchorse.bbs_mod.utils.joml.Vectors;
+import mchorse.bbs_mod.utils.keyframes.KeyframeReducer;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
@@ -35,6 +36,7 @@ import org.joml.Vector4f;
 public class Recorder extends WorldFilmController
 {
     public ReplayKeyframes keyframes = new ReplayKeyframes("keyframes");
+    public KeyframeReducer reducer = this.keyframes.createReducer(BBSSettings.recordingTolerance.get());
     public FormProperties properties = new FormProperties("properties");
     public Inventory inventory = new Inventory("inventory");
     public float hp;
@@ -151,7 +153,7 @@ public class Recorder extends WorldFilmController
         {
             Morph morph = Morph.getMorph(player);
 
-            this.keyframes.record(this.tick, morph.entity, null);
+            this.keyframes.record(this.tick, morph.entity, null, this.reducer);
         }
 
         super.update();
@@ -0,0 +1,451 @@
+package mchorse.bbs_mod.film;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import mchorse.bbs_mod.BBSSettings;
+import mchorse.bbs_mod.film.replays.Replay;
+import mchorse.bbs_mod.forms.entities.IEntity;
+import mchorse.bbs_mod.forms.forms.Form;
+import mchorse.bbs_mod.utils.interps.Lerps;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.ShapeContext;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.hit.HitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Replay culling
+ *
+ * Occlusion culling of film's replays. Visibility tests (a few raycasts from
+ * the camera to replay's bounds) are done on a background thread against a
+ * snapshot of camera and replay positions, and of the chunk sections that
+ * the rays pass through (the world itself is never accessed off the render
+ * thread). The render thread only reads the visibility bitset, which gets
+ * updated with test results once per frame.
+ *
+ * Results are cached: replays are re-tested only when the camera or replay
+ * moved (or replay's bounds changed) significantly, or when the result got
+ * too old. Hiding a replay requires several occluded results in a row,
+ * while showing it happens right away, so replays near the edge of
+ * visibility don't flicker.
+ */
+public class ReplayCulling
+{
+    /**
+     * Distance (squared) the camera or replay should move for a replay to
+     * be tested again
+     */
+    private static final double MOVE_THRESHOLD = 0.25D * 0.25D;
+
+    /**
+     * Amount of frames after which cached result should be tested again,
+     * even if nothing moved (the terrain could've changed)
+     */
+    private static final int MAX_AGE = 20;
+
+    /**
+     * Amount of occluded results in a row needed to hide a replay
+     */
+    private static final int HIDE_THRESHOLD = 3;
+
+    private static ExecutorService executor;
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final BitSet visible = new BitSet();
+    private final Queue<Result> results = new ConcurrentLinkedQueue<>();
+    private int generation;
+
+    /**
+     * Copies of chunk sections made during current frame, which are shared
+     * by all tests scheduled during the frame (copies are never modified,
+     * so they can be read by the background thread)
+     */
+    private final Long2ObjectMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+
+    private static ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newSingleThreadExecutor((runnable) ->
+            {
+                Thread thread = new Thread(runnable, "BBS culling");
+
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+
+        return executor;
+    }
+
+    /**
+     * Forget all cached results (should be called when replays' entities
+     * get recreated). Results of tests that are still running are discarded.
+     */
+    public void reset()
+    {
+        this.entries.clear();
+        this.visible.clear();
+        this.results.clear();
+        this.generation += 1;
+    }
+
+    /**
+     * Apply results of finished visibility tests to the visibility bitset.
+     * Should be called once per frame on the render thread, before
+     * {@link #isVisible(int, Replay, IEntity, Vec3d, float)}.
+     */
+    public void update()
+    {
+        Result result;
+
+        this.sections.clear();
+
+        while ((result = this.results.poll()) != null)
+        {
+            Entry entry = this.entries.get(result.index);
+
+            if (result.generation != this.generation || entry == null)
+            {
+                continue;
+            }
+
+            entry.pending = false;
+
+            if (result.visible)
+            {
+                entry.occluded = 0;
+
+                this.visible.set(result.index);
+            }
+            else
+            {
+                entry.occluded += 1;
+
+                if (entry.occluded >= HIDE_THRESHOLD)
+                {
+                    this.visible.clear(result.index);
+                }
+                else
+                {
+                    /* Keep testing until the replay is hidden or visible again */
+                    entry.age = MAX_AGE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether replay with given index should be rendered. Tests are
+     * scheduled when cached result is missing or outdated, until the test
+     * is done, last known visibility is used.
+     */
+    public boolean isVisible(int index, Replay replay, IEntity entity, Vec3d camera, float transition)
+    {
+        if (!BBSSettings.occlusionCulling.get() || replay.global.get())
+        {
+            return true;
+        }
+
+        Form form = entity.getForm();
+
+        if (form == null)
+        {
+            return false;
+        }
+
+        World world = entity.getWorld();
+
+        if (world == null)
+        {
+            return true;
+        }
+
+        double x = Lerps.lerp(entity.getPrevX(), entity.getX(), transition);
+        double y = Lerps.lerp(entity.getPrevY(), entity.getY(), transition);
+        double z = Lerps.lerp(entity.getPrevZ(), entity.getZ(), transition);
+        float width = form.hitbox.get() ? form.hitboxWidth.get() : 0.6F;
+        float height = form.hitbox.get() ? form.hitboxHeight.get() : 1.8F;
+
+        Entry entry = this.entries.get(index);
+
+        if (entry == null)
+        {
+            entry = new Entry();
+
+            this.entries.put(index, entry);
+            this.visible.set(index);
+        }
+
+        entry.age += 1;
+
+        if (!entry.pending && entry.isOutdated(camera, x, y, z, width, height))
+        {
+            entry.set(camera, x, y, z, width, height);
+            entry.pending = true;
+            entry.age = 0;
+
+            Test test = this.createTest(index, world, camera, x, y, z, width, height);
+
+            getExecutor().execute(() -> this.test(test));
+        }
+
+        return this.visible.get(index);
+    }
+
+    /**
+     * Prepare a visibility test on the render thread: rays are set up
+     * from the camera to multiple points on replay's bounds, and chunk
+     * sections along the rays get copied
+     */
+    private Test createTest(int index, World world, Vec3d camera, double x, double y, double z, float width, float height)
+    {
+        double halfWidth = width * 0.5D;
+        double halfHeight = height * 0.5D;
+
+        Vec3d[] points =
+        {
+            new Vec3d(x, y + height, z),
+            new Vec3d(x, y + halfHeight, z),
+            new Vec3d(x, y, z),
+            new Vec3d(x + halfWidth, y + halfHeight, z),
+            new Vec3d(x - halfWidth, y + halfHeight, z),
+            new Vec3d(x, y + halfHeight, z + halfWidth),
+            new Vec3d(x, y + halfHeight, z - halfWidth)
+        };
+
+        BlockSnapshot snapshot = new BlockSnapshot(world);
+
+        for (Vec3d point : points)
+        {
+            snapshot.capture(world, this.sections, camera, point);
+        }
+
+        return new Test(this.generation, index, snapshot, camera, points);
+    }
+
+    private void test(Test test)
+    {
+        boolean visible = true;
+
+        try
+        {
+            visible = test.run();
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+
+        this.results.add(new Result(test.generation, test.index, visible));
+    }
+
+    private static class Entry
+    {
+        public double cx = Double.NaN;
+        public double cy;
+        public double cz;
+        public double x;
+        public double y;
+        public double z;
+        public float width;
+        public float height;
+
+        public int age;
+        public int occluded;
+        public boolean pending;
+
+        public boolean isOutdated(Vec3d camera, double x, double y, double z, float width, float height)
+        {
+            if (Double.isNaN(this.cx) || this.age >= MAX_AGE)
+            {
+                return true;
+            }
+
+            if (width != this.width || height != this.height)
+            {
+                return true;
+            }
+
+            double dcx = camera.x - this.cx;
+            double dcy = camera.y - this.cy;
+            double dcz = camera.z - this.cz;
+            double dx = x - this.x;
+            double dy = y - this.y;
+            double dz = z - this.z;
+
+            return dcx * dcx + dcy * dcy + dcz * dcz > MOVE_THRESHOLD
+                || dx * dx + dy * dy + dz * dz > MOVE_THRESHOLD;
+        }
+
+        public void set(Vec3d camera, double x, double y, double z, float width, float height)
+        {
+            this.cx = camera.x;
+            this.cy = camera.y;
+            this.cz = camera.z;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Snapshot of everything a visibility test needs
+     */
+    private record Test(int generation, int index, BlockSnapshot snapshot, Vec3d camera, Vec3d[] points)
+    {
+        /**
+         * Test multiple points on replay's bounds to see whether any of
+         * them is visible from the camera
+         */
+        public boolean run()
+        {
+            for (Vec3d point : this.points)
+            {
+                HitResult hit = this.snapshot.raycast(this.camera, point);
+
+                /* If raycast reaches the point without hitting a block, or
+                 * we can see past the hit point, the replay is visible */
+                if (hit == null || hit.getType() != HitResult.Type.BLOCK)
+                {
+                    return true;
+                }
+
+                if (hit.getPos().squaredDistanceTo(this.camera) >= point.squaredDistanceTo(this.camera) * 0.95D)
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Block view over copies of chunk sections. Blocks outside of copied
+     * sections are treated as air
+     */
+    private static class BlockSnapshot implements BlockView
+    {
+        private final Long2ObjectMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+        private final int bottomY;
+        private final int height;
+
+        public BlockSnapshot(World world)
+        {
+            this.bottomY = world.getBottomY();
+            this.height = world.getHeight();
+        }
+
+        /**
+         * Copy chunk sections that the ray between given points passes
+         * through (copies made earlier during the frame are reused)
+         */
+        public void capture(World world, Long2ObjectMap<PalettedContainer<BlockState>> cache, Vec3d start, Vec3d end)
+        {
+            /* Traversing the ray scaled down 16 times visits sections instead of blocks */
+            BlockView.raycast(start.multiply(1D / 16D), end.multiply(1D / 16D), this, (snapshot, pos) ->
+            {
+                long key = ChunkSectionPos.asLong(pos.getX(), pos.getY(), pos.getZ());
+
+                if (!cache.containsKey(key))
+                {
+                    cache.put(key, copySection(world, pos.getX(), pos.getY(), pos.getZ()));
+                }
+
+                snapshot.sections.put(key, cache.get(key));
+
+                return null;
+            }, (snapshot) -> null);
+        }
+
+        /**
+         * Find the first block with collision shape between given points
+         * (the camera entity can't be used off the render thread, so shapes
+         * are taken without entity context)
+         */
+        public BlockHitResult raycast(Vec3d start, Vec3d end)
+        {
+            return BlockView.raycast(start, end, this, (snapshot, pos) ->
+            {
+                BlockState state = snapshot.getBlockState(pos);
+
+                if (state.isAir())
+                {
+                    return null;
+                }
+
+                return snapshot.raycastBlock(start, end, pos, state.getCollisionShape(snapshot, pos, ShapeContext.absent()), state);
+            }, (snapshot) -> null);
+        }
+
+        private static PalettedContainer<BlockState> copySection(World world, int x, int y, int z)
+        {
+            int index = world.sectionCoordToIndex(y);
+
+            if (index < 0 || index >= world.countVerticalSections() || !world.getChunkManager().isChunkLoaded(x, z))
+            {
+                return null;
+            }
+
+            ChunkSection section = world.getChunk(x, z).getSection(index);
+
+            return section.isEmpty() ? null : section.getBlockStateContainer().copy();
+        }
+
+        @Override
+        public BlockEntity getBlockEntity(BlockPos pos)
+        {
+            return null;
+        }
+
+        @Override
+        public BlockState getBlockState(BlockPos pos)
+        {
+            PalettedContainer<BlockState> container = this.sections.get(ChunkSectionPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4));
+
+            return container == null ? Blocks.AIR.getDefaultState() : container.get(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+        }
+
+        @Override
+        public FluidState getFluidState(BlockPos pos)
+        {
+            return this.getBlockState(pos).getFluidState();
+        }
+
+        @Override
+        public int getHeight()
+        {
+            return this.height;
+        }
+
+        @Override
+        public int getBottomY()
+        {
+            return this.bottomY;
+        }
+    }
+
+    private record Result(int generation, int index, boolean visible)
+    {}
+}
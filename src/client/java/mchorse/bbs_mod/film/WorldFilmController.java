@@ -7,6 +7,7 @@ import mchorse.bbs_mod.camera.data.Position;
 import mchorse.bbs_mod.utils.clips.Clip;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -14,6 +15,7 @@ public class WorldFilmController extends BaseFilmController
 {
     protected CameraClipContext context;
     protected Position position = new Position();
+    protected List<Clip> clips = new ArrayList<>();
 
     public int tick;
     public int duration;
@@ -64,7 +66,10 @@ public class WorldFilmController extends BaseFilmController
         super.render(context);
 
         int tick = Math.max(this.tick, 0);
-        List<Clip> clips = this.context.clips.getClips(tick);
+        List<Clip> clips = this.clips;
+
+        clips.clear();
+        this.context.clips.getClips(tick, Integer.MAX_VALUE, clips);
 
         if (clips.isEmpty())
         {
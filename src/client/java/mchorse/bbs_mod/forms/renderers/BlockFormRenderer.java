@@ -3,9 +3,12 @@ package mchorse.bbs_mod.forms.renderers;
 import com.mojang.blaze3d.systems.RenderSystem;
 import mchorse.bbs_mod.client.BBSRendering;
 import mchorse.bbs_mod.client.BBSShaders;
+import mchorse.bbs_mod.cubic.render.vao.InstancedVAORenderer;
+import mchorse.bbs_mod.cubic.render.vao.StructureVAO;
 import mchorse.bbs_mod.forms.CustomVertexConsumerProvider;
 import mchorse.bbs_mod.forms.FormUtilsClient;
 import mchorse.bbs_mod.forms.forms.BlockForm;
+import mchorse.bbs_mod.forms.renderers.utils.BlockVAOCache;
 import mchorse.bbs_mod.ui.framework.UIContext;
 import mchorse.bbs_mod.utils.MatrixStackUtils;
 import mchorse.bbs_mod.utils.colors.Color;
@@ -64,35 +67,69 @@ public class BlockFormRenderer extends FormRenderer<BlockForm>
         context.stack.push();
         context.stack.translate(-0.5F, 0F, -0.5F);
 
-        if (context.isPicking())
+        /* Both instanced and regular paths should leave the same state */
+        try
         {
-            CustomVertexConsumerProvider.hijackVertexFormat((layer) ->
+            if (this.renderInstanced(context))
             {
-                this.setupTarget(context, BBSShaders.getPickerModelsProgram());
-                RenderSystem.setShader(BBSShaders::getPickerModelsProgram);
-            });
+                return;
+            }
 
-            light = 0;
+            if (context.isPicking())
+            {
+                CustomVertexConsumerProvider.hijackVertexFormat((layer) ->
+                {
+                    this.setupTarget(context, BBSShaders.getPickerModelsProgram());
+                    RenderSystem.setShader(BBSShaders::getPickerModelsProgram);
+                });
+
+                light = 0;
+            }
+            else
+            {
+                CustomVertexConsumerProvider.hijackVertexFormat((l) -> RenderSystem.enableBlend());
+            }
+
+            Color set = this.form.color.get();
+
+            color.set(context.color);
+            color.mul(set);
+
+            consumers.setSubstitute(BBSRendering.getColorConsumer(set));
+            MinecraftClient.getInstance().getBlockRenderManager().renderBlockAsEntity(this.form.blockState.get(), context.stack, consumers, light, context.overlay);
+            consumers.draw();
+            consumers.setSubstitute(null);
+
+            CustomVertexConsumerProvider.clearRunnables();
         }
-        else
+        finally
         {
-            CustomVertexConsumerProvider.hijackVertexFormat((l) -> RenderSystem.enableBlend());
-        }
+            context.stack.pop();
 
-        Color set = this.form.color.get();
+            RenderSystem.enableDepthTest();
+        }
+    }
 
-        color.set(context.color);
-        color.mul(set);
+    /**
+     * Add this block to instanced draws (see {@link InstancedVAORenderer}),
+     * if it's possible. Returns false if it should be rendered right away.
+     */
+    private boolean renderInstanced(FormRenderingContext context)
+    {
+        if (context.isPicking() || !InstancedVAORenderer.isBatching() || BBSRendering.isIrisShadersEnabled())
+        {
+            return false;
+        }
 
-        consumers.setSubstitute(BBSRendering.getColorConsumer(set));
-        MinecraftClient.getInstance().getBlockRenderManager().renderBlockAsEntity(this.form.blockState.get(), context.stack, consumers, light, context.overlay);
-        consumers.draw();
-        consumers.setSubstitute(null);
+        StructureVAO vao = BlockVAOCache.get(this.form.blockState.get());
 
-        CustomVertexConsumerProvider.clearRunnables();
+        if (vao == null)
+        {
+            return false;
+        }
 
-        context.stack.pop();
+        Color set = this.form.color.get();
 
-        RenderSystem.enableDepthTest();
+        return InstancedVAORenderer.submit(vao, context.stack, set.r, set.g, set.b, set.a, context.light);
     }
 }
\ No newline at end of file
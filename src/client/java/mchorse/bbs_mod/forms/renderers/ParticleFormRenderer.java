@@ -9,6 +9,7 @@ import mchorse.bbs_mod.forms.entities.IEntity;
 import mchorse.bbs_mod.forms.forms.ParticleForm;
 import mchorse.bbs_mod.particles.ParticleScheme;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
+import mchorse.bbs_mod.particles.emitter.ParticleEmitterUpdater;
 import mchorse.bbs_mod.ui.framework.UIContext;
 import mchorse.bbs_mod.utils.MatrixStackUtils;
 import mchorse.bbs_mod.utils.joml.Vectors;
@@ -82,6 +83,7 @@ public class ParticleFormRenderer extends FormRenderer<ParticleForm> implements
     @Override
     public void renderInUI(UIContext context, int x1, int y1, int x2, int y2)
     {
+        ParticleEmitterUpdater.flush();
         this.ensureEmitter(MinecraftClient.getInstance().world, context.getTransition());
 
         ParticleEmitter emitter = this.emitter;
@@ -107,6 +109,7 @@ public class ParticleFormRenderer extends FormRenderer<ParticleForm> implements
     @Override
     public void render3D(FormRenderingContext context)
     {
+        ParticleEmitterUpdater.flush();
         this.ensureEmitter(MinecraftClient.getInstance().world, context.transition);
 
         ParticleEmitter emitter = this.emitter;
@@ -188,7 +191,7 @@ public class ParticleFormRenderer extends FormRenderer<ParticleForm> implements
                 this.restart = false;
             }
 
-            this.emitter.update();
+            ParticleEmitterUpdater.schedule(this.emitter);
         }
     }
 }
\ No newline at end of file
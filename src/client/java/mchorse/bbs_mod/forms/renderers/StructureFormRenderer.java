@@ -1,26 +1,27 @@
 package mchorse.bbs_mod.forms.renderers;
 
 import com.mojang.blaze3d.systems.RenderSystem;
-import mchorse.bbs_mod.BBSMod;
 import mchorse.bbs_mod.client.BBSRendering;
 import mchorse.bbs_mod.client.BBSShaders;
 import mchorse.bbs_mod.cubic.render.vao.IModelVAO;
+import mchorse.bbs_mod.cubic.render.vao.InstancedVAORenderer;
 import mchorse.bbs_mod.cubic.render.vao.ModelVAO;
 import mchorse.bbs_mod.cubic.render.vao.ModelVAORenderer;
+import mchorse.bbs_mod.cubic.render.vao.StructureMesher;
+import mchorse.bbs_mod.cubic.render.vao.StructureVAO;
 import mchorse.bbs_mod.cubic.render.vao.StructureVAOCollector;
+import mchorse.bbs_mod.cubic.render.vao.StructureVAOData;
 import mchorse.bbs_mod.cubic.render.vao.ModelVAOData;
 import mchorse.bbs_mod.forms.CustomVertexConsumerProvider;
 import mchorse.bbs_mod.forms.FormUtilsClient;
 import mchorse.bbs_mod.forms.forms.StructureForm;
 import mchorse.bbs_mod.forms.forms.utils.PivotSettings;
 import mchorse.bbs_mod.forms.forms.utils.StructureLightSettings;
-import mchorse.bbs_mod.resources.Link;
 import mchorse.bbs_mod.ui.framework.UIContext;
 import mchorse.bbs_mod.utils.MatrixStackUtils;
 import mchorse.bbs_mod.utils.colors.Color;
 import mchorse.bbs_mod.utils.joml.Vectors;
 import net.minecraft.block.Block;
-import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.block.BlockEntityProvider;
 import net.minecraft.client.MinecraftClient;
@@ -31,72 +32,51 @@ import net.minecraft.client.render.RenderLayer;
 import net.minecraft.client.render.Tessellator;
 import net.minecraft.client.render.TexturedRenderLayers;
 import mchorse.bbs_mod.forms.renderers.utils.RecolorVertexConsumer;
+import mchorse.bbs_mod.forms.renderers.utils.StructureCache;
+import mchorse.bbs_mod.forms.renderers.utils.StructureCache.BlockEntry;
 import net.minecraft.screen.PlayerScreenHandler;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.client.render.VertexConsumer;
 import net.minecraft.client.render.block.entity.BlockEntityRenderDispatcher;
-import net.minecraft.block.Blocks;
-import net.minecraft.fluid.Fluids;
-import net.minecraft.fluid.FluidState;
-import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtElement;
-import net.minecraft.nbt.NbtList;
-import net.minecraft.nbt.NbtString;
-import net.minecraft.nbt.NbtIo;
-import net.minecraft.nbt.NbtTagSizeTracker;
-import net.minecraft.registry.Registries;
-import net.minecraft.state.property.Property;
-import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.random.Random;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
-import org.joml.Vector4f;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.DataInputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 /**
  * Renderer de StructureForm
  *
- * Implementa carga NBT y renderizado básico iterando bloques.
- * Para minimizar archivos, el loader de NBT está integrado aquí.
+ * Implementa renderizado básico iterando bloques. La carga del NBT (en
+ * segundo plano) y los VAOs se comparten entre formas mediante
+ * {@link StructureCache}.
  */
 public class StructureFormRenderer extends FormRenderer<StructureForm>
 {
-    private static class BlockEntry
-    {
-        final BlockState state;
-        final BlockPos pos;
-
-        BlockEntry(BlockState state, BlockPos pos)
-        {
-            this.state = state;
-            this.pos = pos;
-        }
-    }
-
-    private final List<BlockEntry> blocks = new ArrayList<>();
-    private final List<BlockEntry> blockEntities = new ArrayList<>();
-    private final List<BlockEntry> animatedBlocks = new ArrayList<>();
-    private final List<BlockEntry> tintedBlocks = new ArrayList<>();
+    private StructureCache.Structure structure;
+    private StructureCache.StructureData data;
+    private List<BlockEntry> blocks = Collections.emptyList();
+    private List<BlockEntry> blockEntities = Collections.emptyList();
+    private List<BlockEntry> animatedBlocks = Collections.emptyList();
+    private List<BlockEntry> tintedBlocks = Collections.emptyList();
     private mchorse.bbs_mod.forms.utils.VirtualBlockRenderView cachedView = null;
 
     private String lastFile = null;
     private BlockPos size = BlockPos.ORIGIN;
     private BlockPos boundsMin = null;
     private BlockPos boundsMax = null;
+    // VAOs compartidos entre formas (ver StructureCache), por clave de captura
+    private final Map<CaptureKey, IModelVAO> vaos = new HashMap<>();
     private IModelVAO structureVao = null;
-    private boolean vaoDirty = true;
+    private CaptureKey structureVaoKey = null;
     private boolean capturingVAO = false;
     // VAO dedicado para picking (incluye bloques animados y con tinte por bioma)
     private IModelVAO structureVaoPicking = null;
-    private boolean vaoPickingDirty = true;
     // Controla si, durante la captura del VAO, se deben incluir bloques especiales
     private boolean capturingIncludeSpecialBlocks = false;
 
@@ -107,16 +87,20 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
 
     public void clearInstanceCache()
     {
-        this.structureVao = null;
-        this.structureVaoPicking = null;
-        this.cachedView = null;
-        this.blocks.clear();
-        this.blockEntities.clear();
-        this.animatedBlocks.clear();
-        this.tintedBlocks.clear();
+        this.releaseVAOs();
+        StructureCache.release(this.structure);
+
+        this.structure = null;
+        this.setData(null);
         this.lastFile = null;
-        this.vaoDirty = true;
-        this.vaoPickingDirty = true;
+    }
+
+    @Override
+    public void cleanup()
+    {
+        super.cleanup();
+
+        this.clearInstanceCache();
     }
 
     @Override
@@ -197,10 +181,7 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
         else
         {
             // Preparar VAO si es necesario y dibujar con shader compatible con animaciones
-            if (this.structureVao == null || this.vaoDirty)
-            {
-                buildStructureVAO();
-            }
+            this.updateStructureVAO();
 
             if (this.structureVao != null)
             {
@@ -209,8 +190,8 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
                 gameRenderer.getLightmapTextureManager().enable();
                 gameRenderer.getOverlayTexture().setupOverlayColor();
 
-                // Volver al shader de modelo propio en vanilla para asegurar compatibilidad del VAO
-                net.minecraft.client.gl.ShaderProgram shader = BBSShaders.getModel();
+                // Shader según el tipo de VAO (geometría mallada o sin mallar)
+                net.minecraft.client.gl.ShaderProgram shader = this.getStructureShader();
 
                 RenderSystem.setShader(() -> shader);
                 RenderSystem.setShaderTexture(0, PlayerScreenHandler.BLOCK_ATLAS_TEXTURE);
@@ -227,7 +208,7 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
                     // In UI, light is usually MAX.
                 }
                 
-                ModelVAORenderer.render(shader, this.structureVao, matrices, tint.r, tint.g, tint.b, tint.a, light, OverlayTexture.DEFAULT_UV);
+                this.renderVAO(shader, this.structureVao, matrices, tint, light, OverlayTexture.DEFAULT_UV);
 
                 // Pase de Block Entities tras VAO
                 try
@@ -300,9 +281,9 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
 
         boolean optimize = mchorse.bbs_mod.BBSSettings.structureOptimization.get();
         boolean picking = context.isPicking();
-        if (optimize && (this.structureVao == null || this.vaoDirty))
+        if (optimize)
         {
-            buildStructureVAO();
+            this.updateStructureVAO();
         }
 
         if (!optimize)
@@ -310,10 +291,7 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
             // Si estamos en picking, renderizar con VAO (picking) y el shader de picking para obtener la silueta completa
             if (picking)
             {
-                if (this.structureVaoPicking == null || this.vaoPickingDirty)
-                {
-                    buildStructureVAOPicking();
-                }
+                this.updateStructureVAOPicking();
 
                 Color tint3D = this.form.color.get();
                 int light = 0;
@@ -326,7 +304,7 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
                 RenderSystem.setShader(BBSShaders::getPickerModelsProgram);
                 RenderSystem.enableBlend();
                 RenderSystem.setShaderTexture(0, PlayerScreenHandler.BLOCK_ATLAS_TEXTURE);
-                ModelVAORenderer.render(BBSShaders.getPickerModelsProgram(), this.structureVaoPicking, context.stack, tint3D.r, tint3D.g, tint3D.b, tint3D.a, light, context.overlay);
+                this.renderVAO(BBSShaders.getPickerModelsProgram(), this.structureVaoPicking, context.stack, tint3D, light, context.overlay);
 
                 gameRenderer.getLightmapTextureManager().disable();
                 gameRenderer.getOverlayTexture().teardownOverlayColor();
@@ -392,28 +370,23 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
 
             if (context.isPicking())
             {
-                if (this.structureVaoPicking == null || this.vaoPickingDirty)
-                {
-                    buildStructureVAOPicking();
-                }
+                this.updateStructureVAOPicking();
                 this.setupTarget(context, BBSShaders.getPickerModelsProgram());
                 RenderSystem.setShader(BBSShaders::getPickerModelsProgram);
                 RenderSystem.enableBlend();
                 RenderSystem.setShaderTexture(0, PlayerScreenHandler.BLOCK_ATLAS_TEXTURE);
-                ModelVAORenderer.render(BBSShaders.getPickerModelsProgram(), this.structureVaoPicking, context.stack, tint3D.r, tint3D.g, tint3D.b, tint3D.a, light, context.overlay);
+                this.renderVAO(BBSShaders.getPickerModelsProgram(), this.structureVaoPicking, context.stack, tint3D, light, context.overlay);
             }
             else
             {
                 // VAO con shader compatible con packs: usar programa de entidad translúcida cuando Iris está activo
-                net.minecraft.client.gl.ShaderProgram shader = (mchorse.bbs_mod.client.BBSRendering.isIrisShadersEnabled() && mchorse.bbs_mod.client.BBSRendering.isRenderingWorld())
-                    ? net.minecraft.client.render.GameRenderer.getRenderTypeEntityTranslucentCullProgram()
-                    : BBSShaders.getModel();
+                net.minecraft.client.gl.ShaderProgram shader = this.getStructureShader();
 
                 RenderSystem.setShader(() -> shader);
                 RenderSystem.setShaderTexture(0, PlayerScreenHandler.BLOCK_ATLAS_TEXTURE);
                 RenderSystem.enableBlend();
                 RenderSystem.defaultBlendFunc();
-                ModelVAORenderer.render(shader, this.structureVao, context.stack, tint3D.r, tint3D.g, tint3D.b, tint3D.a, light, context.overlay);
+                this.renderVAO(shader, this.structureVao, context.stack, tint3D, light, context.overlay);
 
                 // Pase de Block Entities tras VAO
                 try
@@ -482,8 +455,9 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
      */
     private void renderStructureCulledWorld(FormRenderingContext context, MatrixStack stack, net.minecraft.client.render.VertexConsumerProvider consumers, int light, int overlay, boolean useEntityLayers)
     {
-        // Centrado/Pivot
-        Vector3f pivot = calculateStructurePivot();
+        // Centrado/Pivot (la captura del VAO se hace en el origen, el pivote
+        // se aplica al dibujar el VAO)
+        Vector3f pivot = this.capturingVAO ? new Vector3f() : calculateStructurePivot();
         float pivotX = pivot.x;
         float pivotY = pivot.y;
         float pivotZ = pivot.z;
@@ -568,7 +542,7 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
             // Durante la captura del VAO normal, omitir bloques con texturas animadas
             // o tinte por bioma para evitar doble dibujo y parpadeos.
             // En captura para picking (capturingIncludeSpecialBlocks=true), incluirlos.
-            if (this.capturingVAO && !this.capturingIncludeSpecialBlocks && (isAnimatedTexture(entry.state) || isBiomeTinted(entry.state)))
+            if (this.capturingVAO && !this.capturingIncludeSpecialBlocks && (StructureCache.isAnimatedTexture(entry.state) || StructureCache.isBiomeTinted(entry.state)))
             {
                 stack.pop();
                 continue;
@@ -872,45 +846,6 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
         RecolorVertexConsumer.newColor = null;
     }
 
-    /** Determina si el bloque requiere animación de textura (portal/agua/lava). */
-    private boolean isAnimatedTexture(BlockState state)
-    {
-        if (state == null)
-        {
-            return false;
-        }
-
-        // Portal del Nether
-        if (state.isOf(Blocks.NETHER_PORTAL))
-        {
-            return true;
-        }
-
-        // Fluidos: agua y lava (incluyendo variantes en movimiento)
-        FluidState fs = state.getFluidState();
-        if (fs != null)
-        {
-            if (fs.getFluid() == Fluids.WATER || fs.getFluid() == Fluids.FLOWING_WATER ||
-                fs.getFluid() == Fluids.LAVA || fs.getFluid() == Fluids.FLOWING_LAVA)
-            {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    /** Heurística: determina si el bloque usa tinte por bioma (foliage/grass/vine/lily pad). */
-    private boolean isBiomeTinted(BlockState state)
-    {
-        if (state == null) return false;
-        Block b = state.getBlock();
-        return (b instanceof net.minecraft.block.LeavesBlock)
-            || (b instanceof net.minecraft.block.GrassBlock)
-            || (b instanceof net.minecraft.block.VineBlock)
-            || (b instanceof net.minecraft.block.LilyPadBlock);
-    }
-
     /**
      * Renderiza únicamente Block Entities (cofres, camas, carteles, cráneos, etc.) sobre la estructura ya dibujada vía VAO.
      * Reutiliza el mismo cálculo de centrado/paridad y ancla mundial que el render culleado.
@@ -1053,144 +988,205 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
         if (file == null || file.isEmpty())
         {
             // Nada seleccionado; limpiar para evitar render fantasma
-            blocks.clear();
-            blockEntities.clear();
-            animatedBlocks.clear();
-            tintedBlocks.clear();
-            cachedView = null;
-            size = BlockPos.ORIGIN;
-            boundsMin = null;
-            boundsMax = null;
-            lastFile = null;
-            vaoDirty = true;
-            vaoPickingDirty = true;
-            if (structureVao instanceof ModelVAO)
-            {
-                ((ModelVAO) structureVao).delete();
-            }
-            structureVao = null;
-            if (structureVaoPicking instanceof ModelVAO)
-            {
-                ((ModelVAO) structureVaoPicking).delete();
-            }
-            structureVaoPicking = null;
+            this.clearInstanceCache();
             return;
         }
 
-        if (file.equals(lastFile))
+        if (!file.equals(lastFile))
         {
-            return;
+            this.clearInstanceCache();
+            this.structure = StructureCache.acquire(file);
+            this.lastFile = file;
         }
 
-        File nbtFile = BBSMod.getProvider().getFile(Link.assets(file));
-
-        blocks.clear();
-        blockEntities.clear();
-        animatedBlocks.clear();
-        tintedBlocks.clear();
-        cachedView = null;
-        size = BlockPos.ORIGIN;
-        boundsMin = null;
-        boundsMax = null;
-        lastFile = file;
-        vaoDirty = true;
-        vaoPickingDirty = true;
-        if (structureVao instanceof ModelVAO)
-        {
-            ((ModelVAO) structureVao).delete();
-        }
-        structureVao = null;
-        if (structureVaoPicking instanceof ModelVAO)
+        /* Mientras la estructura se carga en segundo plano, no se dibuja nada */
+        StructureCache.StructureData data = this.structure.getData();
+
+        if (data != this.data)
         {
-            ((ModelVAO) structureVaoPicking).delete();
+            this.setData(data);
         }
-        structureVaoPicking = null;
+    }
+
+    private void setData(StructureCache.StructureData data)
+    {
+        /* Los VAOs de los datos anteriores ya fueron eliminados por la caché */
+        this.vaos.clear();
+        this.structureVao = null;
+        this.structureVaoKey = null;
+        this.structureVaoPicking = null;
+
+        this.data = data;
+        this.cachedView = null;
+        this.blocks = data == null ? Collections.emptyList() : data.blocks;
+        this.blockEntities = data == null ? Collections.emptyList() : data.blockEntities;
+        this.animatedBlocks = data == null ? Collections.emptyList() : data.animatedBlocks;
+        this.tintedBlocks = data == null ? Collections.emptyList() : data.tintedBlocks;
+        this.size = data == null ? BlockPos.ORIGIN : data.size;
+        this.boundsMin = data == null ? null : data.boundsMin;
+        this.boundsMax = data == null ? null : data.boundsMax;
+    }
 
-        /* Intentar leer como archivo externo si existe; si no, usar InputStream de assets internos */
-        if (nbtFile != null && nbtFile.exists())
+    private void releaseVAOs()
+    {
+        if (this.structure != null)
         {
-            try
+            for (Map.Entry<CaptureKey, IModelVAO> entry : this.vaos.entrySet())
             {
-                NbtCompound root = NbtIo.readCompressed(nbtFile.toPath(), NbtTagSizeTracker.ofUnlimitedBytes());
-                parseStructure(root);
-                return;
-            }
-            catch (IOException e)
-            {
-                
+                if (this.structure.hasVAO(entry.getKey(), entry.getValue()))
+                {
+                    this.structure.releaseVAO(entry.getKey());
+                }
             }
         }
 
-        /* Si no hay File (assets internos), leer vía InputStream del provider */
-        try (InputStream is = BBSMod.getProvider().getAsset(Link.assets(file)))
+        this.vaos.clear();
+        this.structureVao = null;
+        this.structureVaoKey = null;
+        this.structureVaoPicking = null;
+    }
+
+    /**
+     * Clave de captura: la geometría capturada solo depende de la estructura
+     * (se captura en el origen, sin color ni luz por vértice), del tipo de
+     * captura (picking incluye bloques animados y con tinte por bioma) y de
+     * si está mallada, de modo que todas las formas con la misma estructura
+     * compartan un único VAO.
+     *
+     * La geometría mallada necesita el shader de estructura, así que con
+     * Iris en el mundo se usa la geometría sin mallar.
+     */
+    private CaptureKey getCaptureKey(boolean picking)
+    {
+        boolean shaders = mchorse.bbs_mod.client.BBSRendering.isIrisShadersEnabled() && mchorse.bbs_mod.client.BBSRendering.isRenderingWorld();
+
+        return new CaptureKey(picking, !picking && !shaders);
+    }
+
+    private net.minecraft.client.gl.ShaderProgram getStructureShader()
+    {
+        return this.structureVaoKey != null && this.structureVaoKey.merged()
+            ? BBSShaders.getStructureProgram()
+            : net.minecraft.client.render.GameRenderer.getRenderTypeEntityTranslucentCullProgram();
+    }
+
+    /**
+     * Dibuja un VAO de la estructura aplicando el pivote. La geometría
+     * mallada se agrupa con las demás instancias de la misma estructura
+     * (una sola llamada de dibujo) mientras se renderiza el mundo.
+     */
+    private void renderVAO(net.minecraft.client.gl.ShaderProgram shader, IModelVAO vao, MatrixStack stack, Color tint, int light, int overlay)
+    {
+        Vector3f pivot = this.calculateStructurePivot();
+
+        stack.push();
+        stack.translate(-pivot.x, -pivot.y, -pivot.z);
+
+        if (!(vao instanceof StructureVAO structureVAO) || !InstancedVAORenderer.submit(structureVAO, stack, tint.r, tint.g, tint.b, tint.a, light))
         {
-            try
-            {
-                NbtCompound root = NbtIo.readCompressed(is, NbtTagSizeTracker.ofUnlimitedBytes());
-                parseStructure(root);
-            }
-            catch (IOException e)
-            {
-                
-            }
+            ModelVAORenderer.render(shader, vao, stack, tint.r, tint.g, tint.b, tint.a, light, overlay);
         }
-        catch (Exception e)
+
+        stack.pop();
+    }
+
+    /**
+     * VAO para la clave de captura dada (se conserva hasta liberar la
+     * estructura, así alternar entre UI y mundo no vuelve a crearlo)
+     */
+    private IModelVAO getVAO(CaptureKey key)
+    {
+        IModelVAO vao = this.vaos.get(key);
+
+        if (vao != null && this.structure.hasVAO(key, vao))
         {
-            
+            return vao;
         }
+
+        vao = this.structure.acquireVAO(key, () ->
+        {
+            if (key.merged())
+            {
+                return new StructureVAO(this.bakeStructure());
+            }
+
+            return new ModelVAO(this.captureStructure(key.picking()));
+        });
+
+        this.vaos.put(key, vao);
+
+        return vao;
     }
 
-    private void buildStructureVAO()
+    private void updateStructureVAO()
     {
-        // Capturar geometría en un VAO usando el pipeline vanilla pero sustituyendo el consumidor
-        CustomVertexConsumerProvider provider = FormUtilsClient.getProvider();
-        StructureVAOCollector collector = new StructureVAOCollector();
-        collector.setGenerateTangents(true);
-
-        // Sustituir cualquier consumidor por nuestro colector
-        provider.setSubstitute(vc -> collector);
+        if (this.data == null)
+        {
+            return;
+        }
 
-        MatrixStack captureStack = new MatrixStack();
-        FormRenderingContext captureContext = new FormRenderingContext()
-            .set(FormRenderType.PREVIEW, null, captureStack, LightmapTextureManager.MAX_BLOCK_LIGHT_COORDINATE, OverlayTexture.DEFAULT_UV, 0F);
+        this.structureVaoKey = this.getCaptureKey(false);
+        this.structureVao = this.getVAO(this.structureVaoKey);
+    }
 
-        try
+    private void updateStructureVAOPicking()
+    {
+        if (this.data == null)
         {
-            net.minecraft.client.option.GraphicsMode gm = MinecraftClient.getInstance().options.getGraphicsMode().getValue();
-            net.minecraft.client.render.RenderLayers.setFancyGraphicsOrBetter(gm != net.minecraft.client.option.GraphicsMode.FAST);
+            return;
         }
-        catch (Throwable ignored) {}
 
-        boolean useEntityLayers = false; // captura con capas de bloque
-        // Evitar renderizar BlockEntities durante la captura para no mezclar atlases.
-        this.capturingVAO = true;
-        this.capturingIncludeSpecialBlocks = false; // para VAO normal, omitir animados/bioma
-        try
+        this.structureVaoPicking = this.getVAO(this.getCaptureKey(true));
+    }
+
+    /**
+     * Geometría mallada (caras coplanares con la misma textura unidas), que
+     * se lee del archivo guardado junto a la estructura si existe, o se
+     * captura, malla y guarda en caso contrario.
+     */
+    private StructureVAOData bakeStructure()
+    {
+        StructureVAOData mesh = this.structure.getMesh();
+
+        if (mesh == null)
         {
-            renderStructureCulledWorld(captureContext, captureStack, provider, LightmapTextureManager.MAX_BLOCK_LIGHT_COORDINATE, OverlayTexture.DEFAULT_UV, useEntityLayers);
+            StructureMesher mesher = new StructureMesher();
+
+            this.captureStructure(mesher, false);
+
+            mesh = mesher.toData();
+
+            this.structure.saveMesh(mesh);
         }
-        finally
+
+        return mesh;
+    }
+
+    private ModelVAOData captureStructure(boolean picking)
+    {
+        StructureVAOCollector collector = new StructureVAOCollector();
+
+        if (!picking)
         {
-            this.capturingVAO = false;
-            this.capturingIncludeSpecialBlocks = false;
+            collector.setGenerateTangents(true);
         }
 
-        provider.draw();
-        provider.setSubstitute(null);
+        this.captureStructure(collector, picking);
 
-        ModelVAOData data = collector.toData();
-        this.structureVao = new ModelVAO(data);
-        this.vaoDirty = false;
+        return collector.toData();
     }
 
     /**
-     * Construye un VAO para picking que incluye bloques animados y con tinte por bioma,
-     * de modo que la silueta de selección cubra toda la estructura.
+     * Captura la geometría en el consumidor dado usando el pipeline vanilla
+     * pero sustituyendo el consumidor. Para picking se incluyen bloques
+     * animados y con tinte por bioma, de modo que la silueta cubra toda la
+     * estructura.
      */
-    private void buildStructureVAOPicking()
+    private void captureStructure(VertexConsumer collector, boolean picking)
     {
         CustomVertexConsumerProvider provider = FormUtilsClient.getProvider();
-        StructureVAOCollector collector = new StructureVAOCollector();
+
+        // Sustituir cualquier consumidor por nuestro colector
         provider.setSubstitute(vc -> collector);
 
         MatrixStack captureStack = new MatrixStack();
@@ -1204,9 +1200,10 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
         }
         catch (Throwable ignored) {}
 
-        boolean useEntityLayers = false;
+        boolean useEntityLayers = false; // captura con capas de bloque
+        // Evitar renderizar BlockEntities durante la captura para no mezclar atlases.
         this.capturingVAO = true;
-        this.capturingIncludeSpecialBlocks = true; // incluir animados y bioma para picking
+        this.capturingIncludeSpecialBlocks = picking; // para VAO normal, omitir animados/bioma
         try
         {
             renderStructureCulledWorld(captureContext, captureStack, provider, LightmapTextureManager.MAX_BLOCK_LIGHT_COORDINATE, OverlayTexture.DEFAULT_UV, useEntityLayers);
@@ -1219,10 +1216,6 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
 
         provider.draw();
         provider.setSubstitute(null);
-
-        ModelVAOData data = collector.toData();
-        this.structureVaoPicking = new ModelVAO(data);
-        this.vaoPickingDirty = false;
     }
 
     private Vector3f calculateStructurePivot()
@@ -1275,146 +1268,6 @@ public class StructureFormRenderer extends FormRenderer<StructureForm>
         }
     }
 
-    private void parseStructure(NbtCompound root)
-    {
-        // Tamaño
-        if (root.contains("size", NbtElement.INT_ARRAY_TYPE))
-        {
-            int[] sz = root.getIntArray("size");
-            if (sz.length >= 3)
-            {
-                size = new BlockPos(sz[0], sz[1], sz[2]);
-            }
-        }
-
-        // Paleta -> lista de estados
-        List<BlockState> paletteStates = new ArrayList<>();
-        if (root.contains("palette", NbtElement.LIST_TYPE))
-        {
-            NbtList palette = root.getList("palette", NbtElement.COMPOUND_TYPE);
-            for (int i = 0; i < palette.size(); i++)
-            {
-                NbtCompound entry = palette.getCompound(i);
-                BlockState state = readBlockState(entry);
-                paletteStates.add(state);
-            }
-        }
-
-        // Bloques
-        if (root.contains("blocks", NbtElement.LIST_TYPE))
-        {
-            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
-            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
-
-            NbtList list = root.getList("blocks", NbtElement.COMPOUND_TYPE);
-            for (int i = 0; i < list.size(); i++)
-            {
-                NbtCompound be = list.getCompound(i);
-
-                BlockPos pos = readBlockPos(be.getList("pos", NbtElement.INT_TYPE));
-                int stateIndex = be.getInt("state");
-
-                if (stateIndex >= 0 && stateIndex < paletteStates.size())
-                {
-                    BlockState state = paletteStates.get(stateIndex);
-                    BlockEntry entry = new BlockEntry(state, pos);
-                    blocks.add(entry);
-
-                    if (isAnimatedTexture(state))
-                    {
-                        animatedBlocks.add(entry);
-                    }
-                    if (isBiomeTinted(state))
-                    {
-                        tintedBlocks.add(entry);
-                    }
-                    if (state.getBlock() instanceof BlockEntityProvider)
-                    {
-                        blockEntities.add(entry);
-                    }
-
-                    // Actualizar límites
-                    if (pos.getX() < minX) minX = pos.getX();
-                    if (pos.getY() < minY) minY = pos.getY();
-                    if (pos.getZ() < minZ) minZ = pos.getZ();
-                    if (pos.getX() > maxX) maxX = pos.getX();
-                    if (pos.getY() > maxY) maxY = pos.getY();
-                    if (pos.getZ() > maxZ) maxZ = pos.getZ();
-                }
-            }
-
-            if (!blocks.isEmpty())
-            {
-                boundsMin = new BlockPos(minX, minY, minZ);
-                boundsMax = new BlockPos(maxX, maxY, maxZ);
-            }
-        }
-    }
-
-    private BlockPos readBlockPos(NbtList list)
-    {
-        if (list == null || list.size() < 3)
-        {
-            return BlockPos.ORIGIN;
-        }
-
-        int x = list.getInt(0);
-        int y = list.getInt(1);
-        int z = list.getInt(2);
-
-        return new BlockPos(x, y, z);
-    }
-
-    private BlockState readBlockState(NbtCompound entry)
-    {
-        String name = entry.getString("Name");
-        Block block;
-        BlockState state;
-
-        try
-        {
-            Identifier id = new Identifier(name);
-            block = Registries.BLOCK.get(id);
-            if (block == null)
-            {
-                block = net.minecraft.block.Blocks.AIR;
-            }
-        }
-        catch (Exception e)
-        {
-            block = net.minecraft.block.Blocks.AIR;
-        }
-
-        state = block.getDefaultState();
-
-        if (entry.contains("Properties", NbtElement.COMPOUND_TYPE))
-        {
-            NbtCompound props = entry.getCompound("Properties");
-            for (String key : props.getKeys())
-            {
-                String value = props.getString(key);
-                Property<?> property = block.getStateManager().getProperty(key);
-
-                if (property != null)
-                {
-                    Optional<?> parsed = property.parse(value);
-                    if (parsed.isPresent())
-                    {
-                        try
-                        {
-                            @SuppressWarnings({"rawtypes", "unchecked"})
-                            Property raw = property;
-                            @SuppressWarnings("unchecked")
-                            Comparable c = (Comparable) parsed.get();
-                            state = state.with(raw, c);
-                        }
-                        catch (Exception ignored)
-                        {}
-                    }
-                }
-            }
-        }
-
-        return state;
-    }
+    private record CaptureKey(boolean picking, boolean merged)
+    {}
 }
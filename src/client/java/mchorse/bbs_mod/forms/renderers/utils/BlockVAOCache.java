@@ -0,0 +1,86 @@
+package mchorse.bbs_mod.forms.renderers.utils;
+
+import mchorse.bbs_mod.cubic.render.vao.StructureMesher;
+import mchorse.bbs_mod.cubic.render.vao.StructureVAO;
+import net.minecraft.block.BlockRenderType;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.LightmapTextureManager;
+import net.minecraft.client.render.OverlayTexture;
+import net.minecraft.client.render.block.BlockRenderManager;
+import net.minecraft.client.render.model.BakedModel;
+import net.minecraft.client.util.math.MatrixStack;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Block VAO cache
+ *
+ * Baked VAOs of block states, shared by all block forms, so repeated
+ * blocks can be rendered with instanced draws. Only plain block models
+ * without tinted quads get baked, because vertex colors aren't kept in
+ * baked data; for other block states (block entities, grass, leaves,
+ * etc.) null is returned. VAOs get rebaked once block models are
+ * reloaded (i.e. resource packs were changed).
+ */
+public class BlockVAOCache
+{
+    private static final Map<BlockState, Entry> entries = new HashMap<>();
+
+    /**
+     * Get baked VAO of given block state, or null if it can't be baked
+     */
+    public static StructureVAO get(BlockState state)
+    {
+        BlockRenderManager manager = MinecraftClient.getInstance().getBlockRenderManager();
+        BakedModel model = manager.getModel(state);
+        Entry entry = entries.get(state);
+
+        if (entry != null && entry.model == model)
+        {
+            return entry.vao;
+        }
+
+        if (entry != null && entry.vao != null)
+        {
+            entry.vao.delete();
+        }
+
+        entry = new Entry(model, bake(manager, state));
+        entries.put(state, entry);
+
+        return entry.vao;
+    }
+
+    private static StructureVAO bake(BlockRenderManager manager, BlockState state)
+    {
+        if (state.getRenderType() != BlockRenderType.MODEL)
+        {
+            return null;
+        }
+
+        StructureMesher mesher = new StructureMesher();
+
+        try
+        {
+            manager.renderBlockAsEntity(state, new MatrixStack(), (layer) -> mesher, LightmapTextureManager.MAX_LIGHT_COORDINATE, OverlayTexture.DEFAULT_UV);
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+
+            return null;
+        }
+
+        if (mesher.isColored() || mesher.getQuadCount() == 0)
+        {
+            return null;
+        }
+
+        return new StructureVAO(mesher.toData());
+    }
+
+    private record Entry(BakedModel model, StructureVAO vao)
+    {}
+}
@@ -0,0 +1,666 @@
+package mchorse.bbs_mod.forms.renderers.utils;
+
+import mchorse.bbs_mod.BBSMod;
+import mchorse.bbs_mod.cubic.render.vao.IModelVAO;
+import mchorse.bbs_mod.cubic.render.vao.StructureVAOData;
+import mchorse.bbs_mod.resources.Link;
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockEntityProvider;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.client.texture.SpriteAtlasTexture;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.fluid.Fluids;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtTagSizeTracker;
+import net.minecraft.registry.Registries;
+import net.minecraft.screen.PlayerScreenHandler;
+import net.minecraft.state.property.Property;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Structure cache
+ *
+ * Global cache of structures (.nbt files) shared by all structure forms.
+ * Structures are read and parsed on a pool of worker threads, and until
+ * a structure is parsed, {@link Structure#getData()} returns null, so the
+ * form renders nothing in the meantime.
+ *
+ * Captured VAOs are shared too, and reference counted per structure and
+ * per capture key (i.e. the settings the geometry was captured with), so
+ * forms with the same structure and same settings use the same VAO. VAOs
+ * are deleted once no form uses them anymore.
+ *
+ * If a structure file gets modified, it gets parsed again (the
+ * modification time is checked at most once a second).
+ *
+ * Baked (meshed) geometry of external structures is saved next to the
+ * structure file (structure.nbt.mesh), and read back along with the
+ * structure, so large structures don't need to be captured and meshed
+ * every time they're loaded. Baked geometry is discarded once structure's
+ * file gets modified, or resources (packs and mods that could change the
+ * block atlas) change.
+ */
+public class StructureCache
+{
+    private static final long CHECK_INTERVAL = 1000L;
+
+    private static final Map<String, Structure> structures = new HashMap<>();
+    private static ExecutorService executor;
+
+    private static ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+            executor = Executors.newFixedThreadPool(threads, (runnable) ->
+            {
+                Thread thread = new Thread(runnable, "BBS structure loader");
+
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+
+        return executor;
+    }
+
+    /**
+     * Get a structure by given asset path, and increment its reference
+     * count. Every acquired structure must be released with
+     * {@link #release(Structure)}.
+     */
+    public static Structure acquire(String file)
+    {
+        Structure structure = structures.computeIfAbsent(file, Structure::new);
+
+        structure.references += 1;
+
+        return structure;
+    }
+
+    public static void release(Structure structure)
+    {
+        if (structure == null)
+        {
+            return;
+        }
+
+        structure.references -= 1;
+
+        if (structure.references <= 0)
+        {
+            structure.deleteVAOs();
+            structures.remove(structure.file);
+        }
+    }
+
+    public static int getCount()
+    {
+        return structures.size();
+    }
+
+    /** Whether given block requires texture animation (portal, water, lava) */
+    public static boolean isAnimatedTexture(BlockState state)
+    {
+        if (state == null)
+        {
+            return false;
+        }
+
+        if (state.isOf(Blocks.NETHER_PORTAL))
+        {
+            return true;
+        }
+
+        FluidState fs = state.getFluidState();
+
+        if (fs != null)
+        {
+            if (fs.getFluid() == Fluids.WATER || fs.getFluid() == Fluids.FLOWING_WATER ||
+                fs.getFluid() == Fluids.LAVA || fs.getFluid() == Fluids.FLOWING_LAVA)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /** Whether given block uses biome tint (foliage, grass, vines, lily pads) */
+    public static boolean isBiomeTinted(BlockState state)
+    {
+        if (state == null)
+        {
+            return false;
+        }
+
+        Block b = state.getBlock();
+
+        return (b instanceof net.minecraft.block.LeavesBlock)
+            || (b instanceof net.minecraft.block.GrassBlock)
+            || (b instanceof net.minecraft.block.VineBlock)
+            || (b instanceof net.minecraft.block.LilyPadBlock);
+    }
+
+    /**
+     * Hash of everything that affects block models and block atlas, so
+     * baked geometry made with different resources wouldn't be used
+     */
+    private static long getFingerprint()
+    {
+        StringBuilder builder = new StringBuilder();
+
+        try
+        {
+            MinecraftClient mc = MinecraftClient.getInstance();
+            SpriteAtlasTexture atlas = mc.getBakedModelManager().getAtlas(PlayerScreenHandler.BLOCK_ATLAS_TEXTURE);
+
+            for (String pack : mc.getResourcePackManager().getEnabledNames())
+            {
+                builder.append(pack).append(';');
+            }
+
+            for (ModContainer mod : FabricLoader.getInstance().getAllMods())
+            {
+                builder.append(mod.getMetadata().getId()).append('@').append(mod.getMetadata().getVersion().getFriendlyString()).append(';');
+            }
+
+            for (String id : new String[] {"block/stone", "block/dirt", "block/oak_planks"})
+            {
+                Sprite sprite = atlas.getSprite(new Identifier(id));
+
+                builder.append(sprite.getMinU()).append(',').append(sprite.getMinV()).append(',').append(sprite.getMaxU()).append(';');
+            }
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+
+        long hash = 1125899906842597L;
+
+        for (int i = 0; i < builder.length(); i++)
+        {
+            hash = 31 * hash + builder.charAt(i);
+        }
+
+        return hash;
+    }
+
+    private static File getMeshFile(String file)
+    {
+        File nbtFile = BBSMod.getProvider().getFile(Link.assets(file));
+
+        return nbtFile != null && nbtFile.exists() ? new File(nbtFile.getParentFile(), nbtFile.getName() + ".mesh") : null;
+    }
+
+    private static long getModified(String file)
+    {
+        File nbtFile = BBSMod.getProvider().getFile(Link.assets(file));
+
+        return nbtFile != null && nbtFile.exists() ? nbtFile.lastModified() : 0L;
+    }
+
+    private static StructureData load(String file)
+    {
+        File nbtFile = BBSMod.getProvider().getFile(Link.assets(file));
+
+        /* Try reading it as an external file first, and if there is none,
+         * read it from internal assets */
+        if (nbtFile != null && nbtFile.exists())
+        {
+            try
+            {
+                return parse(NbtIo.readCompressed(nbtFile.toPath(), NbtTagSizeTracker.ofUnlimitedBytes()));
+            }
+            catch (IOException e)
+            {}
+        }
+
+        try (InputStream is = BBSMod.getProvider().getAsset(Link.assets(file)))
+        {
+            return parse(NbtIo.readCompressed(is, NbtTagSizeTracker.ofUnlimitedBytes()));
+        }
+        catch (Exception e)
+        {}
+
+        return new StructureData(new ArrayList<>(), BlockPos.ORIGIN);
+    }
+
+    private static StructureData parse(NbtCompound root)
+    {
+        BlockPos size = BlockPos.ORIGIN;
+
+        if (root.contains("size", NbtElement.INT_ARRAY_TYPE))
+        {
+            int[] sz = root.getIntArray("size");
+
+            if (sz.length >= 3)
+            {
+                size = new BlockPos(sz[0], sz[1], sz[2]);
+            }
+        }
+
+        List<BlockState> paletteStates = new ArrayList<>();
+
+        if (root.contains("palette", NbtElement.LIST_TYPE))
+        {
+            NbtList palette = root.getList("palette", NbtElement.COMPOUND_TYPE);
+
+            for (int i = 0; i < palette.size(); i++)
+            {
+                paletteStates.add(readBlockState(palette.getCompound(i)));
+            }
+        }
+
+        List<BlockEntry> blocks = new ArrayList<>();
+
+        if (root.contains("blocks", NbtElement.LIST_TYPE))
+        {
+            NbtList list = root.getList("blocks", NbtElement.COMPOUND_TYPE);
+
+            for (int i = 0; i < list.size(); i++)
+            {
+                NbtCompound be = list.getCompound(i);
+                BlockPos pos = readBlockPos(be.getList("pos", NbtElement.INT_TYPE));
+                int stateIndex = be.getInt("state");
+
+                if (stateIndex >= 0 && stateIndex < paletteStates.size())
+                {
+                    blocks.add(new BlockEntry(paletteStates.get(stateIndex), pos));
+                }
+            }
+        }
+
+        return new StructureData(blocks, size);
+    }
+
+    private static BlockPos readBlockPos(NbtList list)
+    {
+        if (list == null || list.size() < 3)
+        {
+            return BlockPos.ORIGIN;
+        }
+
+        return new BlockPos(list.getInt(0), list.getInt(1), list.getInt(2));
+    }
+
+    private static BlockState readBlockState(NbtCompound entry)
+    {
+        String name = entry.getString("Name");
+        Block block;
+
+        try
+        {
+            block = Registries.BLOCK.get(new Identifier(name));
+
+            if (block == null)
+            {
+                block = Blocks.AIR;
+            }
+        }
+        catch (Exception e)
+        {
+            block = Blocks.AIR;
+        }
+
+        BlockState state = block.getDefaultState();
+
+        if (entry.contains("Properties", NbtElement.COMPOUND_TYPE))
+        {
+            NbtCompound props = entry.getCompound("Properties");
+
+            for (String key : props.getKeys())
+            {
+                Property<?> property = block.getStateManager().getProperty(key);
+
+                if (property != null)
+                {
+                    Optional<?> parsed = property.parse(props.getString(key));
+
+                    if (parsed.isPresent())
+                    {
+                        try
+                        {
+                            @SuppressWarnings({"rawtypes", "unchecked"})
+                            Property raw = property;
+                            @SuppressWarnings("unchecked")
+                            Comparable c = (Comparable) parsed.get();
+
+                            state = state.with(raw, c);
+                        }
+                        catch (Exception ignored)
+                        {}
+                    }
+                }
+            }
+        }
+
+        return state;
+    }
+
+    public static class BlockEntry
+    {
+        public final BlockState state;
+        public final BlockPos pos;
+
+        public BlockEntry(BlockState state, BlockPos pos)
+        {
+            this.state = state;
+            this.pos = pos;
+        }
+    }
+
+    /**
+     * Parsed structure's blocks (immutable, so it can be shared by forms)
+     */
+    public static class StructureData
+    {
+        public final List<BlockEntry> blocks;
+        public final List<BlockEntry> blockEntities;
+        public final List<BlockEntry> animatedBlocks;
+        public final List<BlockEntry> tintedBlocks;
+        public final BlockPos size;
+        public final BlockPos boundsMin;
+        public final BlockPos boundsMax;
+
+        public StructureData(List<BlockEntry> blocks, BlockPos size)
+        {
+            List<BlockEntry> blockEntities = new ArrayList<>();
+            List<BlockEntry> animatedBlocks = new ArrayList<>();
+            List<BlockEntry> tintedBlocks = new ArrayList<>();
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+            for (BlockEntry entry : blocks)
+            {
+                BlockPos pos = entry.pos;
+
+                if (isAnimatedTexture(entry.state))
+                {
+                    animatedBlocks.add(entry);
+                }
+
+                if (isBiomeTinted(entry.state))
+                {
+                    tintedBlocks.add(entry);
+                }
+
+                if (entry.state.getBlock() instanceof BlockEntityProvider)
+                {
+                    blockEntities.add(entry);
+                }
+
+                minX = Math.min(minX, pos.getX());
+                minY = Math.min(minY, pos.getY());
+                minZ = Math.min(minZ, pos.getZ());
+                maxX = Math.max(maxX, pos.getX());
+                maxY = Math.max(maxY, pos.getY());
+                maxZ = Math.max(maxZ, pos.getZ());
+            }
+
+            this.blocks = Collections.unmodifiableList(blocks);
+            this.blockEntities = Collections.unmodifiableList(blockEntities);
+            this.animatedBlocks = Collections.unmodifiableList(animatedBlocks);
+            this.tintedBlocks = Collections.unmodifiableList(tintedBlocks);
+            this.size = size;
+            this.boundsMin = blocks.isEmpty() ? null : new BlockPos(minX, minY, minZ);
+            this.boundsMax = blocks.isEmpty() ? null : new BlockPos(maxX, maxY, maxZ);
+        }
+    }
+
+    public static class Structure
+    {
+        public final String file;
+
+        private int references;
+        private long modified;
+        private long lastCheck;
+        private CompletableFuture<Loaded> future;
+        private Loaded loaded;
+        private StructureData data;
+        private StructureVAOData mesh;
+
+        private final Map<Object, SharedVAO> vaos = new HashMap<>();
+
+        public Structure(String file)
+        {
+            this.file = file;
+
+            this.reload();
+        }
+
+        private void reload()
+        {
+            String file = this.file;
+            long fingerprint = getFingerprint();
+
+            this.lastCheck = System.currentTimeMillis();
+            this.future = CompletableFuture.supplyAsync(() ->
+            {
+                long modified = getModified(file);
+
+                return new Loaded(load(file), StructureVAOData.read(getMeshFile(file), modified, fingerprint), modified, fingerprint);
+            }, getExecutor());
+        }
+
+        /**
+         * Get parsed structure's data, or null if it's not parsed yet. If
+         * the structure's file was modified, previous data is returned until
+         * the new one is parsed.
+         */
+        public StructureData getData()
+        {
+            if (this.future != null && this.future.isDone())
+            {
+                if (this.future.isCompletedExceptionally())
+                {
+                    this.failed();
+                }
+                else
+                {
+                    this.loaded = this.future.join();
+                    this.modified = this.loaded.modified;
+                    this.data = this.loaded.data;
+                    this.mesh = this.loaded.mesh;
+
+                    this.deleteVAOs();
+                }
+
+                this.future = null;
+            }
+
+            long now = System.currentTimeMillis();
+
+            if (this.future == null && now - this.lastCheck > CHECK_INTERVAL)
+            {
+                this.lastCheck = now;
+
+                if (getModified(this.file) != this.modified)
+                {
+                    this.reload();
+                }
+            }
+
+            return this.data;
+        }
+
+        /**
+         * Log why the structure couldn't be loaded, and keep the previous
+         * data (or no blocks), so it isn't loaded again until its file
+         * gets modified
+         */
+        private void failed()
+        {
+            try
+            {
+                this.future.join();
+            }
+            catch (Exception e)
+            {
+                System.err.println("Failed to load structure " + this.file + "!");
+                e.printStackTrace();
+            }
+
+            this.modified = getModified(this.file);
+
+            if (this.data == null)
+            {
+                this.data = new StructureData(new ArrayList<>(), BlockPos.ORIGIN);
+            }
+        }
+
+        /**
+         * Get baked geometry of this structure that was saved previously,
+         * or null if there is none (or it's outdated)
+         */
+        public StructureVAOData getMesh()
+        {
+            return this.mesh;
+        }
+
+        /**
+         * Set baked geometry of this structure, and save it next to the
+         * structure file in the background
+         */
+        public void saveMesh(StructureVAOData mesh)
+        {
+            File file = getMeshFile(this.file);
+            Loaded loaded = this.loaded;
+
+            this.mesh = mesh;
+
+            if (file == null || loaded == null)
+            {
+                return;
+            }
+
+            getExecutor().execute(() ->
+            {
+                File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+
+                try
+                {
+                    mesh.write(temp, loaded.modified, loaded.fingerprint);
+
+                    try
+                    {
+                        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    catch (AtomicMoveNotSupportedException e)
+                    {
+                        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                catch (Exception e)
+                {
+                    e.printStackTrace();
+
+                    temp.delete();
+                }
+            });
+        }
+
+        /**
+         * Get a VAO for given capture key, creating it with given supplier
+         * if there is no such VAO yet. Every acquired VAO must be released
+         * with {@link #releaseVAO(Object)}.
+         */
+        public IModelVAO acquireVAO(Object key, Supplier<IModelVAO> create)
+        {
+            SharedVAO vao = this.vaos.get(key);
+
+            if (vao == null)
+            {
+                vao = new SharedVAO(create.get());
+
+                this.vaos.put(key, vao);
+            }
+
+            vao.references += 1;
+
+            return vao.vao;
+        }
+
+        public void releaseVAO(Object key)
+        {
+            SharedVAO vao = this.vaos.get(key);
+
+            if (vao != null)
+            {
+                vao.references -= 1;
+
+                if (vao.references <= 0)
+                {
+                    vao.vao.delete();
+                    this.vaos.remove(key);
+                }
+            }
+        }
+
+        /**
+         * Whether the VAO captured with given key is still alive (VAOs get
+         * deleted when structure's data changes)
+         */
+        public boolean hasVAO(Object key, IModelVAO vao)
+        {
+            SharedVAO shared = this.vaos.get(key);
+
+            return shared != null && shared.vao == vao;
+        }
+
+        private void deleteVAOs()
+        {
+            Iterator<SharedVAO> it = this.vaos.values().iterator();
+
+            while (it.hasNext())
+            {
+                it.next().vao.delete();
+                it.remove();
+            }
+        }
+    }
+
+    private record Loaded(StructureData data, StructureVAOData mesh, long modified, long fingerprint)
+    {}
+
+    private static class SharedVAO
+    {
+        public final IModelVAO vao;
+        public int references;
+
+        public SharedVAO(IModelVAO vao)
+        {
+            this.vao = vao;
+        }
+    }
+}
@@ -5,12 +5,15 @@ import mchorse.bbs_mod.actions.ActionState;
 import mchorse.bbs_mod.blocks.entities.ModelBlockEntity;
 import mchorse.bbs_mod.blocks.entities.ModelProperties;
 import mchorse.bbs_mod.client.BBSRendering;
+import mchorse.bbs_mod.data.DataDelta;
 import mchorse.bbs_mod.data.DataStorageUtils;
 import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.MapType;
 import mchorse.bbs_mod.entity.GunProjectileEntity;
 import mchorse.bbs_mod.entity.IEntityFormProvider;
 import mchorse.bbs_mod.film.Film;
+import mchorse.bbs_mod.film.FilmCache;
 import mchorse.bbs_mod.film.Films;
 import mchorse.bbs_mod.forms.FormUtils;
 import mchorse.bbs_mod.forms.forms.Form;
@@ -38,7 +41,10 @@ import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Hand;
 import net.minecraft.util.math.BlockPos;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.function.Consumer;
@@ -49,12 +55,32 @@ public class ClientNetwork
     private static Map<Integer, Consumer<BaseType>> callbacks = new HashMap<>();
     private static ClientPacketCrusher crusher = new ClientPacketCrusher();
 
+    /**
+     * How many last received films are kept in {@link #films}
+     */
+    public static final int MAX_FILMS = 16;
+
+    /**
+     * Films that were received from the server, so they don't have to be
+     * sent again when the server plays them next time. Only the last
+     * played films are kept, and it gets cleared on disconnect
+     */
+    private static Map<String, FilmCache.Entry> films = new LinkedHashMap<>(16, 0.75F, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FilmCache.Entry> eldest)
+        {
+            return this.size() > MAX_FILMS;
+        }
+    };
+
     private static boolean isBBSModOnServer;
 
     public static void resetHandshake()
     {
         isBBSModOnServer = false;
         crusher.reset();
+        films.clear();
     }
 
     public static boolean isIsBBSModOnServer()
@@ -83,6 +109,7 @@ public class ClientNetwork
         ClientPlayNetworking.registerGlobalReceiver(ServerNetwork.CLIENT_SELECTED_SLOT, (client, handler, buf, responseSender) -> handleSelectedSlotPacket(client, buf));
         ClientPlayNetworking.registerGlobalReceiver(ServerNetwork.CLIENT_ANIMATION_STATE_MODEL_BLOCK_TRIGGER, (client, handler, buf, responseSender) -> handleAnimationStateModelBlockPacket(client, buf));
         ClientPlayNetworking.registerGlobalReceiver(ServerNetwork.CLIENT_REFRESH_MODEL_BLOCKS, (client, handler, buf, responseSender) -> handleRefreshModelBlocksPacket(client, buf));
+        ClientPlayNetworking.registerGlobalReceiver(ServerNetwork.CLIENT_PLAY_FILM_DELTA_PACKET, (client, handler, buf, responseSender) -> handlePlayFilmDeltaPacket(client, buf));
     }
 
     /* Handlers */
@@ -143,12 +170,70 @@ public class ClientNetwork
         {
             String filmId = packetByteBuf.readString();
             boolean withCamera = packetByteBuf.readBoolean();
-            Film film = new Film();
+            long hash = packetByteBuf.readLong();
+            FilmCache.Entry entry = new FilmCache.Entry((MapType) DataStorageUtils.readFromBytes(bytes), hash);
+            Film film = entry.createFilm(filmId);
 
-            film.setId(filmId);
-            film.fromData(DataStorageUtils.readFromBytes(bytes));
+            client.execute(() ->
+            {
+                films.put(filmId, entry);
+                sendFilmHash(filmId, hash);
 
-            client.execute(() -> Films.playFilm(film, withCamera));
+                Films.playFilm(film, withCamera);
+            });
+        });
+    }
+
+    private static void handlePlayFilmDeltaPacket(MinecraftClient client, PacketByteBuf buf)
+    {
+        crusher.receive(buf, (bytes, packetByteBuf) ->
+        {
+            String filmId = packetByteBuf.readString();
+            boolean withCamera = packetByteBuf.readBoolean();
+            long from = packetByteBuf.readLong();
+            long to = packetByteBuf.readLong();
+            List<DataDelta> deltas = new ArrayList<>();
+            int count = 0;
+
+            if (DataStorageUtils.readFromBytes(bytes) instanceof ListType list)
+            {
+                count = list.size();
+
+                for (BaseType type : list)
+                {
+                    DataDelta delta = DataDelta.fromData(type);
+
+                    if (delta != null)
+                    {
+                        deltas.add(delta);
+                    }
+                }
+            }
+
+            boolean valid = deltas.size() == count;
+
+            client.execute(() ->
+            {
+                FilmCache.Entry entry = films.get(filmId);
+
+                if (entry == null || entry.hash != from || !valid)
+                {
+                    /* Cached film is missing or outdated (or deltas couldn't be
+                     * read), so request the full film */
+                    films.remove(filmId);
+                    sendFilmRequest(filmId, withCamera);
+
+                    return;
+                }
+
+                if (from != to)
+                {
+                    entry.apply(deltas, to);
+                    sendFilmHash(filmId, to);
+                }
+
+                Films.playFilm(entry.createFilm(filmId), withCamera);
+            });
         });
     }
 
@@ -545,6 +630,26 @@ public class ClientNetwork
         ClientPlayNetworking.send(ServerNetwork.SERVER_ZOOM, buf);
     }
 
+    public static void sendFilmHash(String filmId, long hash)
+    {
+        PacketByteBuf buf = PacketByteBufs.create();
+
+        buf.writeString(filmId);
+        buf.writeLong(hash);
+
+        ClientPlayNetworking.send(ServerNetwork.SERVER_FILM_HASH, buf);
+    }
+
+    public static void sendFilmRequest(String filmId, boolean withCamera)
+    {
+        PacketByteBuf buf = PacketByteBufs.create();
+
+        buf.writeString(filmId);
+        buf.writeBoolean(withCamera);
+
+        ClientPlayNetworking.send(ServerNetwork.SERVER_FILM_REQUEST, buf);
+    }
+
     public static void sendPauseFilm(String filmId)
     {
         PacketByteBuf buf = PacketByteBufs.create();
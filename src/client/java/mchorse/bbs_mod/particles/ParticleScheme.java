@@ -11,8 +11,8 @@ import mchorse.bbs_mod.particles.components.IComponentParticleRender;
 import mchorse.bbs_mod.particles.components.IComponentParticleUpdate;
 import mchorse.bbs_mod.particles.components.ParticleComponentBase;
 import mchorse.bbs_mod.particles.components.motion.ParticleComponentInitialSpeed;
-import mchorse.bbs_mod.particles.emitter.Particle;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
+import mchorse.bbs_mod.particles.emitter.ParticleStorage;
 import mchorse.bbs_mod.resources.Link;
 import mchorse.bbs_mod.settings.values.core.ValueGroup;
 
@@ -48,7 +48,8 @@ public class ParticleScheme extends ValueGroup {
 
     /* MoLang integration */
     public final ParticleMolangParser parser;
-    public Particle particle;
+    public ParticleStorage particles;
+    public int particle = -1;
     public ParticleEmitter emitter;
 
     public static ParticleScheme parse(String json) {
@@ -141,6 +142,22 @@ public class ParticleScheme extends ValueGroup {
         return list;
     }
 
+    /**
+     * Whether any of the components reads the world during the update
+     */
+    public boolean isAccessingWorld()
+    {
+        for (ParticleComponentBase component : this.components)
+        {
+            if (component.isAccessingWorld())
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public <T extends ParticleComponentBase> T get(Class<T> clazz)
     {
         for (ParticleComponentBase component : this.components)
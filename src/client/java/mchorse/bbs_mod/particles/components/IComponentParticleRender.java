@@ -2,6 +2,7 @@ package mchorse.bbs_mod.particles.components;
 
 import mchorse.bbs_mod.particles.emitter.Particle;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
+import mchorse.bbs_mod.particles.emitter.ParticleStorage;
 import net.minecraft.client.render.BufferBuilder;
 import net.minecraft.client.render.VertexFormat;
 import org.joml.Matrix4f;
@@ -12,7 +13,28 @@ public interface IComponentParticleRender extends IComponentBase
 
     public void render(ParticleEmitter emitter, VertexFormat format, Particle particle, BufferBuilder builder, Matrix4f matrix, int overlay, float transition);
 
+    /**
+     * Render particle at given slot of the storage. By default, it renders
+     * a particle view, which is slower, so components that are used often
+     * should rather work with the storage directly.
+     */
+    public default void render(ParticleEmitter emitter, VertexFormat format, ParticleStorage particles, int i, BufferBuilder builder, Matrix4f matrix, int overlay, float transition)
+    {
+        Particle particle = particles.view(i);
+
+        this.render(emitter, format, particle, builder, matrix, overlay, transition);
+        particles.store(particle, i);
+    }
+
     public void renderUI(Particle particle, BufferBuilder builder, Matrix4f matrix, float transition);
 
+    public default void renderUI(ParticleStorage particles, int i, BufferBuilder builder, Matrix4f matrix, float transition)
+    {
+        Particle particle = particles.view(i);
+
+        this.renderUI(particle, builder, matrix, transition);
+        particles.store(particle, i);
+    }
+
     public void postRender(ParticleEmitter emitter, float transition);
 }
\ No newline at end of file
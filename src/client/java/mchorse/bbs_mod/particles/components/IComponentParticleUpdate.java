@@ -2,8 +2,22 @@ package mchorse.bbs_mod.particles.components;
 
 import mchorse.bbs_mod.particles.emitter.Particle;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
+import mchorse.bbs_mod.particles.emitter.ParticleStorage;
 
 public interface IComponentParticleUpdate extends IComponentBase
 {
     public void update(ParticleEmitter emitter, Particle particle);
+
+    /**
+     * Update particle at given slot of the storage. By default, it updates
+     * a particle view, which is slower, so components that are used often
+     * should rather work with the storage directly.
+     */
+    public default void update(ParticleEmitter emitter, ParticleStorage particles, int i)
+    {
+        Particle particle = particles.view(i);
+
+        this.update(emitter, particle);
+        particles.store(particle, i);
+    }
 }
\ No newline at end of file
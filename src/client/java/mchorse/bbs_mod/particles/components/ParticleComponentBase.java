@@ -28,4 +28,13 @@ public abstract class ParticleComponentBase
     {
         return false;
     }
+
+    /**
+     * Whether this component reads the world during the update, which means
+     * that the emitter can't be updated off the client thread
+     */
+    public boolean isAccessingWorld()
+    {
+        return false;
+    }
 }
\ No newline at end of file
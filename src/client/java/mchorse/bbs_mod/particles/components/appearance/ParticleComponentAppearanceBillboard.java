@@ -10,6 +10,7 @@ import mchorse.bbs_mod.particles.components.IComponentParticleRender;
 import mchorse.bbs_mod.particles.components.ParticleComponentBase;
 import mchorse.bbs_mod.particles.emitter.Particle;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
+import mchorse.bbs_mod.particles.emitter.ParticleStorage;
 import mchorse.bbs_mod.utils.MathUtils;
 import mchorse.bbs_mod.utils.interps.Lerps;
 import mchorse.bbs_mod.utils.joml.Matrices;
@@ -68,6 +69,11 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
     private Vector3f vector = new Vector3f();
     private Vector3f n = new Vector3f();
 
+    /**
+     * Storage for rendering particle views
+     */
+    private ParticleStorage view = new ParticleStorage();
+
     public ParticleComponentAppearanceBillboard()
     {}
 
@@ -270,15 +276,22 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
     @Override
     public void render(ParticleEmitter emitter, VertexFormat format, Particle particle, BufferBuilder builder, Matrix4f matrix, int overlay, float transition)
     {
-        this.calculateUVs(particle, emitter, transition);
+        this.render(emitter, format, this.view, this.view.wrap(particle), builder, matrix, overlay, transition);
+    }
+
+    @Override
+    public void render(ParticleEmitter emitter, VertexFormat format, ParticleStorage particles, int i, BufferBuilder builder, Matrix4f matrix, int overlay, float transition)
+    {
+        this.calculateUVs(particles, i, emitter, transition);
 
         /* Render the particle */
-        double px = Lerps.lerp(particle.prevPosition.x, particle.position.x, transition);
-        double py = Lerps.lerp(particle.prevPosition.y, particle.position.y, transition);
-        double pz = Lerps.lerp(particle.prevPosition.z, particle.position.z, transition);
-        float angle = Lerps.lerp(particle.prevRotation, particle.rotation, transition);
+        int i3 = i * 3;
+        double px = Lerps.lerp(particles.prevPosition[i3], particles.position[i3], transition);
+        double py = Lerps.lerp(particles.prevPosition[i3 + 1], particles.position[i3 + 1], transition);
+        double pz = Lerps.lerp(particles.prevPosition[i3 + 2], particles.position[i3 + 2], transition);
+        float angle = Lerps.lerp(particles.prevRotation[i], particles.rotation[i], transition);
         float scale = 1F;
-        boolean staticSpace = particle.relativePosition && particle.relativeRotation;
+        boolean staticSpace = particles.hasFlag(i, ParticleStorage.RELATIVE_POSITION) && particles.hasFlag(i, ParticleStorage.RELATIVE_ROTATION);
 
         if (staticSpace)
         {
@@ -294,9 +307,9 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
             pz += emitter.lastGlobal.z;
         }
 
-        if (particle.textureScale)
+        if (particles.hasFlag(i, ParticleStorage.TEXTURE_SCALE))
         {
-            scale = (staticSpace ? emitter.rotation : particle.matrix).getRow(0, Vectors.TEMP_3F).length();
+            scale = staticSpace ? emitter.rotation.getRow(0, Vectors.TEMP_3F).length() : particles.getScale(i);
         }
 
         /* Calculate yaw and pitch based on the facing mode */
@@ -360,10 +373,10 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
         this.transform.scale(scale);
         this.transform.setTranslation(new Vector3f((float) px, (float) py, (float) pz));
 
-        this.build(builder, format, matrix, particle, overlay);
+        this.build(builder, format, matrix, particles.color, i * 4, overlay);
     }
 
-    private void build(BufferBuilder builder, VertexFormat format, Matrix4f matrix, Particle particle, int overlay)
+    private void build(BufferBuilder builder, VertexFormat format, Matrix4f matrix, float[] color, int c, int overlay)
     {
         float u1 = this.u1 / (float) this.textureWidth;
         float u2 = this.u2 / (float) this.textureWidth;
@@ -375,22 +388,22 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
             this.transform.transform(vertex);
         }
 
-        this.writeVertex(builder, format, matrix, this.vertices[0], u2, v2, overlay, particle);
-        this.writeVertex(builder, format, matrix, this.vertices[1], u1, v2, overlay, particle);
-        this.writeVertex(builder, format, matrix, this.vertices[2], u1, v1, overlay, particle);
-        this.writeVertex(builder, format, matrix, this.vertices[2], u1, v1, overlay, particle);
-        this.writeVertex(builder, format, matrix, this.vertices[3], u2, v1, overlay, particle);
-        this.writeVertex(builder, format, matrix, this.vertices[0], u2, v2, overlay, particle);
+        this.writeVertex(builder, format, matrix, this.vertices[0], u2, v2, overlay, color, c);
+        this.writeVertex(builder, format, matrix, this.vertices[1], u1, v2, overlay, color, c);
+        this.writeVertex(builder, format, matrix, this.vertices[2], u1, v1, overlay, color, c);
+        this.writeVertex(builder, format, matrix, this.vertices[2], u1, v1, overlay, color, c);
+        this.writeVertex(builder, format, matrix, this.vertices[3], u2, v1, overlay, color, c);
+        this.writeVertex(builder, format, matrix, this.vertices[0], u2, v2, overlay, color, c);
     }
 
-    private void writeVertex(BufferBuilder builder, VertexFormat format, Matrix4f matrix, Vector4f vertex, float u, float v, int overlay, Particle particle)
+    private void writeVertex(BufferBuilder builder, VertexFormat format, Matrix4f matrix, Vector4f vertex, float u, float v, int overlay, float[] color, int c)
     {
         if (format == VertexFormats.POSITION_TEXTURE_COLOR_LIGHT)
         {
             /* VertexFormats.POSITION_TEXTURE_COLOR_LIGHT */
             builder.vertex(matrix, vertex.x, vertex.y, vertex.z)
                 .texture(u, v)
-                .color(particle.r, particle.g, particle.b, particle.a)
+                .color(color[c], color[c + 1], color[c + 2], color[c + 3])
                 .light(this.light)
                 .next();
         }
@@ -398,7 +411,7 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
         {
             /* VertexFormats.POSITION_COLOR_TEXTURE_OVERLAY_LIGHT_NORMAL */
             builder.vertex(matrix, vertex.x, vertex.y, vertex.z)
-                .color(particle.r, particle.g, particle.b, particle.a)
+                .color(color[c], color[c + 1], color[c + 2], color[c + 3])
                 .texture(u, v)
                 .overlay(overlay)
                 .light(this.light)
@@ -410,10 +423,16 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
     @Override
     public void renderUI(Particle particle, BufferBuilder builder, Matrix4f matrix, float transition)
     {
-        this.calculateUVs(particle, null, transition);
+        this.renderUI(this.view, this.view.wrap(particle), builder, matrix, transition);
+    }
+
+    @Override
+    public void renderUI(ParticleStorage particles, int i, BufferBuilder builder, Matrix4f matrix, float transition)
+    {
+        this.calculateUVs(particles, i, null, transition);
 
         this.w = this.h = 0.5F;
-        float angle = Lerps.lerp(particle.prevRotation, particle.rotation, transition);
+        float angle = Lerps.lerp(particles.prevRotation[i], particles.rotation[i], transition);
 
         /* Calculate the geometry for billboards using cool matrix math */
         this.vertices[0].set(-this.w / 2, -this.h / 2, 0, 1);
@@ -427,10 +446,10 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
         this.rotation.rotateZ(angle / 180 * (float) Math.PI);
         this.transform.mul(this.rotation);
 
-        this.buildUI(builder, matrix, particle);
+        this.buildUI(builder, matrix, particles.color, i * 4);
     }
 
-    private void buildUI(BufferBuilder builder, Matrix4f matrix, Particle particle)
+    private void buildUI(BufferBuilder builder, Matrix4f matrix, float[] color, int c)
     {
         float u1 = this.u1 / (float) this.textureWidth;
         float u2 = this.u2 / (float) this.textureWidth;
@@ -442,23 +461,23 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
             this.transform.transform(vertex);
         }
 
-        this.writeVertexUI(builder, matrix, this.vertices[2], u2, v2, particle);
-        this.writeVertexUI(builder, matrix, this.vertices[1], u2, v1, particle);
-        this.writeVertexUI(builder, matrix, this.vertices[0], u1, v1, particle);
-        this.writeVertexUI(builder, matrix, this.vertices[0], u1, v1, particle);
-        this.writeVertexUI(builder, matrix, this.vertices[3], u1, v2, particle);
-        this.writeVertexUI(builder, matrix, this.vertices[2], u2, v2, particle);
+        this.writeVertexUI(builder, matrix, this.vertices[2], u2, v2, color, c);
+        this.writeVertexUI(builder, matrix, this.vertices[1], u2, v1, color, c);
+        this.writeVertexUI(builder, matrix, this.vertices[0], u1, v1, color, c);
+        this.writeVertexUI(builder, matrix, this.vertices[0], u1, v1, color, c);
+        this.writeVertexUI(builder, matrix, this.vertices[3], u1, v2, color, c);
+        this.writeVertexUI(builder, matrix, this.vertices[2], u2, v2, color, c);
     }
 
-    private void writeVertexUI(BufferBuilder builder, Matrix4f matrix, Vector4f vertex, float u, float v, Particle particle)
+    private void writeVertexUI(BufferBuilder builder, Matrix4f matrix, Vector4f vertex, float u, float v, float[] color, int c)
     {
         builder.vertex(matrix, vertex.x, vertex.y, 0F)
             .texture(u, v)
-            .color(particle.r, particle.g, particle.b, particle.a)
+            .color(color[c], color[c + 1], color[c + 2], color[c + 3])
             .next();
     }
 
-    public void calculateUVs(Particle particle, ParticleEmitter emitter, float transition)
+    public void calculateUVs(ParticleStorage particles, int i, ParticleEmitter emitter, float transition)
     {
         /* Update particle's UVs and size */
         this.w = (float) this.sizeW.get() * 2.25F;
@@ -471,12 +490,12 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
 
         if (this.flipbook)
         {
-            int index = (int) (particle.getAge(transition) * this.fps);
+            int index = (int) (particles.getAge(i, transition) * this.fps);
             int max = (int) this.maxFrame.get();
 
             if (this.stretchFPS)
             {
-                float lifetime = particle.lifetime <= 0 ? 0 : (particle.age + transition) / particle.lifetime;
+                float lifetime = particles.lifetime[i] <= 0 ? 0 : (particles.age[i] + transition) / particles.lifetime[i];
 
                 index = MathUtils.clamp((int) (lifetime * max), 0, max - 1);
             }
@@ -506,7 +525,7 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
         }
         else
         {
-            Vector3d pos = particle.getGlobalPosition(emitter);
+            Vector3d pos = particles.getGlobalPosition(i, emitter);
             BlockPos blockPos = new BlockPos((int) pos.x, (int) pos.y, (int) pos.z);
             int lightLevel = WorldRenderer.getLightmapCoordinates(emitter.world, blockPos);
 
@@ -11,14 +11,19 @@ import mchorse.bbs_mod.particles.components.appearance.colors.Solid;
 import mchorse.bbs_mod.particles.components.appearance.colors.Tint;
 import mchorse.bbs_mod.particles.emitter.Particle;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
+import mchorse.bbs_mod.particles.emitter.ParticleStorage;
 import net.minecraft.client.render.BufferBuilder;
 import net.minecraft.client.render.VertexFormat;
 import org.joml.Matrix4f;
 
+import java.util.Arrays;
+
 public class ParticleComponentAppearanceTinting extends ParticleComponentBase implements IComponentParticleRender
 {
     public Tint color = new Solid(MolangParser.ONE, MolangParser.ONE, MolangParser.ONE, MolangParser.ONE);
 
+    private float[] rgba = new float[4];
+
     @Override
     protected void toData(MapType data)
     {
@@ -69,16 +74,38 @@ public class ParticleComponentAppearanceTinting extends ParticleComponentBase im
         this.renderUI(particle, builder, matrix, transition);
     }
 
+    @Override
+    public void render(ParticleEmitter emitter, VertexFormat format, ParticleStorage particles, int i, BufferBuilder builder, Matrix4f matrix, int overlay, float transition)
+    {
+        this.renderUI(particles, i, builder, matrix, transition);
+    }
+
     @Override
     public void renderUI(Particle particle, BufferBuilder builder, Matrix4f matrix, float transition)
+    {
+        this.compute(this.rgba, 0);
+
+        particle.r = this.rgba[0];
+        particle.g = this.rgba[1];
+        particle.b = this.rgba[2];
+        particle.a = this.rgba[3];
+    }
+
+    @Override
+    public void renderUI(ParticleStorage particles, int i, BufferBuilder builder, Matrix4f matrix, float transition)
+    {
+        this.compute(particles.color, i * 4);
+    }
+
+    private void compute(float[] color, int offset)
     {
         if (this.color != null)
         {
-            this.color.compute(particle);
+            this.color.compute(color, offset);
         }
         else
         {
-            particle.r = particle.g = particle.b = particle.a = 1;
+            Arrays.fill(color, offset, offset + 4, 1F);
         }
     }
 
@@ -8,10 +8,10 @@ import mchorse.bbs_mod.math.molang.MolangParser;
 import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
 import mchorse.bbs_mod.math.molang.expressions.MolangValue;
 import mchorse.bbs_mod.particles.ParticleParser;
-import mchorse.bbs_mod.particles.emitter.Particle;
 import mchorse.bbs_mod.utils.MathUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -49,19 +49,19 @@ public class Gradient extends Tint
     }
 
     @Override
-    public void compute(Particle particle)
+    public void compute(float[] color, int offset)
     {
         int length = this.stops.size();
 
         if (length == 0)
         {
-            particle.r = particle.g = particle.b = particle.a = 1;
+            Arrays.fill(color, offset, offset + 4, 1F);
 
             return;
         }
         else if (length == 1)
         {
-            this.stops.get(0).color.compute(particle);
+            this.stops.get(0).color.compute(color, offset);
 
             return;
         }
@@ -74,7 +74,7 @@ public class Gradient extends Tint
 
         if (factor < prev.stop)
         {
-            prev.color.compute(particle);
+            prev.color.compute(color, offset);
 
             return;
         }
@@ -85,8 +85,8 @@ public class Gradient extends Tint
 
             if (stop.stop > factor)
             {
-                prev.color.compute(particle);
-                stop.color.lerp(particle, (float) (factor - prev.stop) / (stop.stop - prev.stop));
+                prev.color.compute(color, offset);
+                stop.color.lerp(color, offset, (float) (factor - prev.stop) / (stop.stop - prev.stop));
 
                 return;
             }
@@ -94,7 +94,7 @@ public class Gradient extends Tint
             prev = stop;
         }
 
-        prev.color.compute(particle);
+        prev.color.compute(color, offset);
     }
 
     @Override
@@ -5,7 +5,6 @@ import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.StringType;
 import mchorse.bbs_mod.math.molang.MolangParser;
 import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
-import mchorse.bbs_mod.particles.emitter.Particle;
 import mchorse.bbs_mod.utils.StringUtils;
 import mchorse.bbs_mod.utils.interps.Lerps;
 
@@ -42,12 +41,12 @@ public class Solid extends Tint
     }
 
     @Override
-    public void compute(Particle particle)
+    public void compute(float[] color, int offset)
     {
-        particle.r = (float) this.r.get();
-        particle.g = (float) this.g.get();
-        particle.b = (float) this.b.get();
-        particle.a = (float) this.a.get();
+        color[offset] = (float) this.r.get();
+        color[offset + 1] = (float) this.g.get();
+        color[offset + 2] = (float) this.b.get();
+        color[offset + 3] = (float) this.a.get();
     }
 
     @Override
@@ -89,11 +88,11 @@ public class Solid extends Tint
         return new StringType(hex);
     }
 
-    public void lerp(Particle particle, float factor)
+    public void lerp(float[] color, int offset, float factor)
     {
-        particle.r = Lerps.lerp(particle.r, (float) this.r.get(), factor);
-        particle.g = Lerps.lerp(particle.g, (float) this.g.get(), factor);
-        particle.b = Lerps.lerp(particle.b, (float) this.b.get(), factor);
-        particle.a = Lerps.lerp(particle.a, (float) this.a.get(), factor);
+        color[offset] = Lerps.lerp(color[offset], (float) this.r.get(), factor);
+        color[offset + 1] = Lerps.lerp(color[offset + 1], (float) this.g.get(), factor);
+        color[offset + 2] = Lerps.lerp(color[offset + 2], (float) this.b.get(), factor);
+        color[offset + 3] = Lerps.lerp(color[offset + 3], (float) this.a.get(), factor);
     }
 }
\ No newline at end of file
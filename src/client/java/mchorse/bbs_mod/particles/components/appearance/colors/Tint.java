@@ -8,7 +8,6 @@ import mchorse.bbs_mod.math.molang.MolangException;
 import mchorse.bbs_mod.math.molang.MolangParser;
 import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
 import mchorse.bbs_mod.math.molang.expressions.MolangValue;
-import mchorse.bbs_mod.particles.emitter.Particle;
 import mchorse.bbs_mod.utils.colors.Color;
 import mchorse.bbs_mod.utils.colors.Colors;
 
@@ -118,7 +117,10 @@ public abstract class Tint
         return new Gradient(colorStops, expression, equal);
     }
 
-    public abstract void compute(Particle particle);
+    /**
+     * Compute the color into given array (as RGBA starting at given offset)
+     */
+    public abstract void compute(float[] color, int offset);
 
     public abstract BaseType toData();
 
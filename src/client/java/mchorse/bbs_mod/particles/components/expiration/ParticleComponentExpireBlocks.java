@@ -37,6 +37,12 @@ public abstract class ParticleComponentExpireBlocks extends ParticleComponentBas
         return super.fromData(data, parser);
     }
 
+    @Override
+    public boolean isAccessingWorld()
+    {
+        return true;
+    }
+
     public BlockState getBlock(ParticleEmitter emitter, Particle particle)
     {
         if (emitter.world == null)
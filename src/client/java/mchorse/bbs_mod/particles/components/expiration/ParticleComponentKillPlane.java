@@ -9,6 +9,7 @@ import mchorse.bbs_mod.particles.components.IComponentParticleUpdate;
 import mchorse.bbs_mod.particles.components.ParticleComponentBase;
 import mchorse.bbs_mod.particles.emitter.Particle;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
+import mchorse.bbs_mod.particles.emitter.ParticleStorage;
 import org.joml.Vector3d;
 
 public class ParticleComponentKillPlane extends ParticleComponentBase implements IComponentParticleUpdate
@@ -83,6 +84,41 @@ public class ParticleComponentKillPlane extends ParticleComponentBase implements
         }
     }
 
+    @Override
+    public void update(ParticleEmitter emitter, ParticleStorage particles, int i)
+    {
+        if (particles.isDead(i))
+        {
+            return;
+        }
+
+        int i3 = i * 3;
+        double x = particles.position[i3];
+        double y = particles.position[i3 + 1];
+        double z = particles.position[i3 + 2];
+        double prevX = particles.prevPosition[i3];
+        double prevY = particles.prevPosition[i3 + 1];
+        double prevZ = particles.prevPosition[i3 + 2];
+
+        if (!particles.hasFlag(i, ParticleStorage.RELATIVE_POSITION))
+        {
+            x -= emitter.lastGlobal.x;
+            y -= emitter.lastGlobal.y;
+            z -= emitter.lastGlobal.z;
+            prevX -= emitter.lastGlobal.x;
+            prevY -= emitter.lastGlobal.y;
+            prevZ -= emitter.lastGlobal.z;
+        }
+
+        double prev = this.a * prevX + this.b * prevY + this.c * prevZ + this.d;
+        double now = this.a * x + this.b * y + this.c * z + this.d;
+
+        if ((prev > 0 && now < 0) || (prev < 0 && now > 0))
+        {
+            particles.setDead(i);
+        }
+    }
+
     @Override
     public int getSortingIndex()
     {
@@ -10,6 +10,7 @@ import mchorse.bbs_mod.particles.components.IComponentParticleUpdate;
 import mchorse.bbs_mod.particles.components.ParticleComponentBase;
 import mchorse.bbs_mod.particles.emitter.Particle;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
+import mchorse.bbs_mod.particles.emitter.ParticleStorage;
 
 public class ParticleComponentParticleLifetime extends ParticleComponentBase implements IComponentParticleInitialize, IComponentParticleUpdate
 {
@@ -62,6 +63,15 @@ public class ParticleComponentParticleLifetime extends ParticleComponentBase imp
         }
     }
 
+    @Override
+    public void update(ParticleEmitter emitter, ParticleStorage particles, int i)
+    {
+        if (!this.max && this.expression.get() != 0)
+        {
+            particles.setDead(i);
+        }
+    }
+
     @Override
     public void apply(ParticleEmitter emitter, Particle particle)
     {
@@ -67,6 +67,12 @@ public class ParticleComponentMotionCollision extends ParticleComponentBase impl
         return super.fromData(map, parser);
     }
 
+    @Override
+    public boolean isAccessingWorld()
+    {
+        return true;
+    }
+
     @Override
     public void update(ParticleEmitter emitter, Particle particle)
     {
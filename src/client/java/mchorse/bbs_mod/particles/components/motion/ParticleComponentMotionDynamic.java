@@ -10,6 +10,7 @@ import mchorse.bbs_mod.particles.components.IComponentParticleUpdate;
 import mchorse.bbs_mod.particles.components.ParticleComponentBase;
 import mchorse.bbs_mod.particles.emitter.Particle;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
+import mchorse.bbs_mod.particles.emitter.ParticleStorage;
 
 public class ParticleComponentMotionDynamic extends ParticleComponentMotion implements IComponentParticleUpdate
 {
@@ -61,4 +62,18 @@ public class ParticleComponentMotionDynamic extends ParticleComponentMotion impl
         particle.rotationAcceleration += (float) this.rotationAcceleration.get() / 20F;
         particle.rotationDrag = (float) this.rotationDrag.get();
     }
+
+    @Override
+    public void update(ParticleEmitter emitter, ParticleStorage particles, int i)
+    {
+        int i3 = i * 3;
+
+        particles.acceleration[i3] += (float) this.motionAcceleration[0].get();
+        particles.acceleration[i3 + 1] += (float) this.motionAcceleration[1].get();
+        particles.acceleration[i3 + 2] += (float) this.motionAcceleration[2].get();
+        particles.drag[i] = (float) this.motionDrag.get();
+
+        particles.rotationAcceleration[i] += (float) this.rotationAcceleration.get() / 20F;
+        particles.rotationDrag[i] = (float) this.rotationDrag.get();
+    }
 }
\ No newline at end of file
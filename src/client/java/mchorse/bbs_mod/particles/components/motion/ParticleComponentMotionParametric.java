@@ -11,6 +11,7 @@ import mchorse.bbs_mod.particles.components.IComponentParticleUpdate;
 import mchorse.bbs_mod.particles.components.ParticleComponentBase;
 import mchorse.bbs_mod.particles.emitter.Particle;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
+import mchorse.bbs_mod.particles.emitter.ParticleStorage;
 import org.joml.Vector3f;
 
 public class ParticleComponentMotionParametric extends ParticleComponentMotion implements IComponentParticleInitialize, IComponentParticleUpdate
@@ -18,6 +19,8 @@ public class ParticleComponentMotionParametric extends ParticleComponentMotion i
     public MolangExpression[] position = {MolangParser.ZERO, MolangParser.ZERO, MolangParser.ZERO};
     public MolangExpression rotation = MolangParser.ZERO;
 
+    private Vector3f vector = new Vector3f();
+
     @Override
     protected void toData(MapType data)
     {
@@ -79,6 +82,19 @@ public class ParticleComponentMotionParametric extends ParticleComponentMotion i
         particle.rotation = (float) this.rotation.get();
     }
 
+    @Override
+    public void update(ParticleEmitter emitter, ParticleStorage particles, int i)
+    {
+        int i3 = i * 3;
+        Vector3f position = this.vector.set((float) this.position[0].get(), (float) this.position[1].get(), (float) this.position[2].get());
+
+        particles.transform(i, position);
+        particles.position[i3] = particles.initialPosition[i3] + position.x;
+        particles.position[i3 + 1] = particles.initialPosition[i3 + 1] + position.y;
+        particles.position[i3 + 2] = particles.initialPosition[i3 + 2] + position.z;
+        particles.rotation[i] = (float) this.rotation.get();
+    }
+
     @Override
     public int getSortingIndex()
     {
@@ -1,27 +1,29 @@
 package mchorse.bbs_mod.particles.emitter;
 
-import mchorse.bbs_mod.utils.joml.Vectors;
 import org.joml.Matrix3f;
 import org.joml.Vector3d;
 import org.joml.Vector3f;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/**
+ * Particle
+ *
+ * A view of a single particle from {@link ParticleStorage}, which is used
+ * by components that don't work with the storage directly.
+ */
 public class Particle
 {
     /* Randoms */
-    public float random1 = (float) Math.random();
-    public float random2 = (float) Math.random();
-    public float random3 = (float) Math.random();
-    public float random4 = (float) Math.random();
+    public float random1;
+    public float random2;
+    public float random3;
+    public float random4;
 
     /* States */
-    public final int index;
-    public final float offset;
+    public int index;
+    public float offset;
     public int age;
     public int lifetime;
-    private boolean dead;
+    boolean dead;
     public boolean relativePosition;
     public boolean relativeRotation;
     public boolean relativeVelocity;
@@ -42,7 +44,7 @@ public class Particle
     public Vector3d initialPosition = new Vector3d();
     public Vector3d prevPosition = new Vector3d();
     public Matrix3f matrix = new Matrix3f();
-    private boolean matrixSet;
+    boolean matrixSet;
 
     public Vector3f speed = new Vector3f();
     public Vector3f acceleration = new Vector3f();
@@ -57,17 +59,7 @@ public class Particle
     public float a = 1;
 
     private Vector3d global = new Vector3d();
-
-    public Map<String, Double> localValues = new HashMap<>();
-
-    public Particle(int index, float offset)
-    {
-        this.index = index;
-        this.offset = offset;
-
-        this.speed.set((float) Math.random() - 0.5F, (float) Math.random() - 0.5F, (float) Math.random() - 0.5F);
-        this.speed.normalize();
-    }
+    private Vector3f temp = new Vector3f();
 
     public void setDead()
     {
@@ -97,7 +89,7 @@ public class Particle
 
         if (this.relativePosition && this.relativeRotation)
         {
-            Vector3f v = new Vector3f((float) px, (float) py, (float) pz);
+            Vector3f v = this.temp.set((float) px, (float) py, (float) pz);
             emitter.rotation.transform(v);
 
             px = v.x;
@@ -114,72 +106,6 @@ public class Particle
         return this.global;
     }
 
-    public void update(ParticleEmitter emitter)
-    {
-        this.prevRotation = this.rotation;
-        this.prevPosition.set(this.position);
-
-        this.setupMatrix(emitter);
-
-        if (!this.manual)
-        {
-            float rotationAcceleration = this.rotationAcceleration / 20F -this.rotationDrag * this.rotationVelocity;
-
-            this.rotationVelocity += rotationAcceleration / 20F;
-            this.rotation = this.initialRotation + this.rotationVelocity * this.age;
-
-            /* Position */
-            Vector3f vec = new Vector3f(this.speed);
-            vec.mul(-(this.drag + this.dragFactor));
-
-            this.acceleration.add(vec);
-            this.acceleration.div(20F);
-
-            if (this.relativeVelocity)
-            {
-                if (this.age == 0)
-                {
-                    this.matrix.transform(this.speed);
-                }
-
-                this.speed.add(this.acceleration);
-
-                vec.set(this.speed);
-
-                vec.x *= this.accelerationFactor.x;
-                vec.y *= this.accelerationFactor.y;
-                vec.z *= this.accelerationFactor.z;
-            }
-            else
-            {
-                this.speed.add(this.acceleration);
-
-                vec.set(this.speed);
-                vec.x *= this.accelerationFactor.x;
-                vec.y *= this.accelerationFactor.y;
-                vec.z *= this.accelerationFactor.z;
-
-                this.matrix.transform(vec);
-            }
-
-            if (this.age == 0)
-            {
-                vec.mul(1F + this.offset);
-            }
-
-            this.position.x += vec.x / 20F;
-            this.position.y += vec.y / 20F;
-            this.position.z += vec.z / 20F;
-        }
-
-        if (this.lifetime >= 0 && this.age >= this.lifetime)
-        {
-            this.setDead();
-        }
-
-        this.age += 1;
-    }
-
     public void setupMatrix(ParticleEmitter emitter)
     {
         if (this.relativePosition)
@@ -205,7 +131,7 @@ public class Particle
         }
         else if (this.textureScale && !this.matrixSet)
         {
-            this.matrix.identity().scale(emitter.rotation.getRow(0, Vectors.TEMP_3F).length());
+            this.matrix.identity().scale(emitter.rotation.getRow(0, this.temp).length());
             this.matrixSet = true;
         }
     }
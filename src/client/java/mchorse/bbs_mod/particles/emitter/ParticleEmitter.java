@@ -30,9 +30,7 @@ import org.joml.Matrix4f;
 import org.joml.Vector3d;
 import org.joml.Vector3f;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -40,7 +38,8 @@ import java.util.function.Supplier;
 public class ParticleEmitter
 {
     public ParticleScheme scheme;
-    public List<Particle> particles = new ArrayList<>();
+    public ParticleStorage particles = new ParticleStorage();
+
     public Map<String, IExpression> variables;
 
     public Link texture;
@@ -49,11 +48,12 @@ public class ParticleEmitter
     public boolean lit;
 
     public boolean running = true;
-    private Particle uiParticle;
+    private ParticleStorage uiParticle = new ParticleStorage();
 
     /* Intermediate values */
     public Vector3d lastGlobal = new Vector3d();
     public Matrix3f rotation = new Matrix3f();
+    private Vector3f temp = new Vector3f();
 
     /* Runtime properties */
     public float spawnRemainder;
@@ -190,20 +190,24 @@ public class ParticleEmitter
         this.varEmitterUser6 = this.scheme.parser.variables.get("variable.emitter_user_6");
     }
 
-    public void setParticleVariables(Particle particle, float transition)
+    public void setParticleVariables(ParticleStorage particles, int i, float transition)
     {
-        this.scheme.particle = particle;
-
-        if (this.varIndex != null) this.varIndex.set(particle.index);
-        if (this.varAge != null) this.varAge.set(particle.getAge(transition));
-        if (this.varLifetime != null) this.varLifetime.set(particle.lifetime / 20.0);
-        if (this.varRandom1 != null) this.varRandom1.set(particle.random1);
-        if (this.varRandom2 != null) this.varRandom2.set(particle.random2);
-        if (this.varRandom3 != null) this.varRandom3.set(particle.random3);
-        if (this.varRandom4 != null) this.varRandom4.set(particle.random4);
-        if (this.varPositionX != null) this.varPositionX.set(Lerps.lerp(particle.prevPosition.x, particle.position.x, transition));
-        if (this.varPositionY != null) this.varPositionY.set(Lerps.lerp(particle.prevPosition.y, particle.position.y, transition));
-        if (this.varPositionZ != null) this.varPositionZ.set(Lerps.lerp(particle.prevPosition.z, particle.position.z, transition));
+        this.scheme.particles = particles;
+        this.scheme.particle = i;
+
+        int i3 = i * 3;
+        int i4 = i * 4;
+
+        if (this.varIndex != null) this.varIndex.set(particles.index[i]);
+        if (this.varAge != null) this.varAge.set(particles.getAge(i, transition));
+        if (this.varLifetime != null) this.varLifetime.set(particles.lifetime[i] / 20.0);
+        if (this.varRandom1 != null) this.varRandom1.set(particles.random[i4]);
+        if (this.varRandom2 != null) this.varRandom2.set(particles.random[i4 + 1]);
+        if (this.varRandom3 != null) this.varRandom3.set(particles.random[i4 + 2]);
+        if (this.varRandom4 != null) this.varRandom4.set(particles.random[i4 + 3]);
+        if (this.varPositionX != null) this.varPositionX.set(Lerps.lerp(particles.prevPosition[i3], particles.position[i3], transition));
+        if (this.varPositionY != null) this.varPositionY.set(Lerps.lerp(particles.prevPosition[i3 + 1], particles.position[i3 + 1], transition));
+        if (this.varPositionZ != null) this.varPositionZ.set(Lerps.lerp(particles.prevPosition[i3 + 2], particles.position[i3 + 2], transition));
 
         this.scheme.updateCurves();
     }
@@ -321,21 +325,25 @@ public class ParticleEmitter
     }
 
     /**
-     * Update all particles
+     * Update all particles, dead particles are removed by moving the last
+     * particle into their slot (which then gets updated in the same pass)
      */
     private void updateParticles()
     {
-        Iterator<Particle> it = this.particles.iterator();
+        ParticleStorage particles = this.particles;
+        int i = 0;
 
-        while (it.hasNext())
+        while (i < particles.size())
         {
-            Particle particle = it.next();
-
-            this.updateParticle(particle);
+            this.updateParticle(particles, i);
 
-            if (particle.isDead())
+            if (particles.isDead(i))
+            {
+                particles.remove(i);
+            }
+            else
             {
-                it.remove();
+                i += 1;
             }
         }
     }
@@ -343,29 +351,25 @@ public class ParticleEmitter
     /**
      * Update a single particle
      */
-    private void updateParticle(Particle particle)
+    private void updateParticle(ParticleStorage particles, int i)
     {
-        particle.update(this);
+        particles.update(i, this);
 
-        this.setParticleVariables(particle, 0);
+        this.setParticleVariables(particles, i, 0);
 
         for (IComponentParticleUpdate component : this.scheme.particleUpdates)
         {
-            component.update(this, particle);
+            component.update(this, particles, i);
         }
     }
 
-    public Particle getParticleByIndex(int index)
+    /**
+     * Get the slot of a particle with given index in {@link #particles},
+     * or -1 if there is no such particle
+     */
+    public int getParticleByIndex(int index)
     {
-        for (Particle particle : this.particles)
-        {
-            if (particle.index == index)
-            {
-                return particle;
-            }
-        }
-
-        return null;
+        return this.particles.find(index);
     }
 
     /**
@@ -378,47 +382,61 @@ public class ParticleEmitter
             return;
         }
 
-        this.particles.add(this.createParticle(offset));
+        this.createParticle(this.particles, offset);
     }
 
     /**
-     * Create a new particle
+     * Create a new particle in given storage, and return its slot
      */
-    private Particle createParticle(float offset)
+    private int createParticle(ParticleStorage particles, float offset)
     {
-        Particle particle = new Particle(this.index, offset);
+        int i = particles.add(this.index, offset);
+        int i3 = i * 3;
 
         this.index += 1;
 
-        this.setParticleVariables(particle, offset);
-        particle.setupMatrix(this);
+        this.setParticleVariables(particles, i, offset);
+        particles.setupMatrix(i, this);
 
-        for (IComponentParticleInitialize component : this.scheme.particleInitializes)
+        if (!this.scheme.particleInitializes.isEmpty())
         {
-            component.apply(this, particle);
+            Particle particle = particles.view(i);
+
+            for (IComponentParticleInitialize component : this.scheme.particleInitializes)
+            {
+                component.apply(this, particle);
+            }
+
+            particles.store(particle, i);
         }
 
-        if (!particle.relativeRotation)
+        double[] position = particles.position;
+
+        if (!particles.hasFlag(i, ParticleStorage.RELATIVE_ROTATION))
         {
-            Vector3f vec = new Vector3f().set(particle.position);
+            Vector3f vec = this.temp.set((float) position[i3], (float) position[i3 + 1], (float) position[i3 + 2]);
 
-            particle.matrix.transform(vec);
-            particle.position.x = vec.x;
-            particle.position.y = vec.y;
-            particle.position.z = vec.z;
+            particles.transform(i, vec);
+            position[i3] = vec.x;
+            position[i3 + 1] = vec.y;
+            position[i3 + 2] = vec.z;
         }
 
-        if (!(particle.relativePosition && particle.relativeRotation))
+        if (!(particles.hasFlag(i, ParticleStorage.RELATIVE_POSITION) && particles.hasFlag(i, ParticleStorage.RELATIVE_ROTATION)))
         {
-            particle.position.add(this.lastGlobal);
-            particle.initialPosition.add(this.lastGlobal);
+            position[i3] += this.lastGlobal.x;
+            position[i3 + 1] += this.lastGlobal.y;
+            position[i3 + 2] += this.lastGlobal.z;
+            particles.initialPosition[i3] += this.lastGlobal.x;
+            particles.initialPosition[i3 + 1] += this.lastGlobal.y;
+            particles.initialPosition[i3 + 2] += this.lastGlobal.z;
         }
 
-        particle.prevPosition.set(particle.position);
-        particle.rotation = particle.initialRotation;
-        particle.prevRotation = particle.rotation;
+        System.arraycopy(position, i3, particles.prevPosition, i3, 3);
+        particles.rotation[i] = particles.initialRotation[i];
+        particles.prevRotation[i] = particles.rotation[i];
 
-        return particle;
+        return i;
     }
 
     /**
@@ -437,15 +455,16 @@ public class ParticleEmitter
         {
             this.bindTexture();
 
-            if (this.uiParticle == null || this.uiParticle.isDead())
+            if (this.uiParticle.isEmpty() || this.uiParticle.isDead(0))
             {
-                this.uiParticle = this.createParticle(0F);
+                this.uiParticle.clear();
+                this.createParticle(this.uiParticle, 0F);
             }
 
             this.rotation.identity();
-            this.uiParticle.update(this);
+            this.uiParticle.update(0, this);
             this.setEmitterVariables(transition);
-            this.setParticleVariables(this.uiParticle, transition);
+            this.setParticleVariables(this.uiParticle, 0, transition);
 
             Matrix4f matrix = stack.peek().getPositionMatrix();
             BufferBuilder builder = Tessellator.getInstance().getBuffer();
@@ -454,7 +473,7 @@ public class ParticleEmitter
 
             for (IComponentParticleRender render : list)
             {
-                render.renderUI(this.uiParticle, builder, matrix, transition);
+                render.renderUI(this.uiParticle, 0, builder, matrix, transition);
             }
 
             RenderSystem.setShader(GameRenderer::getPositionTexColorProgram);
@@ -489,14 +508,14 @@ public class ParticleEmitter
             this.bindTexture();
             builder.begin(VertexFormat.DrawMode.TRIANGLES, format);
 
-            for (Particle particle : this.particles)
+            for (int i = 0; i < this.particles.size(); i++)
             {
                 this.setEmitterVariables(transition);
-                this.setParticleVariables(particle, transition);
+                this.setParticleVariables(this.particles, i, transition);
 
                 for (IComponentParticleRender component : renders)
                 {
-                    component.render(this, format, particle, builder, matrix, overlay, transition);
+                    component.render(this, format, this.particles, i, builder, matrix, overlay, transition);
                 }
             }
 
@@ -0,0 +1,156 @@
+package mchorse.bbs_mod.particles.emitter;
+
+import mchorse.bbs_mod.BBSSettings;
+import mchorse.bbs_mod.particles.ParticleScheme;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Particle emitter updater
+ *
+ * Emitters' ticks are collected during the client tick, and then they get
+ * updated all at once by {@link #flush()}, before anything renders them.
+ *
+ * Molang variables (and the runtime state of components) live in emitter's
+ * {@link ParticleScheme}, so emitters are grouped by their scheme: every
+ * group is updated serially on one worker thread, while different groups
+ * are updated in parallel. Groups whose components read the world are
+ * updated on the calling (client) thread.
+ */
+public class ParticleEmitterUpdater
+{
+    /**
+     * Minimum amount of particles in the batch for the update to be done
+     * in parallel, for small batches thread hand-off costs more than it saves
+     */
+    private static final int MIN_PARALLEL_PARTICLES = 256;
+
+    private static final List<ParticleEmitter> queue = new ArrayList<>();
+    private static final Map<ParticleScheme, List<ParticleEmitter>> groups = new IdentityHashMap<>();
+    private static final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+    private static ForkJoinPool pool;
+
+    /**
+     * Schedule an update of given emitter. If multithreading is disabled,
+     * the emitter is updated immediately.
+     */
+    public static void schedule(ParticleEmitter emitter)
+    {
+        if (!BBSSettings.particlesMultiThreaded.get())
+        {
+            emitter.update();
+
+            return;
+        }
+
+        queue.add(emitter);
+    }
+
+    /**
+     * Update all scheduled emitters, and wait until all of them are updated
+     */
+    public static void flush()
+    {
+        if (queue.isEmpty())
+        {
+            return;
+        }
+
+        int particles = 0;
+
+        for (ParticleEmitter emitter : queue)
+        {
+            if (emitter.scheme != null)
+            {
+                groups.computeIfAbsent(emitter.scheme, (k) -> new ArrayList<>()).add(emitter);
+                particles += emitter.particles.size();
+            }
+        }
+
+        queue.clear();
+
+        if (groups.size() < 2 || particles < MIN_PARALLEL_PARTICLES)
+        {
+            for (List<ParticleEmitter> group : groups.values())
+            {
+                update(group);
+            }
+
+            groups.clear();
+
+            return;
+        }
+
+        ForkJoinPool pool = getPool();
+        List<List<ParticleEmitter>> local = new ArrayList<>();
+
+        for (Map.Entry<ParticleScheme, List<ParticleEmitter>> entry : groups.entrySet())
+        {
+            List<ParticleEmitter> group = entry.getValue();
+
+            if (entry.getKey().isAccessingWorld())
+            {
+                local.add(group);
+            }
+            else
+            {
+                tasks.add(pool.submit(() -> update(group)));
+            }
+        }
+
+        for (List<ParticleEmitter> group : local)
+        {
+            update(group);
+        }
+
+        for (ForkJoinTask<?> task : tasks)
+        {
+            try
+            {
+                task.join();
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+            }
+        }
+
+        tasks.clear();
+        groups.clear();
+    }
+
+    private static void update(List<ParticleEmitter> group)
+    {
+        for (ParticleEmitter emitter : group)
+        {
+            emitter.update();
+        }
+    }
+
+    private static ForkJoinPool getPool()
+    {
+        if (pool == null)
+        {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+            pool = new ForkJoinPool(threads, (p) ->
+            {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+
+                thread.setName("BBS particles " + thread.getPoolIndex());
+                thread.setDaemon(true);
+
+                return thread;
+            }, null, false);
+        }
+
+        return pool;
+    }
+}
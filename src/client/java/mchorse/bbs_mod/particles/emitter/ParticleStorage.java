@@ -0,0 +1,633 @@
+package mchorse.bbs_mod.particles.emitter;
+
+import org.joml.Matrix3f;
+import org.joml.Vector3d;
+import org.joml.Vector3f;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Particle storage
+ *
+ * Structure-of-arrays storage of emitter's particles: every property of
+ * a particle is kept in a primitive array (vectors take 3 consecutive
+ * elements, colours take 4, and matrices take 9 in column-major order),
+ * and particle with slot i is found at i-th position (i * 3 for vectors,
+ * etc.) of every array. Dead particles are removed by moving the last
+ * particle into their slot, so slots (and the drawing order) of particles
+ * aren't stable between ticks, use {@link #find(int)} to look up particles
+ * by their index.
+ *
+ * Components that don't work with the storage directly get a
+ * {@link Particle} view which is filled by {@link #view(int)}, and written
+ * back by {@link #store(Particle, int)}.
+ */
+public class ParticleStorage
+{
+    public static final int RELATIVE_POSITION = 1;
+    public static final int RELATIVE_ROTATION = 1 << 1;
+    public static final int RELATIVE_VELOCITY = 1 << 2;
+    public static final int TEXTURE_SCALE = 1 << 3;
+    public static final int MANUAL = 1 << 4;
+    public static final int DEAD = 1 << 5;
+    public static final int MATRIX_SET = 1 << 6;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int size;
+    private int capacity;
+
+    /* States */
+    public int[] index;
+    public float[] offset;
+    public int[] age;
+    public int[] lifetime;
+    public byte[] flags;
+    public float[] random;
+
+    /* Rotation */
+    public float[] rotation;
+    public float[] initialRotation;
+    public float[] prevRotation;
+    public float[] rotationVelocity;
+    public float[] rotationAcceleration;
+    public float[] rotationDrag;
+
+    /* Position */
+    public double[] position;
+    public double[] initialPosition;
+    public double[] prevPosition;
+    public float[] matrix;
+
+    /* Velocity */
+    public float[] speed;
+    public float[] acceleration;
+    public float[] accelerationFactor;
+    public float[] drag;
+    public float[] dragFactor;
+
+    /* Color */
+    public float[] color;
+
+    /**
+     * Particles' Molang variables, every variable has a column with values
+     * of all particles, which is created only when the variable gets set
+     * for the first time
+     */
+    private Map<String, double[]> variables = new HashMap<>();
+
+    private Particle view = new Particle();
+    private Vector3d global = new Vector3d();
+    private Vector3f temp = new Vector3f();
+
+    public ParticleStorage()
+    {
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    public void clear()
+    {
+        this.size = 0;
+    }
+
+    /**
+     * Add a new particle and return its slot
+     */
+    public int add(int index, float offset)
+    {
+        if (this.size == this.capacity)
+        {
+            this.allocate(this.capacity * 2);
+        }
+
+        int i = this.size;
+        int i3 = i * 3;
+        int i4 = i * 4;
+
+        this.size += 1;
+
+        this.index[i] = index;
+        this.offset[i] = offset;
+        this.age[i] = 0;
+        this.lifetime[i] = 0;
+        this.flags[i] = 0;
+
+        for (int j = 0; j < 4; j++)
+        {
+            this.random[i4 + j] = (float) Math.random();
+        }
+
+        this.rotation[i] = this.initialRotation[i] = this.prevRotation[i] = 0;
+        this.rotationVelocity[i] = this.rotationAcceleration[i] = this.rotationDrag[i] = 0;
+
+        Arrays.fill(this.position, i3, i3 + 3, 0D);
+        Arrays.fill(this.initialPosition, i3, i3 + 3, 0D);
+        Arrays.fill(this.prevPosition, i3, i3 + 3, 0D);
+        this.setMatrix(i, 1, 0, 0, 0, 1, 0, 0, 0, 1);
+
+        Vector3f speed = this.temp.set((float) Math.random() - 0.5F, (float) Math.random() - 0.5F, (float) Math.random() - 0.5F).normalize();
+
+        this.speed[i3] = speed.x;
+        this.speed[i3 + 1] = speed.y;
+        this.speed[i3 + 2] = speed.z;
+        Arrays.fill(this.acceleration, i3, i3 + 3, 0F);
+        Arrays.fill(this.accelerationFactor, i3, i3 + 3, 1F);
+        this.drag[i] = this.dragFactor[i] = 0;
+
+        Arrays.fill(this.color, i4, i4 + 4, 1F);
+
+        for (double[] column : this.variables.values())
+        {
+            column[i] = 0D;
+        }
+
+        return i;
+    }
+
+    /**
+     * Remove particle at given slot by moving the last particle into it
+     */
+    public void remove(int i)
+    {
+        int last = this.size - 1;
+
+        this.size = last;
+
+        if (i == last)
+        {
+            return;
+        }
+
+        this.index[i] = this.index[last];
+        this.offset[i] = this.offset[last];
+        this.age[i] = this.age[last];
+        this.lifetime[i] = this.lifetime[last];
+        this.flags[i] = this.flags[last];
+        System.arraycopy(this.random, last * 4, this.random, i * 4, 4);
+
+        this.rotation[i] = this.rotation[last];
+        this.initialRotation[i] = this.initialRotation[last];
+        this.prevRotation[i] = this.prevRotation[last];
+        this.rotationVelocity[i] = this.rotationVelocity[last];
+        this.rotationAcceleration[i] = this.rotationAcceleration[last];
+        this.rotationDrag[i] = this.rotationDrag[last];
+
+        System.arraycopy(this.position, last * 3, this.position, i * 3, 3);
+        System.arraycopy(this.initialPosition, last * 3, this.initialPosition, i * 3, 3);
+        System.arraycopy(this.prevPosition, last * 3, this.prevPosition, i * 3, 3);
+        System.arraycopy(this.matrix, last * 9, this.matrix, i * 9, 9);
+
+        System.arraycopy(this.speed, last * 3, this.speed, i * 3, 3);
+        System.arraycopy(this.acceleration, last * 3, this.acceleration, i * 3, 3);
+        System.arraycopy(this.accelerationFactor, last * 3, this.accelerationFactor, i * 3, 3);
+        this.drag[i] = this.drag[last];
+        this.dragFactor[i] = this.dragFactor[last];
+
+        System.arraycopy(this.color, last * 4, this.color, i * 4, 4);
+
+        for (double[] column : this.variables.values())
+        {
+            column[i] = column[last];
+        }
+    }
+
+    /**
+     * Find the slot of a particle with given index, or -1 if there is no
+     * such particle
+     */
+    public int find(int index)
+    {
+        for (int i = 0; i < this.size; i++)
+        {
+            if (this.index[i] == index)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private void allocate(int capacity)
+    {
+        this.capacity = capacity;
+
+        this.index = this.index == null ? new int[capacity] : Arrays.copyOf(this.index, capacity);
+        this.offset = this.offset == null ? new float[capacity] : Arrays.copyOf(this.offset, capacity);
+        this.age = this.age == null ? new int[capacity] : Arrays.copyOf(this.age, capacity);
+        this.lifetime = this.lifetime == null ? new int[capacity] : Arrays.copyOf(this.lifetime, capacity);
+        this.flags = this.flags == null ? new byte[capacity] : Arrays.copyOf(this.flags, capacity);
+        this.random = this.random == null ? new float[capacity * 4] : Arrays.copyOf(this.random, capacity * 4);
+
+        this.rotation = this.rotation == null ? new float[capacity] : Arrays.copyOf(this.rotation, capacity);
+        this.initialRotation = this.initialRotation == null ? new float[capacity] : Arrays.copyOf(this.initialRotation, capacity);
+        this.prevRotation = this.prevRotation == null ? new float[capacity] : Arrays.copyOf(this.prevRotation, capacity);
+        this.rotationVelocity = this.rotationVelocity == null ? new float[capacity] : Arrays.copyOf(this.rotationVelocity, capacity);
+        this.rotationAcceleration = this.rotationAcceleration == null ? new float[capacity] : Arrays.copyOf(this.rotationAcceleration, capacity);
+        this.rotationDrag = this.rotationDrag == null ? new float[capacity] : Arrays.copyOf(this.rotationDrag, capacity);
+
+        this.position = this.position == null ? new double[capacity * 3] : Arrays.copyOf(this.position, capacity * 3);
+        this.initialPosition = this.initialPosition == null ? new double[capacity * 3] : Arrays.copyOf(this.initialPosition, capacity * 3);
+        this.prevPosition = this.prevPosition == null ? new double[capacity * 3] : Arrays.copyOf(this.prevPosition, capacity * 3);
+        this.matrix = this.matrix == null ? new float[capacity * 9] : Arrays.copyOf(this.matrix, capacity * 9);
+
+        this.speed = this.speed == null ? new float[capacity * 3] : Arrays.copyOf(this.speed, capacity * 3);
+        this.acceleration = this.acceleration == null ? new float[capacity * 3] : Arrays.copyOf(this.acceleration, capacity * 3);
+        this.accelerationFactor = this.accelerationFactor == null ? new float[capacity * 3] : Arrays.copyOf(this.accelerationFactor, capacity * 3);
+        this.drag = this.drag == null ? new float[capacity] : Arrays.copyOf(this.drag, capacity);
+        this.dragFactor = this.dragFactor == null ? new float[capacity] : Arrays.copyOf(this.dragFactor, capacity);
+
+        this.color = this.color == null ? new float[capacity * 4] : Arrays.copyOf(this.color, capacity * 4);
+
+        for (Map.Entry<String, double[]> entry : this.variables.entrySet())
+        {
+            entry.setValue(Arrays.copyOf(entry.getValue(), capacity));
+        }
+    }
+
+    /* Flags */
+
+    public boolean hasFlag(int i, int flag)
+    {
+        return (this.flags[i] & flag) != 0;
+    }
+
+    public void setFlag(int i, int flag, boolean value)
+    {
+        this.flags[i] = (byte) (value ? this.flags[i] | flag : this.flags[i] & ~flag);
+    }
+
+    public boolean isDead(int i)
+    {
+        return this.hasFlag(i, DEAD);
+    }
+
+    public void setDead(int i)
+    {
+        this.setFlag(i, DEAD, true);
+    }
+
+    public double getAge(int i, float transition)
+    {
+        return (this.age[i] + transition) / 20D;
+    }
+
+    /* Molang variables */
+
+    public double getLocalValue(int i, String name)
+    {
+        double[] column = this.variables.get(name);
+
+        return column == null ? 0D : column[i];
+    }
+
+    public void setLocalValue(int i, String name, double value)
+    {
+        double[] column = this.variables.get(name);
+
+        if (column == null)
+        {
+            column = new double[this.capacity];
+
+            this.variables.put(name, column);
+        }
+
+        column[i] = value;
+    }
+
+    /* Particle view */
+
+    /**
+     * Fill the shared particle view with particle at given slot. Changes
+     * to the view should be written back with {@link #store(Particle, int)}
+     */
+    public Particle view(int i)
+    {
+        this.load(i, this.view);
+
+        return this.view;
+    }
+
+    public void load(int i, Particle particle)
+    {
+        int i3 = i * 3;
+        int i4 = i * 4;
+        int i9 = i * 9;
+
+        particle.random1 = this.random[i4];
+        particle.random2 = this.random[i4 + 1];
+        particle.random3 = this.random[i4 + 2];
+        particle.random4 = this.random[i4 + 3];
+
+        particle.index = this.index[i];
+        particle.offset = this.offset[i];
+        particle.age = this.age[i];
+        particle.lifetime = this.lifetime[i];
+        particle.dead = this.hasFlag(i, DEAD);
+        particle.relativePosition = this.hasFlag(i, RELATIVE_POSITION);
+        particle.relativeRotation = this.hasFlag(i, RELATIVE_ROTATION);
+        particle.relativeVelocity = this.hasFlag(i, RELATIVE_VELOCITY);
+        particle.textureScale = this.hasFlag(i, TEXTURE_SCALE);
+        particle.manual = this.hasFlag(i, MANUAL);
+
+        particle.rotation = this.rotation[i];
+        particle.initialRotation = this.initialRotation[i];
+        particle.prevRotation = this.prevRotation[i];
+        particle.rotationVelocity = this.rotationVelocity[i];
+        particle.rotationAcceleration = this.rotationAcceleration[i];
+        particle.rotationDrag = this.rotationDrag[i];
+
+        particle.position.set(this.position[i3], this.position[i3 + 1], this.position[i3 + 2]);
+        particle.initialPosition.set(this.initialPosition[i3], this.initialPosition[i3 + 1], this.initialPosition[i3 + 2]);
+        particle.prevPosition.set(this.prevPosition[i3], this.prevPosition[i3 + 1], this.prevPosition[i3 + 2]);
+        particle.matrix.set(
+            this.matrix[i9], this.matrix[i9 + 1], this.matrix[i9 + 2],
+            this.matrix[i9 + 3], this.matrix[i9 + 4], this.matrix[i9 + 5],
+            this.matrix[i9 + 6], this.matrix[i9 + 7], this.matrix[i9 + 8]
+        );
+        particle.matrixSet = this.hasFlag(i, MATRIX_SET);
+
+        particle.speed.set(this.speed[i3], this.speed[i3 + 1], this.speed[i3 + 2]);
+        particle.acceleration.set(this.acceleration[i3], this.acceleration[i3 + 1], this.acceleration[i3 + 2]);
+        particle.accelerationFactor.set(this.accelerationFactor[i3], this.accelerationFactor[i3 + 1], this.accelerationFactor[i3 + 2]);
+        particle.drag = this.drag[i];
+        particle.dragFactor = this.dragFactor[i];
+
+        particle.r = this.color[i4];
+        particle.g = this.color[i4 + 1];
+        particle.b = this.color[i4 + 2];
+        particle.a = this.color[i4 + 3];
+    }
+
+    public void store(Particle particle, int i)
+    {
+        int i3 = i * 3;
+        int i4 = i * 4;
+
+        this.random[i4] = particle.random1;
+        this.random[i4 + 1] = particle.random2;
+        this.random[i4 + 2] = particle.random3;
+        this.random[i4 + 3] = particle.random4;
+
+        this.index[i] = particle.index;
+        this.offset[i] = particle.offset;
+        this.age[i] = particle.age;
+        this.lifetime[i] = particle.lifetime;
+        this.setFlag(i, DEAD, particle.dead);
+        this.setFlag(i, RELATIVE_POSITION, particle.relativePosition);
+        this.setFlag(i, RELATIVE_ROTATION, particle.relativeRotation);
+        this.setFlag(i, RELATIVE_VELOCITY, particle.relativeVelocity);
+        this.setFlag(i, TEXTURE_SCALE, particle.textureScale);
+        this.setFlag(i, MANUAL, particle.manual);
+
+        this.rotation[i] = particle.rotation;
+        this.initialRotation[i] = particle.initialRotation;
+        this.prevRotation[i] = particle.prevRotation;
+        this.rotationVelocity[i] = particle.rotationVelocity;
+        this.rotationAcceleration[i] = particle.rotationAcceleration;
+        this.rotationDrag[i] = particle.rotationDrag;
+
+        this.position[i3] = particle.position.x;
+        this.position[i3 + 1] = particle.position.y;
+        this.position[i3 + 2] = particle.position.z;
+        this.initialPosition[i3] = particle.initialPosition.x;
+        this.initialPosition[i3 + 1] = particle.initialPosition.y;
+        this.initialPosition[i3 + 2] = particle.initialPosition.z;
+        this.prevPosition[i3] = particle.prevPosition.x;
+        this.prevPosition[i3 + 1] = particle.prevPosition.y;
+        this.prevPosition[i3 + 2] = particle.prevPosition.z;
+        this.setMatrix(i, particle.matrix);
+        this.setFlag(i, MATRIX_SET, particle.matrixSet);
+
+        this.speed[i3] = particle.speed.x;
+        this.speed[i3 + 1] = particle.speed.y;
+        this.speed[i3 + 2] = particle.speed.z;
+        this.acceleration[i3] = particle.acceleration.x;
+        this.acceleration[i3 + 1] = particle.acceleration.y;
+        this.acceleration[i3 + 2] = particle.acceleration.z;
+        this.accelerationFactor[i3] = particle.accelerationFactor.x;
+        this.accelerationFactor[i3 + 1] = particle.accelerationFactor.y;
+        this.accelerationFactor[i3 + 2] = particle.accelerationFactor.z;
+        this.drag[i] = particle.drag;
+        this.dragFactor[i] = particle.dragFactor;
+
+        this.color[i4] = particle.r;
+        this.color[i4 + 1] = particle.g;
+        this.color[i4 + 2] = particle.b;
+        this.color[i4 + 3] = particle.a;
+    }
+
+    /**
+     * Replace the content of this storage with a single given particle
+     * (which will be at slot 0)
+     */
+    public int wrap(Particle particle)
+    {
+        this.clear();
+
+        int i = this.add(particle.index, particle.offset);
+
+        this.store(particle, i);
+
+        return i;
+    }
+
+    /* Matrix */
+
+    public void setMatrix(int i, Matrix3f m)
+    {
+        this.setMatrix(i, m.m00(), m.m01(), m.m02(), m.m10(), m.m11(), m.m12(), m.m20(), m.m21(), m.m22());
+    }
+
+    public void setMatrix(int i, float m00, float m01, float m02, float m10, float m11, float m12, float m20, float m21, float m22)
+    {
+        int i9 = i * 9;
+        float[] matrix = this.matrix;
+
+        matrix[i9] = m00;
+        matrix[i9 + 1] = m01;
+        matrix[i9 + 2] = m02;
+        matrix[i9 + 3] = m10;
+        matrix[i9 + 4] = m11;
+        matrix[i9 + 5] = m12;
+        matrix[i9 + 6] = m20;
+        matrix[i9 + 7] = m21;
+        matrix[i9 + 8] = m22;
+    }
+
+    /**
+     * Transform given vector by matrix of particle at given slot
+     */
+    public Vector3f transform(int i, Vector3f vector)
+    {
+        int i9 = i * 9;
+        float[] m = this.matrix;
+        float x = vector.x;
+        float y = vector.y;
+        float z = vector.z;
+
+        return vector.set(
+            m[i9] * x + m[i9 + 3] * y + m[i9 + 6] * z,
+            m[i9 + 1] * x + m[i9 + 4] * y + m[i9 + 7] * z,
+            m[i9 + 2] * x + m[i9 + 5] * y + m[i9 + 8] * z
+        );
+    }
+
+    /**
+     * Length of the first row of particle's matrix, i.e. its scale
+     */
+    public float getScale(int i)
+    {
+        int i9 = i * 9;
+        float x = this.matrix[i9];
+        float y = this.matrix[i9 + 3];
+        float z = this.matrix[i9 + 6];
+
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
+
+    /* Particle logic */
+
+    public Vector3d getGlobalPosition(int i, ParticleEmitter emitter)
+    {
+        int i3 = i * 3;
+        double px = this.position[i3];
+        double py = this.position[i3 + 1];
+        double pz = this.position[i3 + 2];
+
+        if (this.hasFlag(i, RELATIVE_POSITION) && this.hasFlag(i, RELATIVE_ROTATION))
+        {
+            Vector3f v = this.temp.set((float) px, (float) py, (float) pz);
+            emitter.rotation.transform(v);
+
+            px = v.x + emitter.lastGlobal.x;
+            py = v.y + emitter.lastGlobal.y;
+            pz = v.z + emitter.lastGlobal.z;
+        }
+
+        return this.global.set(px, py, pz);
+    }
+
+    public void update(int i, ParticleEmitter emitter)
+    {
+        int i3 = i * 3;
+
+        this.prevRotation[i] = this.rotation[i];
+        System.arraycopy(this.position, i3, this.prevPosition, i3, 3);
+
+        this.setupMatrix(i, emitter);
+
+        if (!this.hasFlag(i, MANUAL))
+        {
+            float rotationAcceleration = this.rotationAcceleration[i] / 20F - this.rotationDrag[i] * this.rotationVelocity[i];
+
+            this.rotationVelocity[i] += rotationAcceleration / 20F;
+            this.rotation[i] = this.initialRotation[i] + this.rotationVelocity[i] * this.age[i];
+
+            /* Position */
+            float[] speed = this.speed;
+            float[] acceleration = this.acceleration;
+            float[] factor = this.accelerationFactor;
+            float drag = -(this.drag[i] + this.dragFactor[i]);
+
+            for (int j = i3; j < i3 + 3; j++)
+            {
+                acceleration[j] = (acceleration[j] + speed[j] * drag) / 20F;
+            }
+
+            Vector3f vec = this.temp;
+
+            if (this.hasFlag(i, RELATIVE_VELOCITY))
+            {
+                if (this.age[i] == 0)
+                {
+                    this.transform(i, vec.set(speed[i3], speed[i3 + 1], speed[i3 + 2]));
+
+                    speed[i3] = vec.x;
+                    speed[i3 + 1] = vec.y;
+                    speed[i3 + 2] = vec.z;
+                }
+
+                for (int j = i3; j < i3 + 3; j++)
+                {
+                    speed[j] += acceleration[j];
+                }
+
+                vec.set(speed[i3] * factor[i3], speed[i3 + 1] * factor[i3 + 1], speed[i3 + 2] * factor[i3 + 2]);
+            }
+            else
+            {
+                for (int j = i3; j < i3 + 3; j++)
+                {
+                    speed[j] += acceleration[j];
+                }
+
+                vec.set(speed[i3] * factor[i3], speed[i3 + 1] * factor[i3 + 1], speed[i3 + 2] * factor[i3 + 2]);
+
+                this.transform(i, vec);
+            }
+
+            if (this.age[i] == 0)
+            {
+                vec.mul(1F + this.offset[i]);
+            }
+
+            this.position[i3] += vec.x / 20F;
+            this.position[i3 + 1] += vec.y / 20F;
+            this.position[i3 + 2] += vec.z / 20F;
+        }
+
+        if (this.lifetime[i] >= 0 && this.age[i] >= this.lifetime[i])
+        {
+            this.setDead(i);
+        }
+
+        this.age[i] += 1;
+    }
+
+    public void setupMatrix(int i, ParticleEmitter emitter)
+    {
+        boolean matrixSet = this.hasFlag(i, MATRIX_SET);
+
+        if (this.hasFlag(i, RELATIVE_POSITION))
+        {
+            if (this.hasFlag(i, RELATIVE_ROTATION))
+            {
+                this.setMatrix(i, 1, 0, 0, 0, 1, 0, 0, 0, 1);
+            }
+            else if (!matrixSet)
+            {
+                this.setMatrix(i, emitter.rotation);
+                this.setFlag(i, MATRIX_SET, true);
+            }
+        }
+        else if (this.hasFlag(i, RELATIVE_ROTATION))
+        {
+            this.setMatrix(i, emitter.rotation);
+        }
+        else if (this.hasFlag(i, RELATIVE_VELOCITY) && !matrixSet)
+        {
+            this.setMatrix(i, emitter.rotation);
+            this.setFlag(i, MATRIX_SET, true);
+        }
+        else if (this.hasFlag(i, TEXTURE_SCALE) && !matrixSet)
+        {
+            float scale = emitter.rotation.getRow(0, this.temp).length();
+
+            this.setMatrix(i, scale, 0, 0, 0, scale, 0, 0, 0, scale);
+            this.setFlag(i, MATRIX_SET, true);
+        }
+    }
+}
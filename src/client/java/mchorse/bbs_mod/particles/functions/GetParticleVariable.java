@@ -4,7 +4,7 @@ import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
 import mchorse.bbs_mod.math.functions.SNFunction;
 import mchorse.bbs_mod.particles.ParticleMolangParser;
-import mchorse.bbs_mod.particles.emitter.Particle;
+import mchorse.bbs_mod.particles.emitter.ParticleStorage;
 
 public class GetParticleVariable extends SNFunction
 {
@@ -26,22 +26,24 @@ public class GetParticleVariable extends SNFunction
     @Override
     public double doubleValue()
     {
-        if (this.builder instanceof ParticleMolangParser parser && parser.scheme.particle != null)
+        if (this.builder instanceof ParticleMolangParser parser && parser.scheme.particles != null)
         {
             String name = this.args[this.args.length > 1 ? 1 : 0].stringValue();
-            Particle particle = parser.scheme.particle;
+            ParticleStorage particles = parser.scheme.particles;
+            int particle = parser.scheme.particle;
 
             if (this.args.length > 1)
             {
+                 particles = parser.scheme.emitter.particles;
                  particle = parser.scheme.emitter.getParticleByIndex((int) this.args[0].doubleValue());
             }
 
-            if (particle == null)
+            if (particle < 0)
             {
                 return 0D;
             }
 
-            return particle.localValues.getOrDefault(name, 0D);
+            return particles.getLocalValue(particle, name);
         }
 
         return 0;
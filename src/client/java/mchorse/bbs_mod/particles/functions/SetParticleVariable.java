@@ -4,7 +4,7 @@ import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
 import mchorse.bbs_mod.math.functions.NNFunction;
 import mchorse.bbs_mod.particles.ParticleMolangParser;
-import mchorse.bbs_mod.particles.emitter.Particle;
+import mchorse.bbs_mod.particles.emitter.ParticleStorage;
 
 public class SetParticleVariable extends NNFunction
 {
@@ -26,25 +26,27 @@ public class SetParticleVariable extends NNFunction
     @Override
     public double doubleValue()
     {
-        if (this.builder instanceof ParticleMolangParser parser && parser.scheme.particle != null)
+        if (this.builder instanceof ParticleMolangParser parser && parser.scheme.particles != null)
         {
             int offset = this.args.length > 2 ? 1 : 0;
             String name = this.args[offset].stringValue();
             double value = this.args[offset + 1].doubleValue();
 
-            Particle particle = parser.scheme.particle;
+            ParticleStorage particles = parser.scheme.particles;
+            int particle = parser.scheme.particle;
 
             if (this.args.length > 2)
             {
+                particles = parser.scheme.emitter.particles;
                 particle = parser.scheme.emitter.getParticleByIndex((int) this.args[0].doubleValue());
             }
 
-            if (particle == null)
+            if (particle < 0)
             {
                 return 0D;
             }
 
-            particle.localValues.put(name, value);
+            particles.setLocalValue(particle, name, value);
 
             return value;
         }
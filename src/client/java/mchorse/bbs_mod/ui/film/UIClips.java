@@ -1532,6 +1532,8 @@ public class UIClips extends UIElement
         int h = LAYER_HEIGHT;
         int leftEdge = this.toGraphX(0);
 
+        batcher.begin();
+
         if (leftEdge > this.area.x)
         {
             batcher.box(this.area.x, this.area.y, Math.min(leftEdge, this.area.ex()), this.area.ey(), Colors.A75);
@@ -1606,6 +1608,7 @@ public class UIClips extends UIElement
         this.vertical.renderScrollbar(batcher);
 
         batcher.unclip(context);
+        batcher.end();
     }
 
     private Area getClipArea(Clip clip, Area area, int h)
@@ -1677,13 +1680,18 @@ public class UIClips extends UIElement
         start = MathUtils.clamp(start, 0, max);
         end = MathUtils.clamp(end, mult, max);
 
+        /* Markers are rendered before labels, so both of them could be
+         * batched together */
         for (int j = start; j <= end; j += mult)
         {
             int xx = this.toGraphX(j);
-            String value = TimeUtils.formatTime(j);
 
             context.batcher.box(xx, y, xx + 1, y + h, Colors.setA(Colors.WHITE, 0.2F));
-            context.batcher.textShadow(value, xx + 3, this.area.y + 4, Colors.WHITE);
+        }
+
+        for (int j = start; j <= end; j += mult)
+        {
+            context.batcher.textShadow(TimeUtils.formatTime(j), this.toGraphX(j) + 3, this.area.y + 4, Colors.WHITE);
         }
     }
 
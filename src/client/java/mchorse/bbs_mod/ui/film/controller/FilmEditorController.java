@@ -83,7 +83,7 @@ public class FilmEditorController extends BaseFilmController
 
         if (entity == this.controller.getControlled() && this.controller.isRecording() && this.controller.panel.getRunner().isRunning())
         {
-            replay.keyframes.record(this.controller.panel.getCursor(), entity, groups);
+            replay.keyframes.record(this.controller.panel.getCursor(), entity, groups, this.controller.getRecordingReducer());
         }
 
         ticks = this.getTick() + (this.controller.panel.getRunner().isRunning() ? 1 : 0);
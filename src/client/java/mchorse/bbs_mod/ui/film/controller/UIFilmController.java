@@ -56,6 +56,7 @@ import mchorse.bbs_mod.utils.RayTracing;
 import mchorse.bbs_mod.utils.colors.Colors;
 import mchorse.bbs_mod.utils.joml.Matrices;
 import mchorse.bbs_mod.utils.keyframes.KeyframeChannel;
+import mchorse.bbs_mod.utils.keyframes.KeyframeReducer;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.Mouse;
@@ -108,6 +109,7 @@ public class UIFilmController extends UIElement
     private int recordingCountdown;
     private List<String> recordingGroups;
     private BaseType recordingOld;
+    private KeyframeReducer recordingReducer;
     private boolean instantKeyframes;
 
     /* Replay and group picking */
@@ -423,6 +425,11 @@ public class UIFilmController extends UIElement
         return this.recordingGroups;
     }
 
+    public KeyframeReducer getRecordingReducer()
+    {
+        return this.recordingReducer;
+    }
+
     public void startRecording(List<String> groups)
     {
         if (groups != null && groups.contains("outside"))
@@ -446,6 +453,7 @@ public class UIFilmController extends UIElement
         this.recordingGroups = groups;
 
         this.recordingOld = this.getReplay().keyframes.toData();
+        this.recordingReducer = this.getReplay().keyframes.createReducer(BBSSettings.recordingTolerance.get());
 
         if (groups != null)
         {
@@ -492,6 +500,7 @@ public class UIFilmController extends UIElement
 
         this.recording = false;
         this.recordingGroups = null;
+        this.recordingReducer = null;
 
         if (this.controlled != null)
         {
@@ -1026,14 +1026,22 @@ public class UIReplayList extends UIList<Replay>
     @Override
     public void renderList(UIContext context)
     {
+        context.batcher.begin();
+
         if (this.isFiltering())
         {
             super.renderList(context);
-
-            return;
+        }
+        else
+        {
+            this.renderGroupedList(context);
         }
 
+        context.batcher.end();
+    }
 
+    private void renderGroupedList(UIContext context)
+    {
         Map<String, List<Replay>> groups = new LinkedHashMap<>();
         Map<Replay, Integer> replayIndices = new IdentityHashMap<>();
         List<Replay> ungrouped = new ArrayList<>();
@@ -1,21 +1,45 @@
 package mchorse.bbs_mod.ui.film.utils.undo;
 
+import mchorse.bbs_mod.data.DataDelta;
+import mchorse.bbs_mod.data.storage.DataBufferCodec;
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.MapType;
 import mchorse.bbs_mod.settings.values.base.BaseValue;
 import mchorse.bbs_mod.settings.values.core.ValueGroup;
 import mchorse.bbs_mod.ui.framework.elements.UIElement;
 import mchorse.bbs_mod.utils.DataPath;
+import mchorse.bbs_mod.utils.clips.Clips;
 import mchorse.bbs_mod.utils.undo.IUndo;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Value change undo
+ *
+ * Instead of full copies of value's data before and after the change, only
+ * deltas between them are stored (see {@link DataDelta}), so changing one
+ * keyframe of a large channel costs only as much as that keyframe. While
+ * this undo can be merged with next changes, it keeps the data before and
+ * after the change instead (so merging doesn't need to diff anything), and
+ * deltas are computed only once it gets sealed.
+ */
 public class ValueChangeUndo extends FilmEditorUndo
 {
+    private static final Map<Class<?>, Boolean> PLAIN_GROUPS = new HashMap<>();
+
     public DataPath name;
-    public BaseType oldValue;
-    public BaseType newValue;
     public MapType uiBefore;
     public MapType uiAfter;
 
+    private DataDelta undoDelta;
+    private DataDelta redoDelta;
+    private BaseType oldValue;
+    private BaseType newValue;
+    private long oldSize = -1;
+    private long size = -1;
+
     private boolean mergable = true;
 
     public ValueChangeUndo(DataPath name, BaseType oldValue, BaseType newValue)
@@ -33,11 +57,13 @@ public class ValueChangeUndo extends FilmEditorUndo
     public void cacheBefore(MapType uiData)
     {
         this.uiBefore = uiData;
+        this.size = -1;
     }
 
     public void cacheAfter(UIElement editor)
     {
         this.uiAfter = editor.getRoot() == null ? new MapType() : editor.getRoot().collectAllUndoData();
+        this.size = -1;
     }
 
     public DataPath getName()
@@ -49,6 +75,7 @@ public class ValueChangeUndo extends FilmEditorUndo
     public IUndo<ValueGroup> noMerging()
     {
         this.mergable = false;
+        this.seal();
 
         return this;
     }
@@ -56,7 +83,7 @@ public class ValueChangeUndo extends FilmEditorUndo
     @Override
     public boolean isMergeable(IUndo<ValueGroup> undo)
     {
-        if (!this.mergable)
+        if (!this.mergable || this.newValue == null)
         {
             return false;
         }
@@ -65,7 +92,7 @@ public class ValueChangeUndo extends FilmEditorUndo
         {
             ValueChangeUndo valueUndo = (ValueChangeUndo) undo;
 
-            return this.name.equals(valueUndo.getName());
+            return valueUndo.newValue != null && this.name.equals(valueUndo.getName());
         }
 
         return false;
@@ -79,28 +106,158 @@ public class ValueChangeUndo extends FilmEditorUndo
             ValueChangeUndo prop = (ValueChangeUndo) undo;
 
             this.newValue = prop.newValue;
+            this.size = -1;
         }
     }
 
     @Override
-    public void undo(ValueGroup context)
+    public void compact()
     {
-        BaseValue value = context.getRecursively(this.name);
+        this.seal();
+    }
 
-        if (value.getPath().equals(this.name))
+    /**
+     * Replace data before and after the change with deltas between them
+     */
+    private void seal()
+    {
+        if (this.newValue == null)
         {
-            value.fromData(this.oldValue);
+            return;
         }
+
+        this.undoDelta = DataDelta.diff(this.newValue, this.oldValue);
+        this.redoDelta = DataDelta.diff(this.oldValue, this.newValue);
+        this.oldValue = null;
+        this.newValue = null;
+        this.size = -1;
+    }
+
+    @Override
+    public long getSize()
+    {
+        if (this.size < 0)
+        {
+            this.size = 64;
+
+            if (this.newValue != null)
+            {
+                /* Data after the change is assumed to be about as large as
+                 * the data before it */
+                if (this.oldSize < 0)
+                {
+                    this.oldSize = this.oldValue == null ? 0 : DataBufferCodec.getSize(this.oldValue);
+                }
+
+                this.size += this.oldSize * 2;
+            }
+
+            this.size += this.undoDelta == null ? 0 : this.undoDelta.getSize();
+            this.size += this.redoDelta == null ? 0 : this.redoDelta.getSize();
+            this.size += this.uiBefore == null ? 0 : DataBufferCodec.getSize(this.uiBefore);
+            this.size += this.uiAfter == null ? 0 : DataBufferCodec.getSize(this.uiAfter);
+        }
+
+        return this.size;
+    }
+
+    @Override
+    public void undo(ValueGroup context)
+    {
+        this.apply(context, this.oldValue, this.undoDelta);
     }
 
     @Override
     public void redo(ValueGroup context)
+    {
+        this.apply(context, this.newValue, this.redoDelta);
+    }
+
+    private void apply(ValueGroup context, BaseType data, DataDelta delta)
     {
         BaseValue value = context.getRecursively(this.name);
 
-        if (value.getPath().equals(this.name))
+        if (!value.getPath().equals(this.name))
+        {
+            return;
+        }
+
+        if (this.newValue != null)
+        {
+            if (data != null)
+            {
+                value.fromData(data.copy());
+                Clips.invalidateIndex(value);
+            }
+        }
+        else if (delta != null)
+        {
+            apply(value, delta);
+        }
+    }
+
+    /**
+     * Apply given delta to given value. Deltas of plain value groups are
+     * applied to their children, so only the values that were changed get
+     * converted to data and back.
+     */
+    private static void apply(BaseValue value, DataDelta delta)
+    {
+        if (delta instanceof DataDelta.MapDelta map && map.getRemoved().isEmpty() && hasChildren(value, map.getChanged().keySet()))
         {
-            value.fromData(this.newValue);
+            ValueGroup group = (ValueGroup) value;
+
+            for (Map.Entry<String, DataDelta> entry : map.getChanged().entrySet())
+            {
+                BaseValue child = group.get(entry.getKey());
+
+                child.setParent(group);
+                apply(child, entry.getValue());
+            }
+
+            return;
         }
+
+        value.fromData(delta.apply(value.toData()));
+        Clips.invalidateIndex(value);
+    }
+
+    /**
+     * Whether given value is a value group that has children with all given
+     * IDs, and stores their data under their IDs (i.e. it doesn't override
+     * how it's converted to data)
+     */
+    private static boolean hasChildren(BaseValue value, Collection<String> keys)
+    {
+        if (!(value instanceof ValueGroup group) || !isPlainGroup(group))
+        {
+            return false;
+        }
+
+        for (String key : keys)
+        {
+            if (group.get(key) == null)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isPlainGroup(ValueGroup group)
+    {
+        return PLAIN_GROUPS.computeIfAbsent(group.getClass(), (clazz) ->
+        {
+            try
+            {
+                return clazz.getMethod("toData").getDeclaringClass() == ValueGroup.class
+                    && clazz.getMethod("fromData", BaseType.class).getDeclaringClass() == ValueGroup.class;
+            }
+            catch (NoSuchMethodException e)
+            {
+                return false;
+            }
+        });
     }
 }
\ No newline at end of file
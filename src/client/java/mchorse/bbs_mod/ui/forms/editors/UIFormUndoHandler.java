@@ -20,6 +20,11 @@ import java.util.Map;
 
 public class UIFormUndoHandler
 {
+    /**
+     * Maximum amount of memory (in bytes) undo history can take
+     */
+    public static final long UNDO_MEMORY_BUDGET = 32L * 1024 * 1024;
+
     protected UndoManager<ValueGroup> undoManager;
 
     protected Map<BaseValue, BaseType> cachedValues = new HashMap<>();
@@ -84,7 +89,7 @@ public class UIFormUndoHandler
 
     public void reset()
     {
-        this.undoManager = new UndoManager<>(100);
+        this.undoManager = new UndoManager<ValueGroup>(100).memoryBudget(UNDO_MEMORY_BUDGET);
         this.undoManager.setCallback(this::handleUndos);
     }
 
@@ -4,6 +4,7 @@ import mchorse.bbs_mod.utils.keyframes.Keyframe;
 import mchorse.bbs_mod.utils.keyframes.KeyframeChannel;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -18,6 +19,10 @@ public class KeyframeSelection
     private KeyframeChannel channel;
     private Set<Integer> selected = new LinkedHashSet<>();
 
+    /* Sorted selected indices, which are used for range queries. Null
+     * means they need to be collected again */
+    private int[] sorted;
+
     private List<Keyframe> tmp = new ArrayList<>();
 
     public KeyframeSelection(KeyframeChannel channel)
@@ -35,6 +40,41 @@ public class KeyframeSelection
         return this.selected.contains(index);
     }
 
+    /**
+     * Whether any keyframe between given indices (from inclusive, to
+     * exclusive) is selected
+     */
+    public boolean has(int from, int to)
+    {
+        if (this.selected.isEmpty())
+        {
+            return false;
+        }
+
+        if (this.sorted == null)
+        {
+            int i = 0;
+
+            this.sorted = new int[this.selected.size()];
+
+            for (Integer index : this.selected)
+            {
+                this.sorted[i++] = index;
+            }
+
+            Arrays.sort(this.sorted);
+        }
+
+        int i = Arrays.binarySearch(this.sorted, from);
+
+        if (i < 0)
+        {
+            i = -i - 1;
+        }
+
+        return i < this.sorted.length && this.sorted[i] < to;
+    }
+
     public boolean has(Keyframe keyframe)
     {
         return this.selected.contains(this.channel.getKeyframes().indexOf(keyframe));
@@ -43,6 +83,7 @@ public class KeyframeSelection
     public void all()
     {
         this.selected.clear();
+        this.sorted = null;
 
         for (int i = 0, c = this.channel.getKeyframes().size(); i < c; i++)
         {
@@ -53,6 +94,7 @@ public class KeyframeSelection
     public void after(float tick, int direction)
     {
         this.selected.clear();
+        this.sorted = null;
 
         List keyframes = this.channel.getKeyframes();
 
@@ -83,11 +125,13 @@ public class KeyframeSelection
     public void clear()
     {
         this.selected.clear();
+        this.sorted = null;
     }
 
     public void add(int i)
     {
         this.selected.add(i);
+        this.sorted = null;
     }
 
     public void add(Keyframe keyframe)
@@ -103,11 +147,13 @@ public class KeyframeSelection
     public void addAll(Collection<Integer> selected)
     {
         this.selected.addAll(selected);
+        this.sorted = null;
     }
 
     public void remove(int index)
     {
         this.selected.remove(index);
+        this.sorted = null;
     }
 
     public void removeSelected()
@@ -122,6 +168,7 @@ public class KeyframeSelection
         }
 
         this.selected.clear();
+        this.sorted = null;
     }
 
     public Keyframe getFirst()
@@ -1,5 +1,6 @@
 package mchorse.bbs_mod.ui.framework.elements.input.keyframes;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.MapType;
@@ -45,6 +46,12 @@ import java.util.function.Supplier;
 
 public class UIKeyframes extends UIElement
 {
+    /**
+     * Keyframes that are closer than this amount of pixels to each other
+     * are rendered as a single density bar
+     */
+    public static final int DENSITY_WIDTH = 3;
+
     /* Editing states */
 
     private boolean selecting;
@@ -805,6 +812,62 @@ public class UIKeyframes extends UIElement
         return this.xAxis.from(mouseX);
     }
 
+    /**
+     * Index of the first keyframe of given channel that is located at or
+     * after given screen X (with a pixel of tolerance). It's found with
+     * binary search, so it's 0 if channel's keyframes aren't sorted.
+     */
+    public int searchFrom(KeyframeChannel channel, int x)
+    {
+        return channel.isSorted() ? channel.search((float) this.fromGraphX(x - 1)) : 0;
+    }
+
+    /**
+     * Index after the last keyframe of given channel that is located at or
+     * before given screen X (with a pixel of tolerance). It's found with
+     * binary search, so it's the amount of keyframes if channel's
+     * keyframes aren't sorted.
+     */
+    public int searchTo(KeyframeChannel channel, int x)
+    {
+        return channel.isSorted() ? channel.search((float) this.fromGraphX(x + 2)) : channel.getKeyframeCount();
+    }
+
+    /**
+     * Collect keyframes of given channel that are visible between given
+     * screen X coordinates (plus one keyframe on each side, so the lines
+     * between keyframes could reach the edges) into spans, stored as pairs
+     * of from (inclusive) and to (exclusive) indices. A span of a single
+     * keyframe should be rendered as is, while a span of several keyframes
+     * means that they're too dense to be rendered individually.
+     */
+    public void collectSpans(KeyframeChannel channel, int x1, int x2, IntArrayList spans)
+    {
+        int count = channel.getKeyframeCount();
+        int from = Math.max(this.searchFrom(channel, x1) - 1, 0);
+        int to = Math.min(this.searchTo(channel, x2) + 1, count);
+        boolean sorted = channel.isSorted();
+
+        spans.clear();
+
+        for (int i = from; i < to; )
+        {
+            int next = i + 1;
+
+            if (sorted)
+            {
+                int x = this.toGraphX(channel.getKeyframeTick(i));
+
+                next = Math.min(Math.max(channel.search((float) this.fromGraphX(x + DENSITY_WIDTH)), next), to);
+            }
+
+            spans.add(i);
+            spans.add(next);
+
+            i = next;
+        }
+    }
+
     public void resetView()
     {
         this.currentGraph.resetView();
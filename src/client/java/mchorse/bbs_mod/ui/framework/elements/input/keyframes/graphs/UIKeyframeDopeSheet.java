@@ -1,6 +1,6 @@
 package mchorse.bbs_mod.ui.framework.elements.input.keyframes.graphs;
 
-import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import mchorse.bbs_mod.BBSSettings;
 import mchorse.bbs_mod.camera.utils.TimeUtils;
 import mchorse.bbs_mod.data.types.MapType;
@@ -22,11 +22,6 @@ import mchorse.bbs_mod.utils.colors.Colors;
 import mchorse.bbs_mod.utils.keyframes.Keyframe;
 import mchorse.bbs_mod.utils.keyframes.KeyframeShape;
 import net.minecraft.client.render.BufferBuilder;
-import net.minecraft.client.render.BufferRenderer;
-import net.minecraft.client.render.GameRenderer;
-import net.minecraft.client.render.Tessellator;
-import net.minecraft.client.render.VertexFormat;
-import net.minecraft.client.render.VertexFormats;
 import org.joml.Matrix4f;
 
 import java.util.ArrayList;
@@ -42,6 +37,9 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
     private Scroll dopeSheet;
     private double trackHeight;
 
+    /* Spans of visible keyframes of currently rendered sheet */
+    private final IntArrayList spans = new IntArrayList();
+
     public static IKeyframeShapeRenderer renderShape(Keyframe frame, UIContext context, BufferBuilder builder, Matrix4f matrix, int x, int y, int offset, int c)
     {
         KeyframeShape keyframeShape = frame.getShape();
@@ -149,7 +147,7 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
             UIKeyframeSheet sheet = sheets.get(i);
             List keyframes = sheet.channel.getKeyframes();
 
-            for (int j = 0; j < keyframes.size(); j++)
+            for (int j = this.keyframes.searchFrom(sheet.channel, mouseX - 5), c = this.keyframes.searchTo(sheet.channel, mouseX + 5); j < c; j++)
             {
                 Keyframe keyframe = (Keyframe) keyframes.get(j);
                 int x = this.keyframes.toGraphX(keyframe.getTick());
@@ -174,12 +172,17 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
         {
             UIKeyframeSheet sheet = sheets.get(i);
             List keyframes = sheet.channel.getKeyframes();
+            int y = this.getDopeSheetY(i) + (int) this.trackHeight / 2;
+
+            if (y < area.y || y >= area.ey())
+            {
+                continue;
+            }
 
-            for (int j = 0; j < keyframes.size(); j++)
+            for (int j = this.keyframes.searchFrom(sheet.channel, area.x), c = this.keyframes.searchTo(sheet.channel, area.ex()); j < c; j++)
             {
                 Keyframe keyframe = (Keyframe) keyframes.get(j);
                 int x = this.keyframes.toGraphX(keyframe.getTick());
-                int y = this.getDopeSheetY(i) + (int) this.trackHeight / 2;
 
                 if (area.isInside(x, y))
                 {
@@ -232,7 +235,7 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
         List keyframes = sheet.channel.getKeyframes();
         int i = this.sheets.indexOf(sheet);
 
-        for (int j = 0; j < keyframes.size(); j++)
+        for (int j = this.keyframes.searchFrom(sheet.channel, mouseX - 5), c = this.keyframes.searchTo(sheet.channel, mouseX + 5); j < c; j++)
         {
             Keyframe keyframe = (Keyframe) keyframes.get(j);
             int x = this.keyframes.toGraphX(keyframe.getTick());
@@ -363,8 +366,12 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
     @Override
     public void render(UIContext context)
     {
+        context.batcher.begin();
+
         this.renderGrid(context);
         this.renderGraph(context);
+
+        context.batcher.end();
     }
 
     /**
@@ -378,6 +385,8 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
         int hx = this.keyframes.getDuration() / mult;
         int ht = (int) this.keyframes.fromGraphX(area.x);
 
+        /* Lines are rendered before labels, so both of them could be
+         * batched together */
         for (int j = Math.max(ht / mult, 0); j <= hx; j++)
         {
             int x = this.keyframes.toGraphX(j * mult);
@@ -387,10 +396,19 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
                 break;
             }
 
-            String label = TimeUtils.formatTime(j * mult);
-
             context.batcher.box(x, area.y, x + 1, area.ey(), Colors.setA(Colors.WHITE, 0.25F));
-            context.batcher.text(label, x + 4, area.y + 4);
+        }
+
+        for (int j = Math.max(ht / mult, 0); j <= hx; j++)
+        {
+            int x = this.keyframes.toGraphX(j * mult);
+
+            if (x >= area.ex())
+            {
+                break;
+            }
+
+            context.batcher.text(TimeUtils.formatTime(j * mult), x + 4, area.y + 4);
         }
 
         /* Render where the keyframe will be duplicated or added */
@@ -541,9 +559,11 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
         this.dopeSheet.scrollSize = (int) this.trackHeight * this.sheets.size() + TOP_MARGIN;
 
         Area area = this.keyframes.area;
-        BufferBuilder builder = Tessellator.getInstance().getBuffer();
         Matrix4f matrix = context.batcher.getContext().getMatrices().peek().getPositionMatrix();
+        FontRenderer font = context.batcher.getFont();
 
+        /* Tracks are rendered in three passes (geometry, titles and icons),
+         * so every pass could be batched into a single draw call */
         for (int i = 0; i < this.sheets.size(); i++)
         {
             int y = this.getDopeSheetY(i);
@@ -555,14 +575,13 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
 
             UIKeyframeSheet sheet = this.sheets.get(i);
             List keyframes = sheet.channel.getKeyframes();
+            BufferBuilder builder = context.batcher.getBatchQuads();
 
             boolean hover = area.isInside(context) && context.mouseY >= y && context.mouseY < y + this.trackHeight;
             int my = y + (int) this.trackHeight / 2;
             int cc = Colors.setA(sheet.color, hover ? 1F : 0.45F);
 
             /* Render track bars (horizontal lines) */
-            builder.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
-
             context.batcher.fillRect(builder, matrix, area.x, my - 1, area.w, 2, cc, cc, cc, cc);
 
             if (sheet.separator)
@@ -573,9 +592,19 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
                 context.batcher.fillRect(builder, matrix, area.x, y, area.w, (int) this.trackHeight, c | Colors.A25, c | Colors.A25, c, c);
             }
 
+            /* Only visible keyframes are rendered, see UIKeyframes.collectSpans() */
+            this.keyframes.collectSpans(sheet.channel, area.x - 10, area.ex() + 10, this.spans);
+
             /* Render bars indicating same values */
-            for (int j = 1; j < keyframes.size(); j++)
+            for (int s = 0; s < this.spans.size(); s += 2)
             {
+                int j = this.spans.getInt(s);
+
+                if (j == 0 || this.spans.getInt(s + 1) - j > 1)
+                {
+                    continue;
+                }
+
                 Keyframe previous = (Keyframe) keyframes.get(j - 1);
                 Keyframe frame = (Keyframe) keyframes.get(j);
                 int c = Colors.YELLOW | Colors.A25;
@@ -598,8 +627,18 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
             /* Draw keyframe handles (outer) */
             int forcedIndex = 0;
 
-            for (int j = 0; j < keyframes.size(); j++)
+            for (int s = 0; s < this.spans.size(); s += 2)
             {
+                int j = this.spans.getInt(s);
+                int to = this.spans.getInt(s + 1);
+
+                if (to - j > 1)
+                {
+                    this.renderDensity(context, builder, matrix, sheet, j, to, my);
+
+                    continue;
+                }
+
                 Keyframe frame = (Keyframe) keyframes.get(j);
                 float tick = frame.getTick();
                 int x1 = this.keyframes.toGraphX(tick);
@@ -640,8 +679,15 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
             }
 
             /* Render keyframe handles (inner) */
-            for (int j = 0; j < keyframes.size(); j++)
+            for (int s = 0; s < this.spans.size(); s += 2)
             {
+                int j = this.spans.getInt(s);
+
+                if (this.spans.getInt(s + 1) - j > 1)
+                {
+                    continue;
+                }
+
                 Keyframe frame = (Keyframe) keyframes.get(j);
                 int c = sheet.selection.has(j) ? Colors.ACTIVE : 0;
                 int mx = this.keyframes.toGraphX(frame.getTick());
@@ -651,15 +697,32 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
                 shapeResult.renderKeyframeBackground(context, builder, matrix, mx, my, 2, mc);
             }
 
-            RenderSystem.enableBlend();
-            RenderSystem.setShader(GameRenderer::getPositionColorProgram);
-            BufferRenderer.drawWithGlobalProgram(builder.end());
-
-            FontRenderer font = context.batcher.getFont();
             int lw = font.getWidth(sheet.title.get());
 
             context.batcher.gradientHBox(area.ex() - lw - 10, y, area.ex(), y + (int) this.trackHeight, sheet.color, sheet.color | (hover ? Colors.A75 : Colors.A25));
 
+            if (sheet.getIcon() != null && this.trackHeight >= 12D)
+            {
+                context.batcher.box(area.x, y, area.x + 6, y + (int) this.trackHeight, Colors.A75);
+                context.batcher.gradientHBox(area.x + 6, y, area.x + 4 + sheet.getIcon().w, y + (int) this.trackHeight, Colors.A75, 0);
+            }
+        }
+
+        /* Render track titles */
+        for (int i = 0; i < this.sheets.size(); i++)
+        {
+            int y = this.getDopeSheetY(i);
+
+            if (y + this.trackHeight < area.y || y > area.ey())
+            {
+                continue;
+            }
+
+            UIKeyframeSheet sheet = this.sheets.get(i);
+            boolean hover = area.isInside(context) && context.mouseY >= y && context.mouseY < y + this.trackHeight;
+            int my = y + (int) this.trackHeight / 2;
+            int lw = font.getWidth(sheet.title.get());
+
             if (hover)
             {
                 context.batcher.textShadow(sheet.title.get(), area.ex() - lw - 5, my - font.getHeight() / 2);
@@ -668,18 +731,42 @@ public class UIKeyframeDopeSheet implements IUIKeyframeGraph
             {
                 context.batcher.text(sheet.title.get(), area.ex() - lw - 5, my - font.getHeight() / 2, Colors.WHITE & 0x88ffffff);
             }
+        }
+
+        /* Render track icons */
+        for (int i = 0; i < this.sheets.size(); i++)
+        {
+            int y = this.getDopeSheetY(i);
+
+            if (y + this.trackHeight < area.y || y > area.ey())
+            {
+                continue;
+            }
 
-            Icon icon = sheet.getIcon();
+            Icon icon = this.sheets.get(i).getIcon();
 
             if (icon != null && this.trackHeight >= 12D)
             {
-                context.batcher.box(area.x, y, area.x + 6, y + (int) this.trackHeight, Colors.A75);
-                context.batcher.gradientHBox(area.x + 6, y, area.x + 4 + icon.w, y + (int) this.trackHeight, Colors.A75, 0);
-                context.batcher.icon(icon, area.x + 2, my - icon.h / 2);
+                context.batcher.icon(icon, area.x + 2, y + (int) this.trackHeight / 2 - icon.h / 2);
             }
         }
     }
 
+    /**
+     * Render a bar in place of keyframes (from inclusive, to exclusive) that
+     * are too dense to be rendered individually. The more keyframes there
+     * are, the taller the bar is
+     */
+    private void renderDensity(UIContext context, BufferBuilder builder, Matrix4f matrix, UIKeyframeSheet sheet, int from, int to, int my)
+    {
+        int x1 = this.keyframes.toGraphX(sheet.channel.getKeyframeTick(from));
+        int x2 = this.keyframes.toGraphX(sheet.channel.getKeyframeTick(to - 1)) + 1;
+        int h = MathUtils.clamp(to - from, 2, Math.max((int) this.trackHeight / 2 - 2, 2));
+        int c = sheet.selection.has(from, to) ? Colors.WHITE | Colors.A100 : Colors.setA(sheet.color, 1F);
+
+        context.batcher.fillRect(builder, matrix, x1, my - h, x2 - x1, h * 2, c, c, c, c);
+    }
+
     @Override
     public void postRender(UIContext context)
     {
@@ -1,6 +1,7 @@
 package mchorse.bbs_mod.ui.framework.elements.input.keyframes.graphs;
 
 import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import mchorse.bbs_mod.BBSSettings;
 import mchorse.bbs_mod.camera.utils.TimeUtils;
 import mchorse.bbs_mod.data.types.MapType;
@@ -14,6 +15,7 @@ import mchorse.bbs_mod.ui.framework.elements.input.keyframes.shapes.IKeyframeSha
 import mchorse.bbs_mod.ui.utils.Area;
 import mchorse.bbs_mod.ui.utils.Scale;
 import mchorse.bbs_mod.ui.utils.ScrollDirection;
+import mchorse.bbs_mod.utils.MathUtils;
 import mchorse.bbs_mod.utils.Pair;
 import mchorse.bbs_mod.utils.colors.Colors;
 import mchorse.bbs_mod.utils.interps.IInterp;
@@ -42,6 +44,9 @@ public class UIKeyframeGraph implements IUIKeyframeGraph
 
     private final Scale yAxis;
 
+    /* Spans of visible keyframes */
+    private final IntArrayList spans = new IntArrayList();
+
     public UIKeyframeGraph(UIKeyframes keyframes, UIKeyframeSheet sheet)
     {
         this.keyframes = keyframes;
@@ -139,7 +144,7 @@ public class UIKeyframeGraph implements IUIKeyframeGraph
     {
         List keyframes = this.sheet.channel.getKeyframes();
 
-        for (int i = 0; i < keyframes.size(); i++)
+        for (int i = this.keyframes.searchFrom(this.sheet.channel, mouseX - 5), c = this.keyframes.searchTo(this.sheet.channel, mouseX + 5); i < c; i++)
         {
             Keyframe keyframe = (Keyframe) keyframes.get(i);
             int x = this.keyframes.toGraphX(keyframe.getTick());
@@ -159,7 +164,7 @@ public class UIKeyframeGraph implements IUIKeyframeGraph
     {
         List keyframes = this.sheet.channel.getKeyframes();
 
-        for (int i = 0; i < keyframes.size(); i++)
+        for (int i = this.keyframes.searchFrom(this.sheet.channel, area.x), c = this.keyframes.searchTo(this.sheet.channel, area.ex()); i < c; i++)
         {
             Keyframe keyframe = (Keyframe) keyframes.get(i);
             int x = this.keyframes.toGraphX(keyframe.getTick());
@@ -203,10 +208,42 @@ public class UIKeyframeGraph implements IUIKeyframeGraph
     public Pair<Keyframe, KeyframeType> findKeyframe(int mouseX, int mouseY)
     {
         List keyframes = this.sheet.channel.getKeyframes();
+        Area area = this.keyframes.area;
+
+        /* Handles are rendered (and can be picked) only for keyframes that
+         * are rendered individually, while the rest of keyframes can be
+         * picked only within 5 pixels from the mouse */
+        int nearFrom = this.keyframes.searchFrom(this.sheet.channel, mouseX - 5);
+        int nearTo = this.keyframes.searchTo(this.sheet.channel, mouseX + 5);
 
-        for (int i = 0; i < keyframes.size(); i++)
+        this.keyframes.collectSpans(this.sheet.channel, area.x - 10, area.ex() + 10, this.spans);
+
+        for (int s = 0; s < this.spans.size(); s += 2)
         {
-            Keyframe keyframe = (Keyframe) keyframes.get(i);
+            int from = this.spans.getInt(s);
+            int to = this.spans.getInt(s + 1);
+
+            if (to - from > 1)
+            {
+                from = Math.max(from, nearFrom);
+                to = Math.min(to, nearTo);
+
+                for (int i = from; i < to; i++)
+                {
+                    Keyframe keyframe = (Keyframe) keyframes.get(i);
+                    int x = this.keyframes.toGraphX(keyframe.getTick());
+                    int y = this.toGraphY(keyframe.getFactory().getY(keyframe.getValue()));
+
+                    if (this.isNear(x, y, mouseX, mouseY))
+                    {
+                        return new Pair<>(keyframe, KeyframeType.REGULAR);
+                    }
+                }
+
+                continue;
+            }
+
+            Keyframe keyframe = (Keyframe) keyframes.get(from);
             int x = this.keyframes.toGraphX(keyframe.getTick());
             int y = this.toGraphY(keyframe.getFactory().getY(keyframe.getValue()));
 
@@ -375,6 +412,11 @@ public class UIKeyframeGraph implements IUIKeyframeGraph
             }
         }
 
+        if (type.b != KeyframeType.REGULAR)
+        {
+            keyframe.invalidateChannel();
+        }
+
         this.keyframes.triggerChange();
     }
 
@@ -527,20 +569,52 @@ public class UIKeyframeGraph implements IUIKeyframeGraph
         UIKeyframeSheet sheet = this.sheet;
         List keyframes = sheet.channel.getKeyframes();
         KeyframeSegment segment = new KeyframeSegment();
+        Area area = this.keyframes.area;
+
+        /* Only visible keyframes are rendered, see UIKeyframes.collectSpans() */
+        this.keyframes.collectSpans(sheet.channel, area.x - 10, area.ex() + 10, this.spans);
 
         /* Render graph */
         LineBuilder lineBuilder = new LineBuilder(0.7F);
 
-        for (int i = 0; i < keyframes.size(); i++)
+        for (int s = 0; s < this.spans.size(); s += 2)
         {
+            int from = this.spans.getInt(s);
+            int to = this.spans.getInt(s + 1);
+
+            if (to - from > 1)
+            {
+                /* Dense keyframes are approximated by their lowest and
+                 * highest values in every pixel column */
+                int x1 = this.keyframes.toGraphX(sheet.channel.getKeyframeTick(from));
+                int x2 = this.keyframes.toGraphX(sheet.channel.getKeyframeTick(to - 1));
+                int y1 = this.toGraphY(sheet.channel.getFactory().getY(((Keyframe) keyframes.get(from)).getValue()));
+                int y2 = this.toGraphY(sheet.channel.getFactory().getY(((Keyframe) keyframes.get(to - 1)).getValue()));
+
+                if (from == 0 && x1 > area.x)
+                {
+                    lineBuilder.add(area.x, y1);
+                }
+
+                this.addDenseSpan(lineBuilder, keyframes, from, to);
+
+                if (to == keyframes.size() && x2 < area.ex())
+                {
+                    lineBuilder.add(area.ex(), y2);
+                }
+
+                continue;
+            }
+
+            int i = from;
             Keyframe frame = (Keyframe) keyframes.get(i);
             Keyframe prev = i > 0 ? (Keyframe) keyframes.get(i - 1) : null;
             int x = this.keyframes.toGraphX(frame.getTick());
             int y = this.toGraphY(sheet.channel.getFactory().getY(frame.getValue()));
 
-            if (i == 0 && x > this.keyframes.area.x)
+            if (i == 0 && x > area.x)
             {
-                lineBuilder.add(this.keyframes.area.x, y);
+                lineBuilder.add(area.x, y);
             }
 
             if (prev != null)
@@ -573,9 +647,9 @@ public class UIKeyframeGraph implements IUIKeyframeGraph
 
             lineBuilder.add(x, y);
 
-            if (i == keyframes.size() - 1 && x < this.keyframes.area.ex())
+            if (i == keyframes.size() - 1 && x < area.ex())
             {
-                lineBuilder.add(this.keyframes.area.ex(), y);
+                lineBuilder.add(area.ex(), y);
             }
 
             boolean add = false;
@@ -619,8 +693,18 @@ public class UIKeyframeGraph implements IUIKeyframeGraph
         /* Draw keyframe handles (outer) */
         int forcedIndex = 0;
 
-        for (int i = 0; i < keyframes.size(); i++)
+        for (int s = 0; s < this.spans.size(); s += 2)
         {
+            int i = this.spans.getInt(s);
+            int to = this.spans.getInt(s + 1);
+
+            if (to - i > 1)
+            {
+                this.renderDensity(context, builder, matrix, i, to);
+
+                continue;
+            }
+
             Keyframe frame = (Keyframe) keyframes.get(i);
             Keyframe prev = i > 0 ? (Keyframe) keyframes.get(i - 1) : null;
             float tick = frame.getTick();
@@ -679,8 +763,15 @@ public class UIKeyframeGraph implements IUIKeyframeGraph
         }
 
         /* Render keyframe handles (inner) */
-        for (int j = 0; j < keyframes.size(); j++)
+        for (int s = 0; s < this.spans.size(); s += 2)
         {
+            int j = this.spans.getInt(s);
+
+            if (this.spans.getInt(s + 1) - j > 1)
+            {
+                continue;
+            }
+
             Keyframe frame = (Keyframe) keyframes.get(j);
             Keyframe prev = j > 0 ? (Keyframe) keyframes.get(j - 1) : null;
             int y = this.toGraphY(sheet.channel.getFactory().getY(frame.getValue()));
@@ -716,6 +807,80 @@ public class UIKeyframeGraph implements IUIKeyframeGraph
         BufferRenderer.drawWithGlobalProgram(builder.end());
     }
 
+    /**
+     * Add keyframes (from inclusive, to exclusive) that are too dense to
+     * be rendered individually to the line. Every pixel column gets its
+     * first, lowest, highest and last values (in the order they occur),
+     * so peaks within dense keyframes stay visible when zoomed out
+     */
+    @SuppressWarnings("rawtypes")
+    private void addDenseSpan(LineBuilder lineBuilder, List keyframes, int from, int to)
+    {
+        IKeyframeFactory factory = this.sheet.channel.getFactory();
+        int column = 0;
+        int first = 0;
+        int last = 0;
+        int low = 0;
+        int high = 0;
+        boolean lowFirst = true;
+
+        for (int i = from; i < to; i++)
+        {
+            int x = this.keyframes.toGraphX(this.sheet.channel.getKeyframeTick(i));
+            int y = this.toGraphY(factory.getY(((Keyframe) keyframes.get(i)).getValue()));
+
+            if (i == from || x != column)
+            {
+                if (i > from)
+                {
+                    this.addColumn(lineBuilder, column, first, low, high, last, lowFirst);
+                }
+
+                column = x;
+                first = low = high = y;
+                lowFirst = true;
+            }
+            else if (y < low)
+            {
+                low = y;
+                lowFirst = false;
+            }
+            else if (y > high)
+            {
+                high = y;
+                lowFirst = true;
+            }
+
+            last = y;
+        }
+
+        this.addColumn(lineBuilder, column, first, low, high, last, lowFirst);
+    }
+
+    private void addColumn(LineBuilder lineBuilder, int x, int first, int low, int high, int last, boolean lowFirst)
+    {
+        lineBuilder.add(x, first);
+        lineBuilder.add(x, lowFirst ? low : high);
+        lineBuilder.add(x, lowFirst ? high : low);
+        lineBuilder.add(x, last);
+    }
+
+    /**
+     * Render a bar at the bottom of the graph in place of keyframes (from
+     * inclusive, to exclusive) that are too dense to be rendered
+     * individually. The more keyframes there are, the taller the bar is
+     */
+    private void renderDensity(UIContext context, BufferBuilder builder, Matrix4f matrix, int from, int to)
+    {
+        Area area = this.keyframes.area;
+        int x1 = this.keyframes.toGraphX(this.sheet.channel.getKeyframeTick(from));
+        int x2 = this.keyframes.toGraphX(this.sheet.channel.getKeyframeTick(to - 1)) + 1;
+        int h = MathUtils.clamp(to - from, 2, 8);
+        int c = this.sheet.selection.has(from, to) ? Colors.WHITE | Colors.A100 : Colors.setA(this.sheet.color, 1F);
+
+        context.batcher.fillRect(builder, matrix, x1, area.ey() - h, x2 - x1, h, c, c, c, c);
+    }
+
     @Override
     public void postRender(UIContext context)
     {}
@@ -22,13 +22,36 @@ import org.lwjgl.opengl.GL11;
 import java.util.List;
 import java.util.function.Supplier;
 
+/**
+ * 2D batcher
+ *
+ * By default, every method draws its geometry right away. Between
+ * {@link #begin()} and {@link #end()} calls, batcher collects boxes, icons
+ * and text instead, and draws everything of the same state (shader and
+ * texture) with a single draw call. The batch gets drawn once the state
+ * changes, when scissor is changed ({@link #clip(int, int, int, int, int, int)}
+ * and {@link #unclip(int, int)}), when {@link #getContext()} is accessed
+ * (so custom rendering is drawn in correct order), or {@link #flush()} is
+ * called.
+ */
 public class Batcher2D
 {
     private static FontRenderer fontRenderer = new FontRenderer();
 
+    private static int drawCalls;
+    private static int lastDrawCalls;
+
     private DrawContext context;
     private FontRenderer font;
 
+    /* Deferred batching */
+    private int batching;
+    private BufferBuilder batch;
+    private ShaderProgram batchShader;
+    private int batchTexture;
+    private VertexFormat batchFormat;
+    private boolean batchText;
+
     public static FontRenderer getDefaultTextRenderer()
     {
         fontRenderer.setRenderer(MinecraftClient.getInstance().textRenderer);
@@ -36,14 +59,44 @@ public class Batcher2D
         return fontRenderer;
     }
 
+    /**
+     * Amount of draw calls done by batchers during the last frame
+     */
+    public static int getDrawCalls()
+    {
+        return lastDrawCalls;
+    }
+
+    /**
+     * Start counting draw calls of a new frame
+     */
+    public static void resetDrawCalls()
+    {
+        lastDrawCalls = drawCalls;
+        drawCalls = 0;
+    }
+
+    private static void draw(BufferBuilder.BuiltBuffer buffer)
+    {
+        BufferRenderer.drawWithGlobalProgram(buffer);
+
+        drawCalls += 1;
+    }
+
     public Batcher2D(DrawContext context)
     {
         this.context = context;
         this.font = getDefaultTextRenderer();
     }
 
+    /**
+     * Access draw context. Since the caller may draw anything with it,
+     * collected batch is drawn first.
+     */
     public DrawContext getContext()
     {
+        this.flushBatch();
+
         return this.context;
     }
 
@@ -52,6 +105,106 @@ public class Batcher2D
         return this.font;
     }
 
+    /* Deferred batching */
+
+    /**
+     * Start collecting geometry into batches instead of drawing it right
+     * away. Calls can be nested, the batch is drawn once the outermost
+     * {@link #end()} is called.
+     */
+    public void begin()
+    {
+        this.batching += 1;
+    }
+
+    public void end()
+    {
+        if (this.batching <= 0)
+        {
+            return;
+        }
+
+        this.batching -= 1;
+
+        if (this.batching == 0)
+        {
+            this.flushBatch();
+        }
+    }
+
+    public boolean isBatching()
+    {
+        return this.batching > 0;
+    }
+
+    /**
+     * Buffer of current batch of solid colored quads (position and color
+     * format), so custom geometry can be batched together with boxes.
+     * It can be called only while batching, and returned buffer shouldn't
+     * be used after calling any other method of the batcher.
+     */
+    public BufferBuilder getBatchQuads()
+    {
+        return this.getBatch(GameRenderer.getPositionColorProgram(), -1, VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
+    }
+
+    private BufferBuilder getBatch(ShaderProgram shader, int texture, VertexFormat.DrawMode mode, VertexFormat format)
+    {
+        if (this.batch != null && this.batch.isBuilding() && this.batchShader == shader && this.batchTexture == texture && this.batchFormat == format)
+        {
+            return this.batch;
+        }
+
+        this.flushBatch();
+
+        if (this.batch == null)
+        {
+            this.batch = new BufferBuilder(64 * 1024);
+        }
+
+        this.batchShader = shader;
+        this.batchTexture = texture;
+        this.batchFormat = format;
+        this.batch.begin(mode, format);
+
+        return this.batch;
+    }
+
+    /**
+     * Draw collected batch (either geometry or text), if there is any
+     */
+    private void flushBatch()
+    {
+        if (this.batchText)
+        {
+            this.batchText = false;
+            this.context.draw();
+
+            RenderSystem.depthFunc(GL11.GL_ALWAYS);
+
+            drawCalls += 1;
+        }
+
+        if (this.batch == null || !this.batch.isBuilding())
+        {
+            return;
+        }
+
+        ShaderProgram shader = this.batchShader;
+
+        if (this.batchTexture >= 0)
+        {
+            RenderSystem.setShaderTexture(0, this.batchTexture);
+        }
+        else
+        {
+            RenderSystem.enableBlend();
+        }
+
+        RenderSystem.setShader(() -> shader);
+        draw(this.batch.end());
+    }
+
     /* Screen space clipping */
 
     public void clip(Area area, UIContext context)
@@ -69,6 +222,7 @@ public class Batcher2D
      */
     public void clip(int x, int y, int w, int h, int sw, int sh)
     {
+        this.flushBatch();
         this.context.enableScissor(x, y, x + w, y + h);
     }
 
@@ -79,6 +233,7 @@ public class Batcher2D
 
     public void unclip(int sw, int sh)
     {
+        this.flushBatch();
         this.context.disableScissor();
     }
 
@@ -107,6 +262,14 @@ public class Batcher2D
     public void box(float x, float y, float w, float h, int color1, int color2, int color3, int color4)
     {
         Matrix4f matrix4f = this.context.getMatrices().peek().getPositionMatrix();
+
+        if (this.isBatching())
+        {
+            this.fillRect(this.getBatchQuads(), matrix4f, x, y, w, h, color1, color2, color3, color4);
+
+            return;
+        }
+
         BufferBuilder builder = Tessellator.getInstance().getBuffer();
 
         builder.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
@@ -115,7 +278,7 @@ public class Batcher2D
 
         RenderSystem.enableBlend();
         RenderSystem.setShader(GameRenderer::getPositionColorProgram);
-        BufferRenderer.drawWithGlobalProgram(builder.end());
+        draw(builder.end());
 
         this.context.draw();
     }
@@ -139,9 +302,12 @@ public class Batcher2D
         bottom += offset;
 
         Matrix4f matrix4f = this.context.getMatrices().peek().getPositionMatrix();
-        BufferBuilder builder = Tessellator.getInstance().getBuffer();
+        BufferBuilder builder = this.isBatching() ? this.getBatchQuads() : Tessellator.getInstance().getBuffer();
 
-        builder.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
+        if (!this.isBatching())
+        {
+            builder.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
+        }
 
         /* Draw opaque part */
         builder.vertex(matrix4f, left + offset, top + offset, 0).color(opaque).next();
@@ -173,9 +339,14 @@ public class Batcher2D
         builder.vertex(matrix4f, right, bottom, 0).color(shadow).next();
         builder.vertex(matrix4f,right, top, 0).color(shadow).next();
 
+        if (this.isBatching())
+        {
+            return;
+        }
+
         RenderSystem.enableBlend();
         RenderSystem.setShader(GameRenderer::getPositionColorProgram);
-        BufferRenderer.drawWithGlobalProgram(builder.end());
+        draw(builder.end());
     }
 
     /* Gradients */
@@ -192,6 +363,8 @@ public class Batcher2D
 
     public void dropCircleShadow(int x, int y, int radius, int segments, int opaque, int shadow)
     {
+        this.flushBatch();
+
         Matrix4f matrix4f = this.context.getMatrices().peek().getPositionMatrix();
         BufferBuilder builder = Tessellator.getInstance().getBuffer();
 
@@ -215,6 +388,8 @@ public class Batcher2D
             return;
         }
 
+        this.flushBatch();
+
         Matrix4f matrix4f = this.context.getMatrices().peek().getPositionMatrix();
 
         BufferBuilder builder = Tessellator.getInstance().getBuffer();
@@ -233,7 +408,7 @@ public class Batcher2D
             builder.vertex(matrix4f, (int) (x - Math.cos(a) * offset), (int) (y + Math.sin(a) * offset), 0F).color(opaque).next();
         }
 
-        BufferRenderer.drawWithGlobalProgram(builder.end());
+        draw(builder.end());
 
         /* Draw outer shadow */
         builder.begin(VertexFormat.DrawMode.TRIANGLES, VertexFormats.POSITION_COLOR);
@@ -251,7 +426,7 @@ public class Batcher2D
             builder.vertex(matrix4f, (float) (x - Math.cos(alpha2) * radius), (float) (y + Math.sin(alpha2) * radius), 0F).color(shadow).next();
         }
 
-        BufferRenderer.drawWithGlobalProgram(builder.end());
+        draw(builder.end());
     }
 
     /* Outline methods */
@@ -363,17 +538,7 @@ public class Batcher2D
 
     public void texturedBox(Texture texture, int color, float x, float y, float w, float h, float u1, float v1, float u2, float v2, int textureW, int textureH)
     {
-        RenderSystem.setShaderTexture(0, texture.id);
-
-        Matrix4f matrix = this.context.getMatrices().peek().getPositionMatrix();
-        BufferBuilder builder = Tessellator.getInstance().getBuffer();
-
-        RenderSystem.setShader(GameRenderer::getPositionTexColorProgram);
-
-        builder.begin(VertexFormat.DrawMode.TRIANGLES, VertexFormats.POSITION_TEXTURE_COLOR);
-        this.fillTexturedBox(builder, matrix, color, x, y, w, h, u1, v1, u2, v2, textureW, textureH);
-
-        BufferRenderer.drawWithGlobalProgram(builder.end());
+        this.texturedBox(GameRenderer::getPositionTexColorProgram, texture.id, color, x, y, w, h, u1, v1, u2, v2, textureW, textureH);
     }
 
     public void texturedBox(int texture, int color, float x, float y, float w, float h, float u1, float v1, float u2, float v2, int textureW, int textureH)
@@ -383,9 +548,19 @@ public class Batcher2D
 
     public void texturedBox(Supplier<ShaderProgram> shader, int texture, int color, float x, float y, float w, float h, float u1, float v1, float u2, float v2, int textureW, int textureH)
     {
+        Matrix4f matrix = this.context.getMatrices().peek().getPositionMatrix();
+
+        if (this.isBatching())
+        {
+            BufferBuilder builder = this.getBatch(shader.get(), texture, VertexFormat.DrawMode.TRIANGLES, VertexFormats.POSITION_TEXTURE_COLOR);
+
+            this.fillTexturedBox(builder, matrix, color, x, y, w, h, u1, v1, u2, v2, textureW, textureH);
+
+            return;
+        }
+
         RenderSystem.setShaderTexture(0, texture);
 
-        Matrix4f matrix = this.context.getMatrices().peek().getPositionMatrix();
         BufferBuilder builder = Tessellator.getInstance().getBuffer();
 
         RenderSystem.setShader(shader);
@@ -393,7 +568,7 @@ public class Batcher2D
         builder.begin(VertexFormat.DrawMode.TRIANGLES, VertexFormats.POSITION_TEXTURE_COLOR);
         this.fillTexturedBox(builder, matrix, color, x, y, w, h, u1, v1, u2, v2, textureW, textureH);
 
-        BufferRenderer.drawWithGlobalProgram(builder.end());
+        draw(builder.end());
     }
 
     private void fillTexturedBox(BufferBuilder builder, Matrix4f matrix, int color, float x, float y, float w, float h, float u1, float v1, float u2, float v2, int textureW, int textureH)
@@ -416,12 +591,21 @@ public class Batcher2D
         float fillerY = h - (countY - 1) * tileH;
 
         Matrix4f matrix = this.context.getMatrices().peek().getPositionMatrix();
-        BufferBuilder builder = Tessellator.getInstance().getBuffer();
+        BufferBuilder builder;
 
-        RenderSystem.setShader(GameRenderer::getPositionTexColorProgram);
-        RenderSystem.setShaderTexture(0, texture.id);
+        if (this.isBatching())
+        {
+            builder = this.getBatch(GameRenderer.getPositionTexColorProgram(), texture.id, VertexFormat.DrawMode.TRIANGLES, VertexFormats.POSITION_TEXTURE_COLOR);
+        }
+        else
+        {
+            builder = Tessellator.getInstance().getBuffer();
 
-        builder.begin(VertexFormat.DrawMode.TRIANGLES, VertexFormats.POSITION_TEXTURE_COLOR);
+            RenderSystem.setShader(GameRenderer::getPositionTexColorProgram);
+            RenderSystem.setShaderTexture(0, texture.id);
+
+            builder.begin(VertexFormat.DrawMode.TRIANGLES, VertexFormats.POSITION_TEXTURE_COLOR);
+        }
 
         for (int i = 0, c = countX * countY; i < c; i ++)
         {
@@ -435,7 +619,10 @@ public class Batcher2D
             this.fillTexturedBox(builder, matrix, color, xx, yy, xw, yh, u, v, u + xw, v + yh, tw, th);
         }
 
-        BufferRenderer.drawWithGlobalProgram(builder.end());
+        if (!this.isBatching())
+        {
+            draw(builder.end());
+        }
     }
 
     /* Text with default font */
@@ -462,10 +649,27 @@ public class Batcher2D
 
     public void text(String label, float x, float y, int color, boolean shadow)
     {
+        if (this.isBatching())
+        {
+            /* Text is collected by draw context's vertex consumers, so
+             * consecutive labels get drawn together */
+            if (!this.batchText)
+            {
+                this.flushBatch();
+            }
+
+            this.context.drawText(this.font.getRenderer(), label, (int) x, (int) y, color, shadow);
+            this.batchText = true;
+
+            return;
+        }
+
         this.context.drawText(this.font.getRenderer(), label, (int) x, (int) y, color, shadow);
         this.context.draw();
 
         RenderSystem.depthFunc(GL11.GL_ALWAYS);
+
+        drawCalls += 1;
     }
 
     /* Text helpers */
@@ -529,6 +733,7 @@ public class Batcher2D
 
     public void flush()
     {
+        this.flushBatch();
         this.context.draw();
     }
 }
\ No newline at end of file
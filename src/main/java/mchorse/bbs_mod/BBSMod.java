@@ -80,6 +80,7 @@ import mchorse.bbs_mod.ui.utils.icons.Icons;
 import mchorse.bbs_mod.utils.clips.Clip;
 import mchorse.bbs_mod.utils.colors.Colors;
 import mchorse.bbs_mod.utils.factory.MapFactory;
+import mchorse.bbs_mod.utils.manager.ManagerSaver;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerEntityEvents;
@@ -514,6 +515,7 @@ public class BBSMod implements ModInitializer
 
         ServerLifecycleEvents.SERVER_STARTED.register((event) -> worldFolder = event.getSavePath(WorldSavePath.ROOT).toFile());
         ServerPlayConnectionEvents.JOIN.register((a, b, c) -> ServerNetwork.sendHandshake(c, b));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> ServerNetwork.resetPlayer(handler.player));
 
         ActionHandler.registerHandlers(actions);
 
@@ -536,6 +538,7 @@ public class BBSMod implements ModInitializer
         {
             actions.reset();
             ServerNetwork.reset();
+            ManagerSaver.get().flush();
         });
 
         EntityTrackingEvents.START_TRACKING.register((trackedEntity, player) ->
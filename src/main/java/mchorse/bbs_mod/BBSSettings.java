@@ -87,6 +87,7 @@ public class BBSSettings
     public static ValueBoolean recordingOverlays;
     public static ValueInt recordingPoseTransformOverlays;
     public static ValueBoolean recordingCameraPreview;
+    public static ValueFloat recordingTolerance;
 
     public static ValueBoolean renderAllModelBlocks;
     public static ValueBoolean clickModelBlocks;
@@ -106,6 +107,10 @@ public class BBSSettings
 
     public static ValueBoolean occlusionCulling;
     public static ValueBoolean structureOptimization;
+    public static ValueBoolean molangCompiler;
+    public static ValueBoolean particlesMultiThreaded;
+    public static ValueBoolean gpuSkinning;
+    public static ValueBoolean multiThreadedSkinning;
 
     public static ValueString cdnUrl;
     public static ValueString cdnToken;
@@ -236,6 +241,7 @@ public class BBSSettings
         recordingOverlays = builder.getBoolean("overlays", true);
         recordingPoseTransformOverlays = builder.getInt("pose_transform_overlays", 0, 0, 42);
         recordingCameraPreview = builder.getBoolean("camera_preview", true);
+        recordingTolerance = builder.getFloat("tolerance", 1F, 0F, 100F);
 
         builder.category("model_blocks");
         renderAllModelBlocks = builder.getBoolean("render_all", true);
@@ -261,6 +267,10 @@ public class BBSSettings
         builder.category("rendering");
         occlusionCulling = builder.getBoolean("occlusion_culling", false);
         structureOptimization = builder.getBoolean("structure_optimization", true);
+        molangCompiler = builder.getBoolean("molang_compiler", true);
+        particlesMultiThreaded = builder.getBoolean("particles_multithreaded", true);
+        gpuSkinning = builder.getBoolean("gpu_skinning", true);
+        multiThreadedSkinning = builder.getBoolean("multithreaded_skinning", true);
 
         builder.category("cdn");
         cdnUrl = builder.getString("url", "");
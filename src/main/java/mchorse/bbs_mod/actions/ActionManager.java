@@ -162,6 +162,11 @@ public class ActionManager
 
     /* Damage control */
 
+    public DamageControl getDamageControl(ServerWorld world)
+    {
+        return this.dc.get(world);
+    }
+
     public void trackDamage(ServerWorld world)
     {
         DamageControl damageControl = this.dc.get(world);
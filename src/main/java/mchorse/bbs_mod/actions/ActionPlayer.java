@@ -13,6 +13,7 @@ import mchorse.bbs_mod.settings.values.base.BaseValue;
 import mchorse.bbs_mod.utils.CollectionUtils;
 import mchorse.bbs_mod.utils.DataPath;
 import mchorse.bbs_mod.utils.MathUtils;
+import mchorse.bbs_mod.utils.clips.Clips;
 import net.minecraft.entity.EquipmentSlot;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.MovementType;
@@ -25,9 +26,16 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class ActionPlayer
 {
+    /**
+     * Interval (in ticks) between checkpoints of world state, which are
+     * used to seek without replaying actions of every tick in between
+     */
+    public static final int CHECKPOINT_INTERVAL = 200;
+
     public Film film;
     public int tick;
     public boolean playing = true;
@@ -44,6 +52,9 @@ public class ActionPlayer
 
     private Map<String, LivingEntity> actors = new HashMap<>();
 
+    private TreeMap<Integer, Checkpoint> checkpoints = new TreeMap<>();
+    private boolean consistent = true;
+
     private List<ItemStack> cachedInventory = new ArrayList<>();
     private Form cachedForm;
 
@@ -108,6 +119,7 @@ public class ActionPlayer
         }
 
         this.actors.clear();
+        this.checkpoints.clear();
 
         List<Replay> list = this.film.replays.getList();
 
@@ -153,12 +165,12 @@ public class ActionPlayer
 
     public void apply(LivingEntity actor, Replay replay, float tick, boolean ticking)
     {
-        double x = replay.keyframes.x.interpolate(tick);
-        double y = replay.keyframes.y.interpolate(tick);
-        double z = replay.keyframes.z.interpolate(tick);
-        float yawHead = replay.keyframes.headYaw.interpolate(tick).floatValue();
-        float yawBody = replay.keyframes.bodyYaw.interpolate(tick).floatValue();
-        float pitch = replay.keyframes.pitch.interpolate(tick).floatValue();
+        double x = replay.keyframes.x.interpolateDouble(tick);
+        double y = replay.keyframes.y.interpolateDouble(tick);
+        double z = replay.keyframes.z.interpolateDouble(tick);
+        float yawHead = (float) replay.keyframes.headYaw.interpolateDouble(tick);
+        float yawBody = (float) replay.keyframes.bodyYaw.interpolateDouble(tick);
+        float pitch = (float) replay.keyframes.pitch.interpolateDouble(tick);
 
         Vec3d pos = actor.getPos();
 
@@ -172,8 +184,8 @@ public class ActionPlayer
         actor.setHeadYaw(yawHead);
         actor.setPitch(pitch);
         actor.setBodyYaw(yawBody);
-        actor.setSneaking(replay.keyframes.sneaking.interpolate(tick) > 0);
-        actor.setOnGround(replay.keyframes.grounded.interpolate(tick) > 0);
+        actor.setSneaking(replay.keyframes.sneaking.interpolateDouble(tick) > 0);
+        actor.setOnGround(replay.keyframes.grounded.interpolateDouble(tick) > 0);
         actor.equipStack(EquipmentSlot.OFFHAND, replay.keyframes.offHand.interpolate(tick, ItemStack.EMPTY));
         actor.equipStack(EquipmentSlot.HEAD, replay.keyframes.armorHead.interpolate(tick, ItemStack.EMPTY));
         actor.equipStack(EquipmentSlot.CHEST, replay.keyframes.armorChest.interpolate(tick, ItemStack.EMPTY));
@@ -197,9 +209,9 @@ public class ActionPlayer
             actor.equipStack(EquipmentSlot.MAINHAND, replay.keyframes.mainHand.interpolate(tick, ItemStack.EMPTY));
         }
 
-        double vx = x - replay.keyframes.x.interpolate(tick - 1);
-        double vy = y - replay.keyframes.y.interpolate(tick - 1);
-        double vz = z - replay.keyframes.z.interpolate(tick - 1);
+        double vx = x - replay.keyframes.x.interpolateDouble(tick - 1);
+        double vy = y - replay.keyframes.y.interpolateDouble(tick - 1);
+        double vz = z - replay.keyframes.z.interpolateDouble(tick - 1);
 
         if (vy == 0D)
         {
@@ -208,7 +220,7 @@ public class ActionPlayer
 
         actor.setVelocity(vx, vy, vz);
 
-        actor.fallDistance = replay.keyframes.fall.interpolate(tick).floatValue();
+        actor.fallDistance = (float) replay.keyframes.fall.interpolateDouble(tick);
     }
 
     public boolean tick()
@@ -238,6 +250,7 @@ public class ActionPlayer
         if (this.tick >= 0)
         {
             this.applyAction();
+            this.captureCheckpoint();
         }
 
         this.tick += 1;
@@ -277,6 +290,9 @@ public class ActionPlayer
         if (baseValue != null)
         {
             baseValue.fromData(data);
+            Clips.invalidateIndex(baseValue);
+
+            this.checkpoints.clear();
 
             if (baseValue.getId().equals("actor") || baseValue.getId().equals("enabled") || baseValue.getId().equals("replays"))
             {
@@ -298,6 +314,7 @@ public class ActionPlayer
 
             if (replay != null)
             {
+                replay.keyframes.resetCursors();
                 this.apply(entry.getValue(), replay, this.tick, false);
             }
         }
@@ -306,15 +323,103 @@ public class ActionPlayer
         {
             this.tick = from;
 
+            Map.Entry<Integer, Checkpoint> checkpoint = this.getCheckpoint(from, tick);
+
+            if (checkpoint != null)
+            {
+                this.restoreCheckpoint(checkpoint.getValue());
+                this.tick = checkpoint.getKey();
+            }
+
             while (this.tick != tick)
             {
-                this.tick += this.tick > tick ? -1 : 1;
+                boolean forward = this.tick < tick;
+
+                this.tick += forward ? 1 : -1;
 
                 this.applyAction();
+
+                if (forward)
+                {
+                    this.captureCheckpoint();
+                }
+                else
+                {
+                    /* Going backward doesn't revert the actions, so world's
+                     * state doesn't match the tick anymore */
+                    this.consistent = false;
+                }
             }
         }
     }
 
+    private DamageControl getDamageControl()
+    {
+        DamageControl damageControl = BBSMod.getActions().getDamageControl(this.world);
+
+        return damageControl != null && damageControl.enable ? damageControl : null;
+    }
+
+    /**
+     * Get the checkpoint from which it's worth seeking from given tick to
+     * the target tick, or null if stepping tick by tick is the only way
+     */
+    private Map.Entry<Integer, Checkpoint> getCheckpoint(int from, int tick)
+    {
+        Map.Entry<Integer, Checkpoint> entry = this.checkpoints.floorEntry(tick);
+
+        if (entry == null || this.getDamageControl() == null)
+        {
+            return null;
+        }
+
+        return tick < from || entry.getKey() > from ? entry : null;
+    }
+
+    /**
+     * Capture world's state at current tick, if it's a checkpoint tick
+     */
+    private void captureCheckpoint()
+    {
+        if (!this.consistent || this.tick % CHECKPOINT_INTERVAL != 0 || this.checkpoints.containsKey(this.tick))
+        {
+            return;
+        }
+
+        DamageControl damageControl = this.getDamageControl();
+
+        if (damageControl == null)
+        {
+            return;
+        }
+
+        Checkpoint checkpoint = new Checkpoint(damageControl.createSnapshot());
+
+        for (Map.Entry<String, LivingEntity> entry : this.actors.entrySet())
+        {
+            checkpoint.health.put(entry.getKey(), entry.getValue().getHealth());
+        }
+
+        this.checkpoints.put(this.tick, checkpoint);
+    }
+
+    private void restoreCheckpoint(Checkpoint checkpoint)
+    {
+        this.getDamageControl().restore(checkpoint.snapshot);
+
+        for (Map.Entry<String, Float> entry : checkpoint.health.entrySet())
+        {
+            LivingEntity actor = this.actors.get(entry.getKey());
+
+            if (actor != null && !actor.isRemoved())
+            {
+                actor.setHealth(entry.getValue());
+            }
+        }
+
+        this.consistent = true;
+    }
+
     public void stop()
     {
         for (LivingEntity value : this.actors.values())
@@ -345,4 +450,15 @@ public class ActionPlayer
     {
         this.playing = !this.playing;
     }
+
+    private static class Checkpoint
+    {
+        public DamageControl.Snapshot snapshot;
+        public Map<String, Float> health = new HashMap<>();
+
+        public Checkpoint(DamageControl.Snapshot snapshot)
+        {
+            this.snapshot = snapshot;
+        }
+    }
 }
\ No newline at end of file
@@ -1,15 +1,19 @@
 package mchorse.bbs_mod.actions;
 
 import mchorse.bbs_mod.BBSSettings;
+import mchorse.bbs_mod.entity.ActorEntity;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class DamageControl
 {
@@ -61,14 +65,7 @@ public class DamageControl
     {
         for (BlockCapture block : this.blocks)
         {
-            this.world.setBlockState(block.pos, block.lastState, 2);
-
-            if (block.blockEntity != null)
-            {
-                BlockEntity blockEntity = BlockEntity.createFromNbt(block.pos, block.lastState, block.blockEntity);
-
-                this.world.addBlockEntity(blockEntity);
-            }
+            this.setBlock(block);
         }
 
         for (Entity entity : this.entities)
@@ -83,6 +80,140 @@ public class DamageControl
         this.entities.clear();
     }
 
+    /**
+     * Capture current state of tracked blocks and entities, so the world
+     * could be brought back to this state with {@link #restore(Snapshot)}.
+     * Blocks that are still in their original state aren't stored
+     */
+    public Snapshot createSnapshot()
+    {
+        Snapshot snapshot = new Snapshot();
+
+        for (BlockCapture block : this.blocks)
+        {
+            BlockState state = this.world.getBlockState(block.pos);
+            BlockEntity blockEntity = this.world.getBlockEntity(block.pos);
+
+            if (state == block.lastState && blockEntity == null && block.blockEntity == null)
+            {
+                continue;
+            }
+
+            snapshot.blocks.put(block.pos, new BlockCapture(block.pos, state, blockEntity == null ? null : blockEntity.createNbtWithId()));
+        }
+
+        for (Entity entity : this.entities)
+        {
+            if (this.isRestorable(entity))
+            {
+                NbtCompound nbt = new NbtCompound();
+
+                if (entity.saveNbt(nbt))
+                {
+                    snapshot.entities.add(new EntityCapture(entity, nbt));
+                }
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Bring tracked blocks and entities back to the state of given
+     * snapshot. Unlike {@link #restore()}, damage keeps being tracked
+     */
+    public void restore(Snapshot snapshot)
+    {
+        for (BlockCapture block : this.blocks)
+        {
+            BlockCapture capture = snapshot.blocks.get(block.pos);
+
+            this.setBlock(capture == null ? block : capture);
+        }
+
+        /* Remove entities that were spawned after the snapshot was made */
+        for (Entity entity : this.entities)
+        {
+            if (this.isRestorable(entity) && !snapshot.hasEntity(entity))
+            {
+                entity.discard();
+            }
+        }
+
+        this.entities.removeIf(Entity::isRemoved);
+
+        for (EntityCapture capture : snapshot.entities)
+        {
+            if (!capture.entity.isRemoved())
+            {
+                capture.entity.readNbt(capture.nbt);
+
+                continue;
+            }
+
+            Entity entity = EntityType.getEntityFromNbt(capture.nbt, this.world).orElse(null);
+
+            if (entity != null && this.world.spawnEntity(entity))
+            {
+                capture.entity = entity;
+            }
+        }
+    }
+
+    /**
+     * Actors are managed by action players, and players can't be respawned
+     */
+    private boolean isRestorable(Entity entity)
+    {
+        return !entity.isRemoved() && !entity.isPlayer() && !(entity instanceof ActorEntity);
+    }
+
+    private void setBlock(BlockCapture block)
+    {
+        this.world.setBlockState(block.pos, block.lastState, 2);
+
+        if (block.blockEntity != null)
+        {
+            BlockEntity blockEntity = BlockEntity.createFromNbt(block.pos, block.lastState, block.blockEntity);
+
+            this.world.addBlockEntity(blockEntity);
+        }
+    }
+
+    /**
+     * State of tracked blocks and entities at some point
+     */
+    public static class Snapshot
+    {
+        private Map<BlockPos, BlockCapture> blocks = new HashMap<>();
+        private List<EntityCapture> entities = new ArrayList<>();
+
+        private boolean hasEntity(Entity entity)
+        {
+            for (EntityCapture capture : this.entities)
+            {
+                if (capture.entity == entity)
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    private static class EntityCapture
+    {
+        public Entity entity;
+        public NbtCompound nbt;
+
+        public EntityCapture(Entity entity, NbtCompound nbt)
+        {
+            this.entity = entity;
+            this.nbt = nbt;
+        }
+    }
+
     private static class BlockCapture
     {
         public BlockPos pos;
@@ -81,11 +81,11 @@ public abstract class ActionClip extends Clip
     {
         ReplayKeyframes keyframes = replay.keyframes;
 
-        player.setPosition(keyframes.x.interpolate(tick), keyframes.y.interpolate(tick), keyframes.z.interpolate(tick));
-        player.setYaw(keyframes.yaw.interpolate(tick).floatValue());
-        player.setHeadYaw(keyframes.headYaw.interpolate(tick).floatValue());
-        player.setBodyYaw(keyframes.bodyYaw.interpolate(tick).floatValue());
-        player.setPitch(keyframes.pitch.interpolate(tick).floatValue());
+        player.setPosition(keyframes.x.interpolateDouble(tick), keyframes.y.interpolateDouble(tick), keyframes.z.interpolateDouble(tick));
+        player.setYaw((float) keyframes.yaw.interpolateDouble(tick));
+        player.setHeadYaw((float) keyframes.headYaw.interpolateDouble(tick));
+        player.setBodyYaw((float) keyframes.bodyYaw.interpolateDouble(tick));
+        player.setPitch((float) keyframes.pitch.interpolateDouble(tick));
         player.setStackInHand(Hand.MAIN_HAND, keyframes.mainHand.interpolate(tick, ItemStack.EMPTY).copy());
         player.setStackInHand(Hand.OFF_HAND, keyframes.offHand.interpolate(tick, ItemStack.EMPTY).copy());
     }
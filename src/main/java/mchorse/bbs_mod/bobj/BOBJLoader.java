@@ -1,9 +1,10 @@
 package mchorse.bbs_mod.bobj;
 
-import mchorse.bbs_mod.utils.IOUtils;
-import org.apache.commons.lang3.ArrayUtils;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import mchorse.bbs_mod.obj.OBJTokenizer;
 import org.joml.Matrix4f;
-import org.joml.Vector2d;
 import org.joml.Vector3f;
 
 import java.io.InputStream;
@@ -22,13 +23,23 @@ public class BOBJLoader
 {
     public static void merge(BOBJData to, BOBJData from)
     {
-        int vertSize = to.vertices.size();
-        int normSize = to.normals.size();
-        int textSize = to.textures.size();
+        int vertSize = to.getVertexCount();
+        int normSize = to.normals.size() / 3;
+        int textSize = to.textures.size() / 2;
+        int weightSize = to.weightNames.size();
 
         to.vertices.addAll(from.vertices);
         to.normals.addAll(from.normals);
         to.textures.addAll(from.textures);
+        to.weightNames.addAll(from.weightNames);
+        to.weightFactors.addAll(from.weightFactors);
+        to.weightOffsets.removeInt(to.weightOffsets.size() - 1);
+
+        for (int i = 0, c = from.weightOffsets.size(); i < c; i++)
+        {
+            to.weightOffsets.add(from.weightOffsets.getInt(i) + weightSize);
+        }
+
         to.armatures.putAll(from.armatures);
 
         for (BOBJMesh mesh : from.meshes)
@@ -45,15 +56,18 @@ public class BOBJLoader
      */
     public static BOBJLoader.BOBJData readData(InputStream stream) throws Exception
     {
-        List<String> lines = IOUtils.readLines(stream);
-
-        List<Vertex> vertices = new ArrayList<Vertex>();
-        List<Vector2d> textures = new ArrayList<Vector2d>();
-        List<Vector3f> normals = new ArrayList<Vector3f>();
-        List<BOBJMesh> objects = new ArrayList<BOBJMesh>();
+        return readData(stream, true);
+    }
 
-        Map<String, BOBJAction> actions = new HashMap<String, BOBJAction>();
-        Map<String, BOBJArmature> armatures = new HashMap<String, BOBJArmature>();
+    /**
+     * Read the data from OBJ file input stream. If geometry is false, then
+     * vertices, normals, texture coordinates and faces are skipped (i.e.
+     * only objects, armatures and actions are read)
+     */
+    public static BOBJLoader.BOBJData readData(InputStream stream, boolean geometry) throws Exception
+    {
+        OBJTokenizer tokenizer = new OBJTokenizer(stream, true);
+        BOBJData data = new BOBJData(new ArrayList<BOBJMesh>(), new HashMap<String, BOBJAction>(), new HashMap<String, BOBJArmature>());
 
         BOBJMesh mesh = null;
         BOBJAction action = null;
@@ -61,112 +75,141 @@ public class BOBJLoader
         BOBJChannel channel = null;
         BOBJArmature armature = null;
         BOBJBone bone = null;
-        Vertex vertex = null;
+        int[] face = new int[9];
 
         int i = 0;
 
-        for (String line : lines)
+        while (tokenizer.nextLine())
         {
-            String[] tokens = line.split("\\s");
-            String first = tokens[0];
+            tokenizer.next();
 
-            if (first.equals("o"))
+            if (tokenizer.is("v") || tokenizer.is("vw") || tokenizer.is("vt") || tokenizer.is("vn") || tokenizer.is("f"))
             {
-                /* Object */
-                objects.add(mesh = new BOBJMesh(tokens[1]));
-                armature = null;
-                vertex = null;
-            }
-            else if (first.equals("o_arm"))
-            {
-                mesh.armatureName = tokens[1];
-            }
-            else if (first.equals("v"))
-            {
-                /* Tiny weights are completely useless */
-                if (vertex != null)
+                if (geometry)
                 {
-                    vertex.eliminateTinyWeights();
+                    readGeometry(tokenizer, data, mesh, face);
                 }
-
-                /* Vertices */
-                vertices.add(vertex = new Vertex(Float.parseFloat(tokens[1]), Float.parseFloat(tokens[2]), Float.parseFloat(tokens[3])));
             }
-            else if (first.equals("vw"))
+            else if (tokenizer.is("o"))
             {
-                /* Vertex weight */
-                float weight = Float.parseFloat(tokens[2]);
-
-                if (weight != 0)
-                {
-                    vertex.weights.add(new Weight(tokens[1], weight));
-                }
-            }
-            else if (first.equals("vt"))
-            {
-                /* Texture coordinates (UV) */
-                textures.add(new Vector2d(Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2])));
-            }
-            else if (first.equals("vn"))
-            {
-                /* Normals */
-                normals.add(new Vector3f(Float.parseFloat(tokens[1]), Float.parseFloat(tokens[2]), Float.parseFloat(tokens[3])));
+                /* Object */
+                data.meshes.add(mesh = new BOBJMesh(tokenizer.nextString()));
+                armature = null;
             }
-            else if (first.equals("f"))
+            else if (tokenizer.is("o_arm"))
             {
-                /* Collect faces */
-                mesh.faces.add(new Face(tokens[1], tokens[2], tokens[3]));
+                mesh.armatureName = tokenizer.nextString();
             }
-            else if (first.equals("arm_name"))
+            else if (tokenizer.is("arm_name"))
             {
                 /* Armature stuff */
                 i = 0;
                 bone = null;
-                armature = new BOBJArmature(tokens[1]);
-                armatures.put(armature.name, armature);
+                armature = new BOBJArmature(tokenizer.nextString());
+                data.armatures.put(armature.name, armature);
             }
-            else if (first.equals("arm_bone"))
+            else if (tokenizer.is("arm_bone"))
             {
-                Vector3f tail = new Vector3f(Float.parseFloat(tokens[3]), Float.parseFloat(tokens[4]), Float.parseFloat(tokens[5]));
+                String name = tokenizer.nextString();
+                String parent = tokenizer.nextString();
+                Vector3f tail = new Vector3f(tokenizer.nextFloat(), tokenizer.nextFloat(), tokenizer.nextFloat());
                 Matrix4f boneMat = new Matrix4f();
                 float[] mat = new float[16];
 
-                for (int j = 6; j < 6 + 16; j++)
+                for (int j = 0; j < 16; j++)
                 {
-                    mat[j - 6] = Float.parseFloat(tokens[j]);
+                    mat[j] = tokenizer.nextFloat();
                 }
 
                 boneMat.set(mat);
                 boneMat.transpose();
-                bone = new BOBJBone(i++, tokens[1], tokens[2], boneMat);
+                bone = new BOBJBone(i++, name, parent, boneMat);
                 armature.addBone(bone);
             }
-            else if (first.equals("an"))
+            else if (tokenizer.is("an"))
             {
                 /* Animation stuff */
-                actions.put(tokens[1], action = new BOBJAction(tokens[1]));
+                String name = tokenizer.nextString();
+
+                data.actions.put(name, action = new BOBJAction(name));
             }
-            else if (first.equals("ao"))
+            else if (tokenizer.is("ao"))
             {
-                action.groups.put(tokens[1], group = new BOBJGroup(tokens[1]));
+                String name = tokenizer.nextString();
+
+                action.groups.put(name, group = new BOBJGroup(name));
             }
-            else if (first.equals("ag"))
+            else if (tokenizer.is("ag"))
             {
-                group.channels.add(channel = new BOBJChannel(tokens[1], Integer.parseInt(tokens[2])));
+                group.channels.add(channel = new BOBJChannel(tokenizer.nextString(), tokenizer.nextInt()));
             }
-            else if (first.equals("kf"))
+            else if (tokenizer.is("kf"))
             {
-                channel.keyframes.add(BOBJKeyframe.parse(tokens));
+                channel.keyframes.add(BOBJKeyframe.parse(tokenizer.tokens()));
             }
         }
 
         /* Last ones need this too */
-        if (vertex != null)
+        data.finishVertex();
+        data.weightOffsets.add(data.weightNames.size());
+
+        for (BOBJMesh m : data.meshes)
+        {
+            m.armature = data.armatures.get(m.armatureName);
+        }
+
+        return data;
+    }
+
+    private static void readGeometry(OBJTokenizer tokenizer, BOBJData data, BOBJMesh mesh, int[] face)
+    {
+        if (tokenizer.is("v"))
+        {
+            /* Tiny weights are completely useless */
+            data.finishVertex();
+
+            /* Vertices */
+            data.vertices.add(tokenizer.nextFloat());
+            data.vertices.add(tokenizer.nextFloat());
+            data.vertices.add(tokenizer.nextFloat());
+            data.weightOffsets.add(data.weightNames.size());
+        }
+        else if (tokenizer.is("vw"))
         {
-            vertex.eliminateTinyWeights();
+            /* Vertex weight */
+            String name = tokenizer.nextString();
+            float weight = tokenizer.nextFloat();
+
+            if (weight != 0)
+            {
+                data.weightNames.add(name);
+                data.weightFactors.add(weight);
+            }
         }
+        else if (tokenizer.is("vt"))
+        {
+            /* Texture coordinates (UV) */
+            double u = tokenizer.nextDouble();
+            double v = tokenizer.nextDouble();
 
-        return new BOBJData(vertices, textures, normals, objects, actions, armatures);
+            data.textures.add((float) u);
+            data.textures.add((float) (1 - v));
+        }
+        else if (tokenizer.is("vn"))
+        {
+            /* Normals */
+            data.normals.add(tokenizer.nextFloat());
+            data.normals.add(tokenizer.nextFloat());
+            data.normals.add(tokenizer.nextFloat());
+        }
+        else if (tokenizer.is("f"))
+        {
+            /* Collect faces */
+            tokenizer.nextIndexGroup(face, 0);
+            tokenizer.nextIndexGroup(face, 3);
+            tokenizer.nextIndexGroup(face, 6);
+            mesh.faces.addElements(mesh.faces.size(), face);
+        }
     }
 
     /**
@@ -186,34 +229,24 @@ public class BOBJLoader
 
     public static CompiledData compileMesh(BOBJData data, BOBJMesh mesh)
     {
-        List<Integer> indices = new ArrayList<Integer>();
-        List<Face> facesList = mesh.faces;
+        int vertices = mesh.faces.size() / 3;
 
         /* Initiate arrays for mesh data */
-        int[] boneIndicesArr = new int[facesList.size() * 3 * 4];
-        float[] weightsArr = new float[facesList.size() * 3 * 4];
-        float[] posArr = new float[facesList.size() * 3 * 3];
-        float[] textCoordArr = new float[facesList.size() * 3 * 2];
-        float[] normArr = new float[facesList.size() * 3 * 3];
+        int[] boneIndicesArr = new int[vertices * 4];
+        float[] weightsArr = new float[vertices * 4];
+        float[] posArr = new float[vertices * 3];
+        float[] textCoordArr = new float[vertices * 2];
+        float[] normArr = new float[vertices * 3];
+        int[] indicesArr = new int[vertices];
 
         Arrays.fill(boneIndicesArr, -1);
         Arrays.fill(weightsArr, -1);
 
-        int i = 0;
-
-        for (Face face : facesList)
+        for (int i = 0; i < vertices; i++)
         {
-            for (IndexGroup indValue : face.idxGroups)
-            {
-                processFaceVertex(i, indValue, mesh, data, indices, posArr, textCoordArr, normArr, weightsArr, boneIndicesArr);
-
-                i++;
-            }
+            processFaceVertex(i, mesh.faces, mesh, data, indicesArr, posArr, textCoordArr, normArr, weightsArr, boneIndicesArr);
         }
 
-        Integer[] integerArray = indices.toArray(new Integer[0]);
-        int[] indicesArr = ArrayUtils.toPrimitive(integerArray);
-
         return new CompiledData(posArr, textCoordArr, normArr, weightsArr, boneIndicesArr, indicesArr, mesh);
     }
 
@@ -222,84 +255,80 @@ public class BOBJLoader
      */
     public static CompiledData loadMesh(BOBJData data)
     {
-        List<Integer> indices = new ArrayList<Integer>();
-        List<Face> facesList = new ArrayList<Face>();
+        IntArrayList faces = new IntArrayList();
 
         for (BOBJMesh mesh : data.meshes)
         {
-            facesList.addAll(mesh.faces);
+            faces.addAll(mesh.faces);
         }
 
-        /* Initiate arrays for mesh data */
-        float[] posArr = new float[facesList.size() * 3 * 3];
-        float[] textCoordArr = new float[facesList.size() * 3 * 2];
-        float[] normArr = new float[facesList.size() * 3 * 3];
+        int vertices = faces.size() / 3;
 
-        int i = 0;
+        /* Initiate arrays for mesh data */
+        float[] posArr = new float[vertices * 3];
+        float[] textCoordArr = new float[vertices * 2];
+        float[] normArr = new float[vertices * 3];
+        int[] indicesArr = new int[vertices];
 
-        for (Face face : facesList)
+        for (int i = 0; i < vertices; i++)
         {
-            for (IndexGroup indValue : face.idxGroups)
-            {
-                processFaceVertex(i, indValue, null, data, indices, posArr, textCoordArr, normArr, null, null);
-
-                i++;
-            }
+            processFaceVertex(i, faces, null, data, indicesArr, posArr, textCoordArr, normArr, null, null);
         }
 
-        Integer[] integerArray = indices.toArray(new Integer[0]);
-        int[] indicesArr = ArrayUtils.toPrimitive(integerArray);
-
         return new CompiledData(posArr, textCoordArr, normArr, null, null, indicesArr, null);
     }
 
-    private static void processFaceVertex(int index, IndexGroup indices, BOBJMesh mesh, BOBJData data, List<Integer> indicesList, float[] posArr, float[] texCoordArr, float[] normArr, float[] weightsArr, int[] boneIndicesArr)
+    private static void processFaceVertex(int index, IntArrayList faces, BOBJMesh mesh, BOBJData data, int[] indicesArr, float[] posArr, float[] texCoordArr, float[] normArr, float[] weightsArr, int[] boneIndicesArr)
     {
-        indicesList.add(index);
+        int position = faces.getInt(index * 3);
+        int texture = faces.getInt(index * 3 + 1);
+        int normal = faces.getInt(index * 3 + 2);
 
-        if (indices.idxPos >= 0)
-        {
-            Vertex vec = data.vertices.get(indices.idxPos);
+        indicesArr[index] = index;
 
-            posArr[index * 3] = vec.x;
-            posArr[index * 3 + 1] = vec.y;
-            posArr[index * 3 + 2] = vec.z;
+        if (position >= 0)
+        {
+            posArr[index * 3] = data.vertices.getFloat(position * 3);
+            posArr[index * 3 + 1] = data.vertices.getFloat(position * 3 + 1);
+            posArr[index * 3 + 2] = data.vertices.getFloat(position * 3 + 2);
 
             if (mesh != null)
             {
-                for (int i = 0, c = Math.min(vec.weights.size(), 4); i < c; i++)
+                int offset = data.weightOffsets.getInt(position);
+
+                for (int i = 0, c = Math.min(data.weightOffsets.getInt(position + 1) - offset, 4); i < c; i++)
                 {
-                    Weight weight = vec.weights.get(i);
-                    BOBJBone bone = mesh.armature.bones.get(weight.name);
+                    BOBJBone bone = mesh.armature.bones.get(data.weightNames.get(offset + i));
 
-                    weightsArr[index * 4 + i] = bone == null ? 0 : weight.factor;
+                    weightsArr[index * 4 + i] = bone == null ? 0 : data.weightFactors.getFloat(offset + i);
                     boneIndicesArr[index * 4 + i] = bone == null ? -1 : bone.index;
                 }
             }
         }
 
-        if (indices.idxTextCoord >= 0)
+        if (texture >= 0)
         {
-            Vector2d textCoord = data.textures.get(indices.idxTextCoord);
-
-            texCoordArr[index * 2] = (float) textCoord.x;
-            texCoordArr[index * 2 + 1] = (float) (1 - textCoord.y);
+            texCoordArr[index * 2] = data.textures.getFloat(texture * 2);
+            texCoordArr[index * 2 + 1] = data.textures.getFloat(texture * 2 + 1);
         }
 
-        if (indices.idxVecNormal >= 0)
+        if (normal >= 0)
         {
-            Vector3f vecNorm = data.normals.get(indices.idxVecNormal);
-
-            normArr[index * 3] = vecNorm.x;
-            normArr[index * 3 + 1] = vecNorm.y;
-            normArr[index * 3 + 2] = vecNorm.z;
+            normArr[index * 3] = data.normals.getFloat(normal * 3);
+            normArr[index * 3 + 1] = data.normals.getFloat(normal * 3 + 1);
+            normArr[index * 3 + 2] = data.normals.getFloat(normal * 3 + 2);
         }
     }
 
     public static class BOBJMesh
     {
         public String name;
-        public List<Face> faces = new ArrayList<Face>();
+
+        /**
+         * Triangles' indices: position, texture coordinate and normal
+         * indices for every of three vertices (-1 if there is no such index)
+         */
+        public IntArrayList faces = new IntArrayList();
 
         public String armatureName;
         public BOBJArmature armature;
@@ -315,178 +344,106 @@ public class BOBJLoader
             mesh.armatureName = this.armatureName;
             mesh.armature = this.armature;
 
-            for (Face face : this.faces)
+            for (int i = 0, c = this.faces.size(); i < c; i += 3)
             {
-                mesh.faces.add(face.add(vertices, normals, textures));
+                mesh.faces.add(this.faces.getInt(i) + vertices);
+                mesh.faces.add(this.faces.getInt(i + 1) + textures);
+                mesh.faces.add(this.faces.getInt(i + 2) + normals);
             }
 
             return mesh;
         }
     }
 
-    public static class Face
+    public static class BOBJData
     {
         /**
-         * List of idxGroup groups for a face triangle (3 vertices per face).
+         * Vertex positions (3 floats per vertex), texture coordinates (2
+         * floats per coordinate, V is already flipped) and normals (3 floats
+         * per normal)
          */
-        public IndexGroup[] idxGroups = new IndexGroup[3];
-
-        public Face(String v1, String v2, String v3)
-        {
-            idxGroups[0] = parseLine(v1);
-            idxGroups[1] = parseLine(v2);
-            idxGroups[2] = parseLine(v3);
-        }
-
-        public Face() {}
+        public FloatArrayList vertices = new FloatArrayList();
+        public FloatArrayList textures = new FloatArrayList();
+        public FloatArrayList normals = new FloatArrayList();
 
         /**
-         * Parse index group from a string in format of "1/2/3". It can be also
-         * "1//3" if the model doesn't provides texture coordinates.
+         * Vertex weights (bone names and weight factors). Weights of vertex
+         * N are located between weightOffsets[N] and weightOffsets[N + 1]
          */
-        private IndexGroup parseLine(String line)
-        {
-            IndexGroup idxGroup = new IndexGroup();
-            String[] lineTokens = line.split("/");
-            int length = lineTokens.length;
-
-            idxGroup.idxPos = Integer.parseInt(lineTokens[0]) - 1;
-
-            if (length > 1)
-            {
-                /* It can be empty if the obj does not define text coords */
-                String textCoord = lineTokens[1];
-
-                if (!textCoord.isEmpty())
-                {
-                    idxGroup.idxTextCoord = Integer.parseInt(textCoord) - 1;
-                }
-
-                if (length > 2)
-                {
-                    idxGroup.idxVecNormal = Integer.parseInt(lineTokens[2]) - 1;
-                }
-            }
+        public ObjectArrayList<String> weightNames = new ObjectArrayList<String>();
+        public FloatArrayList weightFactors = new FloatArrayList();
+        public IntArrayList weightOffsets = new IntArrayList();
 
-            return idxGroup;
-        }
+        public List<BOBJMesh> meshes;
+        public Map<String, BOBJAction> actions;
+        public Map<String, BOBJArmature> armatures;
 
-        public Face add(int v, int n, int t)
+        public BOBJData(List<BOBJMesh> meshes, Map<String, BOBJAction> actions, Map<String, BOBJArmature> armatures)
         {
-            Face face = new Face();
+            this.meshes = meshes;
+            this.actions = actions;
+            this.armatures = armatures;
 
-            for (int i = 0; i < face.idxGroups.length; i ++)
+            for (BOBJMesh mesh : meshes)
             {
-                IndexGroup group = this.idxGroups[i];
-
-                face.idxGroups[i] = new IndexGroup(group.idxPos + v, group.idxTextCoord + t, group.idxVecNormal + n);
+                mesh.armature = armatures.get(mesh.armatureName);
             }
-
-            return face;
         }
-    }
 
-    /**
-     * Index group class
-     *
-     * This class represents an index group. Used in {@link Face} class to
-     * represent an index group for looking up vertices from the collected
-     * arrays.
-     */
-    public static class IndexGroup
-    {
-        public static final int NO_VALUE = -1;
-
-        public int idxPos = NO_VALUE;
-        public int idxTextCoord = NO_VALUE;
-        public int idxVecNormal = NO_VALUE;
-
-        public IndexGroup(int v, int t, int n)
+        public int getVertexCount()
         {
-            this.idxPos = v;
-            this.idxTextCoord = t;
-            this.idxVecNormal = n;
+            return this.vertices.size() / 3;
         }
 
-        public IndexGroup() {}
-    }
+        /**
+         * Remove tiny weights of the last vertex, and normalize the rest of
+         * its weights
+         */
+        private void finishVertex()
+        {
+            if (this.weightOffsets.isEmpty())
+            {
+                return;
+            }
 
-    public static class Vertex
-    {
-        public float x;
-        public float y;
-        public float z;
+            int offset = this.weightOffsets.getInt(this.weightOffsets.size() - 1);
+            int size = offset;
 
-        public List<Weight> weights = new ArrayList<Weight>();
+            for (int i = offset, c = this.weightNames.size(); i < c; i++)
+            {
+                float factor = this.weightFactors.getFloat(i);
 
-        public Vertex(float x, float y, float z)
-        {
-            this.x = x;
-            this.y = y;
-            this.z = z;
-        }
+                if (factor >= 0.01)
+                {
+                    this.weightNames.set(size, this.weightNames.get(i));
+                    this.weightFactors.set(size, factor);
+                    size += 1;
+                }
+            }
 
-        public void eliminateTinyWeights()
-        {
-            this.weights.removeIf(w -> w.factor < 0.01);
+            this.weightNames.size(size);
+            this.weightFactors.size(size);
 
-            if (this.weights.isEmpty())
+            if (size == offset)
             {
                 return;
             }
 
             float weight = 0;
 
-            for (Weight w : this.weights)
+            for (int i = offset; i < size; i++)
             {
-                weight += w.factor;
+                weight += this.weightFactors.getFloat(i);
             }
 
             if (weight != 1)
             {
-                for (Weight w : this.weights)
+                for (int i = offset; i < size; i++)
                 {
-                    w.factor /= weight;
+                    this.weightFactors.set(i, this.weightFactors.getFloat(i) / weight);
                 }
             }
         }
-    }
-
-    public static class Weight
-    {
-        public String name;
-        public float factor;
-
-        public Weight(String name, float factor)
-        {
-            this.name = name;
-            this.factor = factor;
-        }
-    }
-
-    public static class BOBJData
-    {
-        public List<Vertex> vertices;
-        public List<Vector2d> textures;
-        public List<Vector3f> normals;
-        public List<BOBJMesh> meshes;
-        public Map<String, BOBJAction> actions;
-        public Map<String, BOBJArmature> armatures;
-
-        public BOBJData(List<Vertex> vertices, List<Vector2d> textures, List<Vector3f> normals, List<BOBJMesh> meshes, Map<String, BOBJAction> actions, Map<String, BOBJArmature> armatures)
-        {
-            this.vertices = vertices;
-            this.textures = textures;
-            this.normals = normals;
-            this.meshes = meshes;
-            this.actions = actions;
-            this.armatures = armatures;
-
-            for (BOBJMesh mesh : meshes)
-            {
-                mesh.armature = armatures.get(mesh.armatureName);
-            }
-        }
 
         public boolean hasGeometry()
         {
@@ -501,6 +458,9 @@ public class BOBJLoader
             this.vertices.clear();
             this.textures.clear();
             this.normals.clear();
+            this.weightNames.clear();
+            this.weightFactors.clear();
+            this.weightOffsets.clear();
             this.meshes.clear();
         }
 
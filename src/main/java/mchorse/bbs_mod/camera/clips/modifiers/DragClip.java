@@ -6,7 +6,11 @@ import mchorse.bbs_mod.settings.values.numeric.ValueFloat;
 import mchorse.bbs_mod.settings.values.numeric.ValueInt;
 import mchorse.bbs_mod.utils.clips.Clip;
 import mchorse.bbs_mod.utils.clips.ClipContext;
+import mchorse.bbs_mod.utils.clips.Clips;
 import mchorse.bbs_mod.utils.interps.Lerps;
+import mchorse.bbs_mod.utils.keyframes.KeyframeChannel;
+
+import java.util.Arrays;
 
 /**
  * Drag modifier
@@ -14,9 +18,19 @@ import mchorse.bbs_mod.utils.interps.Lerps;
  * This modifier is responsible for creating follow like 
  * behavior by memorizing previous position/angle and then 
  * linearly interpolating it using given factor.
+ *
+ * In deterministic mode, the state of every {@link #CHECKPOINT_STEPS}th
+ * sub-step is stored as a checkpoint along with the last evaluated
+ * sub-step, so sequential playback only has to evaluate the new
+ * sub-steps, and seeking resumes from the nearest checkpoint.
  */
 public class DragClip extends ComponentClip
 {
+    /**
+     * How many sub-steps are between stored checkpoints
+     */
+    public static final int CHECKPOINT_STEPS = 16;
+
     public final ValueBoolean deterministic = new ValueBoolean("deterministic", true);
     public final ValueFloat factor = new ValueFloat("factor", 0.5F, 0F, 1F);
     public final ValueInt rate = new ValueInt("rate", 60, 1, 300);
@@ -33,6 +47,16 @@ public class DragClip extends ComponentClip
     private float prevRoll;
     private float prevFov;
 
+    /* Deterministic sub-step cache */
+    private Clips cacheClips;
+    private int cacheVersion;
+    private int cacheModifications;
+    private boolean cacheable;
+    private Position last = new Position();
+    private int lastStep = -1;
+    private double[] checkpoints = new double[0];
+    private int checkpointCount;
+
     public DragClip()
     {
         super();
@@ -45,6 +69,7 @@ public class DragClip extends ComponentClip
     public void resetCache()
     {
         this.cached = false;
+        this.cacheClips = null;
     }
 
     @Override
@@ -78,28 +103,26 @@ public class DragClip extends ComponentClip
 
         if (this.deterministic.get())
         {
-            int offset = this.tick.get();
+            float rate = this.rate.get() / 20F;
+            int steps = (int) ((context.relativeTick + context.transition) * rate);
 
             this.original.copy(position);
-            context.applyUnderneath(offset, 0F, this.current);
-            position.copy(this.current);
+            this.validateCache(context);
 
-            float rate = this.rate.get() / 20F;
-            float duration = (context.relativeTick + context.transition) * rate;
-
-            for (int i = 1; i <= duration; i++)
+            if (this.cacheable)
             {
-                float tick = i / rate;
-
-                context.applyUnderneath(offset + (int) tick, tick % 1F, this.current);
+                this.seek(context, steps, rate);
+                position.copy(this.last);
+            }
+            else
+            {
+                context.applyUnderneath(this.tick.get(), 0F, this.current);
+                position.copy(this.current);
 
-                if (isX) position.point.x = Lerps.lerp(position.point.x, this.current.point.x, factor);
-                if (isY) position.point.y = Lerps.lerp(position.point.y, this.current.point.y, factor);
-                if (isZ) position.point.z = Lerps.lerp(position.point.z, this.current.point.z, factor);
-                if (isYaw) position.angle.yaw = (float) Lerps.lerpYaw(position.angle.yaw, this.current.angle.yaw, factor);
-                if (isPitch) position.angle.pitch = Lerps.lerp(position.angle.pitch, this.current.angle.pitch, factor);
-                if (isRoll) position.angle.roll = Lerps.lerp(position.angle.roll, this.current.angle.roll, factor);
-                if (isFov) position.angle.fov = Lerps.lerp(position.angle.fov, this.current.angle.fov, factor);
+                for (int i = 1; i <= steps; i++)
+                {
+                    this.step(context, position, i, rate);
+                }
             }
 
             if (!isX) position.point.x = this.original.point.x;
@@ -124,6 +147,145 @@ public class DragClip extends ComponentClip
         }
     }
 
+    /**
+     * Apply a single sub-step of deterministic drag onto given position
+     */
+    private void step(ClipContext context, Position position, int i, float rate)
+    {
+        float tick = i / rate;
+        float factor = this.factor.get();
+
+        context.applyUnderneath(this.tick.get() + (int) tick, tick % 1F, this.current);
+
+        if (this.isActive(0)) position.point.x = Lerps.lerp(position.point.x, this.current.point.x, factor);
+        if (this.isActive(1)) position.point.y = Lerps.lerp(position.point.y, this.current.point.y, factor);
+        if (this.isActive(2)) position.point.z = Lerps.lerp(position.point.z, this.current.point.z, factor);
+        if (this.isActive(3)) position.angle.yaw = (float) Lerps.lerpYaw(position.angle.yaw, this.current.angle.yaw, factor);
+        if (this.isActive(4)) position.angle.pitch = Lerps.lerp(position.angle.pitch, this.current.angle.pitch, factor);
+        if (this.isActive(5)) position.angle.roll = Lerps.lerp(position.angle.roll, this.current.angle.roll, factor);
+        if (this.isActive(6)) position.angle.fov = Lerps.lerp(position.angle.fov, this.current.angle.fov, factor);
+    }
+
+    /**
+     * Drop cached sub-steps if any of the clips or keyframes were changed
+     * since they were cached. Keyframes are checked separately, because
+     * dragging them in the editor doesn't notify clips
+     */
+    private void validateCache(ClipContext context)
+    {
+        Clips clips = context.clips;
+        int modifications = KeyframeChannel.getModifications();
+
+        if (clips == this.cacheClips && clips != null && clips.getVersion() == this.cacheVersion && modifications == this.cacheModifications)
+        {
+            return;
+        }
+
+        this.cacheClips = clips;
+        this.cacheVersion = clips == null ? 0 : clips.getVersion();
+        this.cacheModifications = modifications;
+        this.cacheable = clips != null;
+        this.lastStep = -1;
+        this.checkpointCount = 0;
+
+        if (clips == null)
+        {
+            return;
+        }
+
+        /* Sub-steps can't be cached when there are clips underneath that
+         * depend on something besides clips (like entities' positions) */
+        int layer = this.layer.get();
+        int from = this.tick.get();
+        int to = from + this.duration.get();
+
+        for (Clip clip : clips.get())
+        {
+            boolean overlaps = clip.isGlobal() || (clip.tick.get() < to && clip.tick.get() + clip.duration.get() > from);
+
+            if (clip.layer.get() >= layer || !overlaps)
+            {
+                continue;
+            }
+
+            if (clip instanceof EntityClip || (clip instanceof DragClip drag && !drag.deterministic.get()))
+            {
+                this.cacheable = false;
+
+                break;
+            }
+        }
+    }
+
+    /**
+     * Evaluate the state at given sub-step into the last position, resuming
+     * from the last evaluated sub-step, or the nearest checkpoint before it
+     */
+    private void seek(ClipContext context, int steps, float rate)
+    {
+        if (this.checkpointCount == 0)
+        {
+            context.applyUnderneath(this.tick.get(), 0F, this.current);
+
+            this.last.copy(this.current);
+            this.lastStep = 0;
+            this.storeCheckpoint();
+        }
+
+        steps = Math.max(steps, 0);
+
+        int checkpoint = Math.min(steps / CHECKPOINT_STEPS, this.checkpointCount - 1);
+
+        if (this.lastStep > steps || this.lastStep < checkpoint * CHECKPOINT_STEPS)
+        {
+            this.loadCheckpoint(checkpoint);
+        }
+
+        while (this.lastStep < steps)
+        {
+            this.lastStep += 1;
+            this.step(context, this.last, this.lastStep, rate);
+
+            if (this.lastStep == this.checkpointCount * CHECKPOINT_STEPS)
+            {
+                this.storeCheckpoint();
+            }
+        }
+    }
+
+    private void storeCheckpoint()
+    {
+        int offset = this.checkpointCount * 7;
+
+        if (offset + 7 > this.checkpoints.length)
+        {
+            this.checkpoints = Arrays.copyOf(this.checkpoints, Math.max(this.checkpoints.length * 2, 7 * 16));
+        }
+
+        this.checkpoints[offset] = this.last.point.x;
+        this.checkpoints[offset + 1] = this.last.point.y;
+        this.checkpoints[offset + 2] = this.last.point.z;
+        this.checkpoints[offset + 3] = this.last.angle.yaw;
+        this.checkpoints[offset + 4] = this.last.angle.pitch;
+        this.checkpoints[offset + 5] = this.last.angle.roll;
+        this.checkpoints[offset + 6] = this.last.angle.fov;
+        this.checkpointCount += 1;
+    }
+
+    private void loadCheckpoint(int index)
+    {
+        int offset = index * 7;
+
+        this.last.point.x = this.checkpoints[offset];
+        this.last.point.y = this.checkpoints[offset + 1];
+        this.last.point.z = this.checkpoints[offset + 2];
+        this.last.angle.yaw = (float) this.checkpoints[offset + 3];
+        this.last.angle.pitch = (float) this.checkpoints[offset + 4];
+        this.last.angle.roll = (float) this.checkpoints[offset + 5];
+        this.last.angle.fov = (float) this.checkpoints[offset + 6];
+        this.lastStep = index * CHECKPOINT_STEPS;
+    }
+
     @Override
     public Clip create()
     {
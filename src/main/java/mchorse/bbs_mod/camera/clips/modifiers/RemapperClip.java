@@ -6,12 +6,11 @@ import mchorse.bbs_mod.camera.data.Position;
 import mchorse.bbs_mod.utils.MathUtils;
 import mchorse.bbs_mod.utils.clips.Clip;
 import mchorse.bbs_mod.utils.clips.ClipContext;
-import mchorse.bbs_mod.utils.keyframes.KeyframeChannel;
-import mchorse.bbs_mod.utils.keyframes.factories.KeyframeFactories;
+import mchorse.bbs_mod.utils.keyframes.DoubleKeyframeChannel;
 
 public class RemapperClip extends CameraClip
 {
-    public final KeyframeChannel<Double> channel = new KeyframeChannel<>("channel", KeyframeFactories.DOUBLE);
+    public final DoubleKeyframeChannel channel = new DoubleKeyframeChannel("channel");
 
     public RemapperClip()
     {
@@ -26,7 +25,7 @@ public class RemapperClip extends CameraClip
     @Override
     public void applyClip(ClipContext context, Position position)
     {
-        double factor = this.channel.interpolate(context.relativeTick + context.transition);
+        double factor = this.channel.interpolateDouble(context.relativeTick + context.transition);
         int duration = this.duration.get();
 
         factor *= duration;
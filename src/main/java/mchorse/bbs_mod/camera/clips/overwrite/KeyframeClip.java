@@ -8,9 +8,9 @@ import mchorse.bbs_mod.utils.MathUtils;
 import mchorse.bbs_mod.utils.clips.Clip;
 import mchorse.bbs_mod.utils.clips.ClipContext;
 import mchorse.bbs_mod.utils.joml.Matrices;
+import mchorse.bbs_mod.utils.keyframes.DoubleKeyframeChannel;
 import mchorse.bbs_mod.utils.keyframes.KeyframeChannel;
 import mchorse.bbs_mod.utils.keyframes.KeyframeSegment;
-import mchorse.bbs_mod.utils.keyframes.factories.KeyframeFactories;
 import org.joml.Vector3f;
 
 /**
@@ -21,14 +21,14 @@ import org.joml.Vector3f;
  */
 public class KeyframeClip extends CameraClip
 {
-    public final KeyframeChannel<Double> x = new KeyframeChannel<>("x", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> y = new KeyframeChannel<>("y", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> z = new KeyframeChannel<>("z", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> yaw = new KeyframeChannel<>("yaw", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> pitch = new KeyframeChannel<>("pitch", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> roll = new KeyframeChannel<>("roll", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> fov = new KeyframeChannel<>("fov", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> distance = new KeyframeChannel<>("distance", KeyframeFactories.DOUBLE);
+    public final DoubleKeyframeChannel x = new DoubleKeyframeChannel("x");
+    public final DoubleKeyframeChannel y = new DoubleKeyframeChannel("y");
+    public final DoubleKeyframeChannel z = new DoubleKeyframeChannel("z");
+    public final DoubleKeyframeChannel yaw = new DoubleKeyframeChannel("yaw");
+    public final DoubleKeyframeChannel pitch = new DoubleKeyframeChannel("pitch");
+    public final DoubleKeyframeChannel roll = new DoubleKeyframeChannel("roll");
+    public final DoubleKeyframeChannel fov = new DoubleKeyframeChannel("fov");
+    public final DoubleKeyframeChannel distance = new DoubleKeyframeChannel("distance");
     public final ValueBoolean additive = new ValueBoolean("additive", false);
 
     public KeyframeChannel<Double>[] channels;
@@ -68,27 +68,27 @@ public class KeyframeClip extends CameraClip
 
         if (this.additive.get())
         {
-            if (!this.x.isEmpty()) position.point.x += this.x.interpolate(0F) - this.x.interpolate(t);
-            if (!this.y.isEmpty()) position.point.y += this.y.interpolate(0F) - this.y.interpolate(t);
-            if (!this.z.isEmpty()) position.point.z += this.z.interpolate(0F) - this.z.interpolate(t);
-            if (!this.yaw.isEmpty()) position.angle.yaw     += this.yaw.interpolate(0F).floatValue()   - this.yaw.interpolate(t).floatValue();
-            if (!this.pitch.isEmpty()) position.angle.pitch += this.pitch.interpolate(0F).floatValue() - this.pitch.interpolate(t).floatValue();
-            if (!this.roll.isEmpty()) position.angle.roll   += this.roll.interpolate(0F).floatValue()  - this.roll.interpolate(t).floatValue();
-            if (!this.fov.isEmpty()) position.angle.fov     += this.fov.interpolate(0F).floatValue()   - this.fov.interpolate(t).floatValue();
+            if (!this.x.isEmpty()) position.point.x += this.x.interpolateDouble(0F) - this.x.interpolateDouble(t);
+            if (!this.y.isEmpty()) position.point.y += this.y.interpolateDouble(0F) - this.y.interpolateDouble(t);
+            if (!this.z.isEmpty()) position.point.z += this.z.interpolateDouble(0F) - this.z.interpolateDouble(t);
+            if (!this.yaw.isEmpty()) position.angle.yaw     += (float) this.yaw.interpolateDouble(0F)   - (float) this.yaw.interpolateDouble(t);
+            if (!this.pitch.isEmpty()) position.angle.pitch += (float) this.pitch.interpolateDouble(0F) - (float) this.pitch.interpolateDouble(t);
+            if (!this.roll.isEmpty()) position.angle.roll   += (float) this.roll.interpolateDouble(0F)  - (float) this.roll.interpolateDouble(t);
+            if (!this.fov.isEmpty()) position.angle.fov     += (float) this.fov.interpolateDouble(0F)   - (float) this.fov.interpolateDouble(t);
         }
         else
         {
-            if (!this.x.isEmpty()) position.point.x = this.x.interpolate(t);
-            if (!this.y.isEmpty()) position.point.y = this.y.interpolate(t);
-            if (!this.z.isEmpty()) position.point.z = this.z.interpolate(t);
-            if (!this.yaw.isEmpty()) position.angle.yaw = this.yaw.interpolate(t).floatValue();
-            if (!this.pitch.isEmpty()) position.angle.pitch = this.pitch.interpolate(t).floatValue();
-            if (!this.roll.isEmpty()) position.angle.roll = this.roll.interpolate(t).floatValue();
-            if (!this.fov.isEmpty()) position.angle.fov = this.fov.interpolate(t).floatValue();
+            if (!this.x.isEmpty()) position.point.x = this.x.interpolateDouble(t);
+            if (!this.y.isEmpty()) position.point.y = this.y.interpolateDouble(t);
+            if (!this.z.isEmpty()) position.point.z = this.z.interpolateDouble(t);
+            if (!this.yaw.isEmpty()) position.angle.yaw = (float) this.yaw.interpolateDouble(t);
+            if (!this.pitch.isEmpty()) position.angle.pitch = (float) this.pitch.interpolateDouble(t);
+            if (!this.roll.isEmpty()) position.angle.roll = (float) this.roll.interpolateDouble(t);
+            if (!this.fov.isEmpty()) position.angle.fov = (float) this.fov.interpolateDouble(t);
 
             if (!this.distance.isEmpty())
             {
-                double distance = this.distance.interpolate(t);
+                double distance = this.distance.interpolateDouble(t);
 
                 if (distance != 0D)
                 {
@@ -4,29 +4,70 @@ import mchorse.bbs_mod.obj.MeshOBJ;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
 
-import java.util.ArrayList;
-import java.util.List;
-
+/**
+ * Mesh data, stored as flat arrays of vertices' positions (3 floats per
+ * vertex), normals (3 floats per vertex) and UVs (2 floats per vertex).
+ * Every three vertices form a triangle.
+ */
 public class ModelData
 {
-    public List<Vector3f> vertices = new ArrayList<>();
-    public List<Vector3f> normals = new ArrayList<>();
-    public List<Vector2f> uvs = new ArrayList<>();
+    private static final float[] EMPTY = new float[0];
+
+    public float[] vertices = EMPTY;
+    public float[] normals = EMPTY;
+    public float[] uvs = EMPTY;
+
+    public void set(float[] vertices, float[] normals, float[] uvs)
+    {
+        this.vertices = vertices;
+        this.normals = normals;
+        this.uvs = uvs;
+    }
+
+    public int getVertexCount()
+    {
+        return this.vertices.length / 3;
+    }
+
+    public Vector3f getVertex(int index, Vector3f vector)
+    {
+        return vector.set(this.vertices[index * 3], this.vertices[index * 3 + 1], this.vertices[index * 3 + 2]);
+    }
+
+    public Vector3f getNormal(int index, Vector3f vector)
+    {
+        return vector.set(this.normals[index * 3], this.normals[index * 3 + 1], this.normals[index * 3 + 2]);
+    }
+
+    public Vector2f getUV(int index, Vector2f vector)
+    {
+        return vector.set(this.uvs[index * 2], this.uvs[index * 2 + 1]);
+    }
 
     public void clear()
     {
-        this.vertices.clear();
-        this.normals.clear();
-        this.uvs.clear();
+        this.set(EMPTY, EMPTY, EMPTY);
     }
 
     public void fill(MeshOBJ mesh, int tx, int ty)
     {
-        for (int i = 0, c = mesh.triangles; i < c; i++)
+        int c = mesh.triangles;
+        float[] vertices = new float[c * 3];
+        float[] normals = new float[c * 3];
+        float[] uvs = new float[c * 2];
+
+        for (int i = 0; i < c * 3; i++)
         {
-            this.vertices.add(new Vector3f(mesh.posData[i * 3] * 16F, mesh.posData[i * 3 + 1] * 16F, mesh.posData[i * 3 + 2] * 16F));
-            this.normals.add(new Vector3f(mesh.normData[i * 3], mesh.normData[i * 3 + 1], mesh.normData[i * 3 + 2]));
-            this.uvs.add(new Vector2f(mesh.texData[i * 2] * tx, mesh.texData[i * 2 + 1] * ty));
+            vertices[i] = mesh.posData[i] * 16F;
+            normals[i] = mesh.normData[i];
         }
+
+        for (int i = 0; i < c; i++)
+        {
+            uvs[i * 2] = mesh.texData[i * 2] * tx;
+            uvs[i * 2 + 1] = mesh.texData[i * 2 + 1] * ty;
+        }
+
+        this.set(vertices, normals, uvs);
     }
 }
\ No newline at end of file
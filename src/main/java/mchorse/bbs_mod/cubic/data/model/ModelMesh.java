@@ -4,7 +4,6 @@ import mchorse.bbs_mod.data.DataStorageUtils;
 import mchorse.bbs_mod.data.IMapSerializable;
 import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.MapType;
-import org.joml.Vector2f;
 import org.joml.Vector3f;
 
 import java.util.HashMap;
@@ -30,35 +29,46 @@ public class ModelMesh implements IMapSerializable
         ListType uvs = data.getList("uvs");
         Vector3f a = new Vector3f();
         Vector3f b = new Vector3f();
+        Vector3f normal = new Vector3f();
 
         if (vertices.size() / 3 == uvs.size() / 2)
         {
-            for (int i = 0, c = vertices.size() / 3; i < c; i++)
+            int c = vertices.size() / 3;
+            float[] v = new float[c * 3];
+            float[] n = new float[c * 3];
+            float[] u = new float[c * 2];
+
+            for (int i = 0; i < c; i++)
             {
                 int indexV = i * 3;
                 int indexU = i * 2;
 
-                this.baseData.vertices.add(new Vector3f(vertices.getFloat(indexV), vertices.getFloat(indexV + 1), vertices.getFloat(indexV + 2)).add(this.origin));
-                this.baseData.uvs.add(new Vector2f(uvs.getFloat(indexU), uvs.getFloat(indexU + 1)));
+                v[indexV] = vertices.getFloat(indexV) + this.origin.x;
+                v[indexV + 1] = vertices.getFloat(indexV + 1) + this.origin.y;
+                v[indexV + 2] = vertices.getFloat(indexV + 2) + this.origin.z;
+                u[indexU] = uvs.getFloat(indexU);
+                u[indexU + 1] = uvs.getFloat(indexU + 1);
             }
 
-            for (int i = 0, c = this.baseData.vertices.size() / 3; i < c; i++)
+            for (int i = 0; i < c / 3; i++)
             {
-                Vector3f p1 = this.baseData.vertices.get(i * 3);
-                Vector3f p2 = this.baseData.vertices.get(i * 3 + 1);
-                Vector3f p3 = this.baseData.vertices.get(i * 3 + 2);
-                Vector3f normal = new Vector3f();
+                int index = i * 9;
 
-                a.set(p2).sub(p1);
-                b.set(p3).sub(p1);
+                a.set(v[index + 3] - v[index], v[index + 4] - v[index + 1], v[index + 5] - v[index + 2]);
+                b.set(v[index + 6] - v[index], v[index + 7] - v[index + 1], v[index + 8] - v[index + 2]);
 
                 a.cross(b, normal);
                 normal.normalize();
 
-                this.baseData.normals.add(normal);
-                this.baseData.normals.add(normal);
-                this.baseData.normals.add(normal);
+                for (int j = 0; j < 3; j++)
+                {
+                    n[index + j * 3] = normal.x;
+                    n[index + j * 3 + 1] = normal.y;
+                    n[index + j * 3 + 2] = normal.z;
+                }
             }
+
+            this.baseData.set(v, n, u);
         }
     }
 
@@ -68,17 +78,14 @@ public class ModelMesh implements IMapSerializable
         ListType vertices = new ListType();
         ListType uvs = new ListType();
 
-        for (Vector3f v : this.baseData.vertices)
+        for (float v : this.baseData.vertices)
         {
-            vertices.addFloat(v.x);
-            vertices.addFloat(v.y);
-            vertices.addFloat(v.z);
+            vertices.addFloat(v);
         }
 
-        for (Vector2f v : this.baseData.uvs)
+        for (float v : this.baseData.uvs)
         {
-            uvs.addFloat(v.x);
-            uvs.addFloat(v.y);
+            uvs.addFloat(v);
         }
 
         data.put("origin", DataStorageUtils.vector3fToData(this.origin));
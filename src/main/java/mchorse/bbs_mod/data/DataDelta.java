@@ -0,0 +1,428 @@
+package mchorse.bbs_mod.data;
+
+import mchorse.bbs_mod.data.storage.DataBufferCodec;
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.ListType;
+import mchorse.bbs_mod.data.types.MapType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data delta
+ *
+ * A difference between two versions of data, which can turn the first
+ * version into the second one. Maps are diffed per key, and lists are
+ * diffed per index after skipping their common beginning and end, so
+ * changing one element of a large list results in a delta that contains
+ * only that element. Deltas can be serialized with {@link #toData()}.
+ */
+public abstract class DataDelta
+{
+    /**
+     * Get a delta that turns given data into another data, or null if
+     * they're equal
+     */
+    public static DataDelta diff(BaseType from, BaseType to)
+    {
+        if (from == to || (from != null && from.equals(to)))
+        {
+            return null;
+        }
+
+        if (from != null && to != null)
+        {
+            if (from.isMap() && to.isMap())
+            {
+                return MapDelta.diff(from.asMap(), to.asMap());
+            }
+            else if (from.isList() && to.isList())
+            {
+                return ListDelta.diff(from.asList(), to.asList());
+            }
+        }
+
+        return new Replace(to);
+    }
+
+    public static DataDelta fromData(BaseType data)
+    {
+        if (data == null || !data.isMap())
+        {
+            return null;
+        }
+
+        MapType map = data.asMap();
+        String type = map.getString("type");
+
+        if (type.equals("map"))
+        {
+            return MapDelta.fromData(map);
+        }
+        else if (type.equals("list"))
+        {
+            return ListDelta.fromData(map);
+        }
+
+        return new Replace(map.has("value") ? map.get("value") : null);
+    }
+
+    /**
+     * Apply this delta to given data. Given data may get modified, so the
+     * returned data should be used instead of it.
+     */
+    public abstract BaseType apply(BaseType data);
+
+    /**
+     * Approximate amount of memory (in bytes) taken by this delta
+     */
+    public abstract long getSize();
+
+    public abstract MapType toData();
+
+    /**
+     * Replaces the data completely
+     */
+    public static class Replace extends DataDelta
+    {
+        private final BaseType value;
+
+        public Replace(BaseType value)
+        {
+            this.value = value == null ? null : value.copy();
+        }
+
+        @Override
+        public BaseType apply(BaseType data)
+        {
+            return this.value == null ? null : this.value.copy();
+        }
+
+        @Override
+        public long getSize()
+        {
+            return 16 + (this.value == null ? 0 : DataBufferCodec.getSize(this.value));
+        }
+
+        @Override
+        public MapType toData()
+        {
+            MapType data = new MapType();
+
+            data.putString("type", "replace");
+
+            if (this.value != null)
+            {
+                data.put("value", this.value.copy());
+            }
+
+            return data;
+        }
+    }
+
+    /**
+     * Changes, adds and removes map's keys
+     */
+    public static class MapDelta extends DataDelta
+    {
+        private final Map<String, DataDelta> changed = new LinkedHashMap<>();
+        private final List<String> removed = new ArrayList<>();
+
+        public static MapDelta diff(MapType from, MapType to)
+        {
+            MapDelta delta = new MapDelta();
+
+            for (Map.Entry<String, BaseType> entry : to)
+            {
+                DataDelta child = DataDelta.diff(from.get(entry.getKey()), entry.getValue());
+
+                if (child != null)
+                {
+                    delta.changed.put(entry.getKey(), child);
+                }
+            }
+
+            for (String key : from.keys())
+            {
+                if (!to.has(key))
+                {
+                    delta.removed.add(key);
+                }
+            }
+
+            return delta.changed.isEmpty() && delta.removed.isEmpty() ? null : delta;
+        }
+
+        public Map<String, DataDelta> getChanged()
+        {
+            return this.changed;
+        }
+
+        public List<String> getRemoved()
+        {
+            return this.removed;
+        }
+
+        public static MapDelta fromData(MapType data)
+        {
+            MapDelta delta = new MapDelta();
+
+            for (Map.Entry<String, BaseType> entry : data.getMap("changed"))
+            {
+                DataDelta child = DataDelta.fromData(entry.getValue());
+
+                if (child != null)
+                {
+                    delta.changed.put(entry.getKey(), child);
+                }
+            }
+
+            delta.removed.addAll(DataStorageUtils.stringListFromData(data.getList("removed")));
+
+            return delta;
+        }
+
+        @Override
+        public BaseType apply(BaseType data)
+        {
+            if (data == null || !data.isMap())
+            {
+                return data;
+            }
+
+            MapType map = data.asMap();
+
+            for (String key : this.removed)
+            {
+                map.remove(key);
+            }
+
+            for (Map.Entry<String, DataDelta> entry : this.changed.entrySet())
+            {
+                BaseType value = entry.getValue().apply(map.get(entry.getKey()));
+
+                if (value != null)
+                {
+                    map.put(entry.getKey(), value);
+                }
+            }
+
+            return map;
+        }
+
+        @Override
+        public long getSize()
+        {
+            long size = 32;
+
+            for (Map.Entry<String, DataDelta> entry : this.changed.entrySet())
+            {
+                size += 16 + entry.getKey().length() * 2L + entry.getValue().getSize();
+            }
+
+            for (String key : this.removed)
+            {
+                size += 16 + key.length() * 2L;
+            }
+
+            return size;
+        }
+
+        @Override
+        public MapType toData()
+        {
+            MapType data = new MapType();
+            MapType changed = new MapType();
+
+            for (Map.Entry<String, DataDelta> entry : this.changed.entrySet())
+            {
+                changed.put(entry.getKey(), entry.getValue().toData());
+            }
+
+            data.putString("type", "map");
+            data.put("changed", changed);
+            data.put("removed", DataStorageUtils.stringListToData(this.removed));
+
+            return data;
+        }
+    }
+
+    /**
+     * Changes list's elements in the range where the lists differ. If the
+     * lists have the same size, elements are diffed one by one, otherwise
+     * the range gets replaced with new elements.
+     */
+    public static class ListDelta extends DataDelta
+    {
+        private int start;
+        private int removed;
+        private final List<BaseType> inserted = new ArrayList<>();
+        private final Map<Integer, DataDelta> changed = new LinkedHashMap<>();
+
+        public static ListDelta diff(ListType from, ListType to)
+        {
+            List<BaseType> a = from.elements;
+            List<BaseType> b = to.elements;
+            int min = Math.min(a.size(), b.size());
+            int start = 0;
+            int end = 0;
+
+            while (start < min && a.get(start).equals(b.get(start)))
+            {
+                start += 1;
+            }
+
+            while (end < min - start && a.get(a.size() - 1 - end).equals(b.get(b.size() - 1 - end)))
+            {
+                end += 1;
+            }
+
+            if (start == a.size() && start == b.size())
+            {
+                return null;
+            }
+
+            ListDelta delta = new ListDelta();
+
+            delta.start = start;
+
+            if (a.size() == b.size())
+            {
+                for (int i = start; i < a.size() - end; i++)
+                {
+                    DataDelta child = DataDelta.diff(a.get(i), b.get(i));
+
+                    if (child != null)
+                    {
+                        delta.changed.put(i, child);
+                    }
+                }
+            }
+            else
+            {
+                delta.removed = a.size() - end - start;
+
+                for (int i = start; i < b.size() - end; i++)
+                {
+                    delta.inserted.add(b.get(i).copy());
+                }
+            }
+
+            return delta;
+        }
+
+        public static ListDelta fromData(MapType data)
+        {
+            ListDelta delta = new ListDelta();
+
+            delta.start = data.getInt("start");
+            delta.removed = data.getInt("removed");
+
+            for (BaseType type : data.getList("inserted"))
+            {
+                delta.inserted.add(type);
+            }
+
+            for (Map.Entry<String, BaseType> entry : data.getMap("changed"))
+            {
+                DataDelta child = DataDelta.fromData(entry.getValue());
+
+                try
+                {
+                    if (child != null)
+                    {
+                        delta.changed.put(Integer.parseInt(entry.getKey()), child);
+                    }
+                }
+                catch (NumberFormatException e)
+                {}
+            }
+
+            return delta;
+        }
+
+        @Override
+        public BaseType apply(BaseType data)
+        {
+            if (data == null || !data.isList())
+            {
+                return data;
+            }
+
+            List<BaseType> elements = data.asList().elements;
+
+            for (Map.Entry<Integer, DataDelta> entry : this.changed.entrySet())
+            {
+                int index = entry.getKey();
+
+                if (index < elements.size())
+                {
+                    elements.set(index, entry.getValue().apply(elements.get(index)));
+                }
+            }
+
+            if (this.removed > 0 || !this.inserted.isEmpty())
+            {
+                int start = Math.min(this.start, elements.size());
+
+                List<BaseType> inserted = new ArrayList<>(this.inserted.size());
+
+                for (BaseType type : this.inserted)
+                {
+                    inserted.add(type.copy());
+                }
+
+                elements.subList(start, Math.min(start + this.removed, elements.size())).clear();
+                elements.addAll(start, inserted);
+            }
+
+            return data;
+        }
+
+        @Override
+        public long getSize()
+        {
+            long size = 48;
+
+            for (DataDelta delta : this.changed.values())
+            {
+                size += 24 + delta.getSize();
+            }
+
+            for (BaseType type : this.inserted)
+            {
+                size += 8 + DataBufferCodec.getSize(type);
+            }
+
+            return size;
+        }
+
+        @Override
+        public MapType toData()
+        {
+            MapType data = new MapType();
+            MapType changed = new MapType();
+            ListType inserted = new ListType();
+
+            for (Map.Entry<Integer, DataDelta> entry : this.changed.entrySet())
+            {
+                changed.put(String.valueOf(entry.getKey()), entry.getValue().toData());
+            }
+
+            for (BaseType type : this.inserted)
+            {
+                inserted.add(type.copy());
+            }
+
+            data.putString("type", "list");
+            data.putInt("start", this.start);
+            data.putInt("removed", this.removed);
+            data.put("inserted", inserted);
+            data.put("changed", changed);
+
+            return data;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package mchorse.bbs_mod.data;
+
+import java.util.Arrays;
+
+/**
+ * Data key table
+ *
+ * Dictionary of map keys used by binary BBS1 format, which maps keys to
+ * their indices and back without boxing. Keys are stored in an array by
+ * their index, and an open addressing hash table of indices is used for
+ * key to index lookups.
+ */
+public class DataKeyTable
+{
+    private String[] keys = new String[16];
+    private int[] slots = new int[32];
+    private int size;
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public String getKey(int index)
+    {
+        return index >= 0 && index < this.keys.length ? this.keys[index] : null;
+    }
+
+    /**
+     * Get index of given key, or -1 if it's not in the table
+     */
+    public int getIndex(String key)
+    {
+        int mask = this.slots.length - 1;
+
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask)
+        {
+            int slot = this.slots[i];
+
+            if (slot == 0)
+            {
+                return -1;
+            }
+
+            if (this.keys[slot - 1].equals(key))
+            {
+                return slot - 1;
+            }
+        }
+    }
+
+    /**
+     * Add given key to the table (if it's not there yet), and return its index
+     */
+    public int put(String key)
+    {
+        int index = this.getIndex(key);
+
+        if (index >= 0)
+        {
+            return index;
+        }
+
+        index = this.size;
+
+        this.set(index, key);
+
+        return index;
+    }
+
+    /**
+     * Set key at given index (used when reading a key table, where indices
+     * are stored explicitly)
+     */
+    public void set(int index, String key)
+    {
+        if (index >= this.keys.length)
+        {
+            this.keys = Arrays.copyOf(this.keys, Math.max(index + 1, this.keys.length * 2));
+        }
+
+        this.keys[index] = key;
+        this.size = Math.max(this.size, index + 1);
+
+        if (this.size * 2 > this.slots.length)
+        {
+            this.rehash(this.slots.length * 2);
+        }
+        else
+        {
+            this.insert(index, key);
+        }
+    }
+
+    /**
+     * Get an array of keys by their index (it can be longer than the
+     * table's size)
+     */
+    public String[] getKeys()
+    {
+        return this.keys;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(this.keys, null);
+        Arrays.fill(this.slots, 0);
+
+        this.size = 0;
+    }
+
+    private void insert(int index, String key)
+    {
+        int mask = this.slots.length - 1;
+        int i = hash(key) & mask;
+
+        while (this.slots[i] != 0)
+        {
+            if (this.keys[this.slots[i] - 1].equals(key))
+            {
+                return;
+            }
+
+            i = (i + 1) & mask;
+        }
+
+        this.slots[i] = index + 1;
+    }
+
+    private void rehash(int capacity)
+    {
+        this.slots = new int[capacity];
+
+        for (int i = 0; i < this.size; i++)
+        {
+            if (this.keys[i] != null)
+            {
+                this.insert(i, this.keys[i]);
+            }
+        }
+    }
+
+    private static int hash(String key)
+    {
+        int hash = key.hashCode();
+
+        return hash ^ (hash >>> 16);
+    }
+}
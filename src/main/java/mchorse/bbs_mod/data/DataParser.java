@@ -5,11 +5,8 @@ import mchorse.bbs_mod.data.types.ByteType;
 import mchorse.bbs_mod.data.types.DoubleType;
 import mchorse.bbs_mod.data.types.FloatType;
 import mchorse.bbs_mod.data.types.IntType;
-import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.LongType;
-import mchorse.bbs_mod.data.types.MapType;
 import mchorse.bbs_mod.data.types.ShortType;
-import mchorse.bbs_mod.data.types.StringType;
 
 /**
  * Data parser
@@ -21,44 +18,13 @@ public class DataParser
     private String string;
     private int index;
 
+    /**
+     * Parse given string. Nested maps and lists are parsed in a single pass
+     * by {@link DataStreamParser}.
+     */
     public static BaseType parse(String string)
     {
-        string = string.trim();
-
-        if (string.isEmpty())
-        {
-            return null;
-        }
-
-        char first = string.charAt(0);
-        int size = string.length();
-        boolean isMap = first == '{';
-
-        if (isMap || first == '[')
-        {
-            char opposite = isMap ? '}' : ']';
-            String excerpt = string.substring(1, string.lastIndexOf(opposite));
-
-            return isMap ? parseMap(excerpt) : parseList(excerpt);
-        }
-        else if (first == '"')
-        {
-            char previous = first;
-
-            for (int i = 1; i < size; i++)
-            {
-                char current = string.charAt(i);
-
-                if (current == '"' && (previous != '\\' || i == size -1))
-                {
-                    return new StringType(DataToString.unescape(string.substring(1, i)));
-                }
-
-                previous = current;
-            }
-        }
-
-        return parseNumeric(string, size);
+        return DataStreamParser.parse(string);
     }
 
     public static BaseType parseNumeric(String string, int size)
@@ -119,73 +85,6 @@ public class DataParser
         return null;
     }
 
-    private static BaseType parseMap(String string)
-    {
-        MapType map = new MapType();
-
-        if (string.trim().isEmpty())
-        {
-            return map;
-        }
-
-        DataParser parser = new DataParser(string);
-
-        while (true)
-        {
-            String key = parser.parseKey();
-            String value = parser.parseValue();
-
-            if (value == null)
-            {
-                break;
-            }
-
-            BaseType type = parse(value);
-
-            if (type == null)
-            {
-                throw new IllegalStateException("Something went wrong with parsing a map: " + value);
-            }
-
-            map.put(key.trim(), type);
-        }
-
-        return map;
-    }
-
-    private static BaseType parseList(String string)
-    {
-        ListType list = new ListType();
-
-        if (string.trim().isEmpty())
-        {
-            return list;
-        }
-
-        DataParser parser = new DataParser(string);
-
-        while (true)
-        {
-            String value = parser.parseValue();
-
-            if (value == null)
-            {
-                break;
-            }
-
-            BaseType type = parse(value);
-
-            if (type == null)
-            {
-                throw new IllegalStateException("Something went wrong with parsing a list: " + value);
-            }
-
-            list.add(type);
-        }
-
-        return list;
-    }
-
     public DataParser(String string)
     {
         this(string, 0);
@@ -3,17 +3,13 @@ package mchorse.bbs_mod.data;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 public class DataStorageContext
 {
     public final DataInputStream in;
     public final DataOutputStream out;
 
-    private Map<String, Integer> keyMap;
-    private Map<Integer, String> intMap;
-    private int index;
+    private final DataKeyTable keys = new DataKeyTable();
     private KeyType type = KeyType.BYTE;
 
     public DataStorageContext(DataInputStream in)
@@ -30,38 +26,29 @@ public class DataStorageContext
 
     public String getKey(int index)
     {
-        return this.intMap == null ? null : this.intMap.get(index);
+        return this.keys.getKey(index);
     }
 
     public int getIndex(String key)
     {
-        return this.keyMap == null ? -1 : this.keyMap.get(key);
+        return this.keys.getIndex(key);
     }
 
     public void put(String key)
     {
-        if (this.keyMap == null)
-        {
-            this.keyMap = new HashMap<>();
-        }
-
-        if (!this.keyMap.containsKey(key))
-        {
-            this.keyMap.put(key, this.index);
-            this.index += 1;
-        }
+        this.keys.put(key);
     }
 
     public void read() throws IOException
     {
-        this.intMap = new HashMap<>();
+        this.keys.clear();
         this.type = KeyType.from(this.in.readByte());
 
         int c = this.type.read(this.in);
 
         for (int i = 0; i < c; i++)
         {
-            this.intMap.put(this.type.read(this.in), this.in.readUTF());
+            this.keys.set(this.type.read(this.in), this.in.readUTF());
         }
     }
 
@@ -72,31 +59,17 @@ public class DataStorageContext
 
     public void write() throws IOException
     {
-        if (this.keyMap == null)
-        {
-            this.keyMap = new HashMap<>();
-        }
+        int size = this.keys.size();
 
-        if (this.keyMap.size() < 256)
-        {
-            this.type = KeyType.BYTE;
-        }
-        else if (this.keyMap.size() < 65536)
-        {
-            this.type = KeyType.SHORT;
-        }
-        else
-        {
-            this.type = KeyType.INT;
-        }
+        this.type = KeyType.forSize(size);
 
         this.out.writeByte(this.type.type);
-        this.type.write(this.out, this.keyMap.size());
+        this.type.write(this.out, size);
 
-        for (Map.Entry<String, Integer> entry : this.keyMap.entrySet())
+        for (int i = 0; i < size; i++)
         {
-            this.type.write(this.out, entry.getValue());
-            this.out.writeUTF(entry.getKey());
+            this.type.write(this.out, i);
+            this.out.writeUTF(this.keys.getKey(i));
         }
     }
 
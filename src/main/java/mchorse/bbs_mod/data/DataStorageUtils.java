@@ -1,6 +1,7 @@
 package mchorse.bbs_mod.data;
 
-import mchorse.bbs_mod.data.storage.DataStorage;
+import mchorse.bbs_mod.data.storage.DataBufferCodec;
+import mchorse.bbs_mod.data.storage.DataBufferView;
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.ByteType;
 import mchorse.bbs_mod.data.types.DoubleType;
@@ -28,9 +29,7 @@ import org.joml.Vector3d;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -50,11 +49,7 @@ public class DataStorageUtils
 
         try
         {
-            ByteArrayOutputStream stream = new ByteArrayOutputStream();
-
-            DataStorage.writeToStream(stream, type);
-
-            return stream.toByteArray();
+            return DataBufferCodec.encode(type);
         }
         catch (Exception e)
         {
@@ -73,11 +68,9 @@ public class DataStorageUtils
 
         try
         {
-            ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
-
-            return DataStorage.readFromStream(stream);
+            return DataBufferCodec.decode(ByteBuffer.wrap(bytes));
         }
-        catch (IOException e)
+        catch (Exception e)
         {
             e.printStackTrace();
         }
@@ -85,17 +78,41 @@ public class DataStorageUtils
         return null;
     }
 
-    public static void writeToPacket(PacketByteBuf packet, BaseType type)
+    /**
+     * Read a lazy view of given bytes, which allows inspecting parts of the
+     * data without decoding all of it
+     */
+    public static DataBufferView readViewFromBytes(byte[] bytes)
     {
+        if (bytes == null)
+        {
+            return null;
+        }
+
         try
         {
-            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            return DataBufferCodec.view(bytes);
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
 
-            DataStorage.writeToStream(stream, type);
+        return null;
+    }
 
-            packet.writeByteArray(stream.toByteArray());
+    /**
+     * Write given data into the packet (it's written the same way as
+     * {@link PacketByteBuf#writeByteArray(byte[])} would've written
+     * {@link #writeToBytes(BaseType)}, but without intermediate copies)
+     */
+    public static void writeToPacket(PacketByteBuf packet, BaseType type)
+    {
+        try
+        {
+            DataBufferCodec.encodeSized(type, packet);
         }
-        catch (IOException e)
+        catch (Exception e)
         {
             e.printStackTrace();
         }
@@ -105,9 +122,7 @@ public class DataStorageUtils
     {
         try
         {
-            ByteArrayInputStream stream = new ByteArrayInputStream(packet.readByteArray());
-
-            return DataStorage.readFromStream(stream);
+            return DataBufferCodec.decodeSized(packet);
         }
         catch (Exception e)
         {
@@ -0,0 +1,412 @@
+package mchorse.bbs_mod.data;
+
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.ListType;
+import mchorse.bbs_mod.data.types.MapType;
+import mchorse.bbs_mod.data.types.StringType;
+import mchorse.bbs_mod.utils.StringUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Data stream parser
+ *
+ * Single pass parser of the same JSON-like format as {@link DataParser}.
+ * Unlike {@link DataParser}, which cuts nested maps and lists into
+ * substrings and scans them again on every level of nesting, this parser
+ * reads characters from a {@link Reader} (or a {@link CharSequence}) only
+ * once, and builds the data as it goes.
+ *
+ * Scalar values are collected into a shared buffer and parsed with
+ * {@link DataParser#parseNumeric(String, int)}, so the values are parsed
+ * exactly the same way.
+ */
+public class DataStreamParser
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final CharSequence sequence;
+    private final char[] buffer;
+    private int index;
+    private int limit;
+
+    private final StringBuilder token = new StringBuilder();
+
+    public static BaseType parse(CharSequence string)
+    {
+        try
+        {
+            return new DataStreamParser(string).parse();
+        }
+        catch (IOException e)
+        {
+            /* Char sequences can't throw I/O exceptions */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static BaseType parse(Reader reader) throws IOException
+    {
+        return new DataStreamParser(reader).parse();
+    }
+
+    public DataStreamParser(Reader reader)
+    {
+        this.reader = reader;
+        this.sequence = null;
+        this.buffer = new char[BUFFER_SIZE];
+    }
+
+    public DataStreamParser(CharSequence sequence)
+    {
+        this.reader = null;
+        this.sequence = sequence;
+        this.buffer = null;
+        this.limit = sequence.length();
+    }
+
+    /**
+     * Parse the root value. Returns null if there is nothing to parse, or
+     * root scalar value can't be parsed.
+     */
+    public BaseType parse() throws IOException
+    {
+        int c = this.skipWhitespace();
+
+        if (c < 0)
+        {
+            return null;
+        }
+
+        if (c == '{' || c == '[' || c == '"')
+        {
+            return this.parseValue();
+        }
+
+        /* Root scalar value takes the rest of the input */
+        this.token.setLength(0);
+
+        while ((c = this.next()) >= 0)
+        {
+            this.token.append((char) c);
+        }
+
+        String string = this.token.toString().trim();
+
+        return DataParser.parseNumeric(string, string.length());
+    }
+
+    private BaseType parseValue() throws IOException
+    {
+        int c = this.skipWhitespace();
+
+        if (c == '{')
+        {
+            this.next();
+
+            return this.parseMap();
+        }
+        else if (c == '[')
+        {
+            this.next();
+
+            return this.parseList();
+        }
+        else if (c == '"')
+        {
+            this.next();
+
+            return new StringType(this.parseString());
+        }
+
+        String string = this.parseScalar();
+        BaseType type = string.isEmpty() ? null : DataParser.parseNumeric(string, string.length());
+
+        if (type == null)
+        {
+            throw new IllegalStateException("Something went wrong with parsing a value: " + string);
+        }
+
+        return type;
+    }
+
+    private MapType parseMap() throws IOException
+    {
+        MapType map = new MapType();
+
+        while (true)
+        {
+            int c = this.skipWhitespace();
+
+            if (c < 0)
+            {
+                return map;
+            }
+            else if (c == '}')
+            {
+                this.next();
+
+                return map;
+            }
+            else if (c == ',')
+            {
+                this.next();
+
+                continue;
+            }
+
+            String key = this.parseKey();
+
+            if (key == null)
+            {
+                return map;
+            }
+
+            map.put(key, this.parseValue());
+
+            if (this.endElement('}'))
+            {
+                return map;
+            }
+        }
+    }
+
+    private ListType parseList() throws IOException
+    {
+        ListType list = new ListType();
+
+        while (true)
+        {
+            int c = this.skipWhitespace();
+
+            if (c < 0)
+            {
+                return list;
+            }
+            else if (c == ']')
+            {
+                this.next();
+
+                return list;
+            }
+
+            list.add(this.parseValue());
+
+            if (this.endElement(']'))
+            {
+                return list;
+            }
+        }
+    }
+
+    /**
+     * Consume the separator after an element of a map or a list, and
+     * return whether the map or list ended
+     */
+    private boolean endElement(char close) throws IOException
+    {
+        int c = this.skipWhitespace();
+
+        if (c < 0)
+        {
+            return true;
+        }
+
+        this.next();
+
+        if (c == close)
+        {
+            return true;
+        }
+        else if (c != ',')
+        {
+            throw new IllegalStateException("Expected ',' or '" + close + "', but got '" + (char) c + "'");
+        }
+
+        return false;
+    }
+
+    /**
+     * Parse map's key (quoted or not) along with the colon after it.
+     * Returns null if the map ended before the colon.
+     */
+    private String parseKey() throws IOException
+    {
+        int c = this.peek();
+        String key = null;
+
+        if (c == '"')
+        {
+            this.next();
+
+            key = this.parseString();
+        }
+        else
+        {
+            this.token.setLength(0);
+        }
+
+        while ((c = this.next()) >= 0)
+        {
+            if (c == ':')
+            {
+                return key == null ? this.token.toString().trim() : key;
+            }
+            else if (c == '}')
+            {
+                return null;
+            }
+
+            if (key == null)
+            {
+                this.token.append((char) c);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Parse the rest of the string after the opening quote, and return
+     * unescaped string (see {@link DataToString#unescape(String)})
+     */
+    private String parseString() throws IOException
+    {
+        StringBuilder builder = this.token;
+        int c;
+
+        builder.setLength(0);
+
+        while ((c = this.next()) >= 0)
+        {
+            if (c == '"')
+            {
+                return builder.toString();
+            }
+            else if (c == '\\')
+            {
+                int next = this.next();
+
+                if (next == '\\' || next == '"')
+                {
+                    builder.append((char) next);
+                }
+                else if (next == 'n')
+                {
+                    builder.append('\n');
+                }
+                else if (next == 'u')
+                {
+                    char[] chars = new char[4];
+
+                    for (int i = 0; i < chars.length; i++)
+                    {
+                        int hex = this.next();
+
+                        if (hex < 0)
+                        {
+                            throw new IllegalStateException("Unexpected end of a string");
+                        }
+
+                        chars[i] = (char) hex;
+                    }
+
+                    builder.append((char) StringUtils.parseHex(chars));
+                }
+                else if (next >= 0)
+                {
+                    builder.append('\\').append((char) next);
+                }
+            }
+            else
+            {
+                builder.append((char) c);
+            }
+        }
+
+        throw new IllegalStateException("Unexpected end of a string");
+    }
+
+    /**
+     * Parse scalar (number, boolean or null) token, which ends with a comma
+     * or closing bracket, or the end of input
+     */
+    private String parseScalar() throws IOException
+    {
+        this.token.setLength(0);
+
+        int c;
+
+        while ((c = this.peek()) >= 0 && c != ',' && c != '}' && c != ']')
+        {
+            this.token.append((char) this.next());
+        }
+
+        int end = this.token.length();
+
+        while (end > 0 && this.token.charAt(end - 1) <= ' ')
+        {
+            end -= 1;
+        }
+
+        return this.token.substring(0, end);
+    }
+
+    /* Character reading */
+
+    private int skipWhitespace() throws IOException
+    {
+        int c;
+
+        while ((c = this.peek()) >= 0 && c <= ' ')
+        {
+            this.index += 1;
+        }
+
+        return c;
+    }
+
+    private int peek() throws IOException
+    {
+        if (this.index >= this.limit && !this.fill())
+        {
+            return -1;
+        }
+
+        return this.sequence == null ? this.buffer[this.index] : this.sequence.charAt(this.index);
+    }
+
+    private int next() throws IOException
+    {
+        int c = this.peek();
+
+        if (c >= 0)
+        {
+            this.index += 1;
+        }
+
+        return c;
+    }
+
+    private boolean fill() throws IOException
+    {
+        if (this.reader == null)
+        {
+            return false;
+        }
+
+        int read = this.reader.read(this.buffer, 0, this.buffer.length);
+
+        if (read <= 0)
+        {
+            return false;
+        }
+
+        this.index = 0;
+        this.limit = read;
+
+        return true;
+    }
+}
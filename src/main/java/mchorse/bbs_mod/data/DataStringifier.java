@@ -6,13 +6,30 @@ import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.MapType;
 import mchorse.bbs_mod.data.types.NumericType;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Data stringifier
+ *
+ * Converts data into JSON-like format. Besides building strings, it can
+ * also stream data into a {@link Writer}, in which case the builder gets
+ * flushed into the writer every few kilobytes, so the whole string never
+ * has to be kept in memory.
+ */
 public class DataStringifier
 {
+    private static final int CHUNK_SIZE = 8192;
+
     public boolean wrapKeysInQuotes;
     public boolean numericTypes = true;
     public boolean keywordBooleans;
     public String indent = "    ";
 
+    private Writer writer;
+    private char[] chunk;
+
     public void jsonLike()
     {
         this.wrapKeysInQuotes = true;
@@ -25,6 +42,61 @@ public class DataStringifier
         return this.toString(base, new StringBuilder(), "").toString();
     }
 
+    /**
+     * Write given data into given writer
+     */
+    public void write(BaseType base, Writer writer) throws IOException
+    {
+        StringBuilder builder = new StringBuilder(CHUNK_SIZE * 2);
+
+        this.writer = writer;
+
+        try
+        {
+            this.toString(base, builder, "");
+            this.flush(builder, 0);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+        finally
+        {
+            this.writer = null;
+        }
+    }
+
+    /**
+     * Flush the builder into the writer (if data is being streamed into one)
+     * when it contains at least given amount of characters
+     */
+    protected void flush(StringBuilder builder, int threshold)
+    {
+        int length = builder.length();
+
+        if (this.writer == null || length == 0 || length < threshold)
+        {
+            return;
+        }
+
+        if (this.chunk == null || this.chunk.length < length)
+        {
+            this.chunk = new char[Math.max(length, CHUNK_SIZE * 2)];
+        }
+
+        builder.getChars(0, length, this.chunk, 0);
+        builder.setLength(0);
+
+        try
+        {
+            this.writer.write(this.chunk, 0, length);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     protected StringBuilder toString(BaseType base, StringBuilder builder, String indent)
     {
         if (base instanceof ListType)
@@ -103,6 +175,7 @@ public class DataStringifier
             }
 
             this.writeIndent(builder, "\n");
+            this.flush(builder, CHUNK_SIZE);
 
             i++;
         }
@@ -150,6 +223,8 @@ public class DataStringifier
             {
                 this.writeIndent(builder, "\n");
             }
+
+            this.flush(builder, CHUNK_SIZE);
         }
 
         if (!compact)
@@ -3,11 +3,19 @@ package mchorse.bbs_mod.data;
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.MapType;
-import mchorse.bbs_mod.utils.IOUtils;
 import mchorse.bbs_mod.utils.StringUtils;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Data to JSON-like string utility
@@ -115,6 +123,22 @@ public class DataToString
         return stringifier.toString(base);
     }
 
+    /**
+     * Write given data into given writer, without building the whole
+     * string in memory
+     */
+    public static void write(Writer writer, BaseType base, boolean jsonLike) throws IOException
+    {
+        DataStringifier stringifier = new DataStringifier();
+
+        if (jsonLike)
+        {
+            stringifier.jsonLike();
+        }
+
+        stringifier.write(base, writer);
+    }
+
     public static MapType mapFromString(String string)
     {
         BaseType data = fromString(string);
@@ -155,7 +179,10 @@ public class DataToString
 
     public static void write(File file, BaseType type, boolean jsonLike) throws IOException
     {
-        IOUtils.writeText(file, toString(type, jsonLike));
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))
+        {
+            write(writer, type, jsonLike);
+        }
     }
 
     public static boolean writeSilently(File file, BaseType type)
@@ -167,7 +194,7 @@ public class DataToString
     {
         try
         {
-            IOUtils.writeText(file, toString(type, jsonLike));
+            write(file, type, jsonLike);
 
             return true;
         }
@@ -181,6 +208,19 @@ public class DataToString
 
     public static BaseType read(File file) throws IOException
     {
-        return fromString(IOUtils.readText(file));
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))
+        {
+            return DataStreamParser.parse(reader);
+        }
+        catch (IOException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+
+        return null;
     }
 }
\ No newline at end of file
@@ -3,10 +3,11 @@ package mchorse.bbs_mod.data;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public enum KeyType
 {
-    BYTE((byte) 0)
+    BYTE((byte) 0, 1)
     {
         @Override
         public int read(DataInputStream stream) throws IOException
@@ -19,8 +20,20 @@ public enum KeyType
         {
             stream.writeByte(value);
         }
+
+        @Override
+        public int read(ByteBuffer buffer)
+        {
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int value)
+        {
+            buffer.put((byte) value);
+        }
     },
-    SHORT((byte) 1)
+    SHORT((byte) 1, 2)
     {
         @Override
         public int read(DataInputStream stream) throws IOException
@@ -33,8 +46,20 @@ public enum KeyType
         {
             stream.writeShort(value);
         }
+
+        @Override
+        public int read(ByteBuffer buffer)
+        {
+            return buffer.getShort() & 0xffff;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int value)
+        {
+            buffer.putShort((short) value);
+        }
     },
-    INT((byte) 2)
+    INT((byte) 2, 4)
     {
         @Override
         public int read(DataInputStream stream) throws IOException
@@ -47,9 +72,22 @@ public enum KeyType
         {
             stream.writeInt(value);
         }
+
+        @Override
+        public int read(ByteBuffer buffer)
+        {
+            return buffer.getInt();
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int value)
+        {
+            buffer.putInt(value);
+        }
     };
 
     public final byte type;
+    public final int bytes;
 
     public static KeyType from(byte type)
     {
@@ -62,12 +100,34 @@ public enum KeyType
         return BYTE;
     }
 
-    private KeyType(byte type)
+    /**
+     * Get the smallest key type that can store indices of given amount of keys
+     */
+    public static KeyType forSize(int size)
+    {
+        if (size < 256)
+        {
+            return BYTE;
+        }
+        else if (size < 65536)
+        {
+            return SHORT;
+        }
+
+        return INT;
+    }
+
+    private KeyType(byte type, int bytes)
     {
         this.type = type;
+        this.bytes = bytes;
     }
 
     public abstract int read(DataInputStream stream) throws IOException;
 
     public abstract void write(DataOutputStream stream, int value) throws IOException;
+
+    public abstract int read(ByteBuffer buffer);
+
+    public abstract void write(ByteBuffer buffer, int value);
 }
\ No newline at end of file
@@ -0,0 +1,711 @@
+package mchorse.bbs_mod.data.storage;
+
+import io.netty.buffer.ByteBuf;
+import mchorse.bbs_mod.data.DataKeyTable;
+import mchorse.bbs_mod.data.KeyType;
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.ByteArrayType;
+import mchorse.bbs_mod.data.types.ByteType;
+import mchorse.bbs_mod.data.types.DoubleType;
+import mchorse.bbs_mod.data.types.FloatType;
+import mchorse.bbs_mod.data.types.IntArrayType;
+import mchorse.bbs_mod.data.types.IntType;
+import mchorse.bbs_mod.data.types.ListType;
+import mchorse.bbs_mod.data.types.LongType;
+import mchorse.bbs_mod.data.types.MapType;
+import mchorse.bbs_mod.data.types.ShortArrayType;
+import mchorse.bbs_mod.data.types.ShortType;
+import mchorse.bbs_mod.data.types.StringType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Data buffer codec
+ *
+ * Reads and writes BBS1 binary format (the same format as
+ * {@link DataStorage#readFromStream(java.io.InputStream)} and
+ * {@link DataStorage#writeToStream(java.io.OutputStream, BaseType)})
+ * directly from and to {@link ByteBuffer}s and Netty's {@link ByteBuf}s,
+ * without going through data streams and intermediate byte array copies.
+ *
+ * Encoding is done in two passes: first pass collects map keys into a
+ * {@link DataKeyTable} and computes exact size of encoded data, so the
+ * second pass can write everything straight into a buffer of exact size.
+ */
+public class DataBufferCodec
+{
+    public static final int HEADER = ('B' << 24) | ('B' << 16) | ('S' << 8) | '1';
+
+    /* Encoding */
+
+    /**
+     * Encode given data into a byte array of exact size
+     */
+    public static byte[] encode(BaseType type)
+    {
+        Encoder encoder = new Encoder(type);
+        byte[] bytes = new byte[encoder.size];
+
+        encoder.write(ByteBuffer.wrap(bytes));
+
+        return bytes;
+    }
+
+    /**
+     * Encode given data into given buffer at its position. The buffer
+     * should have at least {@link #getSize(BaseType)} bytes remaining.
+     */
+    public static void encode(BaseType type, ByteBuffer buffer)
+    {
+        new Encoder(type).write(buffer);
+    }
+
+    /**
+     * Encode given data into given Netty buffer at its writer index.
+     * If the buffer is backed by an array, data is written directly into it.
+     */
+    public static void encode(BaseType type, ByteBuf buf)
+    {
+        encode(new Encoder(type), buf);
+    }
+
+    /**
+     * Encode given data into given Netty buffer prefixed with its size as
+     * a VarInt, i.e. the same way {@code PacketByteBuf.writeByteArray(byte[])}
+     * would write {@link #encode(BaseType)}'s bytes
+     */
+    public static void encodeSized(BaseType type, ByteBuf buf)
+    {
+        Encoder encoder = new Encoder(type);
+        int size = encoder.size;
+
+        while ((size & ~0x7F) != 0)
+        {
+            buf.writeByte((size & 0x7F) | 0x80);
+            size >>>= 7;
+        }
+
+        buf.writeByte(size);
+        encode(encoder, buf);
+    }
+
+    private static void encode(Encoder encoder, ByteBuf buf)
+    {
+        int size = encoder.size;
+
+        buf.ensureWritable(size);
+
+        if (buf.hasArray())
+        {
+            encoder.write(ByteBuffer.wrap(buf.array(), buf.arrayOffset() + buf.writerIndex(), size));
+            buf.writerIndex(buf.writerIndex() + size);
+        }
+        else
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+
+            encoder.write(buffer);
+            buffer.flip();
+            buf.writeBytes(buffer);
+        }
+    }
+
+    /**
+     * Get the size of given data in BBS1 format (including the header and
+     * the key table)
+     */
+    public static int getSize(BaseType type)
+    {
+        return new Encoder(type).size;
+    }
+
+    /* Decoding */
+
+    /**
+     * Decode data from given buffer's position, the position gets moved
+     * past the decoded data
+     */
+    public static BaseType decode(ByteBuffer buffer)
+    {
+        ByteOrder order = buffer.order();
+
+        buffer.order(ByteOrder.BIG_ENDIAN);
+
+        try
+        {
+            Decoder decoder = new Decoder(buffer);
+
+            decoder.readHeader();
+
+            return decoder.read();
+        }
+        finally
+        {
+            buffer.order(order);
+        }
+    }
+
+    /**
+     * Decode data from given Netty buffer's reader index, the reader index
+     * gets moved past the decoded data
+     */
+    public static BaseType decode(ByteBuf buf)
+    {
+        return decode(buf, buf.readableBytes());
+    }
+
+    /**
+     * Decode data prefixed with its size as a VarInt, i.e. written with
+     * {@link #encodeSized(BaseType, ByteBuf)}
+     */
+    public static BaseType decodeSized(ByteBuf buf)
+    {
+        int size = 0;
+        int shift = 0;
+        byte b;
+
+        do
+        {
+            if (shift >= 35)
+            {
+                throw new IllegalStateException("VarInt is too big!");
+            }
+
+            b = buf.readByte();
+            size |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+
+        if (size > buf.readableBytes())
+        {
+            throw new IllegalStateException("Data size " + size + " is bigger than the amount of readable bytes " + buf.readableBytes() + "!");
+        }
+
+        int end = buf.readerIndex() + size;
+        BaseType type = decode(buf, size);
+
+        buf.readerIndex(end);
+
+        return type;
+    }
+
+    private static BaseType decode(ByteBuf buf, int length)
+    {
+        ByteBuffer buffer = wrap(buf, length);
+        int start = buffer.position();
+        BaseType type = decode(buffer);
+
+        buf.readerIndex(buf.readerIndex() + buffer.position() - start);
+
+        return type;
+    }
+
+    /**
+     * Create a lazy view of data in given buffer from its position. Unlike
+     * {@link #decode(ByteBuffer)}, nothing is decoded until it's accessed,
+     * so the buffer shouldn't be modified while the view is in use.
+     */
+    public static DataBufferView view(ByteBuffer buffer)
+    {
+        ByteBuffer duplicate = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        Decoder decoder = new Decoder(duplicate);
+
+        decoder.readHeader();
+
+        return new DataBufferView(decoder, duplicate.position());
+    }
+
+    public static DataBufferView view(byte[] bytes)
+    {
+        return view(ByteBuffer.wrap(bytes));
+    }
+
+    private static ByteBuffer wrap(ByteBuf buf, int length)
+    {
+        if (buf.hasArray())
+        {
+            return ByteBuffer.wrap(buf.array(), buf.arrayOffset() + buf.readerIndex(), length);
+        }
+
+        return buf.nioBuffer(buf.readerIndex(), length);
+    }
+
+    /* Modified UTF-8 (the same one that's used by DataOutputStream.writeUTF) */
+
+    static int getUTFLength(String string)
+    {
+        int length = string.length();
+        int bytes = length;
+
+        for (int i = 0; i < length; i++)
+        {
+            char c = string.charAt(i);
+
+            if (c >= 0x80 || c == 0)
+            {
+                bytes += c >= 0x800 ? 2 : 1;
+            }
+        }
+
+        if (bytes > 65535)
+        {
+            throw new IllegalArgumentException("String is too long to be encoded: " + bytes + " bytes");
+        }
+
+        return bytes;
+    }
+
+    static void writeUTF(ByteBuffer buffer, String string, int bytes)
+    {
+        int length = string.length();
+
+        buffer.putShort((short) bytes);
+
+        if (bytes == length)
+        {
+            for (int i = 0; i < length; i++)
+            {
+                buffer.put((byte) string.charAt(i));
+            }
+
+            return;
+        }
+
+        for (int i = 0; i < length; i++)
+        {
+            char c = string.charAt(i);
+
+            if (c >= 0x01 && c < 0x80)
+            {
+                buffer.put((byte) c);
+            }
+            else if (c < 0x800)
+            {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+            else
+            {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    static String readUTF(ByteBuffer buffer)
+    {
+        int bytes = buffer.getShort() & 0xffff;
+
+        if (buffer.hasArray())
+        {
+            byte[] array = buffer.array();
+            int offset = buffer.arrayOffset() + buffer.position();
+            boolean ascii = true;
+
+            for (int i = 0; i < bytes; i++)
+            {
+                if (array[offset + i] < 0x01)
+                {
+                    ascii = false;
+
+                    break;
+                }
+            }
+
+            if (ascii)
+            {
+                buffer.position(buffer.position() + bytes);
+
+                return new String(array, offset, bytes, StandardCharsets.ISO_8859_1);
+            }
+        }
+
+        char[] chars = new char[bytes];
+        int count = 0;
+        int end = buffer.position() + bytes;
+
+        while (buffer.position() < end)
+        {
+            int a = buffer.get() & 0xff;
+
+            if (a < 0x80)
+            {
+                chars[count++] = (char) a;
+            }
+            else if ((a & 0xE0) == 0xC0)
+            {
+                int b = buffer.get() & 0xff;
+
+                chars[count++] = (char) (((a & 0x1F) << 6) | (b & 0x3F));
+            }
+            else if ((a & 0xF0) == 0xE0)
+            {
+                int b = buffer.get() & 0xff;
+                int c = buffer.get() & 0xff;
+
+                chars[count++] = (char) (((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F));
+            }
+            else
+            {
+                throw new IllegalStateException("Malformed string at " + (buffer.position() - 1) + "!");
+            }
+        }
+
+        return new String(chars, 0, count);
+    }
+
+    private static class Encoder
+    {
+        private final BaseType type;
+        private final DataKeyTable keys = new DataKeyTable();
+        private final KeyType keyType;
+        private final int size;
+        private int entries;
+
+        public Encoder(BaseType type)
+        {
+            this.type = type;
+
+            int size = this.measure(type);
+
+            this.keyType = KeyType.forSize(this.keys.size());
+
+            /* Key indices of map entries, header, key type and key table */
+            size += this.entries * this.keyType.bytes;
+            size += 4 + 1 + this.keyType.bytes;
+
+            for (int i = 0, c = this.keys.size(); i < c; i++)
+            {
+                size += this.keyType.bytes + 2 + getUTFLength(this.keys.getKey(i));
+            }
+
+            this.size = size;
+        }
+
+        /**
+         * Collect keys and compute the size of given value (along with its
+         * type byte)
+         */
+        private int measure(BaseType type)
+        {
+            byte id = type.getTypeId();
+
+            if (id == BaseType.TYPE_MAP)
+            {
+                int size = 1 + 4;
+                MapType map = (MapType) type;
+
+                this.entries += map.elements.size();
+
+                for (Map.Entry<String, BaseType> entry : map.elements.entrySet())
+                {
+                    this.keys.put(entry.getKey());
+
+                    size += this.measure(entry.getValue());
+                }
+
+                /* Sizes of key indices are added later, when key type is known */
+                return size;
+            }
+            else if (id == BaseType.TYPE_LIST)
+            {
+                int size = 1 + 4;
+
+                for (BaseType element : ((ListType) type).elements)
+                {
+                    size += this.measure(element);
+                }
+
+                return size;
+            }
+            else if (id == BaseType.TYPE_STRING)
+            {
+                return 1 + 2 + getUTFLength(((StringType) type).value);
+            }
+            else if (id == BaseType.TYPE_BYTE) return 1 + 1;
+            else if (id == BaseType.TYPE_SHORT) return 1 + 2;
+            else if (id == BaseType.TYPE_INT) return 1 + 4;
+            else if (id == BaseType.TYPE_FLOAT) return 1 + 4;
+            else if (id == BaseType.TYPE_LONG) return 1 + 8;
+            else if (id == BaseType.TYPE_DOUBLE) return 1 + 8;
+            else if (id == BaseType.TYPE_BYTE_ARRAY) return 1 + 4 + ((ByteArrayType) type).value.length;
+            else if (id == BaseType.TYPE_SHORT_ARRAY) return 1 + 4 + ((ShortArrayType) type).value.length * 2;
+            else if (id == BaseType.TYPE_INT_ARRAY) return 1 + 4 + ((IntArrayType) type).value.length * 4;
+
+            throw new IllegalStateException("Data type " + id + " doesn't exist!");
+        }
+
+        public void write(ByteBuffer buffer)
+        {
+            ByteOrder order = buffer.order();
+
+            buffer.order(ByteOrder.BIG_ENDIAN);
+
+            try
+            {
+                int size = this.keys.size();
+
+                buffer.putInt(HEADER);
+                buffer.put(this.keyType.type);
+                this.keyType.write(buffer, size);
+
+                for (int i = 0; i < size; i++)
+                {
+                    String key = this.keys.getKey(i);
+
+                    this.keyType.write(buffer, i);
+                    writeUTF(buffer, key, getUTFLength(key));
+                }
+
+                this.write(buffer, this.type);
+            }
+            finally
+            {
+                buffer.order(order);
+            }
+        }
+
+        private void write(ByteBuffer buffer, BaseType type)
+        {
+            byte id = type.getTypeId();
+
+            buffer.put(id);
+
+            if (id == BaseType.TYPE_MAP)
+            {
+                MapType map = (MapType) type;
+
+                buffer.putInt(map.elements.size());
+
+                for (Map.Entry<String, BaseType> entry : map.elements.entrySet())
+                {
+                    this.keyType.write(buffer, this.keys.getIndex(entry.getKey()));
+                    this.write(buffer, entry.getValue());
+                }
+            }
+            else if (id == BaseType.TYPE_LIST)
+            {
+                ListType list = (ListType) type;
+
+                buffer.putInt(list.elements.size());
+
+                for (BaseType element : list.elements)
+                {
+                    this.write(buffer, element);
+                }
+            }
+            else if (id == BaseType.TYPE_STRING)
+            {
+                String string = ((StringType) type).value;
+
+                writeUTF(buffer, string, getUTFLength(string));
+            }
+            else if (id == BaseType.TYPE_BYTE) buffer.put(((ByteType) type).value);
+            else if (id == BaseType.TYPE_SHORT) buffer.putShort(((ShortType) type).value);
+            else if (id == BaseType.TYPE_INT) buffer.putInt(((IntType) type).value);
+            else if (id == BaseType.TYPE_FLOAT) buffer.putFloat(((FloatType) type).value);
+            else if (id == BaseType.TYPE_LONG) buffer.putLong(((LongType) type).value);
+            else if (id == BaseType.TYPE_DOUBLE) buffer.putDouble(((DoubleType) type).value);
+            else if (id == BaseType.TYPE_BYTE_ARRAY)
+            {
+                byte[] value = ((ByteArrayType) type).value;
+
+                buffer.putInt(value.length);
+                buffer.put(value);
+            }
+            else if (id == BaseType.TYPE_SHORT_ARRAY)
+            {
+                /* Elements of short and int arrays are little endian */
+                short[] value = ((ShortArrayType) type).value;
+
+                buffer.putInt(value.length);
+                buffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().put(value);
+                buffer.order(ByteOrder.BIG_ENDIAN).position(buffer.position() + value.length * 2);
+            }
+            else if (id == BaseType.TYPE_INT_ARRAY)
+            {
+                int[] value = ((IntArrayType) type).value;
+
+                buffer.putInt(value.length);
+                buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(value);
+                buffer.order(ByteOrder.BIG_ENDIAN).position(buffer.position() + value.length * 4);
+            }
+        }
+    }
+
+    /**
+     * Decoder of BBS1 data from a big endian buffer
+     */
+    static class Decoder
+    {
+        public final ByteBuffer buffer;
+        public String[] keys;
+        public KeyType keyType;
+
+        public Decoder(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        public void readHeader()
+        {
+            int header = this.buffer.getInt();
+
+            if (header != HEADER)
+            {
+                byte[] bytes = {(byte) (header >> 24), (byte) (header >> 16), (byte) (header >> 8), (byte) header};
+
+                throw new IllegalStateException("Given buffer has in invalid format! Header value is: " + new String(bytes, StandardCharsets.ISO_8859_1));
+            }
+
+            DataKeyTable table = new DataKeyTable();
+
+            this.keyType = KeyType.from(this.buffer.get());
+
+            for (int i = 0, c = this.keyType.read(this.buffer); i < c; i++)
+            {
+                table.set(this.keyType.read(this.buffer), readUTF(this.buffer));
+            }
+
+            this.keys = table.getKeys();
+        }
+
+        /**
+         * Create a decoder that shares the key table, and reads from
+         * given offset of the same buffer
+         */
+        public Decoder at(int offset)
+        {
+            Decoder decoder = new Decoder(this.buffer.duplicate().order(ByteOrder.BIG_ENDIAN));
+
+            decoder.buffer.position(offset);
+            decoder.keys = this.keys;
+            decoder.keyType = this.keyType;
+
+            return decoder;
+        }
+
+        public String readKey()
+        {
+            int index = this.keyType.read(this.buffer);
+
+            return index >= 0 && index < this.keys.length ? this.keys[index] : null;
+        }
+
+        public BaseType read()
+        {
+            ByteBuffer buffer = this.buffer;
+            byte id = buffer.get();
+
+            if (id == BaseType.TYPE_MAP)
+            {
+                MapType map = new MapType();
+
+                for (int i = 0, c = buffer.getInt(); i < c; i++)
+                {
+                    String key = this.readKey();
+
+                    map.elements.put(key, this.read());
+                }
+
+                return map;
+            }
+            else if (id == BaseType.TYPE_LIST)
+            {
+                int c = buffer.getInt();
+                ListType list = new ListType();
+
+                for (int i = 0; i < c; i++)
+                {
+                    list.elements.add(this.read());
+                }
+
+                return list;
+            }
+            else if (id == BaseType.TYPE_STRING) return new StringType(readUTF(buffer));
+            else if (id == BaseType.TYPE_BYTE) return new ByteType(buffer.get());
+            else if (id == BaseType.TYPE_SHORT) return new ShortType(buffer.getShort());
+            else if (id == BaseType.TYPE_INT) return new IntType(buffer.getInt());
+            else if (id == BaseType.TYPE_FLOAT) return new FloatType(buffer.getFloat());
+            else if (id == BaseType.TYPE_LONG) return new LongType(buffer.getLong());
+            else if (id == BaseType.TYPE_DOUBLE) return new DoubleType(buffer.getDouble());
+            else if (id == BaseType.TYPE_BYTE_ARRAY)
+            {
+                byte[] value = new byte[buffer.getInt()];
+
+                buffer.get(value);
+
+                return new ByteArrayType(value);
+            }
+            else if (id == BaseType.TYPE_SHORT_ARRAY)
+            {
+                short[] value = new short[buffer.getInt()];
+
+                buffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(value);
+                buffer.order(ByteOrder.BIG_ENDIAN).position(buffer.position() + value.length * 2);
+
+                return new ShortArrayType(value);
+            }
+            else if (id == BaseType.TYPE_INT_ARRAY)
+            {
+                int[] value = new int[buffer.getInt()];
+
+                buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(value);
+                buffer.order(ByteOrder.BIG_ENDIAN).position(buffer.position() + value.length * 4);
+
+                return new IntArrayType(value);
+            }
+
+            throw new IllegalStateException("Data type " + id + " doesn't exist!");
+        }
+
+        /**
+         * Skip the value at the buffer's position without decoding it
+         */
+        public void skip()
+        {
+            ByteBuffer buffer = this.buffer;
+            byte id = buffer.get();
+
+            if (id == BaseType.TYPE_MAP)
+            {
+                for (int i = 0, c = buffer.getInt(); i < c; i++)
+                {
+                    this.keyType.read(buffer);
+                    this.skip();
+                }
+            }
+            else if (id == BaseType.TYPE_LIST)
+            {
+                for (int i = 0, c = buffer.getInt(); i < c; i++)
+                {
+                    this.skip();
+                }
+            }
+            else
+            {
+                int bytes;
+
+                if (id == BaseType.TYPE_STRING) bytes = buffer.getShort() & 0xffff;
+                else if (id == BaseType.TYPE_BYTE) bytes = 1;
+                else if (id == BaseType.TYPE_SHORT) bytes = 2;
+                else if (id == BaseType.TYPE_INT || id == BaseType.TYPE_FLOAT) bytes = 4;
+                else if (id == BaseType.TYPE_LONG || id == BaseType.TYPE_DOUBLE) bytes = 8;
+                else if (id == BaseType.TYPE_BYTE_ARRAY) bytes = buffer.getInt();
+                else if (id == BaseType.TYPE_SHORT_ARRAY) bytes = buffer.getInt() * 2;
+                else if (id == BaseType.TYPE_INT_ARRAY) bytes = buffer.getInt() * 4;
+                else
+                {
+                    throw new IllegalStateException("Data type " + id + " doesn't exist!");
+                }
+
+                buffer.position(buffer.position() + bytes);
+            }
+        }
+    }
+}
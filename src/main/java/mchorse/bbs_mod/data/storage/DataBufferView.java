@@ -0,0 +1,158 @@
+package mchorse.bbs_mod.data.storage;
+
+import mchorse.bbs_mod.data.types.BaseType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Data buffer view
+ *
+ * Lazy read-only view of a value encoded in BBS1 format (see
+ * {@link DataBufferCodec}). Maps and lists aren't decoded when accessed,
+ * only offsets of their elements get indexed (by skipping over encoded
+ * data), so a part of a big packet or a film file can be inspected without
+ * inflating the whole tree into {@link BaseType}s.
+ */
+public class DataBufferView
+{
+    private final DataBufferCodec.Decoder decoder;
+    private final int offset;
+
+    private String[] keys;
+    private int[] children;
+
+    DataBufferView(DataBufferCodec.Decoder decoder, int offset)
+    {
+        this.decoder = decoder;
+        this.offset = offset;
+    }
+
+    public byte getTypeId()
+    {
+        return this.decoder.buffer.get(this.offset);
+    }
+
+    public boolean isMap()
+    {
+        return this.getTypeId() == BaseType.TYPE_MAP;
+    }
+
+    public boolean isList()
+    {
+        return this.getTypeId() == BaseType.TYPE_LIST;
+    }
+
+    /**
+     * Amount of elements of a map, list or an array (or 0 for other types)
+     */
+    public int size()
+    {
+        byte type = this.getTypeId();
+
+        if (type == BaseType.TYPE_MAP || type == BaseType.TYPE_LIST || type >= BaseType.TYPE_BYTE_ARRAY)
+        {
+            return this.decoder.buffer.getInt(this.offset + 1);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Keys of a map (empty if it's not a map)
+     */
+    public List<String> keys()
+    {
+        if (!this.isMap())
+        {
+            return Collections.emptyList();
+        }
+
+        this.index();
+
+        return Collections.unmodifiableList(Arrays.asList(this.keys));
+    }
+
+    public boolean has(String key)
+    {
+        return this.get(key) != null;
+    }
+
+    /**
+     * Get a view of map's value by given key, or null if it's not a map
+     * or there is no such key
+     */
+    public DataBufferView get(String key)
+    {
+        if (!this.isMap())
+        {
+            return null;
+        }
+
+        this.index();
+
+        for (int i = 0; i < this.keys.length; i++)
+        {
+            if (key.equals(this.keys[i]))
+            {
+                return new DataBufferView(this.decoder, this.children[i]);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get a view of list's element at given index, or null if it's not
+     * a list or the index is out of bounds
+     */
+    public DataBufferView get(int index)
+    {
+        if (!this.isList())
+        {
+            return null;
+        }
+
+        this.index();
+
+        return index >= 0 && index < this.children.length ? new DataBufferView(this.decoder, this.children[index]) : null;
+    }
+
+    /**
+     * Fully decode the value of this view
+     */
+    public BaseType decode()
+    {
+        return this.decoder.at(this.offset).read();
+    }
+
+    /**
+     * Collect offsets (and keys) of map's or list's elements
+     */
+    private void index()
+    {
+        if (this.children != null)
+        {
+            return;
+        }
+
+        boolean map = this.isMap();
+        DataBufferCodec.Decoder decoder = this.decoder.at(this.offset + 1);
+        int count = decoder.buffer.getInt();
+
+        this.children = new int[count];
+        this.keys = map ? new String[count] : null;
+
+        for (int i = 0; i < count; i++)
+        {
+            if (map)
+            {
+                this.keys[i] = decoder.readKey();
+            }
+
+            this.children[i] = decoder.buffer.position();
+            decoder.skip();
+        }
+    }
+}
@@ -1,13 +1,11 @@
 package mchorse.bbs_mod.data.storage;
 
-import mchorse.bbs_mod.data.DataStorageContext;
 import mchorse.bbs_mod.data.types.BaseType;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 public abstract class DataStorage implements IDataStorage
 {
@@ -16,29 +14,24 @@ public abstract class DataStorage implements IDataStorage
      */
     public static BaseType readFromStream(InputStream stream) throws IOException
     {
-        DataInputStream dataInput = new DataInputStream(stream);
+        byte[] bytes = stream.readAllBytes();
 
-        char a = (char) dataInput.readByte();
-        char b = (char) dataInput.readByte();
-        char c = (char) dataInput.readByte();
-        char d = (char) dataInput.readByte();
-
-        String header = new String(new char[] {a, b, c, d});
-
-        if (!header.equals("BBS1"))
-        {
-            throw new IllegalStateException("Given input stream has in invalid format! Header value is: " + header);
-        }
-
-        DataStorageContext context = new DataStorageContext(dataInput);
+        stream.close();
 
-        context.read();
+        return DataBufferCodec.decode(ByteBuffer.wrap(bytes));
+    }
 
-        BaseType type = BaseType.fromData(context);
+    /**
+     * Read a lazy view of a base data type from given input stream (see
+     * {@link DataBufferView}).
+     */
+    public static DataBufferView readViewFromStream(InputStream stream) throws IOException
+    {
+        byte[] bytes = stream.readAllBytes();
 
         stream.close();
 
-        return type;
+        return DataBufferCodec.view(bytes);
     }
 
     /**
@@ -46,19 +39,7 @@ public abstract class DataStorage implements IDataStorage
      */
     public static void writeToStream(OutputStream stream, BaseType type) throws IOException
     {
-        DataOutputStream dataOutput = new DataOutputStream(stream);
-        DataStorageContext context = new DataStorageContext(dataOutput);
-
-        dataOutput.writeByte('B');
-        dataOutput.writeByte('B');
-        dataOutput.writeByte('S');
-        dataOutput.writeByte('1');
-
-        type.traverseKeys(context);
-        context.write();
-
-        BaseType.toData(context, type);
-
+        stream.write(DataBufferCodec.encode(type));
         stream.close();
     }
 
@@ -75,6 +56,18 @@ public abstract class DataStorage implements IDataStorage
         return type;
     }
 
+    /**
+     * Read a lazy view of stored data, which allows inspecting parts of it
+     * without decoding everything
+     */
+    public DataBufferView readView() throws IOException
+    {
+        try (InputStream inputStream = this.getInputStream())
+        {
+            return readViewFromStream(inputStream);
+        }
+    }
+
     protected abstract InputStream getInputStream() throws IOException;
 
     @Override
@@ -0,0 +1,351 @@
+package mchorse.bbs_mod.film;
+
+import mchorse.bbs_mod.data.DataDelta;
+import mchorse.bbs_mod.data.DataStorageUtils;
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.MapType;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Film cache
+ *
+ * Server-side cache of films' data and their encoded bytes, so playing a
+ * film doesn't require reading, parsing and encoding it again. Entries are
+ * validated against film file's modification time and size. Films that
+ * were saved, but aren't written to the disk yet, are trusted until they
+ * get written, and then they're validated against the written file.
+ *
+ * Besides that, it keeps track of which films were sent to every player,
+ * which version (content hash) of these films every player announced to
+ * have, and the last few revisions of every film as {@link DataDelta}s, so
+ * films could be sent to players either as nothing (when they already have
+ * it), deltas or full data.
+ */
+public class FilmCache
+{
+    /**
+     * How many last revisions of every film are kept for sending deltas
+     */
+    public static final int MAX_REVISIONS = 16;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<UUID, Map<String, Long>> known = new HashMap<>();
+    private final Map<UUID, Set<String>> sent = new HashMap<>();
+    private FilmManager listening;
+
+    public static long hash(byte[] bytes)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            long hash = 0L;
+
+            for (int i = 0; i < 8; i++)
+            {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+
+            return hash;
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public synchronized void reset()
+    {
+        this.entries.clear();
+        this.known.clear();
+        this.sent.clear();
+    }
+
+    /**
+     * Get cached entry of given film, or (re)load it if it isn't cached or
+     * the file was changed since it was cached.
+     */
+    public synchronized Entry get(FilmManager films, String id)
+    {
+        this.listen(films);
+
+        File file = films.getFile(id);
+        Entry entry = this.entries.get(id);
+
+        if (entry != null && (entry.source != null ? films.getPending(id) == entry.source : entry.isUpToDate(file)))
+        {
+            return entry;
+        }
+
+        Film film = films.load(id);
+
+        if (film == null)
+        {
+            this.entries.remove(id);
+
+            return null;
+        }
+
+        entry = new Entry((MapType) film.toData());
+        entry.stamp(file);
+
+        this.entries.put(id, entry);
+
+        return entry;
+    }
+
+    /**
+     * Update cached entry after given film was saved with given data. The
+     * difference between cached and new data is stored as a revision.
+     */
+    public synchronized void save(FilmManager films, String id, MapType data)
+    {
+        this.listen(films);
+
+        Entry entry = this.entries.get(id);
+
+        if (entry == null)
+        {
+            return;
+        }
+
+        /* Run the data through the film, so it would be exactly the same
+         * as the data that would be loaded from the disk */
+        MapType newData = (MapType) films.create(id, data).toData();
+
+        entry.update(newData, DataDelta.diff(entry.data, newData));
+        entry.source = data;
+
+        /* The data could've been already written by now (its write listener
+         * didn't know about it yet), or replaced with another save */
+        MapType pending = films.getPending(id);
+
+        if (pending == null)
+        {
+            this.written(films, id, data);
+        }
+        else if (pending != data)
+        {
+            this.entries.remove(id);
+        }
+    }
+
+    /**
+     * Once the saved data was written, the entry can be validated against
+     * the file again
+     */
+    private synchronized void written(FilmManager films, String id, MapType data)
+    {
+        Entry entry = this.entries.get(id);
+
+        if (entry != null && entry.source == data)
+        {
+            entry.source = null;
+            entry.stamp(films.getFile(id));
+        }
+    }
+
+    private void listen(FilmManager films)
+    {
+        if (this.listening != films)
+        {
+            this.listening = films;
+
+            films.addWriteListener((id, data) -> this.written(films, id, data));
+        }
+    }
+
+    public synchronized void invalidate(String id)
+    {
+        this.entries.remove(id);
+    }
+
+    public synchronized void invalidateAll()
+    {
+        this.entries.clear();
+    }
+
+    /* Players' versions */
+
+    /**
+     * Remember that given film was sent to given player
+     */
+    public synchronized void markSent(UUID player, String id)
+    {
+        this.sent.computeIfAbsent(player, (k) -> new HashSet<>()).add(id);
+    }
+
+    /**
+     * Whether given film was sent to given player, i.e. the player may
+     * announce its version or request it in full
+     */
+    public synchronized boolean wasSent(UUID player, String id)
+    {
+        Set<String> ids = this.sent.get(player);
+
+        return ids != null && ids.contains(id);
+    }
+
+    /**
+     * Remember the version of the film that given player announced to
+     * have. Only films which were sent to the player are accepted.
+     */
+    public synchronized void announce(UUID player, String id, long hash)
+    {
+        if (this.wasSent(player, id))
+        {
+            this.known.computeIfAbsent(player, (k) -> new HashMap<>()).put(id, hash);
+        }
+    }
+
+    public synchronized Long getKnown(UUID player, String id)
+    {
+        Map<String, Long> hashes = this.known.get(player);
+
+        return hashes == null ? null : hashes.get(id);
+    }
+
+    public synchronized void forget(UUID player)
+    {
+        this.known.remove(player);
+        this.sent.remove(player);
+    }
+
+    public static class Entry
+    {
+        public MapType data;
+        public long hash;
+
+        private byte[] bytes;
+        private MapType source;
+        private long modified;
+        private long length;
+        private final List<Revision> revisions = new ArrayList<>();
+
+        public Entry(MapType data)
+        {
+            this.data = data;
+            this.bytes = DataStorageUtils.writeToBytes(data);
+            this.hash = FilmCache.hash(this.bytes);
+        }
+
+        public Entry(MapType data, long hash)
+        {
+            this.data = data;
+            this.hash = hash;
+        }
+
+        public byte[] getBytes()
+        {
+            if (this.bytes == null)
+            {
+                this.bytes = DataStorageUtils.writeToBytes(this.data);
+            }
+
+            return this.bytes;
+        }
+
+        private boolean isUpToDate(File file)
+        {
+            return file.lastModified() == this.modified && file.length() == this.length;
+        }
+
+        private void stamp(File file)
+        {
+            this.modified = file.lastModified();
+            this.length = file.length();
+        }
+
+        private void update(MapType data, DataDelta delta)
+        {
+            if (delta == null)
+            {
+                return;
+            }
+
+            Entry updated = new Entry(data);
+
+            this.revisions.add(new Revision(this.hash, delta));
+
+            while (this.revisions.size() > MAX_REVISIONS)
+            {
+                this.revisions.remove(0);
+            }
+
+            this.data = data;
+            this.bytes = updated.bytes;
+            this.hash = updated.hash;
+        }
+
+        /**
+         * Get deltas which turn the version with given hash into the current
+         * one, or null if there are no revisions from such version.
+         */
+        public List<DataDelta> getDeltas(long from)
+        {
+            if (from == this.hash)
+            {
+                return Collections.emptyList();
+            }
+
+            for (int i = this.revisions.size() - 1; i >= 0; i--)
+            {
+                if (this.revisions.get(i).from == from)
+                {
+                    List<DataDelta> deltas = new ArrayList<>();
+
+                    for (int j = i; j < this.revisions.size(); j++)
+                    {
+                        deltas.add(this.revisions.get(j).delta);
+                    }
+
+                    return deltas;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Apply given deltas to cached data
+         */
+        public void apply(List<DataDelta> deltas, long hash)
+        {
+            for (DataDelta delta : deltas)
+            {
+                BaseType data = delta.apply(this.data);
+
+                this.data = data instanceof MapType map ? map : new MapType();
+            }
+
+            this.bytes = null;
+            this.hash = hash;
+        }
+
+        /**
+         * Create a new film from the cached data, which can be modified
+         * without affecting the cache
+         */
+        public Film createFilm(String id)
+        {
+            Film film = new Film();
+
+            film.setId(id);
+            film.fromData(this.data.copy());
+
+            return film;
+        }
+    }
+
+    private record Revision(long from, DataDelta delta)
+    {}
+}
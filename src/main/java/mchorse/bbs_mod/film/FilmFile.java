@@ -0,0 +1,369 @@
+package mchorse.bbs_mod.film;
+
+import mchorse.bbs_mod.data.DataStorageUtils;
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.ListType;
+import mchorse.bbs_mod.data.types.MapType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Film file
+ *
+ * Container format of films: a header with an index of sections, followed
+ * by sections' data. Every section is a BBS1 encoded and independently
+ * compressed part of film's data: film's own properties, camera clips,
+ * every replay (without its keyframes), and every keyframe channel of every
+ * replay. Thanks to that:
+ *
+ * - Film's properties can be read without decompressing any replays, and
+ *   replays can be decompressed and decoded on demand (and in parallel).
+ * - When saving, sections whose content hash didn't change are copied from
+ *   the previous file as they are, so only changed sections are compressed.
+ *
+ * Old films (a single gzipped BBS1 blob) are recognized by their header,
+ * and get converted into this format when they're saved next time.
+ */
+public class FilmFile
+{
+    public static final int MAGIC = ('B' << 24) | ('B' << 16) | ('S' << 8) | 'F';
+    public static final int VERSION = 1;
+
+    public static final String FILM = "film";
+    public static final String CAMERA = "camera";
+    public static final String REPLAY = "replay/";
+    public static final String KEYFRAMES = "/keyframes/";
+
+    private final Map<String, Section> sections = new LinkedHashMap<>();
+    private int replays;
+
+    /**
+     * Check whether given file is in film container format (rather than
+     * the old gzipped format)
+     */
+    public static boolean isFilmFile(File file)
+    {
+        if (!file.isFile())
+        {
+            return false;
+        }
+
+        try (DataInputStream stream = new DataInputStream(new FileInputStream(file)))
+        {
+            return stream.readInt() == MAGIC;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Read film file's index and (still compressed) sections
+     */
+    public static FilmFile read(File file) throws IOException
+    {
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (stream.readInt() != MAGIC)
+            {
+                throw new IOException("File " + file.getName() + " isn't a film file!");
+            }
+
+            int version = stream.readInt();
+
+            if (version > VERSION)
+            {
+                throw new IOException("Film file " + file.getName() + " has unsupported version " + version + "!");
+            }
+
+            FilmFile filmFile = new FilmFile();
+            List<Section> sections = new ArrayList<>();
+            int count = stream.readInt();
+            long remaining = file.length();
+
+            for (int i = 0; i < count; i++)
+            {
+                String name = stream.readUTF();
+                long hash = stream.readLong();
+                int length = stream.readInt();
+
+                /* Sections can't be bigger than the file itself, so a corrupted
+                 * index doesn't allocate absurd amounts of memory */
+                if (length < 0 || length > remaining)
+                {
+                    throw new IOException("Film file " + file.getName() + " has a corrupted section " + name + "!");
+                }
+
+                remaining -= length;
+
+                sections.add(new Section(name, hash, null, new byte[length]));
+            }
+
+            for (Section section : sections)
+            {
+                stream.readFully(section.compressed);
+                filmFile.add(section);
+            }
+
+            return filmFile;
+        }
+    }
+
+    /**
+     * Split film's data into sections, and write them into given file. If
+     * there is a previous film file, sections that didn't change are reused
+     * from it without compressing them again.
+     */
+    public static void write(File file, MapType data, FilmFile previous) throws IOException
+    {
+        Map<String, BaseType> split = split(data);
+        List<Section> sections = new ArrayList<>();
+
+        for (Map.Entry<String, BaseType> entry : split.entrySet())
+        {
+            byte[] bytes = DataStorageUtils.writeToBytes(entry.getValue());
+            long hash = FilmCache.hash(bytes);
+            Section old = previous == null ? null : previous.sections.get(entry.getKey());
+
+            if (old != null && old.hash == hash)
+            {
+                sections.add(old);
+            }
+            else
+            {
+                sections.add(new Section(entry.getKey(), hash, bytes, null));
+            }
+        }
+
+        sections.parallelStream().forEach(Section::compress);
+
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
+        {
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeInt(sections.size());
+
+            for (Section section : sections)
+            {
+                stream.writeUTF(section.name);
+                stream.writeLong(section.hash);
+                stream.writeInt(section.compressed.length);
+            }
+
+            for (Section section : sections)
+            {
+                stream.write(section.compressed);
+            }
+        }
+    }
+
+    /**
+     * Split film's data into sections
+     */
+    public static Map<String, BaseType> split(MapType data)
+    {
+        Map<String, BaseType> sections = new LinkedHashMap<>();
+        MapType film = new MapType();
+
+        for (Map.Entry<String, BaseType> entry : data)
+        {
+            if (!entry.getKey().equals("camera") && !entry.getKey().equals("replays"))
+            {
+                film.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        sections.put(FILM, film);
+
+        if (data.has("camera"))
+        {
+            sections.put(CAMERA, data.get("camera"));
+        }
+
+        ListType replays = data.getList("replays");
+
+        for (int i = 0; i < replays.size(); i++)
+        {
+            BaseType replay = replays.get(i);
+            String name = REPLAY + i;
+
+            if (!replay.isMap() || !replay.asMap().has("keyframes") || !replay.asMap().get("keyframes").isMap())
+            {
+                sections.put(name, replay);
+
+                continue;
+            }
+
+            MapType replayData = new MapType();
+
+            for (Map.Entry<String, BaseType> entry : replay.asMap())
+            {
+                replayData.put(entry.getKey(), entry.getKey().equals("keyframes") ? new MapType() : entry.getValue());
+            }
+
+            sections.put(name, replayData);
+
+            for (Map.Entry<String, BaseType> entry : replay.asMap().getMap("keyframes"))
+            {
+                sections.put(name + KEYFRAMES + entry.getKey(), entry.getValue());
+            }
+        }
+
+        return sections;
+    }
+
+    private void add(Section section)
+    {
+        this.sections.put(section.name, section);
+
+        if (section.name.startsWith(REPLAY) && !section.name.contains(KEYFRAMES))
+        {
+            this.replays += 1;
+        }
+    }
+
+    public int getReplayCount()
+    {
+        return this.replays;
+    }
+
+    /**
+     * Read film's data without replays
+     */
+    public MapType readFilm() throws IOException
+    {
+        Section film = this.sections.get(FILM);
+        Section camera = this.sections.get(CAMERA);
+        MapType data = film == null ? new MapType() : (MapType) film.decode();
+
+        if (camera != null)
+        {
+            data.put("camera", camera.decode());
+        }
+
+        return data;
+    }
+
+    /**
+     * Read replay's data at given index (along with its keyframes)
+     */
+    public BaseType readReplay(int index) throws IOException
+    {
+        String name = REPLAY + index;
+        Section section = this.sections.get(name);
+
+        if (section == null)
+        {
+            return new MapType();
+        }
+
+        BaseType replay = section.decode();
+
+        if (replay.isMap() && replay.asMap().has("keyframes"))
+        {
+            MapType keyframes = replay.asMap().getMap("keyframes");
+            String prefix = name + KEYFRAMES;
+
+            for (Section channel : this.sections.values())
+            {
+                if (channel.name.startsWith(prefix))
+                {
+                    keyframes.put(channel.name.substring(prefix.length()), channel.decode());
+                }
+            }
+        }
+
+        return replay;
+    }
+
+    /**
+     * Read complete film's data
+     */
+    public MapType readAll() throws IOException
+    {
+        MapType data = this.readFilm();
+        ListType replays = new ListType();
+
+        for (int i = 0; i < this.replays; i++)
+        {
+            replays.add(this.readReplay(i));
+        }
+
+        data.put("replays", replays);
+
+        return data;
+    }
+
+    private static class Section
+    {
+        public final String name;
+        public final long hash;
+        public byte[] bytes;
+        public byte[] compressed;
+
+        public Section(String name, long hash, byte[] bytes, byte[] compressed)
+        {
+            this.name = name;
+            this.hash = hash;
+            this.bytes = bytes;
+            this.compressed = compressed;
+        }
+
+        public void compress()
+        {
+            if (this.compressed != null)
+            {
+                return;
+            }
+
+            try
+            {
+                ByteArrayOutputStream output = new ByteArrayOutputStream(this.bytes.length / 4 + 64);
+
+                try (DeflaterOutputStream stream = new DeflaterOutputStream(output))
+                {
+                    stream.write(this.bytes);
+                }
+
+                this.compressed = output.toByteArray();
+                this.bytes = null;
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public BaseType decode() throws IOException
+        {
+            try (InputStream stream = new InflaterInputStream(new ByteArrayInputStream(this.compressed)))
+            {
+                BaseType data = DataStorageUtils.readFromBytes(stream.readAllBytes());
+
+                if (data == null)
+                {
+                    throw new IOException("Section " + this.name + " is corrupted!");
+                }
+
+                return data;
+            }
+        }
+    }
+}
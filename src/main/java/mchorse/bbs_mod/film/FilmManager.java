@@ -2,7 +2,6 @@ package mchorse.bbs_mod.film;
 
 import mchorse.bbs_mod.data.types.MapType;
 import mchorse.bbs_mod.utils.manager.BaseManager;
-import mchorse.bbs_mod.utils.manager.storage.CompressedDataStorage;
 
 import java.io.File;
 import java.util.function.Supplier;
@@ -14,7 +13,40 @@ public class FilmManager extends BaseManager<Film>
         super(folder);
 
         this.backUps = true;
-        this.storage = new CompressedDataStorage();
+        this.asyncSaves = true;
+        this.storage = new FilmStorage();
+    }
+
+    /**
+     * Load a film. Films in container format get only film's properties and
+     * camera decoded right away, while replays are decoded once they're
+     * accessed for the first time.
+     */
+    @Override
+    protected Film read(String id)
+    {
+        File file = this.getFile(id);
+
+        if (!FilmFile.isFilmFile(file))
+        {
+            return super.read(id);
+        }
+
+        try
+        {
+            FilmFile filmFile = FilmFile.read(file);
+            Film film = this.create(id, filmFile.readFilm());
+
+            film.replays.setLazy(filmFile.getReplayCount(), filmFile::readReplay);
+
+            return film;
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+
+        return null;
     }
 
     @Override
@@ -35,4 +67,4 @@ public class FilmManager extends BaseManager<Film>
     {
         return ".dat";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+package mchorse.bbs_mod.film;
+
+import mchorse.bbs_mod.data.types.MapType;
+import mchorse.bbs_mod.utils.manager.storage.CompressedDataStorage;
+import mchorse.bbs_mod.utils.manager.storage.IDataStorage;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Film storage
+ *
+ * Stores films in {@link FilmFile} container format. Old gzipped films are
+ * still loaded through {@link CompressedDataStorage}, and get converted
+ * when they're saved.
+ */
+public class FilmStorage implements IDataStorage
+{
+    private final CompressedDataStorage legacy = new CompressedDataStorage();
+
+    @Override
+    public MapType load(File file) throws IOException
+    {
+        if (FilmFile.isFilmFile(file))
+        {
+            return FilmFile.read(file).readAll();
+        }
+
+        return this.legacy.load(file);
+    }
+
+    @Override
+    public void save(File file, MapType data) throws IOException
+    {
+        this.save(file, file, data);
+    }
+
+    /**
+     * Save film's data into the temporary file, reusing unchanged sections
+     * of the current film file
+     */
+    @Override
+    public void save(File file, File temp, MapType data) throws IOException
+    {
+        FilmFile previous = null;
+
+        if (FilmFile.isFilmFile(file))
+        {
+            try
+            {
+                previous = FilmFile.read(file);
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+
+        FilmFile.write(temp, data, previous);
+    }
+}
@@ -18,6 +18,7 @@ import mchorse.bbs_mod.utils.clips.Clip;
 import mchorse.bbs_mod.utils.clips.Clips;
 import net.minecraft.entity.LivingEntity;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class Replay extends ValueGroup
@@ -46,6 +47,8 @@ public class Replay extends ValueGroup
 
     public final ValueBoolean overwriteGroupTransform = new ValueBoolean("overwrite_group_transform", false);
 
+    private final List<Clip> actionsBuffer = new ArrayList<>();
+
     public Replay(String id)
     {
         super(id);
@@ -103,19 +106,27 @@ public class Replay extends ValueGroup
 
     public void applyActions(LivingEntity actor, SuperFakePlayer fakePlayer, Film film, int tick)
     {
-        List<Clip> clips = this.actions.getClips(tick);
+        List<Clip> clips = this.actionsBuffer;
+
+        clips.clear();
+        this.actions.getClips(tick, Integer.MAX_VALUE, clips);
 
         for (Clip clip : clips)
         {
             ((ActionClip) clip).apply(actor, fakePlayer, film, this, tick);
         }
+
+        clips.clear();
     }
 
     public void applyClientActions(int tick, IEntity entity, Film film)
     {
         tick = this.getTick(tick);
 
-        List<Clip> clips = this.actions.getClips(tick);
+        List<Clip> clips = this.actionsBuffer;
+
+        clips.clear();
+        this.actions.getClips(tick, Integer.MAX_VALUE, clips);
 
         for (Clip clip : clips)
         {
@@ -124,6 +135,8 @@ public class Replay extends ValueGroup
                 actionClip.applyClient(entity, film, this, tick);
             }
         }
+
+        clips.clear();
     }
 
     public int getTick(int tick)
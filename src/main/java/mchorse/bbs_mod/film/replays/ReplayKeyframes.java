@@ -5,13 +5,14 @@ import mchorse.bbs_mod.settings.values.base.BaseValue;
 import mchorse.bbs_mod.settings.values.core.ValueGroup;
 import mchorse.bbs_mod.utils.interps.IInterp;
 import mchorse.bbs_mod.utils.interps.Interpolations;
+import mchorse.bbs_mod.utils.keyframes.DoubleKeyframeChannel;
 import mchorse.bbs_mod.utils.keyframes.Keyframe;
 import mchorse.bbs_mod.utils.keyframes.KeyframeChannel;
+import mchorse.bbs_mod.utils.keyframes.KeyframeReducer;
 import mchorse.bbs_mod.utils.keyframes.KeyframeSegment;
 import mchorse.bbs_mod.utils.keyframes.factories.KeyframeFactories;
 import net.minecraft.entity.EquipmentSlot;
 import net.minecraft.item.ItemStack;
-import org.joml.Vector2d;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,37 +30,37 @@ public class ReplayKeyframes extends ValueGroup
 
     public static final List<String> CURATED_CHANNELS = Arrays.asList("x", "y", "z", "pitch", "yaw", "headYaw", "bodyYaw", "sneaking", "sprinting", "item_main_hand", "item_off_hand", "item_head", "item_chest", "item_legs", "item_feet", "selected_slot", "stick_lx", "stick_ly", "stick_rx", "stick_ry", "trigger_l", "trigger_r", "extra1_x", "extra1_y", "extra2_x", "extra2_y", "grounded", "damage", "vX", "vY", "vZ");
 
-    public final KeyframeChannel<Double> x = new KeyframeChannel<>("x", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> y = new KeyframeChannel<>("y", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> z = new KeyframeChannel<>("z", KeyframeFactories.DOUBLE);
+    public final DoubleKeyframeChannel x = new DoubleKeyframeChannel("x");
+    public final DoubleKeyframeChannel y = new DoubleKeyframeChannel("y");
+    public final DoubleKeyframeChannel z = new DoubleKeyframeChannel("z");
 
-    public final KeyframeChannel<Double> vX = new KeyframeChannel<>("vX", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> vY = new KeyframeChannel<>("vY", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> vZ = new KeyframeChannel<>("vZ", KeyframeFactories.DOUBLE);
+    public final DoubleKeyframeChannel vX = new DoubleKeyframeChannel("vX");
+    public final DoubleKeyframeChannel vY = new DoubleKeyframeChannel("vY");
+    public final DoubleKeyframeChannel vZ = new DoubleKeyframeChannel("vZ");
 
-    public final KeyframeChannel<Double> yaw = new KeyframeChannel<>("yaw", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> pitch = new KeyframeChannel<>("pitch", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> headYaw = new KeyframeChannel<>("headYaw", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> bodyYaw = new KeyframeChannel<>("bodyYaw", KeyframeFactories.DOUBLE);
+    public final DoubleKeyframeChannel yaw = new DoubleKeyframeChannel("yaw");
+    public final DoubleKeyframeChannel pitch = new DoubleKeyframeChannel("pitch");
+    public final DoubleKeyframeChannel headYaw = new DoubleKeyframeChannel("headYaw");
+    public final DoubleKeyframeChannel bodyYaw = new DoubleKeyframeChannel("bodyYaw");
 
-    public final KeyframeChannel<Double> sneaking = new KeyframeChannel<>("sneaking", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> sprinting = new KeyframeChannel<>("sprinting", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> grounded = new KeyframeChannel<>("grounded", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> fall = new KeyframeChannel<>("fall", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> damage = new KeyframeChannel<>("damage", KeyframeFactories.DOUBLE);
+    public final DoubleKeyframeChannel sneaking = new DoubleKeyframeChannel("sneaking");
+    public final DoubleKeyframeChannel sprinting = new DoubleKeyframeChannel("sprinting");
+    public final DoubleKeyframeChannel grounded = new DoubleKeyframeChannel("grounded");
+    public final DoubleKeyframeChannel fall = new DoubleKeyframeChannel("fall");
+    public final DoubleKeyframeChannel damage = new DoubleKeyframeChannel("damage");
 
-    public final KeyframeChannel<Double> stickLeftX = new KeyframeChannel<>("stick_lx", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> stickLeftY = new KeyframeChannel<>("stick_ly", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> stickRightX = new KeyframeChannel<>("stick_rx", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> stickRightY = new KeyframeChannel<>("stick_ry", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> triggerLeft = new KeyframeChannel<>("trigger_l", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> triggerRight = new KeyframeChannel<>("trigger_r", KeyframeFactories.DOUBLE);
+    public final DoubleKeyframeChannel stickLeftX = new DoubleKeyframeChannel("stick_lx");
+    public final DoubleKeyframeChannel stickLeftY = new DoubleKeyframeChannel("stick_ly");
+    public final DoubleKeyframeChannel stickRightX = new DoubleKeyframeChannel("stick_rx");
+    public final DoubleKeyframeChannel stickRightY = new DoubleKeyframeChannel("stick_ry");
+    public final DoubleKeyframeChannel triggerLeft = new DoubleKeyframeChannel("trigger_l");
+    public final DoubleKeyframeChannel triggerRight = new DoubleKeyframeChannel("trigger_r");
 
     /* Miscellaneous animatable keyframe channels */
-    public final KeyframeChannel<Double> extra1X = new KeyframeChannel<>("extra1_x", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> extra1Y = new KeyframeChannel<>("extra1_y", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> extra2X = new KeyframeChannel<>("extra2_x", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> extra2Y = new KeyframeChannel<>("extra2_y", KeyframeFactories.DOUBLE);
+    public final DoubleKeyframeChannel extra1X = new DoubleKeyframeChannel("extra1_x");
+    public final DoubleKeyframeChannel extra1Y = new DoubleKeyframeChannel("extra1_y");
+    public final DoubleKeyframeChannel extra2X = new DoubleKeyframeChannel("extra2_x");
+    public final DoubleKeyframeChannel extra2Y = new DoubleKeyframeChannel("extra2_y");
 
     public final KeyframeChannel<ItemStack> mainHand = new KeyframeChannel<>("item_main_hand", KeyframeFactories.ITEM_STACK);
     public final KeyframeChannel<ItemStack> offHand = new KeyframeChannel<>("item_off_hand", KeyframeFactories.ITEM_STACK);
@@ -123,6 +124,18 @@ public class ReplayKeyframes extends ValueGroup
         return channels;
     }
 
+    /**
+     * Reset playback cursors of all channels. It should be called when
+     * playback jumps to a different tick instead of advancing sequentially
+     */
+    public void resetCursors()
+    {
+        for (KeyframeChannel<?> channel : this.getChannels())
+        {
+            channel.getCursor().reset();
+        }
+    }
+
     public void shift(float tick)
     {
         for (KeyframeChannel<?> channel : this.getChannels())
@@ -148,6 +161,15 @@ public class ReplayKeyframes extends ValueGroup
     }
 
     public void record(int tick, IEntity entity, List<String> groups)
+    {
+        this.record(tick, entity, groups, null);
+    }
+
+    /**
+     * Record a frame of given entity at given tick. When a reducer is
+     * given, redundant samples are dropped right away
+     */
+    public void record(int tick, IEntity entity, List<String> groups, KeyframeReducer reducer)
     {
         boolean empty = groups == null || groups.isEmpty();
         boolean position = empty || groups.contains(GROUP_POSITION);
@@ -161,74 +183,108 @@ public class ReplayKeyframes extends ValueGroup
         /* Position and rotation */
         if (position)
         {
-            this.x.insert(tick, entity.getX());
-            this.y.insert(tick, entity.getY());
-            this.z.insert(tick, entity.getZ());
+            this.insert(reducer, this.x, tick, entity.getX());
+            this.insert(reducer, this.y, tick, entity.getY());
+            this.insert(reducer, this.z, tick, entity.getZ());
 
-            this.vX.insert(tick, entity.getVelocity().x);
-            this.vY.insert(tick, entity.getVelocity().y);
-            this.vZ.insert(tick, entity.getVelocity().z);
+            this.insert(reducer, this.vX, tick, entity.getVelocity().x);
+            this.insert(reducer, this.vY, tick, entity.getVelocity().y);
+            this.insert(reducer, this.vZ, tick, entity.getVelocity().z);
 
-            this.fall.insert(tick, (double) entity.getFallDistance());
+            this.insert(reducer, this.fall, tick, (double) entity.getFallDistance());
         }
 
-        this.sneaking.insert(tick, entity.isSneaking() ? 1D : 0D);
-        this.sprinting.insert(tick, entity.isSprinting() ? 1D : 0D);
-        this.grounded.insert(tick, entity.isOnGround() ? 1D : 0D);
-        this.damage.insert(tick, (double) entity.getHurtTimer());
+        this.insert(reducer, this.sneaking, tick, entity.isSneaking() ? 1D : 0D);
+        this.insert(reducer, this.sprinting, tick, entity.isSprinting() ? 1D : 0D);
+        this.insert(reducer, this.grounded, tick, entity.isOnGround() ? 1D : 0D);
+        this.insert(reducer, this.damage, tick, (double) entity.getHurtTimer());
 
         if (rotation)
         {
-            this.yaw.insert(tick, (double) entity.getYaw());
-            this.pitch.insert(tick, (double) entity.getPitch());
-            this.headYaw.insert(tick, (double) entity.getHeadYaw());
-            this.bodyYaw.insert(tick, (double) entity.getBodyYaw());
+            this.insert(reducer, this.yaw, tick, (double) entity.getYaw());
+            this.insert(reducer, this.pitch, tick, (double) entity.getPitch());
+            this.insert(reducer, this.headYaw, tick, (double) entity.getHeadYaw());
+            this.insert(reducer, this.bodyYaw, tick, (double) entity.getBodyYaw());
         }
 
         float[] sticks = entity.getExtraVariables();
 
         if (leftStick)
         {
-            this.stickLeftX.insert(tick, (double) sticks[0]);
-            this.stickLeftY.insert(tick, (double) sticks[1]);
+            this.insert(reducer, this.stickLeftX, tick, (double) sticks[0]);
+            this.insert(reducer, this.stickLeftY, tick, (double) sticks[1]);
         }
 
         if (rightStick)
         {
-            this.stickRightX.insert(tick, (double) sticks[2]);
-            this.stickRightY.insert(tick, (double) sticks[3]);
+            this.insert(reducer, this.stickRightX, tick, (double) sticks[2]);
+            this.insert(reducer, this.stickRightY, tick, (double) sticks[3]);
         }
 
         if (triggers)
         {
-            this.triggerLeft.insert(tick, (double) sticks[4]);
-            this.triggerRight.insert(tick, (double) sticks[5]);
+            this.insert(reducer, this.triggerLeft, tick, (double) sticks[4]);
+            this.insert(reducer, this.triggerRight, tick, (double) sticks[5]);
         }
 
         if (extra1)
         {
-            this.extra1X.insert(tick, (double) sticks[6]);
-            this.extra1Y.insert(tick, (double) sticks[7]);
+            this.insert(reducer, this.extra1X, tick, (double) sticks[6]);
+            this.insert(reducer, this.extra1Y, tick, (double) sticks[7]);
         }
 
         if (extra2)
         {
-            this.extra2X.insert(tick, (double) sticks[8]);
-            this.extra2Y.insert(tick, (double) sticks[9]);
+            this.insert(reducer, this.extra2X, tick, (double) sticks[8]);
+            this.insert(reducer, this.extra2Y, tick, (double) sticks[9]);
         }
 
         if (empty)
         {
-            this.mainHand.insert(tick, entity.getEquipmentStack(EquipmentSlot.MAINHAND).copy());
-            this.offHand.insert(tick, entity.getEquipmentStack(EquipmentSlot.OFFHAND).copy());
-            this.armorHead.insert(tick, entity.getEquipmentStack(EquipmentSlot.HEAD).copy());
-            this.armorChest.insert(tick, entity.getEquipmentStack(EquipmentSlot.CHEST).copy());
-            this.armorLegs.insert(tick, entity.getEquipmentStack(EquipmentSlot.LEGS).copy());
-            this.armorFeet.insert(tick, entity.getEquipmentStack(EquipmentSlot.FEET).copy());
-            this.selectedSlot.insert(tick, entity.getSelectedSlot());
+            this.insert(reducer, this.mainHand, tick, entity.getEquipmentStack(EquipmentSlot.MAINHAND).copy());
+            this.insert(reducer, this.offHand, tick, entity.getEquipmentStack(EquipmentSlot.OFFHAND).copy());
+            this.insert(reducer, this.armorHead, tick, entity.getEquipmentStack(EquipmentSlot.HEAD).copy());
+            this.insert(reducer, this.armorChest, tick, entity.getEquipmentStack(EquipmentSlot.CHEST).copy());
+            this.insert(reducer, this.armorLegs, tick, entity.getEquipmentStack(EquipmentSlot.LEGS).copy());
+            this.insert(reducer, this.armorFeet, tick, entity.getEquipmentStack(EquipmentSlot.FEET).copy());
+            this.insert(reducer, this.selectedSlot, tick, entity.getSelectedSlot());
+        }
+    }
+
+    private <T> void insert(KeyframeReducer reducer, KeyframeChannel<T> channel, int tick, T value)
+    {
+        if (reducer == null)
+        {
+            channel.insert(tick, value);
+        }
+        else
+        {
+            reducer.insert(channel, tick, value);
         }
     }
 
+    /**
+     * Create a reducer with default tolerances of these channels, scaled
+     * by given factor (0 means that only constant and exactly linear runs
+     * are reduced)
+     */
+    public KeyframeReducer createReducer(double scale)
+    {
+        KeyframeReducer reducer = new KeyframeReducer(0.001D * scale);
+
+        for (DoubleKeyframeChannel channel : Arrays.asList(this.yaw, this.pitch, this.headYaw, this.bodyYaw, this.fall))
+        {
+            reducer.setTolerance(channel.getId(), 0.01D * scale);
+        }
+
+        for (DoubleKeyframeChannel channel : Arrays.asList(this.sneaking, this.sprinting, this.grounded, this.damage))
+        {
+            reducer.setTolerance(channel.getId(), 0D);
+        }
+
+        return reducer;
+    }
+
     public void apply(int tick, IEntity entity)
     {
         this.apply(tick, entity, null);
@@ -250,80 +306,73 @@ public class ReplayKeyframes extends ValueGroup
 
         if (position)
         {
-            entity.setVelocity(this.vX.interpolate(tick).floatValue(), this.vY.interpolate(tick).floatValue(), this.vZ.interpolate(tick).floatValue());
-            entity.setFallDistance(this.fall.interpolate(tick).floatValue());
-
-            KeyframeSegment<Double> x = this.x.findSegment(tick);
-            Vector2d xx = this.getPrev(x, this.x.interpolate(tick - 1), tick);
-            KeyframeSegment<Double> y = this.y.findSegment(tick);
-            Vector2d yy = this.getPrev(y, this.y.interpolate(tick - 1), tick);
-            KeyframeSegment<Double> z = this.z.findSegment(tick);
-            Vector2d zz = this.getPrev(z, this.z.interpolate(tick - 1), tick);
-
-            entity.setPosition(xx.x, yy.x, zz.x);
-            entity.setPrevX(xx.y);
-            entity.setPrevY(yy.y);
-            entity.setPrevZ(zz.y);
+            entity.setVelocity((float) this.vX.interpolateDouble(tick), (float) this.vY.interpolateDouble(tick), (float) this.vZ.interpolateDouble(tick));
+            entity.setFallDistance((float) this.fall.interpolateDouble(tick));
+
+            double x = this.x.interpolateDouble(tick);
+            double y = this.y.interpolateDouble(tick);
+            double z = this.z.interpolateDouble(tick);
+
+            entity.setPosition(x, y, z);
+            entity.setPrevX(this.getPrev(this.x, x, tick));
+            entity.setPrevY(this.getPrev(this.y, y, tick));
+            entity.setPrevZ(this.getPrev(this.z, z, tick));
         }
 
         if (rotation)
         {
-            KeyframeSegment<Double> yaw = this.yaw.findSegment(tick);
-            Vector2d yyaw = this.getPrev(yaw, this.yaw.interpolate(tick - 1), tick);
-            KeyframeSegment<Double> pitch = this.pitch.findSegment(tick);
-            Vector2d ppitch = this.getPrev(pitch, this.pitch.interpolate(tick - 1), tick);
-            KeyframeSegment<Double> headYaw = this.headYaw.findSegment(tick);
-            Vector2d hheadYaw = this.getPrev(headYaw, this.headYaw.interpolate(tick - 1), tick);
-            KeyframeSegment<Double> bodyYaw = this.bodyYaw.findSegment(tick);
-            Vector2d bbodyYaw = this.getPrev(bodyYaw, this.bodyYaw.interpolate(tick - 1), tick);
-
-            entity.setYaw((float) yyaw.x);
-            entity.setPitch((float) ppitch.x);
-            entity.setHeadYaw((float) hheadYaw.x);
-            entity.setBodyYaw((float) bbodyYaw.x);
-
-            entity.setPrevYaw((float) yyaw.y);
-            entity.setPrevPitch((float) ppitch.y);
-            entity.setPrevHeadYaw((float) hheadYaw.y);
-            entity.setPrevBodyYaw((float) bbodyYaw.y);
+            double yaw = this.yaw.interpolateDouble(tick);
+            double pitch = this.pitch.interpolateDouble(tick);
+            double headYaw = this.headYaw.interpolateDouble(tick);
+            double bodyYaw = this.bodyYaw.interpolateDouble(tick);
+
+            entity.setYaw((float) yaw);
+            entity.setPitch((float) pitch);
+            entity.setHeadYaw((float) headYaw);
+            entity.setBodyYaw((float) bodyYaw);
+
+            entity.setPrevYaw((float) this.getPrev(this.yaw, yaw, tick));
+            entity.setPrevPitch((float) this.getPrev(this.pitch, pitch, tick));
+            entity.setPrevHeadYaw((float) this.getPrev(this.headYaw, headYaw, tick));
+            entity.setPrevBodyYaw((float) this.getPrev(this.bodyYaw, bodyYaw, tick));
         }
 
         /* Motion and fall distance */
-        entity.setSneaking(this.sneaking.interpolate(tick) != 0D);
-        entity.setSprinting(this.sprinting.interpolate(tick) != 0D);
-        entity.setOnGround(this.grounded.interpolate(tick) != 0D);
-        entity.setHurtTimer(this.damage.interpolate(tick).intValue());
+        entity.setSneaking(this.sneaking.interpolateDouble(tick) != 0D);
+        entity.setSprinting(this.sprinting.interpolateDouble(tick) != 0D);
+        entity.setOnGround(this.grounded.interpolateDouble(tick) != 0D);
+        entity.setHurtTimer((int) this.damage.interpolateDouble(tick));
 
         float[] sticks = entity.getExtraVariables();
 
         if (leftStick)
         {
-            sticks[0] = this.stickLeftX.interpolate(tick).floatValue();
-            sticks[1] = this.stickLeftY.interpolate(tick).floatValue();
+            sticks[0] = (float) this.stickLeftX.interpolateDouble(tick);
+            sticks[1] = (float) this.stickLeftY.interpolateDouble(tick);
         }
 
         if (rightStick)
         {
-            sticks[2] = this.stickRightX.interpolate(tick).floatValue();
-            sticks[3] = this.stickRightY.interpolate(tick).floatValue();
+            sticks[2] = (float) this.stickRightX.interpolateDouble(tick);
+            sticks[3] = (float) this.stickRightY.interpolateDouble(tick);
         }
 
         if (triggers)
         {
-            sticks[4] = this.triggerLeft.interpolate(tick).floatValue();
-            sticks[5] = this.triggerRight.interpolate(tick).floatValue();
+            sticks[4] = (float) this.triggerLeft.interpolateDouble(tick);
+            sticks[5] = (float) this.triggerRight.interpolateDouble(tick);
         }
 
         if (extra1)
         {
-            sticks[6] = this.extra1X.interpolate(tick).floatValue();
-            sticks[7] = this.extra1Y.interpolate(tick).floatValue();
+            sticks[6] = (float) this.extra1X.interpolateDouble(tick);
+            sticks[7] = (float) this.extra1Y.interpolateDouble(tick);
         }
 
         if (extra2)
         {
-            sticks[8] = this.extra2X.interpolate(tick).floatValue();
-            sticks[9] = this.extra2Y.interpolate(tick).floatValue();
+            sticks[8] = (float) this.extra2X.interpolateDouble(tick);
+            sticks[9] = (float) this.extra2Y.interpolateDouble(tick);
         }
 
         entity.setEquipmentStack(EquipmentSlot.MAINHAND, this.mainHand.interpolate(tick));
@@ -335,39 +384,30 @@ public class ReplayKeyframes extends ValueGroup
     }
 
     /**
-     * Force teleportation for the previous keyframe being constant
+     * Get channel's value at previous tick, or current value to force
+     * teleportation when the previous keyframe is constant
      */
-    private Vector2d getPrev(KeyframeSegment<Double> frame, double prev, int tick)
+    private double getPrev(DoubleKeyframeChannel channel, double current, int tick)
     {
+        KeyframeSegment<Double> frame = channel.seek(tick);
+
         if (frame == null)
         {
-            return new Vector2d(prev, prev);
+            return current;
         }
 
         IInterp interp = frame.a.getInterpolation().getInterp();
-        Double interpolated = frame.createInterpolated();
 
-        /*  */
         if (interp == Interpolations.CONST || interp == Interpolations.STEP)
         {
-            if (interpolated != null)
-            {
-                prev = interpolated;
-            }
-
-            return new Vector2d(prev, prev);
+            return current;
         }
 
         if (frame.preA != frame.a && frame.a.getTick() == tick && (frame.preA.getInterpolation().getInterp() == Interpolations.CONST || frame.preA.getInterpolation().getInterp() == Interpolations.STEP))
         {
-            if (interpolated != null)
-            {
-                prev = interpolated;
-            }
-
-            return new Vector2d(prev, prev);
+            return current;
         }
 
-        return new Vector2d(interpolated == null ? prev : interpolated, prev);
+        return channel.interpolateDouble(tick - 1);
     }
 }
\ No newline at end of file
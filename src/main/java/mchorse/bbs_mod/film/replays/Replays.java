@@ -1,17 +1,146 @@
 package mchorse.bbs_mod.film.replays;
 
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.settings.values.base.BaseValue;
+import mchorse.bbs_mod.settings.values.base.BaseValueGroup;
 import mchorse.bbs_mod.settings.values.core.ValueList;
 import mchorse.bbs_mod.utils.CollectionUtils;
 
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.stream.IntStream;
+
+/**
+ * Replays
+ *
+ * Besides the usual list of replays, replays can be set up to be loaded
+ * lazily (see {@link #setLazy(int, IReplayLoader)}), in which case only
+ * replay placeholders are created, and their data gets decoded once the
+ * replay is accessed for the first time.
+ *
+ * Accessing a replay by index (through {@link #getList()} or by key) loads
+ * only that replay, while iterating over replays, modifying them or
+ * converting them to data loads all of them at once.
+ */
 public class Replays extends ValueList<Replay>
 {
+    private IReplayLoader loader;
+    private boolean[] pending;
+    private final List<Replay> lazyList = new LazyList();
+
     public Replays(String id)
     {
         super(id);
     }
 
+    /**
+     * Set up given amount of replays, which will be loaded by given loader
+     * once they are accessed
+     */
+    public void setLazy(int count, IReplayLoader loader)
+    {
+        this.pending = null;
+        this.loader = null;
+        this.list.clear();
+
+        for (int i = 0; i < count; i++)
+        {
+            this.add(this.create(String.valueOf(i)));
+        }
+
+        if (count > 0)
+        {
+            this.loader = loader;
+            this.pending = new boolean[count];
+
+            Arrays.fill(this.pending, true);
+        }
+    }
+
+    public boolean isLoaded()
+    {
+        return this.pending == null;
+    }
+
+    /**
+     * Get replay at given index, loading only that replay if replays are
+     * loaded lazily
+     */
+    public Replay getReplay(int index)
+    {
+        if (this.pending != null && index >= 0 && index < this.pending.length && this.pending[index])
+        {
+            BaseType data = this.read(index);
+
+            this.pending[index] = false;
+
+            if (data != null)
+            {
+                this.list.get(index).fromData(data);
+            }
+        }
+
+        return CollectionUtils.getSafe(this.list, index);
+    }
+
+    /**
+     * Load all the replays that weren't loaded yet. Replays' data is
+     * decompressed and decoded in parallel, while replays themselves are
+     * filled in on the calling thread.
+     */
+    public void load()
+    {
+        if (this.pending == null)
+        {
+            return;
+        }
+
+        boolean[] pending = this.pending;
+        BaseType[] data = new BaseType[pending.length];
+
+        IntStream.range(0, pending.length).parallel().forEach((i) ->
+        {
+            if (pending[i])
+            {
+                data[i] = this.read(i);
+            }
+        });
+
+        this.pending = null;
+        this.loader = null;
+
+        for (int i = 0; i < data.length; i++)
+        {
+            if (data[i] != null)
+            {
+                this.list.get(i).fromData(data[i]);
+            }
+        }
+    }
+
+    private BaseType read(int index)
+    {
+        try
+        {
+            return this.loader.load(index);
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
     public Replay addReplay()
     {
+        this.load();
+
         Replay replay = new Replay(String.valueOf(this.list.size()));
 
         this.preNotify();
@@ -23,6 +152,8 @@ public class Replays extends ValueList<Replay>
 
     public void remove(Replay replay)
     {
+        this.load();
+
         int index = CollectionUtils.getIndex(this.list, replay);
 
         if (CollectionUtils.inRange(this.list, index))
@@ -34,9 +165,159 @@ public class Replays extends ValueList<Replay>
         }
     }
 
+    /**
+     * Get replays. While replays are loaded lazily, it returns a view which
+     * loads replays once they're accessed by index
+     */
+    @Override
+    public List<Replay> getList()
+    {
+        return this.pending == null ? super.getList() : this.lazyList;
+    }
+
+    @Override
+    public void add(Replay value)
+    {
+        this.load();
+
+        super.add(value);
+    }
+
+    @Override
+    public void add(int index, Replay value)
+    {
+        this.load();
+
+        super.add(index, value);
+    }
+
+    @Override
+    public List<BaseValue> getAll()
+    {
+        this.load();
+
+        return super.getAll();
+    }
+
+    @Override
+    public List<Replay> getAllTyped()
+    {
+        this.load();
+
+        return super.getAllTyped();
+    }
+
+    @Override
+    public BaseValue get(String key)
+    {
+        if (this.pending != null)
+        {
+            try
+            {
+                return this.getReplay(Integer.parseInt(key));
+            }
+            catch (NumberFormatException e)
+            {
+                return null;
+            }
+        }
+
+        return super.get(key);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        this.load();
+
+        if (obj instanceof Replays replays)
+        {
+            replays.load();
+        }
+
+        return super.equals(obj);
+    }
+
+    @Override
+    public void copy(BaseValueGroup group)
+    {
+        this.pending = null;
+        this.loader = null;
+
+        super.copy(group);
+    }
+
+    @Override
+    public void sync()
+    {
+        this.load();
+
+        super.sync();
+    }
+
+    @Override
+    public BaseType toData()
+    {
+        this.load();
+
+        return super.toData();
+    }
+
+    @Override
+    public void fromData(BaseType data)
+    {
+        this.pending = null;
+        this.loader = null;
+
+        super.fromData(data);
+    }
+
     @Override
     protected Replay create(String id)
     {
         return new Replay(id);
     }
-}
\ No newline at end of file
+
+    public static interface IReplayLoader
+    {
+        public BaseType load(int index) throws IOException;
+    }
+
+    private class LazyList extends AbstractList<Replay>
+    {
+        @Override
+        public Replay get(int index)
+        {
+            Replay replay = Replays.this.getReplay(index);
+
+            if (replay == null)
+            {
+                throw new IndexOutOfBoundsException(index);
+            }
+
+            return replay;
+        }
+
+        @Override
+        public int size()
+        {
+            return Replays.this.list.size();
+        }
+
+        @Override
+        public Iterator<Replay> iterator()
+        {
+            return this.listIterator(0);
+        }
+
+        @Override
+        public ListIterator<Replay> listIterator(int index)
+        {
+            /* Going through all the replays needs all of them anyway, and
+             * they're decoded faster in parallel than one by one */
+            Replays.this.load();
+
+            return Collections.unmodifiableList(Replays.this.list).listIterator(index);
+        }
+    }
+}
@@ -15,6 +15,11 @@ public class Group implements IExpression
         this.expression = expression;
     }
 
+    public IExpression getExpression()
+    {
+        return this.expression;
+    }
+
     @Override
     public IExpression get()
     {
@@ -48,6 +48,11 @@ public abstract class Function implements IExpression
     public void set(String value)
     {}
 
+    public IExpression[] getArgs()
+    {
+        return this.args;
+    }
+
     /**
      * Get the value of nth argument 
      */
@@ -0,0 +1,175 @@
+package mchorse.bbs_mod.math.molang.compiler;
+
+import mchorse.bbs_mod.math.IExpression;
+import mchorse.bbs_mod.math.Variable;
+import mchorse.bbs_mod.utils.MathUtils;
+import mchorse.bbs_mod.utils.interps.Lerps;
+
+/**
+ * Compiled Molang expression
+ *
+ * Base class of the hidden classes generated by {@link MolangCompiler}.
+ * Generated {@link #get()} reads global variables from {@link #variables},
+ * keeps statement's local variables in {@link #slots}, and calls back
+ * into the interpreter for the nodes it can't compile via {@link #nodes}.
+ *
+ * Static methods below are used by the generated code for Molang functions,
+ * and should produce exactly the same results as function classes.
+ */
+public abstract class CompiledMolang
+{
+    protected final Variable[] variables;
+    protected final IExpression[] nodes;
+    protected final double[] slots;
+
+    public CompiledMolang(Variable[] variables, IExpression[] nodes, double[] slots)
+    {
+        this.variables = variables;
+        this.nodes = nodes;
+        this.slots = slots;
+    }
+
+    public abstract double get();
+
+    /* Functions */
+
+    public static double floor(double x)
+    {
+        return Math.floor(x);
+    }
+
+    public static double round(double x)
+    {
+        return Math.round(x);
+    }
+
+    public static double ceil(double x)
+    {
+        return Math.ceil(x);
+    }
+
+    public static double trunc(double x)
+    {
+        return x < 0 ? Math.ceil(x) : Math.floor(x);
+    }
+
+    public static double clamp(double x, double min, double max)
+    {
+        return MathUtils.clamp(x, min, max);
+    }
+
+    public static double max(double a, double b)
+    {
+        return Math.max(a, b);
+    }
+
+    public static double min(double a, double b)
+    {
+        return Math.min(a, b);
+    }
+
+    public static double abs(double x)
+    {
+        return Math.abs(x);
+    }
+
+    public static double exp(double x)
+    {
+        return Math.exp(x);
+    }
+
+    public static double ln(double x)
+    {
+        return Math.log(x);
+    }
+
+    public static double sqrt(double x)
+    {
+        return Math.sqrt(x);
+    }
+
+    public static double mod(double a, double b)
+    {
+        return a % b;
+    }
+
+    public static double pow(double a, double b)
+    {
+        return Math.pow(a, b);
+    }
+
+    public static double cos(double x)
+    {
+        return Math.cos(x);
+    }
+
+    public static double sin(double x)
+    {
+        return Math.sin(x);
+    }
+
+    public static double acos(double x)
+    {
+        return Math.acos(x);
+    }
+
+    public static double asin(double x)
+    {
+        return Math.asin(x);
+    }
+
+    public static double atan(double x)
+    {
+        return Math.atan(x);
+    }
+
+    public static double atan2(double y, double x)
+    {
+        return Math.atan2(y, x);
+    }
+
+    public static double cosDegrees(double x)
+    {
+        return Math.cos(x / 180 * Math.PI);
+    }
+
+    public static double sinDegrees(double x)
+    {
+        return Math.sin(x / 180 * Math.PI);
+    }
+
+    public static double acosDegrees(double x)
+    {
+        return Math.acos(x) / Math.PI * 180;
+    }
+
+    public static double asinDegrees(double x)
+    {
+        return Math.asin(x) / Math.PI * 180;
+    }
+
+    public static double atanDegrees(double x)
+    {
+        return Math.atan(x) / Math.PI * 180;
+    }
+
+    public static double atan2Degrees(double y, double x)
+    {
+        return Math.atan2(y, x) / Math.PI * 180;
+    }
+
+    public static double lerp(double a, double b, double x)
+    {
+        return Lerps.lerp(a, b, x);
+    }
+
+    public static double lerpRotate(double a, double b, double x)
+    {
+        return Lerps.lerpYaw(a, b, x);
+    }
+
+    public static double hermite(double x)
+    {
+        return 3 * x * x - 2 * x * x * x;
+    }
+}
@@ -0,0 +1,746 @@
+package mchorse.bbs_mod.math.molang.compiler;
+
+import mchorse.bbs_mod.BBSSettings;
+import mchorse.bbs_mod.math.Constant;
+import mchorse.bbs_mod.math.Group;
+import mchorse.bbs_mod.math.IExpression;
+import mchorse.bbs_mod.math.Negate;
+import mchorse.bbs_mod.math.Negative;
+import mchorse.bbs_mod.math.Operation;
+import mchorse.bbs_mod.math.Operator;
+import mchorse.bbs_mod.math.Ternary;
+import mchorse.bbs_mod.math.Variable;
+import mchorse.bbs_mod.math.Wrapper;
+import mchorse.bbs_mod.math.functions.Function;
+import mchorse.bbs_mod.math.functions.NNFunction;
+import mchorse.bbs_mod.math.functions.classic.Abs;
+import mchorse.bbs_mod.math.functions.classic.Exp;
+import mchorse.bbs_mod.math.functions.classic.Ln;
+import mchorse.bbs_mod.math.functions.classic.Mod;
+import mchorse.bbs_mod.math.functions.classic.Pow;
+import mchorse.bbs_mod.math.functions.classic.Sqrt;
+import mchorse.bbs_mod.math.functions.limit.Clamp;
+import mchorse.bbs_mod.math.functions.limit.Max;
+import mchorse.bbs_mod.math.functions.limit.Min;
+import mchorse.bbs_mod.math.functions.rounding.Ceil;
+import mchorse.bbs_mod.math.functions.rounding.Floor;
+import mchorse.bbs_mod.math.functions.rounding.Round;
+import mchorse.bbs_mod.math.functions.rounding.Trunc;
+import mchorse.bbs_mod.math.functions.trig.Acos;
+import mchorse.bbs_mod.math.functions.trig.Asin;
+import mchorse.bbs_mod.math.functions.trig.Atan;
+import mchorse.bbs_mod.math.functions.trig.Atan2;
+import mchorse.bbs_mod.math.functions.trig.Cos;
+import mchorse.bbs_mod.math.functions.trig.Sin;
+import mchorse.bbs_mod.math.functions.utility.HermiteBlend;
+import mchorse.bbs_mod.math.functions.utility.Lerp;
+import mchorse.bbs_mod.math.functions.utility.LerpRotate;
+import mchorse.bbs_mod.math.molang.expressions.MolangAssignment;
+import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
+import mchorse.bbs_mod.math.molang.expressions.MolangMultiStatement;
+import mchorse.bbs_mod.math.molang.expressions.MolangValue;
+import mchorse.bbs_mod.math.molang.functions.AcosDegrees;
+import mchorse.bbs_mod.math.molang.functions.AsinDegrees;
+import mchorse.bbs_mod.math.molang.functions.Atan2Degrees;
+import mchorse.bbs_mod.math.molang.functions.AtanDegrees;
+import mchorse.bbs_mod.math.molang.functions.CosDegrees;
+import mchorse.bbs_mod.math.molang.functions.SinDegrees;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Molang compiler
+ *
+ * This class compiles parsed {@link MolangMultiStatement} into a generated
+ * hidden class extending {@link CompiledMolang}, so evaluating it doesn't
+ * walk the expression tree with virtual calls. Operators, ternaries,
+ * negations and common math functions are compiled into plain JVM
+ * arithmetic, statement's local variables are bound to slots of a double
+ * array, and global variables are read directly by index.
+ *
+ * Anything it doesn't know how to compile (string operations, random and
+ * custom functions, etc.) is delegated back to the interpreter, so compiled
+ * expression always returns the same result as {@link MolangMultiStatement#get()}.
+ */
+public class MolangCompiler
+{
+    /**
+     * How many times an expression should be evaluated by the interpreter
+     * before it gets compiled
+     */
+    public static final int THRESHOLD = 32;
+
+    private static final String CLASS_NAME = "mchorse/bbs_mod/math/molang/compiler/GeneratedMolang";
+    private static final String BASE = Type.getInternalName(CompiledMolang.class);
+    private static final String VARIABLE = Type.getInternalName(Variable.class);
+    private static final String EXPRESSION = Type.getInternalName(IExpression.class);
+    private static final String OPERATION = Type.getInternalName(Operation.class);
+    private static final String CONSTRUCTOR = "([L" + VARIABLE + ";[L" + EXPRESSION + ";[D)V";
+
+    private static final int VARIABLES = 1;
+    private static final int NODES = 2;
+    private static final int SLOTS = 3;
+    private static final int VALUE = 4;
+
+    private static final Map<Class<? extends Function>, String> FUNCTIONS = new HashMap<>();
+
+    private static boolean unavailable;
+
+    static
+    {
+        FUNCTIONS.put(Floor.class, "floor");
+        FUNCTIONS.put(Round.class, "round");
+        FUNCTIONS.put(Ceil.class, "ceil");
+        FUNCTIONS.put(Trunc.class, "trunc");
+        FUNCTIONS.put(Clamp.class, "clamp");
+        FUNCTIONS.put(Max.class, "max");
+        FUNCTIONS.put(Min.class, "min");
+        FUNCTIONS.put(Abs.class, "abs");
+        FUNCTIONS.put(Exp.class, "exp");
+        FUNCTIONS.put(Ln.class, "ln");
+        FUNCTIONS.put(Sqrt.class, "sqrt");
+        FUNCTIONS.put(Mod.class, "mod");
+        FUNCTIONS.put(Pow.class, "pow");
+        FUNCTIONS.put(Cos.class, "cos");
+        FUNCTIONS.put(Sin.class, "sin");
+        FUNCTIONS.put(Acos.class, "acos");
+        FUNCTIONS.put(Asin.class, "asin");
+        FUNCTIONS.put(Atan.class, "atan");
+        FUNCTIONS.put(Atan2.class, "atan2");
+        FUNCTIONS.put(CosDegrees.class, "cosDegrees");
+        FUNCTIONS.put(SinDegrees.class, "sinDegrees");
+        FUNCTIONS.put(AcosDegrees.class, "acosDegrees");
+        FUNCTIONS.put(AsinDegrees.class, "asinDegrees");
+        FUNCTIONS.put(AtanDegrees.class, "atanDegrees");
+        FUNCTIONS.put(Atan2Degrees.class, "atan2Degrees");
+        FUNCTIONS.put(Lerp.class, "lerp");
+        FUNCTIONS.put(LerpRotate.class, "lerpRotate");
+        FUNCTIONS.put(HermiteBlend.class, "hermite");
+    }
+
+    public static boolean isEnabled()
+    {
+        return !unavailable && (BBSSettings.molangCompiler == null || BBSSettings.molangCompiler.get());
+    }
+
+    /**
+     * Compile given statement, or return null if it can't be compiled (in
+     * which case it should be kept interpreted)
+     */
+    public static CompiledMolang compile(MolangMultiStatement statement)
+    {
+        try
+        {
+            MolangCompiler compiler = new MolangCompiler(statement, true);
+            CompiledMolang compiled = compiler.compile();
+
+            if (compiled == null)
+            {
+                compiled = new MolangCompiler(statement, false).compile();
+            }
+
+            return compiled;
+        }
+        catch (LinkageError e)
+        {
+            /* ASM or hidden classes aren't available, there is no point in
+             * trying to compile anything else */
+            unavailable = true;
+
+            System.err.println("Molang compiler is unavailable, falling back to the interpreter!");
+            e.printStackTrace();
+        }
+        catch (Exception e)
+        {
+            System.err.println("Failed to compile MoLang: " + statement);
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    private final MolangMultiStatement statement;
+    private final Collection<Variable> locals;
+    private final boolean useSlots;
+
+    private final Map<Variable, Integer> variableIndices = new IdentityHashMap<>();
+    private final Map<Variable, Integer> slotIndices = new IdentityHashMap<>();
+    private final List<Variable> variables = new ArrayList<>();
+    private final List<IExpression> nodes = new ArrayList<>();
+
+    private MethodVisitor mv;
+
+    /**
+     * Whether a node delegated to the interpreter references local variables,
+     * which can't be bound to slots in that case
+     */
+    private boolean localsEscaped;
+
+    private MolangCompiler(MolangMultiStatement statement, boolean useSlots)
+    {
+        this.statement = statement;
+        this.locals = statement.locals.values();
+        this.useSlots = useSlots;
+    }
+
+    private CompiledMolang compile() throws Exception
+    {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, CLASS_NAME, null, BASE, null);
+
+        this.writeConstructor(writer);
+        this.writeGet(writer);
+
+        writer.visitEnd();
+
+        if (this.localsEscaped)
+        {
+            return null;
+        }
+
+        double[] slots = new double[this.slotIndices.size()];
+
+        for (Map.Entry<Variable, Integer> entry : this.slotIndices.entrySet())
+        {
+            slots[entry.getValue()] = entry.getKey().doubleValue();
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(writer.toByteArray(), true);
+        Variable[] variables = this.variables.toArray(new Variable[0]);
+        IExpression[] nodes = this.nodes.toArray(new IExpression[0]);
+
+        return (CompiledMolang) lookup.lookupClass()
+            .getConstructor(Variable[].class, IExpression[].class, double[].class)
+            .newInstance(variables, nodes, slots);
+    }
+
+    private void writeConstructor(ClassWriter writer)
+    {
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", CONSTRUCTOR, null, null);
+
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitVarInsn(Opcodes.ALOAD, 3);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, BASE, "<init>", CONSTRUCTOR, false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void writeGet(ClassWriter writer) throws Exception
+    {
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "get", "()D", null, null);
+
+        this.mv = mv;
+
+        mv.visitCode();
+        this.loadField("variables", "[L" + VARIABLE + ";", VARIABLES);
+        this.loadField("nodes", "[L" + EXPRESSION + ";", NODES);
+        this.loadField("slots", "[D", SLOTS);
+
+        List<MolangExpression> expressions = this.statement.expressions;
+
+        for (int i = 0, c = expressions.size(); i < c; i++)
+        {
+            MolangExpression expression = expressions.get(i);
+            boolean last = i == c - 1;
+
+            if (expression instanceof MolangAssignment assignment)
+            {
+                this.writeValue(assignment.expression, true);
+                mv.visitVarInsn(Opcodes.DSTORE, VALUE);
+                this.writeStore(assignment.variable);
+
+                if (last)
+                {
+                    mv.visitVarInsn(Opcodes.DLOAD, VALUE);
+                    mv.visitInsn(Opcodes.DRETURN);
+                }
+            }
+            else if (expression instanceof MolangValue value)
+            {
+                this.writeValue(value.expression, true);
+
+                if (last || value.returns)
+                {
+                    mv.visitInsn(Opcodes.DRETURN);
+
+                    break;
+                }
+
+                mv.visitInsn(Opcodes.POP2);
+            }
+            else
+            {
+                throw new IllegalStateException("Unknown Molang statement: " + expression.getClass().getSimpleName());
+            }
+        }
+
+        if (expressions.isEmpty())
+        {
+            mv.visitInsn(Opcodes.DCONST_0);
+            mv.visitInsn(Opcodes.DRETURN);
+        }
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void loadField(String name, String descriptor, int local)
+    {
+        this.mv.visitVarInsn(Opcodes.ALOAD, 0);
+        this.mv.visitFieldInsn(Opcodes.GETFIELD, BASE, name, descriptor);
+        this.mv.visitVarInsn(Opcodes.ASTORE, local);
+    }
+
+    /**
+     * Write the value of given expression on the stack. When get is true, the
+     * value is the one returned by expression's {@link IExpression#get()},
+     * otherwise the one returned by {@link IExpression#doubleValue()}.
+     */
+    private void writeValue(IExpression expression, boolean get)
+    {
+        MethodVisitor mv = this.mv;
+
+        if (expression instanceof Variable variable)
+        {
+            this.writeLoad(variable);
+        }
+        else if (expression instanceof Constant constant)
+        {
+            mv.visitLdcInsn(constant.doubleValue());
+        }
+        else if (expression instanceof Group group)
+        {
+            this.writeValue(group.getExpression(), get);
+        }
+        else if (expression instanceof Negative negative)
+        {
+            this.writeValue(negative.expression, false);
+            mv.visitInsn(Opcodes.DNEG);
+        }
+        else if (expression instanceof Negate negate)
+        {
+            Label zero = new Label();
+            Label end = new Label();
+
+            this.writeBoolean(negate.expression);
+            mv.visitJumpInsn(Opcodes.IFNE, zero);
+            mv.visitInsn(Opcodes.DCONST_1);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitLabel(zero);
+            mv.visitInsn(Opcodes.DCONST_0);
+            mv.visitLabel(end);
+        }
+        else if (expression instanceof Operator operator && this.canCompile(operator, get))
+        {
+            this.writeOperator(operator);
+        }
+        else if (expression instanceof Ternary ternary)
+        {
+            if (get && !this.isNumber(ternary))
+            {
+                /* Non-numeric ternary returns a string in get(), which is 0
+                 * as a double */
+                Label zero = new Label();
+                Label end = new Label();
+
+                /* Local variables are always numbers, so it doesn't matter
+                 * that their values aren't synchronized with slots */
+                this.writeNode(ternary, false);
+                mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, EXPRESSION, "isNumber", "()Z", true);
+                mv.visitJumpInsn(Opcodes.IFEQ, zero);
+                this.writeTernary(ternary);
+                mv.visitJumpInsn(Opcodes.GOTO, end);
+                mv.visitLabel(zero);
+                mv.visitInsn(Opcodes.DCONST_0);
+                mv.visitLabel(end);
+            }
+            else
+            {
+                this.writeTernary(ternary);
+            }
+        }
+        else if (expression instanceof Function function && FUNCTIONS.containsKey(function.getClass()))
+        {
+            this.writeFunction(function);
+        }
+        else
+        {
+            this.writeNode(expression, true);
+
+            if (get)
+            {
+                mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, EXPRESSION, "get", "()L" + EXPRESSION + ";", true);
+            }
+
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, EXPRESSION, "doubleValue", "()D", true);
+        }
+    }
+
+    /**
+     * Write the value of given expression's {@link IExpression#booleanValue()}
+     * on the stack
+     */
+    private void writeBoolean(IExpression expression)
+    {
+        MethodVisitor mv = this.mv;
+
+        if (expression instanceof Variable variable && !this.isSlot(variable))
+        {
+            this.writeVariable(variable);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, VARIABLE, "booleanValue", "()Z", false);
+        }
+        else if (expression instanceof Variable)
+        {
+            /* Local variables can only hold numbers */
+            this.writeValue(expression, false);
+            this.writeIsTrue();
+        }
+        else if (expression instanceof Constant constant)
+        {
+            mv.visitInsn(constant.booleanValue() ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+        }
+        else if (expression instanceof Group group)
+        {
+            this.writeBoolean(group.getExpression());
+        }
+        else if (expression instanceof Negate negate)
+        {
+            this.writeBoolean(negate.expression);
+            mv.visitInsn(Opcodes.ICONST_1);
+            mv.visitInsn(Opcodes.IXOR);
+        }
+        else if (
+            expression instanceof Operator ||
+            expression instanceof Ternary ||
+            expression instanceof Negative ||
+            (expression instanceof Function function && FUNCTIONS.containsKey(function.getClass()))
+        ) {
+            this.writeValue(expression, false);
+            this.writeIsTrue();
+        }
+        else
+        {
+            this.writeNode(expression, true);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, EXPRESSION, "booleanValue", "()Z", true);
+        }
+    }
+
+    private void writeIsTrue()
+    {
+        this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, OPERATION, "isTrue", "(D)Z", false);
+    }
+
+    private void writeOperator(Operator operator)
+    {
+        MethodVisitor mv = this.mv;
+        Operation operation = operator.operation;
+        int opcode = -1;
+
+        /* Other operations are delegated to the operation itself, JIT
+         * inlines them anyway since they're constants */
+        if (operation == Operation.ADD)
+        {
+            opcode = Opcodes.DADD;
+        }
+        else if (operation == Operation.SUB)
+        {
+            opcode = Opcodes.DSUB;
+        }
+        else if (operation == Operation.MUL)
+        {
+            opcode = Opcodes.DMUL;
+        }
+        else if (operation == Operation.MOD)
+        {
+            opcode = Opcodes.DREM;
+        }
+
+        if (opcode < 0)
+        {
+            mv.visitFieldInsn(Opcodes.GETSTATIC, OPERATION, operation.name(), "L" + OPERATION + ";");
+        }
+
+        this.writeValue(operator.a, false);
+        this.writeValue(operator.b, false);
+
+        if (opcode < 0)
+        {
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, OPERATION, "calculate", "(DD)D", false);
+        }
+        else
+        {
+            mv.visitInsn(opcode);
+        }
+    }
+
+    private void writeTernary(Ternary ternary)
+    {
+        MethodVisitor mv = this.mv;
+        Label otherwise = new Label();
+        Label end = new Label();
+
+        this.writeValue(ternary.condition, false);
+        this.writeIsTrue();
+        mv.visitJumpInsn(Opcodes.IFEQ, otherwise);
+        this.writeValue(ternary.ifTrue, false);
+        mv.visitJumpInsn(Opcodes.GOTO, end);
+        mv.visitLabel(otherwise);
+        this.writeValue(ternary.ifFalse, false);
+        mv.visitLabel(end);
+    }
+
+    private void writeFunction(Function function)
+    {
+        String name = FUNCTIONS.get(function.getClass());
+        int arguments = function.getRequiredArguments();
+        IExpression[] args = function.getArgs();
+
+        for (int i = 0; i < arguments; i++)
+        {
+            this.writeValue(args[i], true);
+        }
+
+        this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, name, "(" + "D".repeat(arguments) + ")D", false);
+    }
+
+    /**
+     * Write the node that should be evaluated by the interpreter on the stack
+     */
+    private void writeNode(IExpression expression, boolean evaluated)
+    {
+        if (evaluated && this.useSlots && this.referencesLocals(expression))
+        {
+            this.localsEscaped = true;
+        }
+
+        int index = this.nodes.indexOf(expression);
+
+        if (index < 0)
+        {
+            index = this.nodes.size();
+            this.nodes.add(expression);
+        }
+
+        this.mv.visitVarInsn(Opcodes.ALOAD, NODES);
+        this.writeInt(index);
+        this.mv.visitInsn(Opcodes.AALOAD);
+    }
+
+    private void writeLoad(Variable variable)
+    {
+        if (this.isSlot(variable))
+        {
+            this.mv.visitVarInsn(Opcodes.ALOAD, SLOTS);
+            this.writeInt(this.getSlot(variable));
+            this.mv.visitInsn(Opcodes.DALOAD);
+        }
+        else
+        {
+            this.writeVariable(variable);
+            this.mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, VARIABLE, "doubleValue", "()D", false);
+        }
+    }
+
+    /**
+     * Store the value from {@link #VALUE} local into given variable
+     */
+    private void writeStore(Variable variable)
+    {
+        if (this.isSlot(variable))
+        {
+            this.mv.visitVarInsn(Opcodes.ALOAD, SLOTS);
+            this.writeInt(this.getSlot(variable));
+            this.mv.visitVarInsn(Opcodes.DLOAD, VALUE);
+            this.mv.visitInsn(Opcodes.DASTORE);
+        }
+        else
+        {
+            this.writeVariable(variable);
+            this.mv.visitVarInsn(Opcodes.DLOAD, VALUE);
+            this.mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, VARIABLE, "set", "(D)V", false);
+        }
+    }
+
+    private void writeVariable(Variable variable)
+    {
+        Integer index = this.variableIndices.get(variable);
+
+        if (index == null)
+        {
+            index = this.variables.size();
+
+            this.variables.add(variable);
+            this.variableIndices.put(variable, index);
+        }
+
+        this.mv.visitVarInsn(Opcodes.ALOAD, VARIABLES);
+        this.writeInt(index);
+        this.mv.visitInsn(Opcodes.AALOAD);
+    }
+
+    private void writeInt(int value)
+    {
+        if (value >= -1 && value <= 5)
+        {
+            this.mv.visitInsn(Opcodes.ICONST_0 + value);
+        }
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+        {
+            this.mv.visitIntInsn(Opcodes.BIPUSH, value);
+        }
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+        {
+            this.mv.visitIntInsn(Opcodes.SIPUSH, value);
+        }
+        else
+        {
+            this.mv.visitLdcInsn(value);
+        }
+    }
+
+    /* Analysis */
+
+    private boolean isSlot(Variable variable)
+    {
+        return this.useSlots && this.isLocal(variable);
+    }
+
+    private boolean isLocal(Variable variable)
+    {
+        for (Variable local : this.locals)
+        {
+            if (local == variable)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int getSlot(Variable variable)
+    {
+        Integer index = this.slotIndices.get(variable);
+
+        if (index == null)
+        {
+            index = this.slotIndices.size();
+
+            this.slotIndices.put(variable, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Operator's result depends on whether its operands are strings only for
+     * addition (string concatenation in get()) and equality (string comparison)
+     */
+    private boolean canCompile(Operator operator, boolean get)
+    {
+        if (operator.operation == Operation.EQUALS || (get && operator.operation == Operation.ADD))
+        {
+            return this.isNumber(operator);
+        }
+
+        return true;
+    }
+
+    /**
+     * Whether given expression is guaranteed to be a number (i.e. its
+     * {@link IExpression#isNumber()} can't change at runtime)
+     */
+    private boolean isNumber(IExpression expression)
+    {
+        if (expression instanceof Variable variable)
+        {
+            /* Local variables are assigned only numbers */
+            return this.isLocal(variable);
+        }
+        else if (expression instanceof Constant constant)
+        {
+            return constant.isNumber();
+        }
+        else if (expression instanceof Group group)
+        {
+            return this.isNumber(group.getExpression());
+        }
+        else if (expression instanceof Wrapper wrapper)
+        {
+            return this.isNumber(wrapper.expression);
+        }
+        else if (expression instanceof Operator operator)
+        {
+            return this.isNumber(operator.a) || this.isNumber(operator.b);
+        }
+        else if (expression instanceof Ternary ternary)
+        {
+            return this.isNumber(ternary.ifTrue) || this.isNumber(ternary.ifFalse);
+        }
+
+        return expression instanceof NNFunction;
+    }
+
+    /**
+     * Whether given expression, evaluated by the interpreter, may read
+     * local variables
+     */
+    private boolean referencesLocals(IExpression expression)
+    {
+        if (expression instanceof Variable variable)
+        {
+            return this.isLocal(variable);
+        }
+        else if (expression instanceof Constant)
+        {
+            return false;
+        }
+        else if (expression instanceof Group group)
+        {
+            return this.referencesLocals(group.getExpression());
+        }
+        else if (expression instanceof Wrapper wrapper)
+        {
+            return this.referencesLocals(wrapper.expression);
+        }
+        else if (expression instanceof Operator operator)
+        {
+            return this.referencesLocals(operator.a) || this.referencesLocals(operator.b);
+        }
+        else if (expression instanceof Ternary ternary)
+        {
+            return this.referencesLocals(ternary.condition) || this.referencesLocals(ternary.ifTrue) || this.referencesLocals(ternary.ifFalse);
+        }
+        else if (expression instanceof Function function)
+        {
+            for (IExpression arg : function.getArgs())
+            {
+                if (this.referencesLocals(arg))
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /* Unknown expressions can't be inspected */
+        return !this.locals.isEmpty();
+    }
+}
@@ -2,6 +2,8 @@ package mchorse.bbs_mod.math.molang.expressions;
 
 import mchorse.bbs_mod.math.Variable;
 import mchorse.bbs_mod.math.molang.MolangParser;
+import mchorse.bbs_mod.math.molang.compiler.CompiledMolang;
+import mchorse.bbs_mod.math.molang.compiler.MolangCompiler;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -14,6 +16,9 @@ public class MolangMultiStatement extends MolangExpression
     public List<MolangExpression> expressions = new ArrayList<>();
     public Map<String, Variable> locals = new HashMap<>();
 
+    private CompiledMolang compiled;
+    private int evaluations;
+
     public MolangMultiStatement(MolangParser context)
     {
         super(context);
@@ -21,6 +26,35 @@ public class MolangMultiStatement extends MolangExpression
 
     @Override
     public double get()
+    {
+        if (MolangCompiler.isEnabled())
+        {
+            if (this.compiled != null)
+            {
+                return this.compiled.get();
+            }
+
+            /* Compile only frequently evaluated expressions, and don't retry
+             * the ones that failed to compile */
+            if (this.evaluations >= 0 && (this.evaluations += 1) >= MolangCompiler.THRESHOLD)
+            {
+                this.evaluations = -1;
+                this.compiled = MolangCompiler.compile(this);
+
+                if (this.compiled != null)
+                {
+                    return this.compiled.get();
+                }
+            }
+        }
+
+        return this.interpret();
+    }
+
+    /**
+     * Evaluate this statement by walking the expression tree
+     */
+    public double interpret()
     {
         double value = 0;
 
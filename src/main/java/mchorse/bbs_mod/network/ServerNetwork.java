@@ -7,6 +7,7 @@ import mchorse.bbs_mod.actions.ActionRecorder;
 import mchorse.bbs_mod.actions.ActionState;
 import mchorse.bbs_mod.actions.PlayerType;
 import mchorse.bbs_mod.blocks.entities.ModelBlockEntity;
+import mchorse.bbs_mod.data.DataDelta;
 import mchorse.bbs_mod.data.DataStorageUtils;
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.ByteType;
@@ -15,6 +16,7 @@ import mchorse.bbs_mod.data.types.MapType;
 import mchorse.bbs_mod.entity.GunProjectileEntity;
 import mchorse.bbs_mod.entity.IEntityFormProvider;
 import mchorse.bbs_mod.film.Film;
+import mchorse.bbs_mod.film.FilmCache;
 import mchorse.bbs_mod.film.FilmManager;
 import mchorse.bbs_mod.forms.FormUtils;
 import mchorse.bbs_mod.forms.forms.Form;
@@ -43,6 +45,7 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -70,6 +73,7 @@ public class ServerNetwork
     public static final Identifier CLIENT_SELECTED_SLOT = new Identifier(BBSMod.MOD_ID, "c15");
     public static final Identifier CLIENT_ANIMATION_STATE_MODEL_BLOCK_TRIGGER = new Identifier(BBSMod.MOD_ID, "c16");
     public static final Identifier CLIENT_REFRESH_MODEL_BLOCKS = new Identifier(BBSMod.MOD_ID, "c17");
+    public static final Identifier CLIENT_PLAY_FILM_DELTA_PACKET = new Identifier(BBSMod.MOD_ID, "c18");
 
     public static final Identifier SERVER_MODEL_BLOCK_FORM_PACKET = new Identifier(BBSMod.MOD_ID, "s1");
     public static final Identifier SERVER_MODEL_BLOCK_TRANSFORMS_PACKET = new Identifier(BBSMod.MOD_ID, "s2");
@@ -84,12 +88,21 @@ public class ServerNetwork
     public static final Identifier SERVER_SHARED_FORM = new Identifier(BBSMod.MOD_ID, "s11");
     public static final Identifier SERVER_ZOOM = new Identifier(BBSMod.MOD_ID, "s12");
     public static final Identifier SERVER_PAUSE_FILM = new Identifier(BBSMod.MOD_ID, "s13");
+    public static final Identifier SERVER_FILM_HASH = new Identifier(BBSMod.MOD_ID, "s14");
+    public static final Identifier SERVER_FILM_REQUEST = new Identifier(BBSMod.MOD_ID, "s15");
 
     private static ServerPacketCrusher crusher = new ServerPacketCrusher();
+    private static FilmCache filmCache = new FilmCache();
 
     public static void reset()
     {
         crusher.reset();
+        filmCache.reset();
+    }
+
+    public static void resetPlayer(ServerPlayerEntity player)
+    {
+        filmCache.forget(player.getUuid());
     }
 
     public static void setup()
@@ -107,6 +120,8 @@ public class ServerNetwork
         ServerPlayNetworking.registerGlobalReceiver(SERVER_SHARED_FORM, (server, player, handler, buf, responder) -> handleSharedFormPacket(server, player, buf));
         ServerPlayNetworking.registerGlobalReceiver(SERVER_ZOOM, (server, player, handler, buf, responder) -> handleZoomPacket(server, player, buf));
         ServerPlayNetworking.registerGlobalReceiver(SERVER_PAUSE_FILM, (server, player, handler, buf, responder) -> handlePauseFilmPacket(server, player, buf));
+        ServerPlayNetworking.registerGlobalReceiver(SERVER_FILM_HASH, (server, player, handler, buf, responder) -> handleFilmHashPacket(server, player, buf));
+        ServerPlayNetworking.registerGlobalReceiver(SERVER_FILM_REQUEST, (server, player, handler, buf, responder) -> handleFilmRequestPacket(server, player, buf));
     }
 
     /* Handlers */
@@ -219,21 +234,37 @@ public class ServerNetwork
             if (op == RepositoryOperation.LOAD)
             {
                 String id = data.getString("id");
-                Film film = films.load(id);
+                FilmCache.Entry entry = filmCache.get(films, id);
 
-                sendManagerData(player, callbackId, op, film.toData());
+                sendManagerData(player, callbackId, op, entry == null ? null : entry.data);
             }
             else if (op == RepositoryOperation.SAVE)
             {
-                films.save(data.getString("id"), data.getMap("data"));
+                String id = data.getString("id");
+                MapType filmData = data.getMap("data");
+
+                /* Diffing and encoding the film is done here rather than on
+                 * the server thread. If the data gets written before the cache
+                 * knows about it, the cache validates it right away */
+                if (films.save(id, filmData))
+                {
+                    filmCache.save(films, id, filmData);
+                }
+                else
+                {
+                    filmCache.invalidate(id);
+                }
             }
             else if (op == RepositoryOperation.RENAME)
             {
                 films.rename(data.getString("from"), data.getString("to"));
+                filmCache.invalidate(data.getString("from"));
+                filmCache.invalidate(data.getString("to"));
             }
             else if (op == RepositoryOperation.DELETE)
             {
                 films.delete(data.getString("id"));
+                filmCache.invalidate(data.getString("id"));
             }
             else if (op == RepositoryOperation.KEYS)
             {
@@ -248,10 +279,12 @@ public class ServerNetwork
             else if (op == RepositoryOperation.RENAME_FOLDER)
             {
                 sendManagerData(player, callbackId, op, new ByteType(films.renameFolder(data.getString("from"), data.getString("to"))));
+                filmCache.invalidateAll();
             }
             else if (op == RepositoryOperation.DELETE_FOLDER)
             {
                 sendManagerData(player, callbackId, op, new ByteType(films.deleteFolder(data.getString("folder"))));
+                filmCache.invalidateAll();
             }
         });
     }
@@ -430,6 +463,37 @@ public class ServerNetwork
         });
     }
 
+    private static void handleFilmHashPacket(MinecraftServer server, ServerPlayerEntity player, PacketByteBuf buf)
+    {
+        String filmId = buf.readString();
+        long hash = buf.readLong();
+
+        /* Only versions of films that were sent to this player are kept */
+        filmCache.announce(player.getUuid(), filmId, hash);
+    }
+
+    private static void handleFilmRequestPacket(MinecraftServer server, ServerPlayerEntity player, PacketByteBuf buf)
+    {
+        String filmId = buf.readString();
+        boolean withCamera = buf.readBoolean();
+
+        /* Players can only request films that the server played to them */
+        if (!filmCache.wasSent(player.getUuid(), filmId))
+        {
+            return;
+        }
+
+        server.execute(() ->
+        {
+            FilmCache.Entry entry = filmCache.get(BBSMod.getFilms(), filmId);
+
+            if (entry != null)
+            {
+                sendFilm(Collections.singletonList(player), filmId, entry, withCamera, false);
+            }
+        });
+    }
+
     private static void handleTeleportPlayer(MinecraftServer server, ServerPlayerEntity player, PacketByteBuf buf)
     {
         if (!PermissionUtils.arePanelsAllowed(server, player))
@@ -562,19 +626,13 @@ public class ServerNetwork
     {
         try
         {
-            Film film = BBSMod.getFilms().load(filmId);
+            FilmCache.Entry entry = filmCache.get(BBSMod.getFilms(), filmId);
 
-            if (film != null)
+            if (entry != null)
             {
-                BBSMod.getActions().play(player, world, film, 0);
-
-                BaseType data = film.toData();
+                BBSMod.getActions().play(player, world, entry.createFilm(filmId), 0);
 
-                crusher.send(world.getPlayers().stream().map((p) -> (PlayerEntity) p).toList(), CLIENT_PLAY_FILM_PACKET, data, (packetByteBuf) ->
-                {
-                    packetByteBuf.writeString(filmId);
-                    packetByteBuf.writeBoolean(withCamera);
-                });
+                sendFilm(world.getPlayers(), filmId, entry, withCamera, true);
             }
         }
         catch (Exception e)
@@ -587,17 +645,13 @@ public class ServerNetwork
     {
         try
         {
-            Film film = BBSMod.getFilms().load(filmId);
+            FilmCache.Entry entry = filmCache.get(BBSMod.getFilms(), filmId);
 
-            if (film != null)
+            if (entry != null)
             {
-                BBSMod.getActions().play(player, player.getServerWorld(), film, 0);
+                BBSMod.getActions().play(player, player.getServerWorld(), entry.createFilm(filmId), 0);
 
-                crusher.send(player, CLIENT_PLAY_FILM_PACKET, film.toData(), (packetByteBuf) ->
-                {
-                    packetByteBuf.writeString(filmId);
-                    packetByteBuf.writeBoolean(withCamera);
-                });
+                sendFilm(Collections.singletonList(player), filmId, entry, withCamera, true);
             }
         }
         catch (Exception e)
@@ -606,6 +660,67 @@ public class ServerNetwork
         }
     }
 
+    /**
+     * Send a film to be played to given players. Players who announced that
+     * they have the current version of the film or a version from which
+     * the film can be updated with deltas receive only these deltas, while
+     * the rest get the full film (encoded only once for all of them).
+     */
+    private static void sendFilm(List<ServerPlayerEntity> players, String filmId, FilmCache.Entry entry, boolean withCamera, boolean allowDeltas)
+    {
+        List<PlayerEntity> full = new ArrayList<>();
+        byte[] bytes = entry.getBytes();
+
+        for (ServerPlayerEntity player : players)
+        {
+            filmCache.markSent(player.getUuid(), filmId);
+
+            Long known = allowDeltas ? filmCache.getKnown(player.getUuid(), filmId) : null;
+            List<DataDelta> deltas = known == null ? null : entry.getDeltas(known);
+
+            if (deltas == null)
+            {
+                full.add(player);
+
+                continue;
+            }
+
+            ListType list = new ListType();
+
+            for (DataDelta delta : deltas)
+            {
+                list.add(delta.toData());
+            }
+
+            byte[] deltaBytes = DataStorageUtils.writeToBytes(list);
+
+            if (deltaBytes.length >= bytes.length)
+            {
+                full.add(player);
+
+                continue;
+            }
+
+            crusher.send(player, CLIENT_PLAY_FILM_DELTA_PACKET, deltaBytes, (packetByteBuf) ->
+            {
+                packetByteBuf.writeString(filmId);
+                packetByteBuf.writeBoolean(withCamera);
+                packetByteBuf.writeLong(known);
+                packetByteBuf.writeLong(entry.hash);
+            });
+        }
+
+        if (!full.isEmpty())
+        {
+            crusher.send(full, CLIENT_PLAY_FILM_PACKET, bytes, (packetByteBuf) ->
+            {
+                packetByteBuf.writeString(filmId);
+                packetByteBuf.writeBoolean(withCamera);
+                packetByteBuf.writeLong(entry.hash);
+            });
+        }
+    }
+
     public static void sendStopFilm(ServerPlayerEntity player, String filmId)
     {
         PacketByteBuf buf = PacketByteBufs.create();
@@ -1,16 +1,20 @@
 package mchorse.bbs_mod.obj;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
  * Mesh from OBJ file
  *
- * It holds faces for every object found in OBJ file
+ * It holds faces for every object found in OBJ file. Faces are stored per
+ * material as flat lists of triangles' indices (position, texture
+ * coordinate and normal indices for every of three vertices, -1 if
+ * there is no such index).
  */
 public class OBJDataMesh
 {
     public String name;
-    public Map<OBJMaterial, List<OBJFace>> groups = new LinkedHashMap<OBJMaterial, List<OBJFace>>();
+    public Map<OBJMaterial, IntArrayList> groups = new LinkedHashMap<OBJMaterial, IntArrayList>();
 }
@@ -1,9 +1,8 @@
 package mchorse.bbs_mod.obj;
 
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import mchorse.bbs_mod.resources.Link;
-import mchorse.bbs_mod.utils.IOUtils;
-import org.joml.Vector2f;
-import org.joml.Vector3f;
 
 import java.io.File;
 import java.io.InputStream;
@@ -21,10 +20,11 @@ public class OBJParser
     public InputStream objFile;
     public InputStream mtlFile;
 
-    /* Collected data */
-    public List<Vector3f> vertices = new ArrayList<Vector3f>();
-    public List<Vector2f> textures = new ArrayList<Vector2f>();
-    public List<Vector3f> normals = new ArrayList<Vector3f>();
+    /* Collected data (3 floats per vertex and normal, 2 per texture
+     * coordinate) */
+    public FloatArrayList vertices = new FloatArrayList();
+    public FloatArrayList textures = new FloatArrayList();
+    public FloatArrayList normals = new FloatArrayList();
     public List<OBJDataMesh> objects = new ArrayList<OBJDataMesh>();
     public Map<String, OBJMaterial> materials = new HashMap<String, OBJMaterial>();
 
@@ -135,46 +135,46 @@ public class OBJParser
             return;
         }
 
-        List<String> lines = IOUtils.readLines(this.mtlFile);
+        OBJTokenizer tokenizer = new OBJTokenizer(this.mtlFile);
         OBJMaterial material = null;
 
-        for (String line : lines)
+        while (tokenizer.nextLine())
         {
-            if (line.isEmpty())
+            if (!tokenizer.next())
             {
                 continue;
             }
 
-            String[] tokens = line.split("\\s+");
-            String first = tokens[0];
-
-            if (first.equals("newmtl"))
+            if (tokenizer.is("newmtl"))
             {
-                material = new OBJMaterial(processMaterialName(tokens[1]));
+                material = new OBJMaterial(processMaterialName(tokenizer.nextString()));
 
                 this.materials.put(material.name, material);
             }
             /* Read diffuse color */
-            else if (first.equals("Kd") && tokens.length == 4)
+            else if (tokenizer.is("Kd"))
             {
-                material.r = Float.parseFloat(tokens[1]);
-                material.g = Float.parseFloat(tokens[2]);
-                material.b = Float.parseFloat(tokens[3]);
+                String[] tokens = tokenizer.tokens();
+
+                if (tokens.length == 4)
+                {
+                    material.r = Float.parseFloat(tokens[1]);
+                    material.g = Float.parseFloat(tokens[2]);
+                    material.b = Float.parseFloat(tokens[3]);
+                }
             }
             /* Read texture */
-            else if (first.equals("map_Kd"))
+            else if (tokenizer.is("map_Kd"))
             {
                 material.useTexture = true;
             }
-            else if (first.equals("map_Kd_linear"))
+            else if (tokenizer.is("map_Kd_linear"))
             {
                 material.linear = true;
             }
-            else if (first.equals("map_Kd_path"))
+            else if (tokenizer.is("map_Kd_path"))
             {
-                String texture = String.join(" ", dropFirstArgument(tokens));
-
-                material.texture = Link.create(texture);
+                material.texture = Link.create(tokenizer.rest());
             }
         }
     }
@@ -184,20 +184,28 @@ public class OBJParser
      */
     public void readOBJ() throws Exception
     {
-        List<String> lines = IOUtils.readLines(this.objFile);
-
+        OBJTokenizer tokenizer = new OBJTokenizer(this.objFile);
         OBJDataMesh mesh = null;
         OBJMaterial material = null;
+        int[] face = new int[9];
+        int[] first = new int[3];
 
-        for (String line : lines)
+        while (tokenizer.nextLine())
         {
-            String[] tokens = line.split("\\s+");
-            String first = tokens[0];
+            if (!tokenizer.next())
+            {
+                continue;
+            }
 
             /* Blender uses "o" for objects, while C4D uses "g" */
-            if ((first.equals("o") || first.equals("g")) && tokens.length >= 2)
+            if (tokenizer.is("o") || tokenizer.is("g"))
             {
-                String name = tokens[1];
+                if (!tokenizer.next())
+                {
+                    continue;
+                }
+
+                String name = tokenizer.string();
 
                 mesh = null;
 
@@ -217,55 +225,60 @@ public class OBJParser
                     mesh.name = name;
                     this.objects.add(mesh);
                 }
-
             }
-
             /* Vertices */
-            if (first.equals("v"))
+            else if (tokenizer.is("v"))
             {
-                this.vertices.add(new Vector3f(Float.parseFloat(tokens[1]), Float.parseFloat(tokens[2]), Float.parseFloat(tokens[3])));
+                this.vertices.add(tokenizer.nextFloat());
+                this.vertices.add(tokenizer.nextFloat());
+                this.vertices.add(tokenizer.nextFloat());
             }
             /* Texture coordinates (UV) */
-            else if (first.equals("vt"))
+            else if (tokenizer.is("vt"))
             {
-                this.textures.add(new Vector2f(Float.parseFloat(tokens[1]), Float.parseFloat(tokens[2])));
+                this.textures.add(tokenizer.nextFloat());
+                this.textures.add(tokenizer.nextFloat());
             }
             /* Who needs normals? */
-            else if (first.equals("vn"))
+            else if (tokenizer.is("vn"))
             {
-                this.normals.add(new Vector3f(Float.parseFloat(tokens[1]), Float.parseFloat(tokens[2]), Float.parseFloat(tokens[3])));
+                this.normals.add(tokenizer.nextFloat());
+                this.normals.add(tokenizer.nextFloat());
+                this.normals.add(tokenizer.nextFloat());
             }
             /* Material group */
-            else if (first.equals("usemtl"))
+            else if (tokenizer.is("usemtl"))
             {
-                material = this.materials.get(processMaterialName(tokens[1]));
+                material = this.materials.get(processMaterialName(tokenizer.nextString()));
             }
             /* Collect faces */
-            else if (first.equals("f"))
+            else if (tokenizer.is("f"))
             {
-                List<OBJFace> faceList = mesh.groups.get(material);
-                if (faceList == null) {
-                    faceList = new ArrayList<OBJFace>();
-                    mesh.groups.put(material, faceList);
-                }
-                
-                String[] faces = dropFirstArgument(tokens);
+                IntArrayList faces = mesh.groups.get(material);
 
-                if (faces.length == 4)
+                if (faces == null)
                 {
-                    /* Support for quads, yay! */
-                    faceList.add(new OBJFace(new String[] {faces[0], faces[1], faces[2]}));
-                    faceList.add(new OBJFace(new String[] {faces[0], faces[2], faces[3]}));
+                    faces = new IntArrayList();
+                    mesh.groups.put(material, faces);
                 }
-                else if (faces.length == 3)
-                {
-                    faceList.add(new OBJFace(faces));
-                }
-                else if (faces.length > 4)
+
+                /* Polygons (quads, yay!) are split into a triangle fan */
+                for (int i = 0; tokenizer.hasNext(); i++)
                 {
-                    for (int i = 0, c = faces.length - 2; i < c; i++)
+                    if (i == 0)
+                    {
+                        tokenizer.nextIndexGroup(first, 0);
+
+                        continue;
+                    }
+
+                    System.arraycopy(first, 0, face, 0, 3);
+                    System.arraycopy(face, 6, face, 3, 3);
+                    tokenizer.nextIndexGroup(face, 6);
+
+                    if (i >= 2)
                     {
-                        faceList.add(new OBJFace(new String[] {faces[0], faces[i + 1], faces[i + 2]}));
+                        faces.addElements(faces.size(), face);
                     }
                 }
             }
@@ -283,21 +296,14 @@ public class OBJParser
         {
             MeshesOBJ meshObject = new MeshesOBJ();
 
-            for (Map.Entry<OBJMaterial, List<OBJFace>> group : obj.groups.entrySet())
+            for (Map.Entry<OBJMaterial, IntArrayList> group : obj.groups.entrySet())
             {
-                List<OBJFace> faces = group.getValue();
-                MeshOBJ mesh = new MeshOBJ(faces.size());
+                IntArrayList faces = group.getValue();
+                MeshOBJ mesh = new MeshOBJ(faces.size() / 9);
 
-                int i = 0;
-
-                for (OBJFace face : faces)
+                for (int i = 0, c = faces.size() / 3; i < c; i++)
                 {
-                    for (OBJIndexGroup indexGroup : face.idxGroups)
-                    {
-                        processFaceVertex(i, indexGroup, mesh);
-
-                        i++;
-                    }
+                    this.processFaceVertex(i, faces.getInt(i * 3), faces.getInt(i * 3 + 1), faces.getInt(i * 3 + 2), mesh);
                 }
 
                 mesh.material = group.getKey();
@@ -313,32 +319,26 @@ public class OBJParser
     /**
      * Place all the data to complementary arrays
      */
-    private void processFaceVertex(int i, OBJIndexGroup indices, Mesh mesh)
+    private void processFaceVertex(int i, int position, int texture, int normal, Mesh mesh)
     {
-        if (indices.idxPos >= 0)
+        if (position >= 0)
         {
-            Vector3f vertex = this.vertices.get(indices.idxPos);
-
-            mesh.posData[i * 3] = vertex.x;
-            mesh.posData[i * 3 + 1] = vertex.y;
-            mesh.posData[i * 3 + 2] = vertex.z;
+            mesh.posData[i * 3] = this.vertices.getFloat(position * 3);
+            mesh.posData[i * 3 + 1] = this.vertices.getFloat(position * 3 + 1);
+            mesh.posData[i * 3 + 2] = this.vertices.getFloat(position * 3 + 2);
         }
 
-        if (indices.idxTextCoord >= 0)
+        if (texture >= 0)
         {
-            Vector2f coord = this.textures.get(indices.idxTextCoord);
-
-            mesh.texData[i * 2] = coord.x;
-            mesh.texData[i * 2 + 1] = 1 - coord.y;
+            mesh.texData[i * 2] = this.textures.getFloat(texture * 2);
+            mesh.texData[i * 2 + 1] = 1 - this.textures.getFloat(texture * 2 + 1);
         }
 
-        if (indices.idxVecNormal >= 0)
+        if (normal >= 0)
         {
-            Vector3f normal = this.normals.get(indices.idxVecNormal);
-
-            mesh.normData[i * 3] = normal.x;
-            mesh.normData[i * 3 + 1] = normal.y;
-            mesh.normData[i * 3 + 2] = normal.z;
+            mesh.normData[i * 3] = this.normals.getFloat(normal * 3);
+            mesh.normData[i * 3 + 1] = this.normals.getFloat(normal * 3 + 1);
+            mesh.normData[i * 3 + 2] = this.normals.getFloat(normal * 3 + 2);
         }
     }
 }
\ No newline at end of file
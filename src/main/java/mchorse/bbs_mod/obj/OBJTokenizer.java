@@ -0,0 +1,515 @@
+package mchorse.bbs_mod.obj;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * OBJ tokenizer
+ *
+ * Streaming tokenizer of OBJ-like text formats (OBJ, MTL and BOBJ). It
+ * reads the stream line by line into a reusable byte buffer, and parses
+ * whitespace separated tokens directly from the bytes, so numbers and
+ * keywords don't need to be turned into strings first.
+ *
+ * Typical usage is: {@link #nextLine()}, then {@link #next()} to get the
+ * keyword, {@link #is(String)} to check it, and {@link #nextFloat()},
+ * {@link #nextInt()}, etc. to read the rest of the line.
+ *
+ * By default, tokens are separated by any amount of whitespace. In strict
+ * mode, every whitespace character separates tokens (like splitting by
+ * "\\s"), so several whitespaces in a row produce empty tokens, which
+ * BOBJ uses, for example, for bones without a parent.
+ */
+public class OBJTokenizer
+{
+    private static final float[] FLOAT_POWERS = {1e0F, 1e1F, 1e2F, 1e3F, 1e4F, 1e5F, 1e6F, 1e7F, 1e8F, 1e9F, 1e10F};
+    private static final double[] DOUBLE_POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private InputStream stream;
+    private boolean strict;
+    private byte[] buffer = new byte[64 * 1024];
+    private int position;
+    private int limit;
+
+    /* Current line and token */
+    private byte[] line = new byte[256];
+    private int length;
+    private int start;
+    private int end;
+    private int cursor;
+
+    /* Strings that were already created, mostly bone and material names */
+    private String[] strings = new String[256];
+
+    public OBJTokenizer(InputStream stream)
+    {
+        this(stream, false);
+    }
+
+    public OBJTokenizer(InputStream stream, boolean strict)
+    {
+        this.stream = stream;
+        this.strict = strict;
+    }
+
+    private static boolean isWhitespace(byte b)
+    {
+        return b == ' ' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * Read next line. Returns false when the end of the stream was reached
+     */
+    public boolean nextLine() throws IOException
+    {
+        this.length = 0;
+        this.start = this.end = this.cursor = 0;
+
+        while (true)
+        {
+            if (this.position >= this.limit)
+            {
+                this.limit = this.stream.read(this.buffer, 0, this.buffer.length);
+                this.position = 0;
+
+                if (this.limit <= 0)
+                {
+                    this.limit = 0;
+
+                    return this.length > 0;
+                }
+            }
+
+            /* Find the end of the line within the buffer, and copy
+             * everything before it at once */
+            int i = this.position;
+
+            while (i < this.limit && this.buffer[i] != '\n' && this.buffer[i] != '\r')
+            {
+                i += 1;
+            }
+
+            int count = i - this.position;
+
+            if (this.length + count > this.line.length)
+            {
+                this.line = Arrays.copyOf(this.line, Math.max(this.line.length * 2, this.length + count));
+            }
+
+            System.arraycopy(this.buffer, this.position, this.line, this.length, count);
+
+            this.length += count;
+            this.position = i;
+
+            if (i >= this.limit)
+            {
+                continue;
+            }
+
+            this.position += 1;
+
+            /* Windows line endings ("\r\n") */
+            if (this.buffer[i] == '\r')
+            {
+                if (this.position >= this.limit)
+                {
+                    this.limit = this.stream.read(this.buffer, 0, this.buffer.length);
+                    this.position = 0;
+                }
+
+                if (this.position < this.limit && this.buffer[this.position] == '\n')
+                {
+                    this.position += 1;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Move to the next token of current line. Returns false if there are
+     * no more tokens on this line
+     */
+    public boolean next()
+    {
+        int i = this.cursor;
+
+        if (this.strict)
+        {
+            if (i > this.length)
+            {
+                this.start = this.end = this.length;
+
+                return false;
+            }
+        }
+        else
+        {
+            while (i < this.length && isWhitespace(this.line[i]))
+            {
+                i += 1;
+            }
+        }
+
+        this.start = i;
+
+        while (i < this.length && !isWhitespace(this.line[i]))
+        {
+            i += 1;
+        }
+
+        this.end = i;
+        this.cursor = this.strict ? i + 1 : i;
+
+        return this.strict || this.start < this.end;
+    }
+
+    /**
+     * Whether there are more tokens on current line
+     */
+    public boolean hasNext()
+    {
+        for (int i = this.cursor; i < this.length; i++)
+        {
+            if (!isWhitespace(this.line[i]))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether current token is equal to given (ASCII) string
+     */
+    public boolean is(String string)
+    {
+        if (this.end - this.start != string.length())
+        {
+            return false;
+        }
+
+        for (int i = 0, c = string.length(); i < c; i++)
+        {
+            if (this.line[this.start + i] != string.charAt(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Current token as a string. Strings of ASCII tokens get reused, so
+     * repeating names (like bone names in vertex weights) don't allocate
+     * a new string every time
+     */
+    public String string()
+    {
+        int hash = 0;
+
+        for (int i = this.start; i < this.end; i++)
+        {
+            byte b = this.line[i];
+
+            if (b < 0)
+            {
+                return new String(this.line, this.start, this.end - this.start, StandardCharsets.UTF_8);
+            }
+
+            hash = 31 * hash + b;
+        }
+
+        int index = (hash ^ hash >>> 16) & (this.strings.length - 1);
+        String string = this.strings[index];
+
+        if (string == null || !this.is(string))
+        {
+            string = new String(this.line, this.start, this.end - this.start, StandardCharsets.ISO_8859_1);
+            this.strings[index] = string;
+        }
+
+        return string;
+    }
+
+    public String nextString()
+    {
+        this.require(true);
+
+        return this.string();
+    }
+
+    /**
+     * Rest of the tokens of current line joined with single space
+     */
+    public String rest()
+    {
+        StringBuilder builder = new StringBuilder();
+
+        while (this.next())
+        {
+            if (builder.length() > 0)
+            {
+                builder.append(' ');
+            }
+
+            builder.append(this.string());
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * All tokens of current line (including the ones that were already
+     * read). Trailing empty tokens are dropped, like {@link String#split(String)}
+     * does
+     */
+    public String[] tokens()
+    {
+        List<String> tokens = new ArrayList<>();
+
+        this.cursor = 0;
+
+        while (this.next())
+        {
+            tokens.add(this.string());
+        }
+
+        while (!tokens.isEmpty() && tokens.get(tokens.size() - 1).isEmpty())
+        {
+            tokens.remove(tokens.size() - 1);
+        }
+
+        return tokens.toArray(new String[0]);
+    }
+
+    public int nextInt()
+    {
+        this.require(false);
+
+        return this.parseInt(this.start, this.end);
+    }
+
+    /**
+     * Read OBJ index group (in format of "1/2/3", "1//3", "1/2" or "1")
+     * into given array starting at given offset. Indices become zero based,
+     * and missing indices are -1
+     */
+    public void nextIndexGroup(int[] indices, int offset)
+    {
+        this.require(false);
+
+        int from = this.start;
+
+        for (int i = 0; i < 3; i++)
+        {
+            int to = from;
+
+            while (to < this.end && this.line[to] != '/')
+            {
+                to += 1;
+            }
+
+            indices[offset + i] = from < to ? this.parseInt(from, to) - 1 : -1;
+            from = Math.min(to + 1, this.end + 1);
+
+            if (to >= this.end)
+            {
+                for (int j = i + 1; j < 3; j++)
+                {
+                    indices[offset + j] = -1;
+                }
+
+                break;
+            }
+        }
+    }
+
+    public float nextFloat()
+    {
+        this.require(false);
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        int i = this.start;
+        boolean negative = this.line[i] == '-';
+
+        if (negative || this.line[i] == '+')
+        {
+            i += 1;
+        }
+
+        int first = i;
+
+        while (i < this.end && this.line[i] >= '0' && this.line[i] <= '9')
+        {
+            if (mantissa != 0 || this.line[i] != '0')
+            {
+                mantissa = mantissa * 10 + (this.line[i] - '0');
+                digits += 1;
+            }
+
+            i += 1;
+        }
+
+        if (i < this.end && this.line[i] == '.')
+        {
+            i += 1;
+
+            while (i < this.end && this.line[i] >= '0' && this.line[i] <= '9')
+            {
+                if (mantissa != 0 || this.line[i] != '0')
+                {
+                    mantissa = mantissa * 10 + (this.line[i] - '0');
+                    digits += 1;
+                }
+
+                exponent -= 1;
+                i += 1;
+            }
+        }
+
+        /* Anything unusual (exponents, NaN, too many digits, etc.) is
+         * parsed by Java */
+        if (i != this.end || i == first || digits > 18)
+        {
+            return Float.parseFloat(this.string());
+        }
+
+        float result;
+
+        if (mantissa < (1 << 24) && exponent >= -10)
+        {
+            /* Both the mantissa and the power of ten are exact floats, so
+             * a single division is rounded exactly like parseFloat */
+            result = mantissa / FLOAT_POWERS[-exponent];
+        }
+        else if (mantissa < (1L << 53) && exponent >= -22)
+        {
+            /* The double is exactly rounded too, so rounding it to float
+             * gives the same result, unless it's right in the middle
+             * between two floats */
+            double value = mantissa / DOUBLE_POWERS[-exponent];
+            long bits = Double.doubleToRawLongBits(value);
+
+            if (value < Float.MIN_NORMAL || (bits & 0x1FFFFFFFL) == 0x10000000L)
+            {
+                return Float.parseFloat(this.string());
+            }
+
+            result = (float) value;
+        }
+        else
+        {
+            return Float.parseFloat(this.string());
+        }
+
+        return negative ? -result : result;
+    }
+
+    public double nextDouble()
+    {
+        this.require(false);
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        int i = this.start;
+        boolean negative = this.line[i] == '-';
+
+        if (negative || this.line[i] == '+')
+        {
+            i += 1;
+        }
+
+        int first = i;
+
+        while (i < this.end && this.line[i] >= '0' && this.line[i] <= '9')
+        {
+            if (mantissa != 0 || this.line[i] != '0')
+            {
+                mantissa = mantissa * 10 + (this.line[i] - '0');
+                digits += 1;
+            }
+
+            i += 1;
+        }
+
+        if (i < this.end && this.line[i] == '.')
+        {
+            i += 1;
+
+            while (i < this.end && this.line[i] >= '0' && this.line[i] <= '9')
+            {
+                if (mantissa != 0 || this.line[i] != '0')
+                {
+                    mantissa = mantissa * 10 + (this.line[i] - '0');
+                    digits += 1;
+                }
+
+                exponent -= 1;
+                i += 1;
+            }
+        }
+
+        if (i != this.end || i == first || digits > 18 || mantissa >= (1L << 53) || exponent < -22)
+        {
+            return Double.parseDouble(this.string());
+        }
+
+        double result = mantissa / DOUBLE_POWERS[-exponent];
+
+        return negative ? -result : result;
+    }
+
+    private int parseInt(int from, int to)
+    {
+        int i = from;
+        boolean negative = this.line[i] == '-';
+
+        if (negative || this.line[i] == '+')
+        {
+            i += 1;
+        }
+
+        if (i == to || to - i > 9)
+        {
+            return Integer.parseInt(new String(this.line, from, to - from, StandardCharsets.ISO_8859_1));
+        }
+
+        int result = 0;
+
+        for (; i < to; i++)
+        {
+            byte b = this.line[i];
+
+            if (b < '0' || b > '9')
+            {
+                throw new NumberFormatException("Invalid integer \"" + new String(this.line, from, to - from, StandardCharsets.UTF_8) + "\"");
+            }
+
+            result = result * 10 + (b - '0');
+        }
+
+        return negative ? -result : result;
+    }
+
+    private void require(boolean empty)
+    {
+        if (!this.next() || (!empty && this.start == this.end))
+        {
+            throw new IllegalStateException("Missing a token in line \"" + new String(this.line, 0, this.length, StandardCharsets.UTF_8) + "\"");
+        }
+    }
+}
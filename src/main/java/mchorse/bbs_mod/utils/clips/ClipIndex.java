@@ -0,0 +1,196 @@
+package mchorse.bbs_mod.utils.clips;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Clip index
+ *
+ * Interval index over clips' [tick, tick + duration) ranges. Clips are kept
+ * in arrays sorted by their start tick, which are treated as an implicit
+ * balanced binary tree (the middle element of every range is the node), and
+ * every node stores the maximum end tick of its subtree. That allows to find
+ * all clips at given tick in O(log n + k) instead of checking every clip.
+ *
+ * The index is rebuilt lazily on the next lookup after it was invalidated by
+ * {@link Clips}.
+ */
+public class ClipIndex
+{
+    private int[] starts = new int[0];
+    private int[] ends = new int[0];
+    private int[] maxEnds = new int[0];
+    private int[] orders = new int[0];
+    private int[] globals = new int[0];
+    private int size;
+    private int globalSize;
+    private boolean dirty = true;
+
+    /**
+     * Found clips as (layer << 32 | order) pairs, so sorting them gives
+     * the same order as stable sorting clips by layer
+     */
+    private long[] found = new long[16];
+    private int foundSize;
+
+    public void invalidate()
+    {
+        this.dirty = true;
+    }
+
+    private void rebuild(List<Clip> clips)
+    {
+        int size = clips.size();
+        long[] keys = new long[size];
+        int globalSize = 0;
+
+        for (int i = 0; i < size; i++)
+        {
+            Clip clip = clips.get(i);
+
+            keys[i] = ((long) clip.tick.get() << 32) | i;
+
+            if (clip.isGlobal())
+            {
+                globalSize += 1;
+            }
+        }
+
+        Arrays.sort(keys);
+
+        if (this.starts.length < size)
+        {
+            this.starts = new int[size];
+            this.ends = new int[size];
+            this.maxEnds = new int[size];
+            this.orders = new int[size];
+        }
+
+        if (this.globals.length < globalSize)
+        {
+            this.globals = new int[globalSize];
+        }
+
+        this.globalSize = 0;
+
+        for (int i = 0; i < size; i++)
+        {
+            int order = (int) keys[i];
+            Clip clip = clips.get(order);
+
+            this.starts[i] = clip.tick.get();
+            this.ends[i] = this.starts[i] + clip.duration.get();
+            this.orders[i] = order;
+
+            if (clip.isGlobal())
+            {
+                this.globals[this.globalSize++] = order;
+            }
+        }
+
+        /* Globals are collected in the sorted order, but they should be
+         * reported in the list order */
+        Arrays.sort(this.globals, 0, this.globalSize);
+
+        this.size = size;
+        this.computeMaxEnd(0, size);
+        this.dirty = false;
+    }
+
+    private int computeMaxEnd(int from, int to)
+    {
+        if (from >= to)
+        {
+            return Integer.MIN_VALUE;
+        }
+
+        int middle = (from + to) >>> 1;
+        int max = Math.max(this.ends[middle], Math.max(this.computeMaxEnd(from, middle), this.computeMaxEnd(middle + 1, to)));
+
+        this.maxEnds[middle] = max;
+
+        return max;
+    }
+
+    /**
+     * Add clips that are at given tick and below given layer to the output
+     * list, sorted by layer (and by the order in the list within the same
+     * layer). When max layer is {@link Integer#MAX_VALUE}, global clips are
+     * added as well.
+     */
+    public void query(List<Clip> clips, int tick, int maxLayer, List<Clip> out)
+    {
+        if (this.dirty || this.size != clips.size())
+        {
+            this.rebuild(clips);
+        }
+
+        this.foundSize = 0;
+        this.query(clips, 0, this.size, tick, maxLayer);
+
+        if (maxLayer == Integer.MAX_VALUE)
+        {
+            for (int i = 0; i < this.globalSize; i++)
+            {
+                Clip clip = clips.get(this.globals[i]);
+
+                if (!clip.isInside(tick) && clip.layer.get() < maxLayer)
+                {
+                    this.add(clip, this.globals[i]);
+                }
+            }
+        }
+
+        if (this.foundSize > 1)
+        {
+            Arrays.sort(this.found, 0, this.foundSize);
+        }
+
+        for (int i = 0; i < this.foundSize; i++)
+        {
+            out.add(clips.get((int) this.found[i]));
+        }
+    }
+
+    private void query(List<Clip> clips, int from, int to, int tick, int maxLayer)
+    {
+        while (from < to)
+        {
+            int middle = (from + to) >>> 1;
+
+            if (this.maxEnds[middle] <= tick)
+            {
+                return;
+            }
+
+            this.query(clips, from, middle, tick, maxLayer);
+
+            if (this.starts[middle] > tick)
+            {
+                return;
+            }
+
+            if (this.ends[middle] > tick)
+            {
+                Clip clip = clips.get(this.orders[middle]);
+
+                if (clip.layer.get() < maxLayer)
+                {
+                    this.add(clip, this.orders[middle]);
+                }
+            }
+
+            from = middle + 1;
+        }
+    }
+
+    private void add(Clip clip, int order)
+    {
+        if (this.foundSize == this.found.length)
+        {
+            this.found = Arrays.copyOf(this.found, this.found.length * 2);
+        }
+
+        this.found[this.foundSize++] = ((long) clip.layer.get() << 32) | order;
+    }
+}
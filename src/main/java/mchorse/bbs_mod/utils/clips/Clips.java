@@ -6,19 +6,21 @@ import mchorse.bbs_mod.camera.data.Point;
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.MapType;
+import mchorse.bbs_mod.settings.values.base.BaseValue;
 import mchorse.bbs_mod.settings.values.core.ValueGroup;
 import mchorse.bbs_mod.utils.MathUtils;
 import mchorse.bbs_mod.utils.factory.IFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 public class Clips extends ValueGroup
 {
     private List<Clip> clips = new ArrayList<>();
     private IFactory<Clip, ClipFactoryData> factory;
+    private ClipIndex index = new ClipIndex();
+    private int version;
 
     public Clips(String id, IFactory<Clip, ClipFactoryData> factory)
     {
@@ -32,6 +34,16 @@ public class Clips extends ValueGroup
         return this.factory;
     }
 
+    /**
+     * Get the version of these clips, which changes whenever any of the
+     * clips (or their properties) were changed. It allows clips to cache
+     * results that depend on other clips.
+     */
+    public int getVersion()
+    {
+        return this.version;
+    }
+
     public int findFreeLayer(Clip clip)
     {
         int layer = clip.layer.get();
@@ -155,21 +167,22 @@ public class Clips extends ValueGroup
     {
         List<Clip> clipList = new ArrayList<>();
 
-        for (Clip clip : this.clips)
-        {
-            boolean isGlobal = clip.isGlobal() && maxLayer == Integer.MAX_VALUE;
-
-            if ((clip.isInside(tick) || isGlobal) && clip.layer.get() < maxLayer)
-            {
-                clipList.add(clip);
-            }
-        }
-
-        clipList.sort(Comparator.comparingInt((a) -> a.layer.get()));
+        this.getClips(tick, maxLayer, clipList);
 
         return clipList;
     }
 
+    /**
+     * Add clips at given tick that are below given layer (and global clips,
+     * if max layer is {@link Integer#MAX_VALUE}) into given list sorted by
+     * layer. Unlike {@link #getClips(int, int)}, it doesn't allocate, so
+     * it's preferable for per tick/frame lookups.
+     */
+    public void getClips(int tick, int maxLayer, List<Clip> out)
+    {
+        this.index.query(this.clips, tick, maxLayer, out);
+    }
+
     /**
      * Get index of a given clip.
      *
@@ -223,6 +236,8 @@ public class Clips extends ValueGroup
 
     public void sync()
     {
+        this.index.invalidate();
+        this.version += 1;
         this.removeAll();
 
         for (int i = 0, c = this.clips.size(); i < c; i++)
@@ -307,6 +322,40 @@ public class Clips extends ValueGroup
 
     /* Value implementation */
 
+    /**
+     * Mark clips index of all clips containing given value as outdated. It
+     * should be called when a clip's tick or duration were changed without
+     * notifying (i.e. via {@link BaseValue#fromData(BaseType)}).
+     */
+    public static void invalidateIndex(BaseValue value)
+    {
+        while (value != null)
+        {
+            if (value instanceof Clips clips)
+            {
+                clips.index.invalidate();
+                clips.version += 1;
+            }
+
+            value = value.getParent();
+        }
+    }
+
+    @Override
+    public void postNotify(BaseValue value, int flag)
+    {
+        this.version += 1;
+
+        /* Only the clips themselves and their direct properties (tick,
+         * duration and layer) affect the index */
+        if (value == this || value.getParent() == this || (value.getParent() != null && value.getParent().getParent() == this))
+        {
+            this.index.invalidate();
+        }
+
+        super.postNotify(value, flag);
+    }
+
     @Override
     public BaseType toData()
     {
@@ -323,6 +372,7 @@ public class Clips extends ValueGroup
     @Override
     public void fromData(BaseType base)
     {
+        this.version += 1;
         this.clips.clear();
 
         for (BaseType type : base.asList())
@@ -11,8 +11,7 @@ import mchorse.bbs_mod.utils.interps.IInterp;
 import mchorse.bbs_mod.utils.interps.Interpolation;
 import mchorse.bbs_mod.utils.interps.Interpolations;
 import mchorse.bbs_mod.utils.interps.Lerps;
-import mchorse.bbs_mod.utils.keyframes.KeyframeChannel;
-import mchorse.bbs_mod.utils.keyframes.factories.KeyframeFactories;
+import mchorse.bbs_mod.utils.keyframes.DoubleKeyframeChannel;
 
 public class Envelope extends ValueGroup
 {
@@ -26,7 +25,7 @@ public class Envelope extends ValueGroup
     public final Interpolation post = new Interpolation("post", Interpolations.MAP);
 
     public final ValueBoolean keyframes = new ValueBoolean("keyframes");
-    public final KeyframeChannel<Double> channel = new KeyframeChannel<>("channel", KeyframeFactories.DOUBLE);
+    public final DoubleKeyframeChannel channel = new DoubleKeyframeChannel("channel");
 
     public Envelope(String id)
     {
@@ -89,7 +88,7 @@ public class Envelope extends ValueGroup
         {
             if (!this.channel.isEmpty())
             {
-                envelope = this.channel.interpolate(tick).floatValue();
+                envelope = (float) this.channel.interpolateDouble(tick);
             }
         }
         else
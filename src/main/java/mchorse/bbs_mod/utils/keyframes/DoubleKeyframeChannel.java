@@ -0,0 +1,175 @@
+package mchorse.bbs_mod.utils.keyframes;
+
+import mchorse.bbs_mod.utils.keyframes.factories.DoubleKeyframeFactory;
+import mchorse.bbs_mod.utils.keyframes.factories.KeyframeFactories;
+
+/**
+ * Double keyframe channel
+ *
+ * This keyframe channel is specialised for double values. Besides the
+ * regular keyframe list, it caches ticks and values in parallel primitive
+ * arrays, and reuses the same segment for lookups, so interpolating doesn't
+ * box values or allocate segments. It's saved exactly like a regular
+ * double {@link KeyframeChannel}.
+ */
+public class DoubleKeyframeChannel extends KeyframeChannel<Double>
+{
+    private float[] ticks = new float[0];
+    private double[] values = new double[0];
+    private boolean dirty = true;
+
+    private final KeyframeSegment<Double> segment = new KeyframeSegment<>();
+    private int indexA;
+    private int indexB;
+
+    public DoubleKeyframeChannel(String id)
+    {
+        super(id, KeyframeFactories.DOUBLE);
+    }
+
+    @Override
+    protected void invalidate()
+    {
+        super.invalidate();
+
+        this.dirty = true;
+    }
+
+    private void updateCache()
+    {
+        int size = this.list.size();
+
+        if (!this.dirty && this.ticks.length == size)
+        {
+            return;
+        }
+
+        if (this.ticks.length != size)
+        {
+            this.ticks = new float[size];
+            this.values = new double[size];
+        }
+
+        for (int i = 0; i < size; i++)
+        {
+            Keyframe<Double> keyframe = this.list.get(i);
+            Double value = keyframe.getValue();
+
+            this.ticks[i] = keyframe.getTick();
+            this.values[i] = value == null ? 0D : value;
+        }
+
+        this.dirty = false;
+    }
+
+    @Override
+    public int getKeyframeCount()
+    {
+        this.updateCache();
+
+        return this.ticks.length;
+    }
+
+    @Override
+    public float getKeyframeTick(int index)
+    {
+        this.updateCache();
+
+        return this.ticks[index];
+    }
+
+    public KeyframeSegment<Double> seek(float ticks)
+    {
+        return this.seek(ticks, this.getCursor());
+    }
+
+    /**
+     * Find keyframe segment at given ticks using given cursor.
+     *
+     * Unlike {@link #findSegment(float)}, returned segment is reused between
+     * the calls, so it shouldn't be stored, and it will be overwritten by
+     * the next call of this method or {@link #interpolateDouble(float)}.
+     */
+    public KeyframeSegment<Double> seek(float ticks, KeyframeCursor cursor)
+    {
+        this.updateCache();
+
+        int size = this.ticks.length;
+
+        if (size == 0)
+        {
+            return null;
+        }
+
+        if (size == 1 || ticks < this.ticks[0])
+        {
+            this.indexA = this.indexB = 0;
+        }
+        else if (ticks >= this.ticks[size - 1])
+        {
+            this.indexA = this.indexB = size - 1;
+        }
+        else
+        {
+            int index = cursor.find(this, ticks);
+
+            this.indexB = index;
+            this.indexA = Math.max(index - 1, 0);
+        }
+
+        Keyframe<Double> a = this.list.get(this.indexA);
+        Keyframe<Double> b = this.list.get(this.indexB);
+        Keyframe<Double> preA = this.indexA > 0 ? this.list.get(this.indexA - 1) : a;
+        Keyframe<Double> postB = this.indexA + 2 < size ? this.list.get(this.indexA + 2) : b;
+
+        this.segment.fill(preA, a, b, postB);
+        this.segment.setup(ticks);
+
+        return this.segment;
+    }
+
+    /**
+     * Interpolate the value of the segment found by the last {@link #seek(float)}
+     */
+    public double interpolateSegment()
+    {
+        KeyframeSegment<Double> segment = this.segment;
+
+        if (segment.isSame())
+        {
+            return this.values[this.indexA];
+        }
+
+        int last = this.values.length - 1;
+        double preA = this.values[Math.max(this.indexA - 1, 0)];
+        double postB = this.values[this.indexA + 2 <= last ? this.indexA + 2 : this.indexB];
+
+        return DoubleKeyframeFactory.interpolate(
+            segment.preA, segment.a, segment.b, segment.postB,
+            preA, this.values[this.indexA], this.values[this.indexB], postB,
+            segment.a.getInterpolation(), segment.x
+        );
+    }
+
+    public double interpolateDouble(float ticks)
+    {
+        return this.interpolateDouble(ticks, 0D);
+    }
+
+    public double interpolateDouble(float ticks, double orDefault)
+    {
+        return this.seek(ticks) == null ? orDefault : this.interpolateSegment();
+    }
+
+    @Override
+    public Double interpolate(float ticks)
+    {
+        return this.interpolateDouble(ticks);
+    }
+
+    @Override
+    public Double interpolate(float ticks, Double orDefault)
+    {
+        return this.seek(ticks) == null ? orDefault : this.interpolateSegment();
+    }
+}
@@ -67,6 +67,7 @@ public class Keyframe <T> extends BaseValue
         if (dirty) this.preNotify();
 
         this.tick = tick;
+        this.invalidateChannel();
 
         if (dirty) this.postNotify();
     }
@@ -103,6 +104,7 @@ public class Keyframe <T> extends BaseValue
         if (dirty) this.preNotify();
 
         this.value = value;
+        this.invalidateChannel();
 
         if (dirty) this.postNotify();
     }
@@ -144,6 +146,22 @@ public class Keyframe <T> extends BaseValue
         this.interp.copy(keyframe.interp);
         this.shape = keyframe.shape;
         this.color = keyframe.color;
+
+        this.invalidateChannel();
+    }
+
+    /**
+     * Let the parent channel know that tick, value or handles of this
+     * keyframe have changed, as channels may cache them for faster
+     * interpolation (handles are public fields, so whoever changes them
+     * directly should call it)
+     */
+    public void invalidateChannel()
+    {
+        if (this.getParent() instanceof KeyframeChannel<?> channel)
+        {
+            channel.invalidate();
+        }
     }
 
     @Override
@@ -212,6 +230,8 @@ public class Keyframe <T> extends BaseValue
         if (map.has("ry")) this.ry = map.getFloat("ry");
         if (map.has("shape")) this.shape = KeyframeShape.fromString(map.getString("shape"));
         if (map.has("color")) this.color = Color.rgb(map.getInt("color"));
+
+        this.invalidateChannel();
     }
 
     public void copyOverExtra(Keyframe<T> a)
@@ -20,7 +20,14 @@ import java.util.List;
  */
 public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
 {
+    /* Counter of changes of keyframes in all channels */
+    private static int modifications;
+
     private IKeyframeFactory<T> factory;
+    private final KeyframeCursor cursor = new KeyframeCursor();
+
+    /* Cached result of isSorted(), -1 means it needs to be checked again */
+    private int sorted = -1;
 
     public KeyframeChannel(String id, IKeyframeFactory<T> factory)
     {
@@ -29,6 +36,16 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
         this.factory = factory;
     }
 
+    /**
+     * Get a counter that changes whenever keyframes of any channel are
+     * changed, including changes that don't notify any listeners (like
+     * keyframes being dragged in the editor)
+     */
+    public static int getModifications()
+    {
+        return modifications;
+    }
+
     public IKeyframeFactory<T> getFactory()
     {
         return this.factory;
@@ -51,6 +68,25 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
         return Collections.unmodifiableList(this.list);
     }
 
+    public int getKeyframeCount()
+    {
+        return this.list.size();
+    }
+
+    public float getKeyframeTick(int index)
+    {
+        return this.list.get(index).getTick();
+    }
+
+    /**
+     * Get the playback cursor of this channel, which is used by lookups
+     * that weren't given an explicit cursor
+     */
+    public KeyframeCursor getCursor()
+    {
+        return this.cursor;
+    }
+
     public boolean has(int index)
     {
         return index >= 0 && index < this.list.size();
@@ -104,6 +140,15 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
      * Find a keyframe segment at given ticks
      */
     public KeyframeSegment<T> findSegment(float ticks)
+    {
+        return this.findSegment(ticks, this.cursor);
+    }
+
+    /**
+     * Find a keyframe segment at given ticks using given cursor to speed
+     * up sequential lookups
+     */
+    public KeyframeSegment<T> findSegment(float ticks, KeyframeCursor cursor)
     {
         /* No keyframes, no values */
         if (this.list.isEmpty())
@@ -127,15 +172,59 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
             return new KeyframeSegment<>(last, last);
         }
 
-        /* Use binary search to find the proper segment */
+        int low = cursor.find(this, ticks);
+        int index = low - 1 >= 0 ? low - 1 : low;
+        Keyframe<T> b = this.list.get(low);
+        Keyframe<T> a = this.list.get(index);
+        Keyframe<T> preA = index > 0 ? this.list.get(index - 1) : a;
+        Keyframe<T> postB = index + 2 < size ? this.list.get(index + 2) : b;
+        KeyframeSegment<T> segment = new KeyframeSegment<>();
+
+        segment.fill(preA, a, b, postB);
+        segment.setup(ticks);
+
+        return segment;
+    }
+
+    /**
+     * Whether keyframes are ordered by their ticks. Keyframes can be out of
+     * order for a while, for example, when they're being dragged in the
+     * editor, in which case binary search based lookups aren't reliable.
+     */
+    public boolean isSorted()
+    {
+        if (this.sorted < 0)
+        {
+            this.sorted = 1;
+
+            for (int i = 1, c = this.list.size(); i < c; i++)
+            {
+                if (this.list.get(i).getTick() < this.list.get(i - 1).getTick())
+                {
+                    this.sorted = 0;
+
+                    break;
+                }
+            }
+        }
+
+        return this.sorted == 1;
+    }
+
+    /**
+     * Binary search the index of the first keyframe whose tick is not less
+     * than given ticks
+     */
+    public int search(float ticks)
+    {
         int low = 0;
-        int high = size - 1;
+        int high = this.getKeyframeCount() - 1;
 
         while (low <= high)
         {
             int mid = low + (high - low) / 2;
 
-            if (this.list.get(mid).getTick() < ticks)
+            if (this.getKeyframeTick(mid) < ticks)
             {
                 low = mid + 1;
             }
@@ -145,21 +234,32 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
             }
         }
 
-        Keyframe<T> b = this.list.get(low);
-        Keyframe<T> a = low - 1 >= 0 ? this.list.get(low - 1) : b;
-        KeyframeSegment<T> segment = new KeyframeSegment<>(a, b);
+        return low;
+    }
 
-        segment.setup(ticks);
+    /* Write only */
 
-        return segment;
+    @Override
+    public void add(Keyframe<T> value)
+    {
+        super.add(value);
+
+        this.invalidate();
     }
 
-    /* Write only */
+    @Override
+    public void add(int index, Keyframe<T> value)
+    {
+        super.add(index, value);
+
+        this.invalidate();
+    }
 
     public void removeAll()
     {
         this.preNotify();
         this.list.clear();
+        this.invalidate();
         this.postNotify();
     }
 
@@ -273,11 +373,31 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
 
     public void sort()
     {
-        this.list.sort((a, b) -> (int) (a.getTick() - b.getTick()));
+        this.list.sort((a, b) -> Float.compare(a.getTick(), b.getTick()));
 
         this.sync();
     }
 
+    @Override
+    public void sync()
+    {
+        super.sync();
+
+        this.invalidate();
+    }
+
+    /**
+     * Invalidate any cached data derived from keyframes (gets called when
+     * keyframes were added, removed, reordered or their ticks or values
+     * were changed)
+     */
+    protected void invalidate()
+    {
+        this.sorted = -1;
+
+        modifications += 1;
+    }
+
     public void simplify()
     {
         if (this.list.size() <= 2)
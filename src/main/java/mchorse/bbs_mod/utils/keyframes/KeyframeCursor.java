@@ -0,0 +1,62 @@
+package mchorse.bbs_mod.utils.keyframes;
+
+/**
+ * Keyframe cursor
+ *
+ * This class remembers where the last lookup in a keyframe channel ended up.
+ * Since playback and rendering walk time mostly forward (or backward) in
+ * small steps, the next lookup can be resolved by stepping from the last
+ * position in amortized constant time, instead of binary searching the
+ * whole channel. Larger jumps (seeks) fall back to binary search.
+ */
+public class KeyframeCursor
+{
+    /**
+     * How many keyframes the cursor is allowed to step over before falling
+     * back to binary search
+     */
+    private static final int MAX_STEPS = 8;
+
+    private int index = -1;
+
+    /**
+     * Forget the last position, so the next lookup would binary search
+     */
+    public void reset()
+    {
+        this.index = -1;
+    }
+
+    /**
+     * Find index of the first keyframe in given channel whose tick is not
+     * less than given ticks (the same result as {@link KeyframeChannel#search(float)}).
+     */
+    public int find(KeyframeChannel<?> channel, float ticks)
+    {
+        int size = channel.getKeyframeCount();
+        int index = this.index;
+
+        if (index < 0 || index > size)
+        {
+            return this.index = channel.search(ticks);
+        }
+
+        for (int i = 0; i < MAX_STEPS; i++)
+        {
+            if (index < size && channel.getKeyframeTick(index) < ticks)
+            {
+                index += 1;
+            }
+            else if (index > 0 && channel.getKeyframeTick(index - 1) >= ticks)
+            {
+                index -= 1;
+            }
+            else
+            {
+                return this.index = index;
+            }
+        }
+
+        return this.index = channel.search(ticks);
+    }
+}
@@ -0,0 +1,152 @@
+package mchorse.bbs_mod.utils.keyframes;
+
+import mchorse.bbs_mod.utils.interps.Interpolations;
+import mchorse.bbs_mod.utils.keyframes.factories.KeyframeFactories;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keyframe reducer
+ *
+ * Streaming reducer of keyframes that are appended to channels one
+ * sample at a time (i.e. during recording). Instead of appending every
+ * sample, the last keyframe of the channel gets moved forward for as
+ * long as the samples that were skipped stay within channel's tolerance
+ * of the line between the two last keyframes (swinging door algorithm),
+ * so constant and linear runs end up as only two keyframes. Non-numeric
+ * values (like item stacks) are reduced only when they don't change.
+ *
+ * The reducer only touches keyframes that it has inserted itself, so
+ * when a sample is inserted before the end of the channel, or the
+ * channel was changed in between, the sample is inserted as is.
+ */
+public class KeyframeReducer
+{
+    private Map<String, State> states = new HashMap<>();
+    private Map<String, Double> tolerances = new HashMap<>();
+    private double tolerance;
+
+    public KeyframeReducer(double tolerance)
+    {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Set the maximum allowed deviation of skipped samples for channel
+     * with given ID (0 means only exactly collinear samples are skipped)
+     */
+    public KeyframeReducer setTolerance(String channel, double tolerance)
+    {
+        this.tolerances.put(channel, tolerance);
+
+        return this;
+    }
+
+    public double getTolerance(String channel)
+    {
+        Double tolerance = this.tolerances.get(channel);
+
+        return tolerance == null ? this.tolerance : tolerance;
+    }
+
+    public void reset()
+    {
+        this.states.clear();
+    }
+
+    public <T> void insert(KeyframeChannel<T> channel, float tick, T value)
+    {
+        State state = this.states.get(channel.getId());
+
+        if (!this.isValid(channel, state, tick))
+        {
+            state = new State();
+            state.anchor = channel.get(channel.insert(tick, value));
+
+            this.states.put(channel.getId(), state);
+
+            return;
+        }
+
+        if (state.pending == null)
+        {
+            state.pending = channel.get(channel.insert(tick, value));
+
+            return;
+        }
+
+        if (this.canSkip(channel, state, tick, value))
+        {
+            Keyframe<T> pending = (Keyframe<T>) state.pending;
+
+            pending.setTick(tick);
+            pending.setValue(value);
+        }
+        else
+        {
+            state.anchor = state.pending;
+            state.pending = channel.get(channel.insert(tick, value));
+            state.min = Double.NEGATIVE_INFINITY;
+            state.max = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Check whether the last keyframes of the channel are still the ones
+     * that were inserted by this reducer
+     */
+    private boolean isValid(KeyframeChannel<?> channel, State state, float tick)
+    {
+        int size = channel.getKeyframeCount();
+
+        if (state == null || size == 0 || tick <= channel.getKeyframeTick(size - 1))
+        {
+            return false;
+        }
+
+        if (state.pending == null)
+        {
+            return channel.get(size - 1) == state.anchor;
+        }
+
+        return size > 1 && channel.get(size - 1) == state.pending && channel.get(size - 2) == state.anchor;
+    }
+
+    /**
+     * Check whether current pending keyframe can be skipped, i.e. moved to
+     * given tick and value
+     */
+    private <T> boolean canSkip(KeyframeChannel<T> channel, State state, float tick, T value)
+    {
+        Keyframe<?> anchor = state.anchor;
+        Keyframe<?> pending = state.pending;
+
+        if (channel.getFactory() != KeyframeFactories.DOUBLE || anchor.getInterpolation().getInterp() != Interpolations.LINEAR)
+        {
+            return channel.getFactory().compare(pending.getValue(), anchor.getValue()) && channel.getFactory().compare(value, pending.getValue());
+        }
+
+        double tolerance = this.getTolerance(channel.getId());
+        double a = (Double) anchor.getValue();
+        double p = (Double) pending.getValue();
+        double dt = pending.getTick() - anchor.getTick();
+
+        /* Pending value would become a skipped sample, so the line from the
+         * anchor should pass within tolerance of it */
+        state.min = Math.max(state.min, (p - tolerance - a) / dt);
+        state.max = Math.min(state.max, (p + tolerance - a) / dt);
+
+        double slope = ((Double) value - a) / (tick - anchor.getTick());
+
+        return slope >= state.min && slope <= state.max;
+    }
+
+    private static class State
+    {
+        public Keyframe<?> anchor;
+        public Keyframe<?> pending;
+        public double min = Double.NEGATIVE_INFINITY;
+        public double max = Double.POSITIVE_INFINITY;
+    }
+}
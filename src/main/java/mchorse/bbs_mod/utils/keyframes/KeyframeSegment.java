@@ -57,6 +57,14 @@ public class KeyframeSegment <T>
         }
     }
 
+    public void fill(Keyframe<T> preA, Keyframe<T> a, Keyframe<T> b, Keyframe<T> postB)
+    {
+        this.preA = preA;
+        this.a = a;
+        this.b = b;
+        this.postB = postB;
+    }
+
     public void setup(float ticks)
     {
         float forcedDuration = this.a.getDuration();
@@ -11,37 +11,17 @@ import mchorse.bbs_mod.utils.keyframes.Keyframe;
 
 public class DoubleKeyframeFactory implements IKeyframeFactory<Double>
 {
-    @Override
-    public Double fromData(BaseType data)
-    {
-        return data.isNumeric() ? data.asNumeric().doubleValue() : 0D;
-    }
-
-    @Override
-    public BaseType toData(Double value)
-    {
-        return new DoubleType(value);
-    }
-
-    @Override
-    public Double createEmpty()
-    {
-        return 0D;
-    }
-
-    @Override
-    public Double copy(Double value)
-    {
-        return value;
-    }
-
-    @Override
-    public Double interpolate(Keyframe<Double> preA, Keyframe<Double> a, Keyframe<Double> b, Keyframe<Double> postB, IInterp interpolation, float x)
+    /**
+     * Interpolate primitive values between given keyframes. Values are
+     * passed separately from keyframes, so that they can be supplied from
+     * unboxed sources (like double keyframe channel's value cache).
+     */
+    public static double interpolate(Keyframe<?> preA, Keyframe<?> a, Keyframe<?> b, Keyframe<?> postB, double preAValue, double aValue, double bValue, double postBValue, IInterp interpolation, float x)
     {
         if (interpolation.has(Interpolations.BEZIER))
         {
             return BezierUtils.get(
-                a.getValue(), b.getValue(),
+                aValue, bValue,
                 a.getTick(), b.getTick(),
                 a.rx, a.ry,
                 b.lx, b.ly,
@@ -49,7 +29,7 @@ public class DoubleKeyframeFactory implements IKeyframeFactory<Double>
             );
         }
 
-        InterpContext ctx = IInterp.context.set(preA.getValue(), a.getValue(), b.getValue(), postB.getValue(), x)
+        InterpContext ctx = IInterp.context.set(preAValue, aValue, bValue, postBValue, x)
             .setBoundary(preA == a, postB == b)
             .extra(a.getInterpolation().getArgs());
 
@@ -68,13 +48,43 @@ public class DoubleKeyframeFactory implements IKeyframeFactory<Double>
         return interpolation.interpolate(ctx);
     }
     
-    private double getWeight(Keyframe<?> kf)
+    private static double getWeight(Keyframe<?> kf)
     {
         if (kf == null) return 1.0;
         double w = kf.getInterpolation().getArgs().v1;
         return w == 0 ? 1.0 : w;
     }
 
+    @Override
+    public Double fromData(BaseType data)
+    {
+        return data.isNumeric() ? data.asNumeric().doubleValue() : 0D;
+    }
+
+    @Override
+    public BaseType toData(Double value)
+    {
+        return new DoubleType(value);
+    }
+
+    @Override
+    public Double createEmpty()
+    {
+        return 0D;
+    }
+
+    @Override
+    public Double copy(Double value)
+    {
+        return value;
+    }
+
+    @Override
+    public Double interpolate(Keyframe<Double> preA, Keyframe<Double> a, Keyframe<Double> b, Keyframe<Double> postB, IInterp interpolation, float x)
+    {
+        return interpolate(preA, a, b, postB, preA.getValue(), a.getValue(), b.getValue(), postB.getValue(), interpolation, x);
+    }
+
     @Override
     public Double interpolate(Double preA, Double a, Double b, Double postB, IInterp interpolation, float x)
     {
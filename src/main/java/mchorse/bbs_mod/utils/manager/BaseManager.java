@@ -8,10 +8,16 @@ import mchorse.bbs_mod.utils.manager.storage.IDataStorage;
 import mchorse.bbs_mod.utils.manager.storage.JSONLikeStorage;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
 /**
@@ -22,6 +28,9 @@ public abstract class BaseManager <T extends ValueGroup> extends FolderManager<T
 {
     protected IDataStorage storage = new JSONLikeStorage();
     protected boolean backUps;
+    protected boolean asyncSaves;
+
+    private final List<BiConsumer<String, MapType>> writeListeners = new CopyOnWriteArrayList<>();
 
     public BaseManager(Supplier<File> folder)
     {
@@ -42,6 +51,24 @@ public abstract class BaseManager <T extends ValueGroup> extends FolderManager<T
 
     @Override
     public T load(String id)
+    {
+        if (this.asyncSaves)
+        {
+            MapType pending = ManagerSaver.get().getPending(this, id);
+
+            if (pending != null)
+            {
+                return this.create(id, pending);
+            }
+        }
+
+        return this.read(id);
+    }
+
+    /**
+     * Read data with given ID from the disk
+     */
+    protected T read(String id)
     {
         try
         {
@@ -58,8 +85,68 @@ public abstract class BaseManager <T extends ValueGroup> extends FolderManager<T
         return null;
     }
 
+    /**
+     * Add a listener that gets called with ID and data once the data was
+     * written to the disk (with asynchronous saving, it's called on the
+     * saver's thread)
+     */
+    public void addWriteListener(BiConsumer<String, MapType> listener)
+    {
+        this.writeListeners.add(listener);
+    }
+
+    /**
+     * Get data with given ID that was saved, but isn't written to the disk
+     * yet, or null if there is none
+     */
+    public MapType getPending(String id)
+    {
+        return this.asyncSaves ? ManagerSaver.get().getPending(this, id) : null;
+    }
+
+    /**
+     * Save given data. If asynchronous saving is enabled, the data only gets
+     * queued to be written on a background thread (see {@link ManagerSaver}).
+     */
     @Override
     public boolean save(String id, MapType data)
+    {
+        if (this.asyncSaves)
+        {
+            ManagerSaver.get().save(this, id, data);
+
+            return true;
+        }
+
+        return this.write(id, data);
+    }
+
+    /**
+     * Write given data to the disk right away. The data is written to a
+     * temporary file first, which then replaces the existing file, so the
+     * file is never left half written.
+     */
+    public boolean write(String id, MapType data)
+    {
+        try
+        {
+            this.writeFile(id, data);
+
+            return true;
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    /**
+     * Same as {@link #write(String, MapType)}, but the exception is thrown
+     * instead of being printed, so the caller could report it
+     */
+    void writeFile(String id, MapType data) throws Exception
     {
         File file = this.getFile(id);
 
@@ -86,7 +173,7 @@ public abstract class BaseManager <T extends ValueGroup> extends FolderManager<T
 
                 if (file.exists())
                 {
-                    Files.copy(file.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    this.backUp(file, backupFile);
                 }
             }
         }
@@ -95,17 +182,119 @@ public abstract class BaseManager <T extends ValueGroup> extends FolderManager<T
             e.printStackTrace();
         }
 
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+
         try
         {
-            this.storage.save(file, data);
+            file.getParentFile().mkdirs();
 
-            return true;
+            this.storage.save(file, temp, data);
+
+            try
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            for (BiConsumer<String, MapType> listener : this.writeListeners)
+            {
+                listener.accept(id, data);
+            }
         }
         catch (Exception e)
         {
-            e.printStackTrace();
+            temp.delete();
+
+            throw e;
         }
+    }
 
-        return false;
+    /**
+     * Back up given file. Since files are never written in place (see
+     * {@link #write(String, MapType)}), a hard link to the current file is
+     * enough, and the file gets copied only if hard links aren't supported.
+     */
+    private void backUp(File file, File backupFile) throws IOException
+    {
+        Files.deleteIfExists(backupFile.toPath());
+
+        try
+        {
+            Files.createLink(backupFile.toPath(), file.toPath());
+        }
+        catch (IOException | UnsupportedOperationException | SecurityException e)
+        {
+            Files.copy(file.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Write all of this manager's data that is waiting to be written.
+     * Returns false if some of the data couldn't be written
+     */
+    public boolean flush()
+    {
+        boolean flushed = true;
+
+        if (this.asyncSaves)
+        {
+            for (String id : ManagerSaver.get().getPendingIds(this))
+            {
+                flushed = ManagerSaver.get().flush(this, id) && flushed;
+            }
+        }
+
+        return flushed;
+    }
+
+    @Override
+    public boolean exists(String name)
+    {
+        return (this.asyncSaves && ManagerSaver.get().getPending(this, name) != null) || super.exists(name);
+    }
+
+    @Override
+    public boolean rename(String from, String to)
+    {
+        if (this.asyncSaves)
+        {
+            if (!ManagerSaver.get().flush(this, from) || !ManagerSaver.get().flush(this, to))
+            {
+                return false;
+            }
+
+            /* Make sure that nothing gets written under the old ID once
+             * it's renamed */
+            ManagerSaver.get().cancel(this, from);
+        }
+
+        return super.rename(from, to);
+    }
+
+    @Override
+    public boolean delete(String name)
+    {
+        if (this.asyncSaves)
+        {
+            ManagerSaver.get().cancel(this, name);
+        }
+
+        return super.delete(name);
+    }
+
+    @Override
+    public Collection<String> getKeys()
+    {
+        Collection<String> keys = super.getKeys();
+
+        if (this.asyncSaves)
+        {
+            keys.addAll(ManagerSaver.get().getPendingIds(this));
+        }
+
+        return keys;
     }
 }
\ No newline at end of file
@@ -0,0 +1,351 @@
+package mchorse.bbs_mod.utils.manager;
+
+import mchorse.bbs_mod.data.types.MapType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manager saver
+ *
+ * Background persistence service for {@link BaseManager}s. Saves are
+ * queued per manager and ID, and written on a single background thread
+ * after a short delay. If the same data gets saved again before it was
+ * written, the previous (not yet written) save gets replaced, so rapid
+ * successive saves result in only one write.
+ *
+ * If a write fails, the data stays queued, and the write gets retried
+ * with increasing delay, so the data is never silently lost.
+ *
+ * {@link #flush()} should be called before the game or server stops to
+ * make sure that everything is written (the data that couldn't be written
+ * gets logged along with the reason).
+ */
+public class ManagerSaver
+{
+    /**
+     * How long to wait for more saves of the same data before writing it
+     */
+    public static final long DELAY = 1000;
+
+    /**
+     * Maximum time the data can wait in the queue, in case it keeps
+     * getting saved over and over
+     */
+    public static final long MAX_DELAY = 5000;
+
+    /**
+     * Maximum delay between retries of a failed write
+     */
+    public static final long MAX_RETRY_DELAY = 60000;
+
+    private static ManagerSaver instance;
+
+    private final ScheduledExecutorService executor;
+    private final Map<Key, Entry> pending = new HashMap<>();
+
+    public static synchronized ManagerSaver get()
+    {
+        if (instance == null)
+        {
+            instance = new ManagerSaver();
+        }
+
+        return instance;
+    }
+
+    public ManagerSaver()
+    {
+        this.executor = Executors.newSingleThreadScheduledExecutor((runnable) ->
+        {
+            Thread thread = new Thread(runnable, "BBS manager saver");
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Queue given data to be saved by given manager
+     */
+    public synchronized void save(BaseManager<?> manager, String id, MapType data)
+    {
+        Key key = new Key(manager, id);
+        Entry entry = this.pending.get(key);
+        long now = System.currentTimeMillis();
+
+        if (entry == null)
+        {
+            entry = new Entry(key, now);
+
+            this.pending.put(key, entry);
+        }
+        else if (entry.future != null)
+        {
+            entry.future.cancel(false);
+        }
+
+        entry.data = data;
+
+        long delay = Math.min(DELAY, Math.max(entry.created + MAX_DELAY - now, 0));
+
+        this.schedule(entry, delay);
+    }
+
+    /**
+     * Get data that is waiting to be written by given manager, or null
+     * if there is none
+     */
+    public synchronized MapType getPending(BaseManager<?> manager, String id)
+    {
+        Entry entry = this.pending.get(new Key(manager, id));
+
+        return entry == null ? null : entry.data;
+    }
+
+    /**
+     * Get IDs of data that is waiting to be written by given manager
+     */
+    public synchronized List<String> getPendingIds(BaseManager<?> manager)
+    {
+        List<String> ids = new ArrayList<>();
+
+        for (Key key : this.pending.keySet())
+        {
+            if (key.manager == manager)
+            {
+                ids.add(key.id);
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Drop data that is waiting to be written by given manager (e.g.
+     * when it gets deleted). If the data is being written right now, it
+     * waits until the write is done, so the file wouldn't reappear after
+     * the caller removes it.
+     */
+    public synchronized void cancel(BaseManager<?> manager, String id)
+    {
+        Entry entry = this.pending.remove(new Key(manager, id));
+
+        if (entry == null)
+        {
+            return;
+        }
+
+        if (entry.future != null)
+        {
+            entry.future.cancel(false);
+        }
+
+        while (entry.writing)
+        {
+            try
+            {
+                this.wait();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+
+                break;
+            }
+        }
+    }
+
+    /**
+     * Write given manager's pending data right away, and wait until it's
+     * written. Returns false if the data couldn't be written (it stays
+     * queued in that case).
+     */
+    public boolean flush(BaseManager<?> manager, String id)
+    {
+        Key key = new Key(manager, id);
+
+        synchronized (this)
+        {
+            Entry entry = this.pending.get(key);
+
+            if (entry == null)
+            {
+                return true;
+            }
+
+            this.reschedule(entry);
+        }
+
+        this.waitForQueue();
+
+        synchronized (this)
+        {
+            return !this.pending.containsKey(key);
+        }
+    }
+
+    /**
+     * Write all pending data right away, and wait until it's written.
+     * Returns false (and logs what and why) if some of the data couldn't
+     * be written
+     */
+    public boolean flush()
+    {
+        synchronized (this)
+        {
+            for (Entry entry : this.pending.values())
+            {
+                this.reschedule(entry);
+            }
+        }
+
+        this.waitForQueue();
+
+        synchronized (this)
+        {
+            for (Entry entry : this.pending.values())
+            {
+                System.err.println("Couldn't save \"" + entry.key.getPath() + "\"!");
+
+                if (entry.error != null)
+                {
+                    entry.error.printStackTrace();
+                }
+            }
+
+            return this.pending.isEmpty();
+        }
+    }
+
+    private void reschedule(Entry entry)
+    {
+        /* If it's being written right now, the data could've been changed
+         * after the write started, so it's written once again after that
+         * (the write is skipped if there is nothing left to write) */
+        if (entry.future != null)
+        {
+            entry.future.cancel(false);
+        }
+
+        this.schedule(entry, 0);
+    }
+
+    private void schedule(Entry entry, long delay)
+    {
+        entry.future = this.executor.schedule(() -> this.write(entry), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void waitForQueue()
+    {
+        try
+        {
+            /* Writes are done on a single thread in order, so once this
+             * task is done, everything that was queued before is written */
+            this.executor.submit(() -> {}).get();
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    private void write(Entry entry)
+    {
+        MapType data;
+
+        synchronized (this)
+        {
+            if (this.pending.get(entry.key) != entry)
+            {
+                return;
+            }
+
+            data = entry.data;
+            entry.writing = true;
+        }
+
+        Exception error = null;
+
+        try
+        {
+            entry.key.manager.writeFile(entry.key.id, data);
+        }
+        catch (Exception e)
+        {
+            error = e;
+        }
+
+        synchronized (this)
+        {
+            entry.writing = false;
+            this.notifyAll();
+
+            if (this.pending.get(entry.key) != entry)
+            {
+                /* It was cancelled while being written */
+                return;
+            }
+
+            if (error != null)
+            {
+                entry.failures += 1;
+                entry.error = error;
+
+                /* If it was saved again while being written, the new data
+                 * is already scheduled to be written */
+                if (entry.data == data)
+                {
+                    long delay = Math.min(DELAY << Math.min(entry.failures, 6), MAX_RETRY_DELAY);
+
+                    System.err.println("Failed to save \"" + entry.key.getPath() + "\", retrying in " + delay + " ms!");
+                    error.printStackTrace();
+                    this.schedule(entry, delay);
+                }
+            }
+            else if (entry.data == data)
+            {
+                this.pending.remove(entry.key);
+            }
+            else
+            {
+                /* Keep the entry, if it was saved again while being written */
+                entry.failures = 0;
+                entry.error = null;
+                entry.created = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private record Key(BaseManager<?> manager, String id)
+    {
+        public String getPath()
+        {
+            return this.manager.getFile(this.id).getPath();
+        }
+    }
+
+    private static class Entry
+    {
+        public final Key key;
+        public long created;
+        public MapType data;
+        public ScheduledFuture<?> future;
+        public boolean writing;
+        public int failures;
+        public Exception error;
+
+        public Entry(Key key, long created)
+        {
+            this.key = key;
+            this.created = created;
+        }
+    }
+}
@@ -10,4 +10,13 @@ public interface IDataStorage
     public MapType load(File file) throws IOException;
 
     public void save(File file, MapType data) throws IOException;
+
+    /**
+     * Save data into a temporary file, which will replace given file once
+     * it's written
+     */
+    public default void save(File file, File temp, MapType data) throws IOException
+    {
+        this.save(temp, data);
+    }
 }
\ No newline at end of file
@@ -157,4 +157,26 @@ public class CompoundUndo <T> implements IUndo<T>
             undo.redo(context);
         }
     }
+
+    @Override
+    public void compact()
+    {
+        for (IUndo<T> undo : this.undos)
+        {
+            undo.compact();
+        }
+    }
+
+    @Override
+    public long getSize()
+    {
+        long size = 0;
+
+        for (IUndo<T> undo : this.undos)
+        {
+            size += undo.getSize();
+        }
+
+        return size;
+    }
 }
\ No newline at end of file
@@ -33,4 +33,20 @@ public interface IUndo <T>
      * Redo changes made to given context
      */
     public void redo(T context);
+
+    /**
+     * Release data that is needed only while this undo can be merged with
+     * next undos (it's called once another undo is pushed after this one)
+     */
+    public default void compact()
+    {}
+
+    /**
+     * Approximate amount of memory (in bytes) taken by this undo, used to
+     * limit the undo history by memory (0 means unknown)
+     */
+    public default long getSize()
+    {
+        return 0;
+    }
 }
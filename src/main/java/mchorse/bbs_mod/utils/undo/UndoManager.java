@@ -1,6 +1,6 @@
 package mchorse.bbs_mod.utils.undo;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -11,10 +11,11 @@ import java.util.List;
  */
 public class UndoManager<T>
 {
-    private List<IUndo<T>> undos = new LinkedList<>();
+    private List<IUndo<T>> undos = new ArrayList<>();
     private int position = -1;
 
     private int limit = 20;
+    private long memoryBudget;
     private IUndoListener<T> callback;
     private boolean simpleMerge;
 
@@ -44,6 +45,17 @@ public class UndoManager<T>
         return this;
     }
 
+    /**
+     * Limit the history by approximate amount of memory taken by undos
+     * (see {@link IUndo#getSize()}), besides the limit by their count
+     */
+    public UndoManager<T> memoryBudget(long bytes)
+    {
+        this.memoryBudget = bytes;
+
+        return this;
+    }
+
     public IUndoListener<T> getCallback()
     {
         return this.callback;
@@ -119,6 +131,11 @@ public class UndoManager<T>
         }
         else
         {
+            if (present != null)
+            {
+                present.compact();
+            }
+
             if (this.position + 1 >= this.limit)
             {
                 this.undos.remove(0);
@@ -133,9 +150,36 @@ public class UndoManager<T>
             this.undos.add(undo);
         }
 
+        this.trimToBudget();
+
         return present;
     }
 
+    /**
+     * Remove oldest undos until the history fits into the memory budget
+     * (the last undo is always kept)
+     */
+    private void trimToBudget()
+    {
+        if (this.memoryBudget <= 0)
+        {
+            return;
+        }
+
+        long size = 0;
+
+        for (IUndo<T> undo : this.undos)
+        {
+            size += undo.getSize();
+        }
+
+        while (size > this.memoryBudget && this.position > 0)
+        {
+            size -= this.undos.remove(0).getSize();
+            this.position -= 1;
+        }
+    }
+
     private boolean checkMergeability(IUndo<T> present, IUndo<T> undo)
     {
         if (this.simpleMerge)
@@ -3,21 +3,22 @@ package mchorse.bbs_mod.vox;
 import mchorse.bbs_mod.cubic.data.model.ModelMesh;
 import mchorse.bbs_mod.vox.data.Vox;
 import org.joml.Matrix3f;
-import org.joml.Vector2f;
 import org.joml.Vector3f;
 
+import java.util.Arrays;
+
 public class VoxBuilder
 {
     public Vector3f translation;
     public Matrix3f transform;
     public Vector3f vector = new Vector3f();
 
-    private Vector3f right;
-    private Vector3f left;
-    private Vector3f front;
-    private Vector3f back;
-    private Vector3f bottom;
-    private Vector3f top;
+    protected Vector3f right;
+    protected Vector3f left;
+    protected Vector3f front;
+    protected Vector3f back;
+    protected Vector3f bottom;
+    protected Vector3f top;
 
     public VoxBuilder(Vector3f translation, Matrix3f transform)
     {
@@ -46,7 +47,7 @@ public class VoxBuilder
     public ModelMesh build(Vox vox)
     {
         /* Worst case scenario */
-        ModelMesh mesh = new ModelMesh();
+        MeshBuffer mesh = new MeshBuffer();
 
         for (int x = 0; x < vox.w; x++)
         {
@@ -64,10 +65,10 @@ public class VoxBuilder
             }
         }
 
-        return mesh;
+        return mesh.toMesh();
     }
 
-    private void buildVertex(ModelMesh mesh, int x, int y, int z, int voxel, Vox vox)
+    private void buildVertex(MeshBuffer mesh, int x, int y, int z, int voxel, Vox vox)
     {
         boolean top = vox.has(x, y + 1, z);
         boolean bottom = vox.has(x, y - 1, z);
@@ -149,29 +150,105 @@ public class VoxBuilder
         }
     }
 
-    private void add(ModelMesh mesh, Vox vox, int x, int y, int z, int voxel, float offsetU, float offsetV, Vector3f normal)
+    private void add(MeshBuffer mesh, Vox vox, int x, int y, int z, int voxel, float offsetU, float offsetV, Vector3f normal)
     {
         float u = voxel + 0.5F + offsetU;
         float v = 0.5F + offsetV;
 
-        Vector3f vertex = this.process(x, y, z, vox);
-
-        mesh.baseData.vertices.add(new Vector3f(vertex));
-        mesh.baseData.normals.add(normal);
-        mesh.baseData.uvs.add(new Vector2f(u, v));
+        mesh.add(this.process(x, y, z, vox, this.vector), normal, u, v);
     }
 
-    private Vector3f process(int x, int y, int z, Vox vox)
+    protected Vector3f process(int x, int y, int z, Vox vox, Vector3f vector)
     {
         int w = (int) (vox.w / 2F);
         int h = (int) (vox.h / 2F);
         int d = (int) (vox.d / 2F);
 
-        this.vector.set(x - w, z - h, y - d);
-        this.transform.transform(this.vector);
-        this.vector.set(this.vector.x, this.vector.z, this.vector.y);
-        this.vector.add(this.translation.x, this.translation.z, this.translation.y);
+        vector.set(x - w, z - h, y - d);
+        this.transform.transform(vector);
+        vector.set(vector.x, vector.z, vector.y);
+        vector.add(this.translation.x, this.translation.z, this.translation.y);
+
+        return vector;
+    }
+
+    /**
+     * Growable mesh data, which gets written straight into primitive
+     * arrays (instead of a vector object per vertex)
+     */
+    public static class MeshBuffer
+    {
+        public float[] vertices;
+        public float[] normals;
+        public float[] uvs;
+        public int count;
+
+        public MeshBuffer()
+        {
+            this(6 * 64);
+        }
+
+        public MeshBuffer(int capacity)
+        {
+            capacity = Math.max(capacity, 6);
+
+            this.vertices = new float[capacity * 3];
+            this.normals = new float[capacity * 3];
+            this.uvs = new float[capacity * 2];
+        }
+
+        private void ensureCapacity(int count)
+        {
+            if (count * 3 > this.vertices.length)
+            {
+                int capacity = Math.max(count, this.vertices.length / 3 * 2);
+
+                this.vertices = Arrays.copyOf(this.vertices, capacity * 3);
+                this.normals = Arrays.copyOf(this.normals, capacity * 3);
+                this.uvs = Arrays.copyOf(this.uvs, capacity * 2);
+            }
+        }
+
+        public void add(Vector3f vertex, Vector3f normal, float u, float v)
+        {
+            this.ensureCapacity(this.count + 1);
+
+            int i = this.count;
 
-        return this.vector;
+            this.vertices[i * 3] = vertex.x;
+            this.vertices[i * 3 + 1] = vertex.y;
+            this.vertices[i * 3 + 2] = vertex.z;
+            this.normals[i * 3] = normal.x;
+            this.normals[i * 3 + 1] = normal.y;
+            this.normals[i * 3 + 2] = normal.z;
+            this.uvs[i * 2] = u;
+            this.uvs[i * 2 + 1] = v;
+
+            this.count += 1;
+        }
+
+        public void add(MeshBuffer buffer)
+        {
+            this.ensureCapacity(this.count + buffer.count);
+
+            System.arraycopy(buffer.vertices, 0, this.vertices, this.count * 3, buffer.count * 3);
+            System.arraycopy(buffer.normals, 0, this.normals, this.count * 3, buffer.count * 3);
+            System.arraycopy(buffer.uvs, 0, this.uvs, this.count * 2, buffer.count * 2);
+
+            this.count += buffer.count;
+        }
+
+        public ModelMesh toMesh()
+        {
+            ModelMesh mesh = new ModelMesh();
+
+            mesh.baseData.set(
+                Arrays.copyOf(this.vertices, this.count * 3),
+                Arrays.copyOf(this.normals, this.count * 3),
+                Arrays.copyOf(this.uvs, this.count * 2)
+            );
+
+            return mesh;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,218 @@
+package mchorse.bbs_mod.vox;
+
+import mchorse.bbs_mod.cubic.data.model.ModelMesh;
+import mchorse.bbs_mod.vox.data.Vox;
+import org.joml.Matrix3f;
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Greedy vox builder
+ *
+ * Builds the same mesh as {@link VoxBuilder}, except that coplanar faces
+ * of the same color get merged into larger quads (greedy meshing), which
+ * results in a lot less vertices for large models. Faces are meshed
+ * slice by slice, and groups of slices are meshed in parallel.
+ */
+public class VoxGreedyBuilder extends VoxBuilder
+{
+    /**
+     * Amount of slices meshed by a single task
+     */
+    public static final int SLICES = 16;
+
+    /**
+     * Axis (0 = X, 1 = Y, 2 = Z) along which top, bottom, left, right,
+     * front and back faces are facing, and whether they're facing the
+     * positive direction
+     */
+    private static final int[] AXES = {1, 1, 0, 0, 2, 2};
+    private static final boolean[] POSITIVE = {true, false, true, false, true, false};
+
+    /**
+     * Vertices of top, bottom, left, right, front and back faces (in the
+     * same order as in {@link VoxBuilder}): X, Y and Z offsets within the
+     * face, and signs of U and V offsets
+     */
+    private static final int[][] FACES = {
+        {0, 1, 1, -1, 1, 1, 1, 0, 1, -1, 0, 1, 0, -1, -1, 1, 1, 1, 1, 1, 1, 1, 0, 1, -1, 0, 1, 1, -1, 1},
+        {1, 0, 0, 1, -1, 0, 0, 1, -1, 1, 0, 0, 0, -1, -1, 1, 0, 0, 1, -1, 1, 0, 1, 1, 1, 0, 0, 1, -1, 1},
+        {1, 1, 0, 1, -1, 1, 0, 1, -1, 1, 1, 0, 0, -1, -1, 1, 1, 1, 1, 1, 1, 0, 1, -1, 1, 1, 1, 0, 1, -1},
+        {0, 0, 1, -1, 1, 0, 1, 0, 1, -1, 0, 0, 0, -1, -1, 0, 0, 1, -1, 1, 0, 1, 1, 1, 1, 0, 1, 0, 1, -1},
+        {1, 0, 1, 1, -1, 0, 1, 1, -1, 1, 0, 0, 1, -1, -1, 1, 0, 1, 1, -1, 1, 1, 1, 1, 1, 0, 1, 1, -1, 1},
+        {0, 1, 0, -1, 1, 1, 0, 0, 1, -1, 0, 0, 0, -1, -1, 1, 1, 0, 1, 1, 1, 0, 0, 1, -1, 0, 1, 0, -1, 1}
+    };
+
+    public VoxGreedyBuilder(Vector3f translation, Matrix3f transform)
+    {
+        super(translation, transform);
+    }
+
+    @Override
+    public ModelMesh build(Vox vox)
+    {
+        int[] size = {vox.w, vox.h, vox.d};
+        List<int[]> tasks = new ArrayList<>();
+
+        for (int face = 0; face < 6; face++)
+        {
+            for (int slice = 0, c = size[AXES[face]]; slice < c; slice += SLICES)
+            {
+                tasks.add(new int[] {face, slice, Math.min(slice + SLICES, c)});
+            }
+        }
+
+        MeshBuffer[] buffers = new MeshBuffer[tasks.size()];
+
+        IntStream.range(0, buffers.length).parallel().forEach((i) ->
+        {
+            int[] task = tasks.get(i);
+
+            buffers[i] = this.buildSlices(vox, task[0], task[1], task[2]);
+        });
+
+        int count = 0;
+
+        for (MeshBuffer buffer : buffers)
+        {
+            count += buffer.count;
+        }
+
+        /* Buffers are joined in the same order regardless of the order
+         * in which they were built, so the result is always the same */
+        MeshBuffer mesh = new MeshBuffer(count);
+
+        for (MeshBuffer buffer : buffers)
+        {
+            mesh.add(buffer);
+        }
+
+        return mesh.toMesh();
+    }
+
+    private MeshBuffer buildSlices(Vox vox, int face, int from, int to)
+    {
+        int axis = AXES[face];
+        int a = axis == 0 ? 1 : 0;
+        int b = axis == 2 ? 1 : 2;
+        int[] size = {vox.w, vox.h, vox.d};
+        int[] stride = {1, vox.w, vox.w * vox.h};
+        int[] position = new int[3];
+        int sizeA = size[a];
+        int sizeB = size[b];
+        int strideA = stride[a];
+        int strideB = stride[b];
+        int[] mask = new int[sizeA * sizeB];
+        MeshBuffer buffer = new MeshBuffer();
+        Vector3f vector = new Vector3f();
+        Vector3f normal = this.getNormal(face);
+
+        for (int slice = from; slice < to; slice++)
+        {
+            int next = slice + (POSITIVE[face] ? 1 : -1);
+            boolean hasNext = next >= 0 && next < size[axis];
+            int offset = (next - slice) * stride[axis];
+
+            /* Colors of faces that aren't covered by neighbor voxels */
+            for (int j = 0; j < sizeB; j++)
+            {
+                int index = slice * stride[axis] + j * strideB;
+
+                for (int i = 0; i < sizeA; i++, index += strideA)
+                {
+                    int voxel = vox.voxels[index];
+
+                    if (voxel != 0 && hasNext && vox.voxels[index + offset] != 0)
+                    {
+                        voxel = 0;
+                    }
+
+                    mask[i + j * sizeA] = voxel;
+                }
+            }
+
+            /* Merge faces into rectangles */
+            for (int j = 0; j < sizeB; j++)
+            {
+                for (int i = 0; i < sizeA; )
+                {
+                    int voxel = mask[i + j * sizeA];
+
+                    if (voxel == 0)
+                    {
+                        i += 1;
+
+                        continue;
+                    }
+
+                    int w = 1;
+                    int h = 1;
+
+                    while (i + w < sizeA && mask[i + w + j * sizeA] == voxel)
+                    {
+                        w += 1;
+                    }
+
+                    expand:
+                    while (j + h < sizeB)
+                    {
+                        for (int k = 0; k < w; k++)
+                        {
+                            if (mask[i + k + (j + h) * sizeA] != voxel)
+                            {
+                                break expand;
+                            }
+                        }
+
+                        h += 1;
+                    }
+
+                    for (int y = 0; y < h; y++)
+                    {
+                        for (int x = 0; x < w; x++)
+                        {
+                            mask[i + x + (j + y) * sizeA] = 0;
+                        }
+                    }
+
+                    int[] vertices = FACES[face];
+                    int[] extent = {1, 1, 1};
+
+                    extent[a] = w;
+                    extent[b] = h;
+
+                    for (int v = 0; v < 30; v += 5)
+                    {
+                        position[axis] = slice;
+                        position[a] = i;
+                        position[b] = j;
+
+                        int x = position[0] + vertices[v] * extent[0];
+                        int y = position[1] + vertices[v + 1] * extent[1];
+                        int z = position[2] + vertices[v + 2] * extent[2];
+
+                        buffer.add(this.process(x, y, z, vox, vector), normal, voxel + 0.5F + vertices[v + 3] * 0.5F, 0.5F + vertices[v + 4] * 0.5F);
+                    }
+
+                    i += w;
+                }
+            }
+        }
+
+        return buffer;
+    }
+
+    private Vector3f getNormal(int face)
+    {
+        if (face == 0) return this.top;
+        if (face == 1) return this.bottom;
+        if (face == 2) return this.left;
+        if (face == 3) return this.right;
+        if (face == 4) return this.front;
+
+        return this.back;
+    }
+}
@@ -0,0 +1,211 @@
+package mchorse.bbs_mod.data;
+
+import mchorse.bbs_mod.data.storage.DataBufferCodec;
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.DoubleType;
+import mchorse.bbs_mod.data.types.IntType;
+import mchorse.bbs_mod.data.types.ListType;
+import mchorse.bbs_mod.data.types.MapType;
+import mchorse.bbs_mod.data.types.StringType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DataDeltaTest
+{
+    @Test
+    public void testEqualDataHasNoDelta()
+    {
+        MapType data = this.createFilm(5);
+
+        assertNull(DataDelta.diff(data, data.copy()));
+        assertNull(DataDelta.diff(null, null));
+    }
+
+    @Test
+    public void testMapChangeAddRemove()
+    {
+        MapType from = this.createFilm(5);
+        MapType to = (MapType) from.copy();
+
+        to.putString("title", "Changed");
+        to.putInt("added", 42);
+        to.remove("duration");
+        to.getMap("camera").putDouble("fov", 70D);
+
+        DataDelta delta = this.assertRoundTrip(from, to);
+        DataDelta.MapDelta map = assertInstanceOf(DataDelta.MapDelta.class, delta);
+
+        assertEquals(3, map.getChanged().size());
+        assertTrue(map.getChanged().containsKey("camera"));
+        assertEquals(1, map.getRemoved().size());
+        assertEquals("duration", map.getRemoved().get(0));
+    }
+
+    @Test
+    public void testListInsert()
+    {
+        MapType from = this.createFilm(10);
+        MapType to = (MapType) from.copy();
+
+        to.getList("replays").add(3, this.createReplay(100));
+        to.getList("replays").add(this.createReplay(101));
+
+        this.assertRoundTrip(from, to);
+    }
+
+    @Test
+    public void testListRemove()
+    {
+        MapType from = this.createFilm(10);
+        MapType to = (MapType) from.copy();
+
+        to.getList("replays").remove(7);
+        to.getList("replays").remove(0);
+
+        this.assertRoundTrip(from, to);
+    }
+
+    @Test
+    public void testListChangeKeepsOnlyChangedElements()
+    {
+        MapType from = this.createFilm(50);
+        MapType to = (MapType) from.copy();
+
+        to.getList("replays").get(20).asMap().putString("label", "Changed");
+
+        DataDelta delta = this.assertRoundTrip(from, to);
+
+        /* Only one replay changed, so the delta should be a lot smaller than
+         * the whole list */
+        assertTrue(DataBufferCodec.getSize(delta.toData()) < DataBufferCodec.getSize(to) / 10);
+    }
+
+    @Test
+    public void testReplace()
+    {
+        MapType from = this.createFilm(3);
+        MapType to = (MapType) from.copy();
+
+        to.put("duration", new StringType("not a number"));
+        to.put("replays", new MapType());
+
+        this.assertRoundTrip(from, to);
+
+        DataDelta delta = DataDelta.diff(new IntType(1), new ListType());
+
+        assertInstanceOf(DataDelta.Replace.class, delta);
+        assertEquals(new ListType(), delta.apply(new IntType(1)));
+        assertEquals(new ListType(), this.serialize(delta).apply(new IntType(1)));
+    }
+
+    @Test
+    public void testRandomEdits()
+    {
+        Random random = new Random(1337);
+
+        for (int i = 0; i < 200; i++)
+        {
+            MapType from = this.createFilm(random.nextInt(20));
+            MapType to = (MapType) from.copy();
+            ListType replays = to.getList("replays");
+
+            for (int j = 0, c = random.nextInt(5); j < c; j++)
+            {
+                int action = random.nextInt(3);
+
+                if (action == 0 || replays.isEmpty())
+                {
+                    replays.add(random.nextInt(replays.size() + 1), this.createReplay(random.nextInt(1000)));
+                }
+                else if (action == 1)
+                {
+                    replays.remove(random.nextInt(replays.size()));
+                }
+                else
+                {
+                    replays.get(random.nextInt(replays.size())).asMap().getMap("keyframes").putDouble("x", random.nextDouble());
+                }
+            }
+
+            if (!from.equals(to))
+            {
+                this.assertRoundTrip(from, to);
+            }
+        }
+    }
+
+    /**
+     * Check that the delta turns the first data into the second one, both
+     * as is and after it was serialized, and that it doesn't modify the
+     * data it was diffed from
+     */
+    private DataDelta assertRoundTrip(MapType from, MapType to)
+    {
+        MapType original = (MapType) from.copy();
+        DataDelta delta = DataDelta.diff(from, to);
+
+        assertNotEquals(null, delta);
+        assertEquals(original, from);
+        assertEquals(to, delta.apply(from.copy()));
+        assertEquals(to, this.serialize(delta).apply(from.copy()));
+        assertTrue(delta.getSize() > 0);
+
+        return delta;
+    }
+
+    private DataDelta serialize(DataDelta delta)
+    {
+        byte[] bytes = DataBufferCodec.encode(delta.toData());
+
+        return DataDelta.fromData(DataBufferCodec.decode(ByteBuffer.wrap(bytes)));
+    }
+
+    private MapType createFilm(int replays)
+    {
+        MapType film = new MapType();
+        MapType camera = new MapType();
+        ListType list = new ListType();
+
+        camera.putDouble("fov", 50D);
+        camera.putString("type", "idle");
+
+        for (int i = 0; i < replays; i++)
+        {
+            list.add(this.createReplay(i));
+        }
+
+        film.putString("title", "Film");
+        film.putInt("duration", 100);
+        film.put("camera", camera);
+        film.put("replays", list);
+
+        return film;
+    }
+
+    private BaseType createReplay(int index)
+    {
+        MapType replay = new MapType();
+        MapType keyframes = new MapType();
+        ListType values = new ListType();
+
+        for (int i = 0; i < 4; i++)
+        {
+            values.add(new DoubleType(index * 10 + i));
+        }
+
+        keyframes.putDouble("x", index);
+        keyframes.put("y", values);
+        replay.putString("label", "Replay " + index);
+        replay.put("keyframes", keyframes);
+
+        return replay;
+    }
+}
@@ -0,0 +1,260 @@
+package mchorse.bbs_mod.data.storage;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import mchorse.bbs_mod.data.DataStorageContext;
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.ByteArrayType;
+import mchorse.bbs_mod.data.types.ByteType;
+import mchorse.bbs_mod.data.types.DoubleType;
+import mchorse.bbs_mod.data.types.FloatType;
+import mchorse.bbs_mod.data.types.IntArrayType;
+import mchorse.bbs_mod.data.types.IntType;
+import mchorse.bbs_mod.data.types.ListType;
+import mchorse.bbs_mod.data.types.LongType;
+import mchorse.bbs_mod.data.types.MapType;
+import mchorse.bbs_mod.data.types.ShortArrayType;
+import mchorse.bbs_mod.data.types.ShortType;
+import mchorse.bbs_mod.data.types.StringType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DataBufferCodecTest
+{
+    private static final String[] STRINGS = {"", "a", "key", "\u0000", "été", "中文", "😀", "long string with spaces and 0123456789"};
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 500; i++)
+        {
+            BaseType data = this.createRandom(random, 0);
+            byte[] bytes = DataBufferCodec.encode(data);
+
+            assertEquals(bytes.length, DataBufferCodec.getSize(data));
+            assertEquals(data, DataBufferCodec.decode(ByteBuffer.wrap(bytes)));
+
+            /* The codec should stay compatible with the stream based
+             * implementation in both directions */
+            assertArrayEquals(this.writeStream(data), bytes);
+            assertEquals(data, this.readStream(bytes));
+        }
+    }
+
+    @Test
+    public void testKeyTableSizes() throws IOException
+    {
+        /* Key indices are written as bytes, shorts or ints depending on the
+         * amount of unique keys */
+        for (int count : new int[] {0, 1, 255, 256, 65535, 65536})
+        {
+            MapType data = new MapType();
+
+            for (int i = 0; i < count; i++)
+            {
+                data.putInt("k" + i, i);
+            }
+
+            byte[] bytes = DataBufferCodec.encode(data);
+
+            assertArrayEquals(this.writeStream(data), bytes);
+            assertEquals(data, DataBufferCodec.decode(ByteBuffer.wrap(bytes)));
+        }
+    }
+
+    @Test
+    public void testByteBuf()
+    {
+        Random random = new Random(7);
+        ByteBuf buf = Unpooled.buffer();
+        List<BaseType> written = new ArrayList<>();
+
+        for (int i = 0; i < 50; i++)
+        {
+            BaseType data = this.createRandom(random, 0);
+
+            written.add(data);
+            DataBufferCodec.encodeSized(data, buf);
+        }
+
+        for (BaseType data : written)
+        {
+            assertEquals(data, DataBufferCodec.decodeSized(buf));
+        }
+
+        assertEquals(0, buf.readableBytes());
+        buf.release();
+    }
+
+    @Test
+    public void testView()
+    {
+        Random random = new Random(1234);
+
+        for (int i = 0; i < 200; i++)
+        {
+            BaseType data = this.createRandom(random, 0);
+            DataBufferView view = DataBufferCodec.view(DataBufferCodec.encode(data));
+
+            this.assertView(data, view);
+        }
+    }
+
+    @Test
+    public void testViewMissing()
+    {
+        MapType data = new MapType();
+        ListType list = new ListType();
+
+        list.add(new IntType(1));
+        data.put("list", list);
+
+        DataBufferView view = DataBufferCodec.view(DataBufferCodec.encode(data));
+
+        assertFalse(view.has("missing"));
+        assertNull(view.get(0));
+        assertNull(view.get("list").get("key"));
+        assertNull(view.get("list").get(1));
+        assertNull(view.get("list").get(-1));
+        assertTrue(view.get("list").keys().isEmpty());
+    }
+
+    /**
+     * Check that every part of the view decodes to the same data as the
+     * corresponding part of the original data
+     */
+    private void assertView(BaseType data, DataBufferView view)
+    {
+        assertEquals(data.getTypeId(), view.getTypeId());
+        assertEquals(data, view.decode());
+
+        if (data.isMap())
+        {
+            MapType map = data.asMap();
+
+            assertEquals(map.size(), view.size());
+            assertEquals(new ArrayList<>(map.keys()), view.keys());
+
+            for (Map.Entry<String, BaseType> entry : map)
+            {
+                assertTrue(view.has(entry.getKey()));
+                this.assertView(entry.getValue(), view.get(entry.getKey()));
+            }
+        }
+        else if (data.isList())
+        {
+            ListType list = data.asList();
+
+            assertEquals(list.size(), view.size());
+
+            for (int i = 0; i < list.size(); i++)
+            {
+                this.assertView(list.get(i), view.get(i));
+            }
+        }
+    }
+
+    private byte[] writeStream(BaseType data) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+        DataStorageContext context = new DataStorageContext(stream);
+
+        stream.writeInt(DataBufferCodec.HEADER);
+        data.traverseKeys(context);
+        context.write();
+        BaseType.toData(context, data);
+
+        return bytes.toByteArray();
+    }
+
+    private BaseType readStream(byte[] bytes) throws IOException
+    {
+        DataInputStream stream = new DataInputStream(new ByteArrayInputStream(bytes));
+        DataStorageContext context = new DataStorageContext(stream);
+
+        assertEquals(DataBufferCodec.HEADER, stream.readInt());
+        context.read();
+
+        return BaseType.fromData(context);
+    }
+
+    private BaseType createRandom(Random random, int depth)
+    {
+        int type = random.nextInt(depth >= 4 ? 10 : 12);
+
+        switch (type)
+        {
+            case 0: return new ByteType((byte) random.nextInt());
+            case 1: return new ShortType((short) random.nextInt());
+            case 2: return new IntType(random.nextInt());
+            case 3: return new LongType(random.nextLong());
+            case 4: return new FloatType(random.nextFloat());
+            case 5: return new DoubleType(random.nextDouble());
+            case 6: return new StringType(STRINGS[random.nextInt(STRINGS.length)] + random.nextInt(100));
+            case 7:
+            {
+                byte[] array = new byte[random.nextInt(20)];
+
+                random.nextBytes(array);
+
+                return new ByteArrayType(array);
+            }
+            case 8:
+            {
+                short[] array = new short[random.nextInt(20)];
+
+                for (int i = 0; i < array.length; i++)
+                {
+                    array[i] = (short) random.nextInt();
+                }
+
+                return new ShortArrayType(array);
+            }
+            case 9:
+            {
+                return new IntArrayType(random.ints(random.nextInt(20)).toArray());
+            }
+            case 10:
+            {
+                ListType list = new ListType();
+
+                for (int i = 0, c = random.nextInt(8); i < c; i++)
+                {
+                    list.add(this.createRandom(random, depth + 1));
+                }
+
+                return list;
+            }
+            default:
+            {
+                MapType map = new MapType();
+
+                for (int i = 0, c = random.nextInt(8); i < c; i++)
+                {
+                    map.put(STRINGS[random.nextInt(STRINGS.length)] + random.nextInt(10), this.createRandom(random, depth + 1));
+                }
+
+                return map;
+            }
+        }
+    }
+}
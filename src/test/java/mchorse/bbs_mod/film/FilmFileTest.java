@@ -0,0 +1,168 @@
+package mchorse.bbs_mod.film;
+
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.IntType;
+import mchorse.bbs_mod.data.types.ListType;
+import mchorse.bbs_mod.data.types.MapType;
+import mchorse.bbs_mod.data.types.StringType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FilmFileTest
+{
+    @TempDir
+    public File folder;
+
+    @Test
+    public void testSections() throws IOException
+    {
+        MapType data = this.createFilm(4);
+        File file = new File(this.folder, "film.dat");
+
+        FilmFile.write(file, data, null);
+
+        assertTrue(FilmFile.isFilmFile(file));
+
+        FilmFile filmFile = FilmFile.read(file);
+        MapType film = filmFile.readFilm();
+
+        assertEquals(4, filmFile.getReplayCount());
+        assertFalse(film.has("replays"));
+        assertEquals(data.get("camera"), film.get("camera"));
+        assertEquals(data.getString("title"), film.getString("title"));
+
+        for (int i = 0; i < 4; i++)
+        {
+            assertEquals(data.getList("replays").get(i), filmFile.readReplay(i));
+        }
+
+        assertEquals(new MapType(), filmFile.readReplay(4));
+        assertEquals(data, filmFile.readAll());
+    }
+
+    @Test
+    public void testSplit()
+    {
+        Map<String, BaseType> sections = FilmFile.split(this.createFilm(2));
+
+        assertTrue(sections.containsKey(FilmFile.FILM));
+        assertTrue(sections.containsKey(FilmFile.CAMERA));
+        assertTrue(sections.containsKey(FilmFile.REPLAY + "1"));
+        assertTrue(sections.containsKey(FilmFile.REPLAY + "1" + FilmFile.KEYFRAMES + "x"));
+        assertTrue(sections.get(FilmFile.REPLAY + "1").asMap().getMap("keyframes").isEmpty());
+    }
+
+    @Test
+    public void testReusePreviousSections() throws IOException
+    {
+        MapType data = this.createFilm(5);
+        File first = new File(this.folder, "first.dat");
+        File second = new File(this.folder, "second.dat");
+
+        FilmFile.write(first, data, null);
+
+        MapType changed = (MapType) data.copy();
+
+        changed.putString("title", "Changed");
+        changed.getList("replays").get(2).asMap().getMap("keyframes").put("x", new StringType("changed"));
+        changed.getList("replays").remove(4);
+
+        FilmFile.write(second, changed, FilmFile.read(first));
+
+        assertEquals(changed, FilmFile.read(second).readAll());
+    }
+
+    @Test
+    public void testOddReplays() throws IOException
+    {
+        MapType data = this.createFilm(1);
+        MapType replay = new MapType();
+
+        replay.putString("label", "No keyframes");
+        data.getList("replays").add(replay);
+        data.getList("replays").add(new IntType(5));
+        data.remove("camera");
+
+        File file = new File(this.folder, "film.dat");
+
+        FilmFile.write(file, data, null);
+
+        assertEquals(data, FilmFile.read(file).readAll());
+    }
+
+    @Test
+    public void testCorruptedFiles() throws IOException
+    {
+        File file = new File(this.folder, "film.dat");
+        File old = new File(this.folder, "old.dat");
+
+        FilmFile.write(file, this.createFilm(2), null);
+        Files.write(old.toPath(), new byte[] {0x1F, (byte) 0x8B, 8, 0});
+
+        assertFalse(FilmFile.isFilmFile(old));
+        assertThrows(IOException.class, () -> FilmFile.read(old));
+
+        /* Length of the first section, right after the header, section
+         * count, its name ("film") and its hash */
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw"))
+        {
+            access.seek(4 + 4 + 4 + 2 + FilmFile.FILM.length() + 8);
+            access.writeInt(Integer.MAX_VALUE);
+        }
+
+        assertThrows(IOException.class, () -> FilmFile.read(file));
+
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw"))
+        {
+            access.seek(4 + 4 + 4 + 2 + FilmFile.FILM.length() + 8);
+            access.writeInt(-1);
+        }
+
+        assertThrows(IOException.class, () -> FilmFile.read(file));
+    }
+
+    private MapType createFilm(int replays)
+    {
+        MapType film = new MapType();
+        MapType camera = new MapType();
+        ListType list = new ListType();
+
+        camera.putDouble("fov", 50D);
+
+        for (int i = 0; i < replays; i++)
+        {
+            MapType replay = new MapType();
+            MapType keyframes = new MapType();
+            ListType values = new ListType();
+
+            for (int j = 0; j < 100; j++)
+            {
+                values.add(new IntType(i * j));
+            }
+
+            keyframes.put("x", values);
+            keyframes.putDouble("y", i);
+            replay.putString("label", "Replay " + i);
+            replay.put("keyframes", keyframes);
+            list.add(replay);
+        }
+
+        film.putString("title", "Film");
+        film.putInt("duration", 100);
+        film.put("camera", camera);
+        film.put("replays", list);
+
+        return film;
+    }
+}
@@ -0,0 +1,186 @@
+package mchorse.bbs_mod.obj;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OBJTokenizerTest
+{
+    @Test
+    public void testLines() throws IOException
+    {
+        StringBuilder builder = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        Random random = new Random(23);
+
+        for (int i = 0; i < 5000; i++)
+        {
+            /* Some lines are longer than the read buffer */
+            String line = i % 1000 == 999 ? "x".repeat(100000) : "v " + i + " " + random.nextInt();
+
+            expected.add(line);
+            builder.append(line).append(i % 3 == 0 ? "\r\n" : (i % 3 == 1 ? "\n" : "\r"));
+        }
+
+        builder.append("last line without a line break");
+        expected.add("last line without a line break");
+
+        /* Streams that return only a few bytes at a time split "\r\n" between reads */
+        for (int chunk : new int[] {1, 3, 1 << 20})
+        {
+            OBJTokenizer tokenizer = new OBJTokenizer(this.stream(builder.toString(), chunk));
+
+            for (String line : expected)
+            {
+                assertTrue(tokenizer.nextLine());
+                assertEquals(line, tokenizer.rest());
+            }
+
+            assertFalse(tokenizer.nextLine());
+        }
+    }
+
+    @Test
+    public void testTokens() throws IOException
+    {
+        String[] lines = {"f  1/2/3\t4//6 \t 7/8  ", "   leading", "name with   spaces", "a\u000Bb\fc", "x", "été bone"};
+        OBJTokenizer tokenizer = new OBJTokenizer(this.stream(String.join("\n", lines), 1 << 20));
+        OBJTokenizer strict = new OBJTokenizer(this.stream(String.join("\n", lines), 1 << 20), true);
+
+        for (String line : lines)
+        {
+            assertTrue(tokenizer.nextLine());
+            assertTrue(strict.nextLine());
+            assertArrayEquals(line.trim().split("\\s+"), tokenizer.tokens(), line);
+            assertArrayEquals(line.split("\\s"), strict.tokens(), line);
+        }
+    }
+
+    @Test
+    public void testKeywords() throws IOException
+    {
+        OBJTokenizer tokenizer = new OBJTokenizer(this.stream("vt 0.5 1\nusemtl stone\n  \no", 1 << 20));
+
+        assertTrue(tokenizer.nextLine());
+        assertTrue(tokenizer.next());
+        assertTrue(tokenizer.is("vt"));
+        assertFalse(tokenizer.is("v"));
+        assertEquals(0.5F, tokenizer.nextFloat());
+        assertEquals(1F, tokenizer.nextFloat());
+        assertFalse(tokenizer.hasNext());
+        assertThrows(IllegalStateException.class, tokenizer::nextFloat);
+
+        assertTrue(tokenizer.nextLine());
+        assertTrue(tokenizer.next());
+        assertTrue(tokenizer.is("usemtl"));
+        assertTrue(tokenizer.hasNext());
+        assertEquals("stone", tokenizer.nextString());
+
+        assertTrue(tokenizer.nextLine());
+        assertFalse(tokenizer.next());
+
+        assertTrue(tokenizer.nextLine());
+        assertTrue(tokenizer.next());
+        assertEquals("o", tokenizer.string());
+        assertFalse(tokenizer.nextLine());
+    }
+
+    @Test
+    public void testIndexGroups() throws IOException
+    {
+        OBJTokenizer tokenizer = new OBJTokenizer(this.stream("f 1/2/3 4//6 7/8 9 -1/-2/-3", 1 << 20));
+        int[] indices = new int[15];
+
+        tokenizer.nextLine();
+        tokenizer.next();
+
+        for (int i = 0; i < 5; i++)
+        {
+            tokenizer.nextIndexGroup(indices, i * 3);
+        }
+
+        assertArrayEquals(new int[] {0, 1, 2, 3, -1, 5, 6, 7, -1, 8, -1, -1, -2, -3, -4}, indices);
+    }
+
+    @Test
+    public void testNumbers() throws IOException
+    {
+        Random random = new Random(29);
+        List<String> numbers = new ArrayList<>();
+
+        for (String number : new String[] {"0", "-0", "+1", "0.0", "-0.000", "1.", ".5", "0.1", "0.3", "1e5", "1.5E-3", "NaN", "-Infinity", "123456789012345678901234", "0.000000000000000000000001", "3.4028235e38", "1.17549435E-38"})
+        {
+            numbers.add(number);
+        }
+
+        for (int i = 0; i < 20000; i++)
+        {
+            double value = (random.nextDouble() - 0.5D) * Math.pow(10, random.nextInt(12) - 4);
+            int decimals = random.nextInt(12);
+
+            numbers.add(String.format(Locale.ROOT, "%." + decimals + "f", value));
+            numbers.add(Float.toString((float) value));
+            numbers.add(Double.toString(value));
+        }
+
+        OBJTokenizer tokenizer = new OBJTokenizer(this.stream(String.join("\n", numbers), 1 << 20));
+
+        for (String number : numbers)
+        {
+            tokenizer.nextLine();
+            assertEquals(Float.parseFloat(number), tokenizer.nextFloat(), number);
+        }
+
+        tokenizer = new OBJTokenizer(this.stream(String.join("\n", numbers), 1 << 20));
+
+        for (String number : numbers)
+        {
+            tokenizer.nextLine();
+            assertEquals(Double.parseDouble(number), tokenizer.nextDouble(), number);
+        }
+    }
+
+    @Test
+    public void testIntegers() throws IOException
+    {
+        String[] numbers = {"0", "-5", "+12", "2147483647", "-2147483648", "999999999"};
+        OBJTokenizer tokenizer = new OBJTokenizer(this.stream(String.join(" ", numbers) + " 1.5", 1 << 20));
+
+        tokenizer.nextLine();
+
+        for (String number : numbers)
+        {
+            assertEquals(Integer.parseInt(number), tokenizer.nextInt());
+        }
+
+        assertThrows(NumberFormatException.class, tokenizer::nextInt);
+    }
+
+    /**
+     * Stream that returns at most given amount of bytes per read
+     */
+    private InputStream stream(String string, int chunk)
+    {
+        return new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8))
+        {
+            @Override
+            public synchronized int read(byte[] b, int off, int len)
+            {
+                return super.read(b, off, Math.min(len, chunk));
+            }
+        };
+    }
+}
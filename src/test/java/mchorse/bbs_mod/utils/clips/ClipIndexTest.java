@@ -0,0 +1,140 @@
+package mchorse.bbs_mod.utils.clips;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ClipIndexTest
+{
+    @Test
+    public void testAgainstLinearScan()
+    {
+        Random random = new Random(3);
+
+        for (int i = 0; i < 100; i++)
+        {
+            List<Clip> clips = this.createClips(random, random.nextInt(60));
+            ClipIndex index = new ClipIndex();
+
+            for (int tick = -5; tick < 220; tick++)
+            {
+                this.assertQuery(index, clips, tick, Integer.MAX_VALUE);
+                this.assertQuery(index, clips, tick, random.nextInt(10));
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidate()
+    {
+        Random random = new Random(5);
+        List<Clip> clips = this.createClips(random, 30);
+        ClipIndex index = new ClipIndex();
+
+        for (int i = 0; i < 50; i++)
+        {
+            Clip clip = clips.get(random.nextInt(clips.size()));
+
+            clip.tick.set(random.nextInt(200));
+            clip.duration.set(1 + random.nextInt(50));
+            clip.layer.set(random.nextInt(8));
+            index.invalidate();
+
+            for (int tick = 0; tick < 250; tick += 3)
+            {
+                this.assertQuery(index, clips, tick, Integer.MAX_VALUE);
+            }
+        }
+
+        /* The index gets rebuilt when the amount of clips changes as well */
+        clips.add(new TestClip(false));
+
+        for (int tick = 0; tick < 250; tick += 3)
+        {
+            this.assertQuery(index, clips, tick, Integer.MAX_VALUE);
+        }
+    }
+
+    private void assertQuery(ClipIndex index, List<Clip> clips, int tick, int maxLayer)
+    {
+        List<Clip> expected = this.scan(clips, tick, maxLayer);
+        List<Clip> actual = new ArrayList<>();
+
+        index.query(clips, tick, maxLayer, actual);
+
+        assertEquals(expected.size(), actual.size(), "Tick " + tick + ", max layer " + maxLayer);
+
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertSame(expected.get(i), actual.get(i), "Tick " + tick + ", max layer " + maxLayer);
+        }
+    }
+
+    /**
+     * Find clips the way {@link Clips} did it before the index
+     */
+    private List<Clip> scan(List<Clip> clips, int tick, int maxLayer)
+    {
+        List<Clip> clipList = new ArrayList<>();
+
+        for (Clip clip : clips)
+        {
+            boolean isGlobal = clip.isGlobal() && maxLayer == Integer.MAX_VALUE;
+
+            if ((clip.isInside(tick) || isGlobal) && clip.layer.get() < maxLayer)
+            {
+                clipList.add(clip);
+            }
+        }
+
+        clipList.sort(Comparator.comparingInt((a) -> a.layer.get()));
+
+        return clipList;
+    }
+
+    private List<Clip> createClips(Random random, int count)
+    {
+        List<Clip> clips = new ArrayList<>();
+
+        for (int i = 0; i < count; i++)
+        {
+            Clip clip = new TestClip(random.nextInt(10) == 0);
+
+            /* Small ranges, so there are plenty of overlaps and same ticks */
+            clip.tick.set(random.nextInt(200));
+            clip.duration.set(1 + random.nextInt(random.nextBoolean() ? 5 : 80));
+            clip.layer.set(random.nextInt(8));
+            clips.add(clip);
+        }
+
+        return clips;
+    }
+
+    private static class TestClip extends Clip
+    {
+        private final boolean global;
+
+        public TestClip(boolean global)
+        {
+            this.global = global;
+        }
+
+        @Override
+        public boolean isGlobal()
+        {
+            return this.global;
+        }
+
+        @Override
+        protected Clip create()
+        {
+            return new TestClip(this.global);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package mchorse.bbs_mod.utils.keyframes;
+
+import mchorse.bbs_mod.utils.keyframes.factories.KeyframeFactories;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class KeyframeCursorTest
+{
+    @Test
+    public void testAgainstLinearScan()
+    {
+        Random random = new Random(11);
+
+        for (int i = 0; i < 50; i++)
+        {
+            KeyframeChannel<Double> channel = this.createChannel(random, random.nextInt(40));
+            KeyframeCursor cursor = new KeyframeCursor();
+            float ticks = 0F;
+
+            for (int j = 0; j < 2000; j++)
+            {
+                int step = random.nextInt(10);
+
+                /* Mostly small steps forward or backward like playback and
+                 * scrubbing, with occasional seeks */
+                if (step < 6)
+                {
+                    ticks += random.nextFloat() * 2F;
+                }
+                else if (step < 9)
+                {
+                    ticks -= random.nextFloat() * 2F;
+                }
+                else
+                {
+                    ticks = random.nextFloat() * 120F - 10F;
+                }
+
+                /* Hit keyframes' ticks exactly from time to time */
+                if (random.nextInt(5) == 0)
+                {
+                    ticks = (float) Math.floor(ticks);
+                }
+
+                assertEquals(this.scan(channel, ticks), cursor.find(channel, ticks), "Ticks " + ticks);
+            }
+        }
+    }
+
+    @Test
+    public void testFindSegment()
+    {
+        Random random = new Random(13);
+        KeyframeChannel<Double> channel = this.createChannel(random, 30);
+        KeyframeCursor cursor = new KeyframeCursor();
+
+        for (float ticks = -5F; ticks < 110F; ticks += 0.25F)
+        {
+            KeyframeSegment<Double> expected = channel.findSegment(ticks, new KeyframeCursor());
+            KeyframeSegment<Double> actual = channel.findSegment(ticks, cursor);
+
+            assertSame(expected.a, actual.a);
+            assertSame(expected.b, actual.b);
+            assertSame(expected.preA, actual.preA);
+            assertSame(expected.postB, actual.postB);
+        }
+    }
+
+    @Test
+    public void testChannelChanges()
+    {
+        Random random = new Random(17);
+        KeyframeChannel<Double> channel = this.createChannel(random, 10);
+        KeyframeCursor cursor = new KeyframeCursor();
+
+        cursor.find(channel, 1000F);
+
+        /* Cursor's last position is past the end of the channel once
+         * keyframes get removed */
+        while (channel.getKeyframeCount() > 2)
+        {
+            channel.remove(channel.getKeyframeCount() - 1);
+
+            assertEquals(this.scan(channel, 1000F), cursor.find(channel, 1000F));
+            assertEquals(this.scan(channel, 50F), cursor.find(channel, 50F));
+        }
+
+        channel.removeAll();
+
+        assertEquals(0, cursor.find(channel, 10F));
+    }
+
+    private int scan(KeyframeChannel<?> channel, float ticks)
+    {
+        int i = 0;
+
+        while (i < channel.getKeyframeCount() && channel.getKeyframeTick(i) < ticks)
+        {
+            i += 1;
+        }
+
+        return i;
+    }
+
+    private KeyframeChannel<Double> createChannel(Random random, int count)
+    {
+        KeyframeChannel<Double> channel = new KeyframeChannel<>("x", KeyframeFactories.DOUBLE);
+
+        for (int i = 0; i < count; i++)
+        {
+            /* Whole ticks, so some keyframes end up at the same tick */
+            channel.insert(random.nextInt(100), random.nextDouble());
+        }
+
+        return channel;
+    }
+}
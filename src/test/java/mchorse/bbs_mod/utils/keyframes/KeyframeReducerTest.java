@@ -0,0 +1,136 @@
+package mchorse.bbs_mod.utils.keyframes;
+
+import mchorse.bbs_mod.utils.keyframes.factories.KeyframeFactories;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeyframeReducerTest
+{
+    @Test
+    public void testConstantAndLinearRuns()
+    {
+        KeyframeReducer reducer = new KeyframeReducer(0D);
+        KeyframeChannel<Double> constant = new KeyframeChannel<>("constant", KeyframeFactories.DOUBLE);
+        KeyframeChannel<Double> linear = new KeyframeChannel<>("linear", KeyframeFactories.DOUBLE);
+
+        for (int tick = 0; tick < 100; tick++)
+        {
+            reducer.insert(constant, tick, 5D);
+            reducer.insert(linear, tick, tick * 0.5D);
+        }
+
+        assertEquals(2, constant.getKeyframeCount());
+        assertEquals(2, linear.getKeyframeCount());
+        assertEquals(99F, linear.getKeyframeTick(1));
+        assertEquals(49.5D, linear.get(1).getValue());
+    }
+
+    @Test
+    public void testSkippedSamplesStayWithinTolerance()
+    {
+        double tolerance = 0.05D;
+        Random random = new Random(19);
+        KeyframeReducer reducer = new KeyframeReducer(tolerance);
+        KeyframeChannel<Double> channel = new KeyframeChannel<>("x", KeyframeFactories.DOUBLE);
+        double[] samples = new double[1000];
+        double value = 0D;
+        double velocity = 0D;
+
+        for (int tick = 0; tick < samples.length; tick++)
+        {
+            if (random.nextInt(50) == 0)
+            {
+                velocity = random.nextDouble() - 0.5D;
+            }
+
+            value += velocity + (random.nextDouble() - 0.5D) * tolerance;
+            samples[tick] = value;
+            reducer.insert(channel, tick, value);
+        }
+
+        assertTrue(channel.getKeyframeCount() < samples.length / 4, "Only " + channel.getKeyframeCount() + " keyframes");
+
+        for (int tick = 0; tick < samples.length; tick++)
+        {
+            assertEquals(samples[tick], channel.interpolate(tick), tolerance + 1e-9, "Tick " + tick);
+        }
+    }
+
+    @Test
+    public void testPerChannelTolerance()
+    {
+        KeyframeReducer reducer = new KeyframeReducer(0D).setTolerance("loose", 1D);
+        KeyframeChannel<Double> strict = new KeyframeChannel<>("strict", KeyframeFactories.DOUBLE);
+        KeyframeChannel<Double> loose = new KeyframeChannel<>("loose", KeyframeFactories.DOUBLE);
+
+        for (int tick = 0; tick < 100; tick++)
+        {
+            double value = tick % 2 == 0 ? 0D : 0.5D;
+
+            reducer.insert(strict, tick, value);
+            reducer.insert(loose, tick, value);
+        }
+
+        assertEquals(100, strict.getKeyframeCount());
+        assertEquals(2, loose.getKeyframeCount());
+    }
+
+    @Test
+    public void testNonNumericValues()
+    {
+        KeyframeReducer reducer = new KeyframeReducer(1D);
+        KeyframeChannel<String> channel = new KeyframeChannel<>("string", KeyframeFactories.STRING);
+        KeyframeChannel<String> full = new KeyframeChannel<>("full", KeyframeFactories.STRING);
+
+        for (int tick = 0; tick < 30; tick++)
+        {
+            String value = tick < 10 ? "a" : (tick < 20 ? "b" : "c");
+
+            reducer.insert(channel, tick, value);
+            full.insert(tick, value);
+        }
+
+        for (float tick = 0; tick < 30; tick += 0.5F)
+        {
+            assertEquals(full.interpolate(tick), channel.interpolate(tick), "Tick " + tick);
+        }
+
+        assertTrue(channel.getKeyframeCount() <= 6);
+    }
+
+    @Test
+    public void testChangedChannelIsNotTouched()
+    {
+        KeyframeReducer reducer = new KeyframeReducer(0D);
+        KeyframeChannel<Double> channel = new KeyframeChannel<>("x", KeyframeFactories.DOUBLE);
+
+        for (int tick = 0; tick < 10; tick++)
+        {
+            reducer.insert(channel, tick, 1D);
+        }
+
+        /* Keyframe added by somebody else shouldn't get moved, so the
+         * reducer starts over after it */
+        Keyframe<Double> other = channel.get(channel.insert(20, 1D));
+
+        for (int tick = 21; tick < 30; tick++)
+        {
+            reducer.insert(channel, tick, 1D);
+        }
+
+        assertEquals(20F, other.getTick());
+        assertEquals(1D, other.getValue());
+        assertEquals(5, channel.getKeyframeCount());
+        assertEquals(29F, channel.getKeyframeTick(4));
+
+        /* Samples that are before the end of the channel are inserted as is */
+        reducer.insert(channel, 15, 2D);
+
+        assertEquals(6, channel.getKeyframeCount());
+        assertEquals(2D, channel.interpolate(15));
+    }
+}
@@ -0,0 +1,185 @@
+package mchorse.bbs_mod.vox;
+
+import mchorse.bbs_mod.cubic.data.model.ModelData;
+import mchorse.bbs_mod.vox.data.Vox;
+import org.joml.Matrix3f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VoxGreedyBuilderTest
+{
+    @Test
+    public void testSolidBox()
+    {
+        Vox vox = this.createVox(20, 17, 40);
+
+        for (int i = 0; i < vox.voxels.length; i++)
+        {
+            vox.voxels[i] = 3;
+        }
+
+        ModelData data = this.createBuilder(VoxGreedyBuilder.class).build(vox).baseData;
+
+        /* Two triangles per side */
+        assertEquals(36, data.getVertexCount());
+        this.assertSameSurface(this.createBuilder(VoxBuilder.class).build(vox).baseData, data);
+    }
+
+    @Test
+    public void testRandomModels()
+    {
+        Random random = new Random(31);
+
+        for (int i = 0; i < 20; i++)
+        {
+            /* Sizes bigger than the amount of slices per task, so slices get
+             * meshed by several tasks */
+            Vox vox = this.createVox(1 + random.nextInt(24), 1 + random.nextInt(24), 1 + random.nextInt(24));
+            int colors = 1 + random.nextInt(4);
+            float fill = random.nextFloat();
+
+            for (int j = 0; j < vox.voxels.length; j++)
+            {
+                vox.voxels[j] = random.nextFloat() < fill ? 1 + random.nextInt(colors) : 0;
+            }
+
+            ModelData naive = this.createBuilder(VoxBuilder.class).build(vox).baseData;
+            ModelData greedy = this.createBuilder(VoxGreedyBuilder.class).build(vox).baseData;
+
+            assertTrue(greedy.getVertexCount() <= naive.getVertexCount());
+            this.assertSameSurface(naive, greedy);
+
+            /* Parallel meshing should always produce the same result */
+            assertArrayEquals(greedy.vertices, this.createBuilder(VoxGreedyBuilder.class).build(vox).baseData.vertices);
+        }
+    }
+
+    /**
+     * Check that both meshes have the same (signed, so facing the same
+     * way) area of every color facing every direction, and that every
+     * face of the first mesh is covered by the second mesh
+     */
+    private void assertSameSurface(ModelData expected, ModelData actual)
+    {
+        Map<String, Float> expectedAreas = this.collectAreas(expected);
+        Map<String, Float> actualAreas = this.collectAreas(actual);
+
+        assertEquals(expectedAreas.keySet(), actualAreas.keySet());
+
+        for (Map.Entry<String, Float> entry : expectedAreas.entrySet())
+        {
+            assertEquals(entry.getValue(), actualAreas.get(entry.getKey()), 0.01F, entry.getKey());
+        }
+
+        Map<String, List<Integer>> triangles = new HashMap<>();
+        Vector3f center = new Vector3f();
+
+        for (int i = 0; i < actual.getVertexCount(); i += 3)
+        {
+            triangles.computeIfAbsent(this.getKey(actual, i), (k) -> new ArrayList<>()).add(i);
+        }
+
+        for (int i = 0; i < expected.getVertexCount(); i += 6)
+        {
+            /* Every side of a voxel is a quad made of two triangles, and
+             * the first and the second vertices are its opposite corners */
+            Vector3f a = expected.getVertex(i, new Vector3f());
+            Vector3f b = expected.getVertex(i + 1, new Vector3f());
+
+            a.add(b, center).mul(0.5F);
+
+            assertTrue(this.isCovered(actual, triangles.get(this.getKey(expected, i)), center), "Face at " + center);
+        }
+    }
+
+    private Map<String, Float> collectAreas(ModelData data)
+    {
+        Map<String, Float> areas = new HashMap<>();
+
+        for (int i = 0; i < data.getVertexCount(); i += 3)
+        {
+            areas.merge(this.getKey(data, i), this.getSignedArea(data, i), Float::sum);
+        }
+
+        return areas;
+    }
+
+    private String getKey(ModelData data, int index)
+    {
+        Vector3f normal = data.getNormal(index, new Vector3f());
+        float u = Math.min(data.uvs[index * 2], Math.min(data.uvs[index * 2 + 2], data.uvs[index * 2 + 4]));
+
+        return Math.round(normal.x) + " " + Math.round(normal.y) + " " + Math.round(normal.z) + " " + Math.round(u);
+    }
+
+    private float getSignedArea(ModelData data, int index)
+    {
+        Vector3f a = data.getVertex(index, new Vector3f());
+        Vector3f b = data.getVertex(index + 1, new Vector3f()).sub(a);
+        Vector3f c = data.getVertex(index + 2, new Vector3f()).sub(a);
+
+        return b.cross(c).dot(data.getNormal(index, new Vector3f())) / 2F;
+    }
+
+    private boolean isCovered(ModelData data, List<Integer> triangles, Vector3f point)
+    {
+        for (int i : triangles)
+        {
+            if (this.isInside(data, i, point))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isInside(ModelData data, int index, Vector3f point)
+    {
+        Vector3f a = data.getVertex(index, new Vector3f());
+        Vector3f b = data.getVertex(index + 1, new Vector3f());
+        Vector3f c = data.getVertex(index + 2, new Vector3f());
+        Vector3f normal = new Vector3f(b).sub(a).cross(new Vector3f(c).sub(a));
+
+        if (Math.abs(new Vector3f(point).sub(a).dot(normal)) > 0.001F)
+        {
+            return false;
+        }
+
+        float ab = new Vector3f(b).sub(a).cross(new Vector3f(point).sub(a)).dot(normal);
+        float bc = new Vector3f(c).sub(b).cross(new Vector3f(point).sub(b)).dot(normal);
+        float ca = new Vector3f(a).sub(c).cross(new Vector3f(point).sub(c)).dot(normal);
+
+        return ab >= -0.001F && bc >= -0.001F && ca >= -0.001F;
+    }
+
+    private VoxBuilder createBuilder(Class<? extends VoxBuilder> clazz)
+    {
+        Vector3f translation = new Vector3f(1, 2, 3);
+        Matrix3f transform = new Matrix3f();
+
+        return clazz == VoxGreedyBuilder.class ? new VoxGreedyBuilder(translation, transform) : new VoxBuilder(translation, transform);
+    }
+
+    private Vox createVox(int w, int h, int d)
+    {
+        Vox vox = new Vox();
+
+        vox.w = w;
+        vox.h = h;
+        vox.d = d;
+        vox.voxels = new int[w * h * d];
+
+        return vox;
+    }
+}